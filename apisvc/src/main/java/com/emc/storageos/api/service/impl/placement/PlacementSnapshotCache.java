@@ -0,0 +1,501 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+
+package com.emc.storageos.api.service.impl.placement;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.emc.storageos.db.client.DbClient;
+import com.emc.storageos.db.client.impl.DbObjectCache;
+import com.emc.storageos.db.client.model.DataObject;
+import com.emc.storageos.db.client.model.StoragePool;
+import com.emc.storageos.db.client.model.StorageSystem;
+import com.emc.storageos.db.client.model.StringSet;
+import com.emc.storageos.db.client.model.VirtualPool;
+
+/**
+ * In-memory view of the storage pools placement may use for a virtual pool, i.e. the pools
+ * VirtualPool.getValidStoragePools returns, along with their capacity and subscription figures,
+ * and of the storage systems of those pools.
+ *
+ * Pools and systems are read from the db once and then kept until they change: the DbObjectCache
+ * tracks the writes of StoragePool and StorageSystem, on this node, e.g. reserved capacity added
+ * when volumes are prepared, and on the other nodes, e.g. discovery, whether or not it caches
+ * their rows. A write on this node only refreshes the written objects, a write on another node
+ * refreshes the objects of the class as they are next used, with a single bulk read per request.
+ * So a burst of volume creates shares one view and reads only the pools changed by the previous
+ * placements.
+ *
+ * The pools of a vpool are recomputed in memory when the vpool's matched pools or any cached pool
+ * or system change. Objects are kept serialized, every caller gets its own instances. Objects are
+ * also bounded by a max age. Nothing is cached while the changes of StoragePool or StorageSystem
+ * are not tracked; placement then reads the pools as before, see isActive().
+ */
+public class PlacementSnapshotCache implements DbObjectCache.ChangeListener {
+    private static final Logger _log = LoggerFactory.getLogger(PlacementSnapshotCache.class);
+
+    private static final int DEFAULT_MAX_POOLS = 10000;
+    private static final int DEFAULT_MAX_SYSTEMS = 2000;
+    private static final int DEFAULT_MAX_SNAPSHOTS = 1000;
+    private static final int DEFAULT_MAX_AGE_IN_SECS = 30;
+    private static final List<Class<? extends DataObject>> TRACKED_CLASSES = Collections.unmodifiableList(
+            Arrays.<Class<? extends DataObject>> asList(StoragePool.class, StorageSystem.class));
+
+    private boolean _enabled = true;
+    private int _maxPools = DEFAULT_MAX_POOLS;
+    private int _maxSystems = DEFAULT_MAX_SYSTEMS;
+    private int _maxSnapshots = DEFAULT_MAX_SNAPSHOTS;
+    private long _maxAgeInMillis = DEFAULT_MAX_AGE_IN_SECS * 1000L;
+    private DbClient _dbClient;
+    private DbObjectCache _objectCache;
+    private volatile boolean _listening = false;
+    private volatile boolean _tracked = false;
+
+    private Map<URI, CachedObject> _pools;
+    private Map<URI, CachedObject> _systems;
+    private Map<String, Snapshot> _snapshots;
+    // incremented on every change of the cached objects
+    private long _version = 0;
+    private long _generation = 0;
+
+    private final AtomicLong _hits = new AtomicLong();
+    private final AtomicLong _misses = new AtomicLong();
+    private final AtomicLong _loads = new AtomicLong();
+    private final AtomicLong _invalidations = new AtomicLong();
+
+    /**
+     * A pool or system, kept serialized along with a read only instance to filter on
+     */
+    private static class CachedObject {
+        private final DataObject _object;
+        private final byte[] _data;
+        private long _expireTime;
+
+        private CachedObject(DataObject object, long expireTime) {
+            _object = object;
+            _data = serialize(object);
+            _expireTime = expireTime;
+        }
+    }
+
+    /**
+     * The pools placement may use for a vpool
+     */
+    private static class Snapshot {
+        private final Set<String> _candidatePools;
+        private final List<URI> _candidatePoolIds;
+        private final long _version;
+        private final List<URI> _pools;
+
+        private Snapshot(Set<String> candidatePools, List<URI> candidatePoolIds, long version, List<URI> pools) {
+            _candidatePools = candidatePools;
+            _candidatePoolIds = candidatePoolIds;
+            _version = version;
+            _pools = pools;
+        }
+    }
+
+    public void setEnabled(boolean enabled) {
+        _enabled = enabled;
+    }
+
+    public void setMaxPools(int maxPools) {
+        _maxPools = maxPools;
+    }
+
+    public void setMaxSystems(int maxSystems) {
+        _maxSystems = maxSystems;
+    }
+
+    public void setMaxSnapshots(int maxSnapshots) {
+        _maxSnapshots = maxSnapshots;
+    }
+
+    public void setMaxAgeInSecs(int maxAgeInSecs) {
+        _maxAgeInMillis = maxAgeInSecs * 1000L;
+    }
+
+    public void setDbClient(DbClient dbClient) {
+        _dbClient = dbClient;
+    }
+
+    public void setObjectCache(DbObjectCache objectCache) {
+        _objectCache = objectCache;
+    }
+
+    /**
+     * Starts tracking changes of the pools and systems. Tracking of a class may fail when
+     * the db client starts, so whether the changes are tracked is checked on use.
+     */
+    public synchronized void init() {
+        _pools = createLruMap(_maxPools);
+        _systems = createLruMap(_maxSystems);
+        _snapshots = createLruMap(_maxSnapshots);
+        if (!_enabled) {
+            _log.info("Placement snapshot cache is disabled");
+            return;
+        }
+        if (_objectCache == null) {
+            _log.warn("No object cache to track StoragePool and StorageSystem changes, placement will read them from the db");
+            return;
+        }
+        _objectCache.addChangeListener(this);
+        for (Class<? extends DataObject> clazz : TRACKED_CLASSES) {
+            if (!_objectCache.trackChanges(clazz)) {
+                _log.warn("Changes of {} are not tracked, placement will read pools from the db", clazz.getSimpleName());
+                _objectCache.removeChangeListener(this);
+                return;
+            }
+        }
+        _listening = true;
+        _log.info("Caching up to {} pools for placement for up to {}s", _maxPools, _maxAgeInMillis / 1000);
+    }
+
+    public synchronized void destroy() {
+        if (_listening) {
+            _objectCache.removeChangeListener(this);
+            _listening = false;
+        }
+        clear();
+        _log.info("Placement snapshot cache stopped: {}", this);
+    }
+
+    private static <K, V> Map<K, V> createLruMap(final int maxEntries) {
+        return new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return true if pools are cached, i.e. the object cache tracks the changes
+     *         of StoragePool and StorageSystem
+     */
+    public boolean isActive() {
+        if (!_listening) {
+            return false;
+        }
+        boolean tracked = true;
+        for (Class<? extends DataObject> clazz : TRACKED_CLASSES) {
+            tracked = tracked && _objectCache.isTracked(clazz);
+        }
+        if (tracked != _tracked) {
+            synchronized (this) {
+                if (tracked != _tracked) {
+                    // changes may have been missed while they were not tracked
+                    clear();
+                    _tracked = tracked;
+                    _log.info("Placement pools are {}", tracked ? "cached" : "no longer cached");
+                }
+            }
+        }
+        return tracked;
+    }
+
+    @Override
+    public void objectsChanged(Class<? extends DataObject> clazz, Collection<URI> ids) {
+        if (StoragePool.class.equals(clazz)) {
+            expire(_pools, ids);
+        } else if (StorageSystem.class.equals(clazz)) {
+            expire(_systems, ids);
+        }
+    }
+
+    /**
+     * Marks the given objects, or all objects if ids is null, to be read again on next use
+     */
+    private synchronized void expire(Map<URI, CachedObject> objects, Collection<URI> ids) {
+        if (objects == null) {
+            return;
+        }
+        _generation++;
+        _version++;
+        _invalidations.incrementAndGet();
+        if (ids == null) {
+            for (CachedObject object : objects.values()) {
+                object._expireTime = 0;
+            }
+        } else {
+            for (URI id : ids) {
+                CachedObject object = objects.get(id);
+                if (object != null) {
+                    object._expireTime = 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops all cached objects
+     */
+    public synchronized void clear() {
+        _generation++;
+        _version++;
+        if (_pools != null) {
+            _pools.clear();
+            _systems.clear();
+            _snapshots.clear();
+        }
+    }
+
+    /**
+     * Returns the valid storage pools of the vpool, i.e. the pools of
+     * VirtualPool.getValidStoragePools excluding unreachable systems.
+     *
+     * @param vpool the virtual pool
+     * @return new instances of the pools
+     */
+    public List<StoragePool> getValidStoragePools(VirtualPool vpool) {
+        if (!isActive()) {
+            return VirtualPool.getValidStoragePools(vpool, _dbClient, true);
+        }
+        Set<String> candidatePools = getCandidatePools(vpool);
+        String key = vpool.getId().toString();
+        List<URI> pools = getSnapshotPools(key, candidatePools);
+        if (pools == null) {
+            _misses.incrementAndGet();
+            pools = computeSnapshotPools(key, candidatePools);
+        } else {
+            _hits.incrementAndGet();
+        }
+        List<StoragePool> copies = getCopies(StoragePool.class, _pools, pools);
+        if (copies == null) {
+            // evicted meanwhile
+            return VirtualPool.getValidStoragePools(vpool, _dbClient, true);
+        }
+        return copies;
+    }
+
+    /**
+     * Returns the storage systems with the given ids
+     *
+     * @param ids system ids
+     * @return new instances of the systems
+     */
+    public List<StorageSystem> getStorageSystems(Collection<URI> ids) {
+        if (!isActive()) {
+            return _dbClient.queryObject(StorageSystem.class, ids);
+        }
+        load(StorageSystem.class, _systems, ids);
+        List<StorageSystem> copies = getCopies(StorageSystem.class, _systems, ids);
+        if (copies == null) {
+            return _dbClient.queryObject(StorageSystem.class, ids);
+        }
+        return copies;
+    }
+
+    /**
+     * Returns the ids of the matched or assigned pools of the vpool less its invalid pools,
+     * which are removed from the vpool's pools like VirtualPool.getValidStoragePools does.
+     */
+    private static Set<String> getCandidatePools(VirtualPool vpool) {
+        StringSet storagePools = vpool.getUseMatchedPools() ? vpool.getMatchedStoragePools() : vpool.getAssignedStoragePools();
+        Set<String> candidatePools = new LinkedHashSet<String>();
+        if (storagePools != null) {
+            if (vpool.getInvalidMatchedPools() != null) {
+                storagePools.removeAll(vpool.getInvalidMatchedPools());
+            }
+            candidatePools.addAll(storagePools);
+        }
+        return candidatePools;
+    }
+
+    private synchronized List<URI> getSnapshotPools(String key, Set<String> candidatePools) {
+        Snapshot snapshot = _snapshots.get(key);
+        if (snapshot == null || snapshot._version != _version || !snapshot._candidatePools.equals(candidatePools)) {
+            return null;
+        }
+        // the pools and systems the snapshot was computed from must not be too old
+        long now = System.currentTimeMillis();
+        for (URI id : snapshot._candidatePoolIds) {
+            CachedObject pool = _pools.get(id);
+            if (pool == null || pool._expireTime <= now) {
+                return null;
+            }
+            URI systemId = ((StoragePool) pool._object).getStorageDevice();
+            CachedObject system = (systemId != null) ? _systems.get(systemId) : null;
+            if (systemId != null && (system == null || system._expireTime <= now)) {
+                return null;
+            }
+        }
+        return snapshot._pools;
+    }
+
+    /**
+     * Reads the pools and systems of the snapshot which are not cached or have changed,
+     * and recomputes the snapshot
+     */
+    private List<URI> computeSnapshotPools(String key, Set<String> candidatePools) {
+        List<URI> poolIds = toURIs(candidatePools);
+        load(StoragePool.class, _pools, poolIds);
+        Set<URI> systemIds = new LinkedHashSet<URI>();
+        synchronized (this) {
+            for (URI id : poolIds) {
+                CachedObject pool = _pools.get(id);
+                if (pool != null && ((StoragePool) pool._object).getStorageDevice() != null) {
+                    systemIds.add(((StoragePool) pool._object).getStorageDevice());
+                }
+            }
+        }
+        load(StorageSystem.class, _systems, systemIds);
+
+        synchronized (this) {
+            List<StoragePool> pools = new ArrayList<StoragePool>();
+            for (URI id : poolIds) {
+                CachedObject pool = _pools.get(id);
+                if (pool != null) {
+                    pools.add((StoragePool) pool._object);
+                }
+            }
+            List<URI> validPools = new ArrayList<URI>();
+            for (StoragePool pool : filterPools(pools)) {
+                validPools.add(pool.getId());
+            }
+            _snapshots.put(key, new Snapshot(candidatePools, poolIds, _version, validPools));
+            return validPools;
+        }
+    }
+
+    /**
+     * Keeps the active pools of reachable systems, with the lock held
+     */
+    private List<StoragePool> filterPools(List<StoragePool> pools) {
+        List<StoragePool> validPools = new ArrayList<StoragePool>();
+        for (StoragePool pool : pools) {
+            if (pool.getInactive() || pool.getStorageDevice() == null) {
+                continue;
+            }
+            CachedObject system = _systems.get(pool.getStorageDevice());
+            if (system == null || !((StorageSystem) system._object).getReachableStatus()) {
+                continue;
+            }
+            validPools.add(pool);
+        }
+        return validPools;
+    }
+
+    /**
+     * Reads the given objects which are not cached, or have changed, with a single bulk query
+     */
+    private <T extends DataObject> void load(Class<T> clazz, Map<URI, CachedObject> objects, Collection<URI> ids) {
+        List<URI> missing = new ArrayList<URI>();
+        long generation;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            for (URI id : ids) {
+                CachedObject object = objects.get(id);
+                if (object == null || object._expireTime <= now) {
+                    missing.add(id);
+                }
+            }
+            generation = _generation;
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        _loads.addAndGet(missing.size());
+        List<T> loaded = _dbClient.queryObject(clazz, missing);
+        synchronized (this) {
+            // objects read concurrently with a write are used once and read again next time
+            long expireTime = (generation == _generation) ? System.currentTimeMillis() + _maxAgeInMillis : 0;
+            for (T object : loaded) {
+                if (object != null) {
+                    objects.put(object.getId(), new CachedObject(object, expireTime));
+                }
+            }
+            _version++;
+        }
+    }
+
+    /**
+     * @return new instances of the given objects, or null if some of them are not cached
+     */
+    private synchronized <T extends DataObject> List<T> getCopies(Class<T> clazz, Map<URI, CachedObject> objects,
+            Collection<URI> ids) {
+        List<T> copies = new ArrayList<T>(ids.size());
+        for (URI id : ids) {
+            CachedObject object = objects.get(id);
+            if (object == null) {
+                return null;
+            }
+            copies.add(clazz.cast(deserialize(object._data)));
+        }
+        return copies;
+    }
+
+    private static List<URI> toURIs(Collection<String> ids) {
+        List<URI> uris = new ArrayList<URI>(ids.size());
+        for (String id : ids) {
+            uris.add(URI.create(id));
+        }
+        return uris;
+    }
+
+    private static byte[] serialize(DataObject object) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(object);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to serialize " + object.getId(), e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static DataObject deserialize(byte[] data) {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data))) {
+            DataObject object = (DataObject) in.readObject();
+            object.trackChanges();
+            return object;
+        } catch (IOException | ClassNotFoundException e) {
+            throw new IllegalStateException("Failed to deserialize cached object", e);
+        }
+    }
+
+    public synchronized int size() {
+        return (_pools != null) ? _pools.size() : 0;
+    }
+
+    public long getHitCount() {
+        return _hits.get();
+    }
+
+    public long getMissCount() {
+        return _misses.get();
+    }
+
+    public long getLoadCount() {
+        return _loads.get();
+    }
+
+    public long getInvalidationCount() {
+        return _invalidations.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("pools=%d hits=%d misses=%d loads=%d invalidations=%d", size(), getHitCount(),
+                getMissCount(), getLoadCount(), getInvalidationCount());
+    }
+}
@@ -103,6 +103,7 @@ public class StorageScheduler implements Scheduler {
 
     private final Comparator<StoragePool> _storagePoolComparator = new StoragePoolDefaultComparator();
     private AttributeMatcherFramework _matcherFramework;
+    private PlacementSnapshotCache _placementSnapshotCache;
 
     public void setDbClient(DbClient dbClient) {
         _dbClient = dbClient;
@@ -134,6 +135,10 @@ public class StorageScheduler implements Scheduler {
         return _coordinator;
     }
 
+    public void setPlacementSnapshotCache(PlacementSnapshotCache placementSnapshotCache) {
+        _placementSnapshotCache = placementSnapshotCache;
+    }
+
     /**
      * Returns list of recommendations for block volumes.
      *
@@ -422,7 +427,9 @@ public class StorageScheduler implements Scheduler {
             return storagePools;
         }
         // Get pools for VirtualPool and VirtualArray
-        List<StoragePool> matchedPoolsForCos = VirtualPool.getValidStoragePools(vpool, _dbClient, true);
+        List<StoragePool> matchedPoolsForCos = (_placementSnapshotCache != null) ?
+                _placementSnapshotCache.getValidStoragePools(vpool) :
+                VirtualPool.getValidStoragePools(vpool, _dbClient, true);
 
         if (matchedPoolsForCos.isEmpty()) {
             _log.warn("vPool {} does not have any valid storage pool in vArray {}.",
@@ -672,7 +679,9 @@ public class StorageScheduler implements Scheduler {
         }
 
         // get all the candidate arrays
-        List<StorageSystem> candidateSystems = _dbClient.queryObject(StorageSystem.class, candidatePoolMap.keySet());
+        List<StorageSystem> candidateSystems = (_placementSnapshotCache != null) ?
+                _placementSnapshotCache.getStorageSystems(candidatePoolMap.keySet()) :
+                _dbClient.queryObject(StorageSystem.class, candidatePoolMap.keySet());
 
         // all pools that can be used for placement
         List<StoragePool> poolList = new ArrayList<StoragePool>();
@@ -24,6 +24,7 @@ import org.slf4j.LoggerFactory;
 import com.emc.storageos.api.service.impl.resource.utils.StatRetriever;
 import com.emc.storageos.db.client.TimeSeriesMetadata;
 import com.emc.storageos.db.client.TimeSeriesMetadata.TimeBucket;
+import com.emc.storageos.db.client.model.StatRollup;
 import com.emc.storageos.security.authorization.CheckPermission;
 import com.emc.storageos.security.authorization.Role;
 import com.emc.storageos.svcs.errorhandling.resources.APIException;
@@ -40,6 +41,8 @@ public class MeteringService extends ResourceService {
 
     public static final String HOUR_BUCKET_TIME_FORMAT = "yyyy-MM-dd'T'HH";
     public static final String MINUTE_BUCKET_TIME_FORMAT = "yyyy-MM-dd'T'HH:mm";
+    public static final String DAY_BUCKET_TIME_FORMAT = "yyyy-MM-dd";
+    public static final String MONTH_BUCKET_TIME_FORMAT = "yyyy-MM";
 
     public static final String BAD_TIMEBUCKET_MSG = "Error: time_bucket parameter format supplied is not valid.\n"
             + "Acceptable formats: yyyy-MM-dd'T'HH , yyyy-MM-dd'T'HH:mm";
@@ -69,17 +72,7 @@ public class MeteringService extends ResourceService {
             @Context HttpHeaders header) {
 
         _logger.debug("getStats: timebucket: {}", timeBucketParam);
-        MediaType mediaType = MediaType.APPLICATION_XML_TYPE;
-        List<MediaType> mTypes = header.getAcceptableMediaTypes();
-        if (mTypes != null) {
-            for (MediaType media : mTypes) {
-                if (media.equals(MediaType.APPLICATION_JSON_TYPE)
-                        || media.equals(MediaType.APPLICATION_XML_TYPE)) {
-                    mediaType = media;
-                    break;
-                }
-            }
-        }
+        MediaType mediaType = getMediaType(header);
 
         DateTimeFormatter dfHourFormat = DateTimeFormat.forPattern(
                 HOUR_BUCKET_TIME_FORMAT).withZoneUTC();
@@ -113,6 +106,104 @@ public class MeteringService extends ResourceService {
                 mediaType).build();
     }
 
+    /**
+     * Retrieves the hourly or daily rollups of the metering stats per resource, project and tenant
+     * in a specified time bucket (hour, day or month).
+     * 
+     * @param time_bucket required Time bucket for retrieval of rollups. Acceptable formats are: yyyy-MM-dd'T'HH for hour bucket,
+     *            yyyy-MM-dd for day bucket, yyyy-MM for month bucket
+     * @param granularity Granularity of the rollups, HOUR (default) or DAY. Hourly rollups are retrieved for an hour or
+     *            day bucket, daily rollups for a day or month bucket
+     * @param scope Scope of the rollups, resource, project or tenant. All scopes when not specified
+     * @brief List metering statistic rollups for time period
+     * @return - Output stream of rollups or an error status.
+     */
+    @GET
+    @Path("/stats/rollups")
+    @Produces({ MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
+    @CheckPermission(roles = { Role.SYSTEM_MONITOR, Role.SYSTEM_ADMIN })
+    public Response getStatRollups(
+            @QueryParam("time_bucket") final String timeBucketParam,
+            @QueryParam("granularity") final String granularityParam,
+            @QueryParam("scope") final String scopeParam,
+            @Context HttpHeaders header) {
+
+        _logger.debug("getStatRollups: timebucket: {} granularity: {} scope: {}",
+                new Object[] { timeBucketParam, granularityParam, scopeParam });
+        MediaType mediaType = getMediaType(header);
+
+        TimeBucket granularity = TimeBucket.HOUR;
+        if (granularityParam != null) {
+            try {
+                granularity = TimeBucket.valueOf(granularityParam.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                granularity = null;
+            }
+            if (granularity != TimeBucket.HOUR && granularity != TimeBucket.DAY) {
+                throw APIException.badRequests.invalidParameterValueWithExpected("granularity", granularityParam,
+                        TimeBucket.HOUR.name(), TimeBucket.DAY.name());
+            }
+        }
+
+        if (scopeParam != null) {
+            try {
+                StatRollup.Scope.valueOf(scopeParam);
+            } catch (IllegalArgumentException e) {
+                throw APIException.badRequests.invalidParameterValueWithExpected("scope", scopeParam,
+                        (Object[]) StatRollup.Scope.values());
+            }
+        }
+
+        if (timeBucketParam == null) {
+            throw APIException.badRequests.invalidTimeBucket(timeBucketParam);
+        }
+        DateTime timeBucket = null;
+        TimeBucket bucket = null;
+        try {
+            // we reduce the length by 2 here to account for single quote in yyyy-MM-dd'T'HH format
+            if (timeBucketParam.length() == HOUR_BUCKET_TIME_FORMAT.length() - 2) {
+                timeBucket = DateTimeFormat.forPattern(HOUR_BUCKET_TIME_FORMAT).withZoneUTC().parseDateTime(timeBucketParam);
+                bucket = TimeBucket.HOUR;
+            } else if (timeBucketParam.length() == DAY_BUCKET_TIME_FORMAT.length()) {
+                timeBucket = DateTimeFormat.forPattern(DAY_BUCKET_TIME_FORMAT).withZoneUTC().parseDateTime(timeBucketParam);
+                bucket = TimeBucket.DAY;
+            } else if (timeBucketParam.length() == MONTH_BUCKET_TIME_FORMAT.length()) {
+                timeBucket = DateTimeFormat.forPattern(MONTH_BUCKET_TIME_FORMAT).withZoneUTC().parseDateTime(timeBucketParam);
+                bucket = TimeBucket.MONTH;
+            }
+        } catch (final IllegalArgumentException e) {
+            throw APIException.badRequests.invalidTimeBucket(timeBucketParam, e);
+        }
+
+        // the bucket can not be shorter than the rollups, nor longer than a row of rollups
+        boolean hourlyBucket = (bucket == TimeBucket.HOUR || bucket == TimeBucket.DAY);
+        boolean dailyBucket = (bucket == TimeBucket.DAY || bucket == TimeBucket.MONTH);
+        if (timeBucket == null || (granularity == TimeBucket.HOUR && !hourlyBucket)
+                || (granularity == TimeBucket.DAY && !dailyBucket)) {
+            throw APIException.badRequests.invalidTimeBucket(timeBucketParam);
+        }
+
+        return Response.ok(
+                getRollupStreamData(timeBucket, bucket, granularity, scopeParam, mediaType),
+                mediaType).build();
+    }
+
+    /**
+     * Returns the first acceptable media type supported by the metering service
+     */
+    private MediaType getMediaType(HttpHeaders header) {
+        List<MediaType> mTypes = header.getAcceptableMediaTypes();
+        if (mTypes != null) {
+            for (MediaType media : mTypes) {
+                if (media.equals(MediaType.APPLICATION_JSON_TYPE)
+                        || media.equals(MediaType.APPLICATION_XML_TYPE)) {
+                    return media;
+                }
+            }
+        }
+        return MediaType.APPLICATION_XML_TYPE;
+    }
+
     /**
      * Retrieves the bulk metering statistics for the given query params.
      * 
@@ -145,4 +236,31 @@ public class MeteringService extends ResourceService {
             }
         };
     }
+
+    /**
+     * Retrieves the metering statistic rollups for the given query params.
+     * 
+     * @return StreamingOuput() - produces StreamingOutput of StatRollups
+     */
+    private StreamingOutput getRollupStreamData(final DateTime timeBucket, final TimeBucket bucket,
+            final TimeBucket granularity, final String scope, final MediaType mediaType) {
+        return new StreamingOutput() {
+            @Override
+            public void write(OutputStream outputStream) {
+                PrintWriter out = new PrintWriter(new BufferedOutputStream(
+                        outputStream));
+                try {
+                    if (_statRetriever == null) {
+                        throw APIException.internalServerErrors.noMeteringStats();
+                    }
+                    _statRetriever.getStatRollups(timeBucket, bucket, granularity,
+                            scope, mediaType, out);
+                } catch (final Exception e) {
+                    throw APIException.internalServerErrors.meteringStatsError(e.getMessage(), e);
+                } finally {
+                    out.close();
+                }
+            }
+        };
+    }
 }
@@ -9,7 +9,10 @@ import javax.ws.rs.core.MediaType;
 import org.joda.time.DateTime;
 
 import com.emc.storageos.db.client.TimeSeriesMetadata.TimeBucket;
+import com.emc.storageos.db.client.model.StatDailyRollupTimeSeries;
+import com.emc.storageos.db.client.model.StatHourlyRollupTimeSeries;
 import com.emc.storageos.db.client.model.StatTimeSeries;
+import com.emc.storageos.db.client.model.TimeSeries;
 import com.emc.storageos.svcs.errorhandling.resources.APIException;
 
 public class DbStatRetriever extends AbstractDbRetriever implements StatRetriever {
@@ -30,4 +33,22 @@ public class DbStatRetriever extends AbstractDbRetriever implements StatRetrieve
                 granularity, result, getThreadPool());
         marshaller.tailer(out);
     }
+
+    @Override
+    public void getStatRollups(final DateTime timeBucket, TimeBucket bucket,
+            TimeBucket granularity, String scope, final MediaType mediaType,
+            final PrintWriter out) throws MarshallingExcetion {
+        StatMarshaller marshaller = StatMarshallerFactory.getMarshaller(mediaType);
+        if (marshaller != null) {
+            marshaller.header(out);
+        } else {
+            throw APIException.badRequests.unableToCreateMarshallerForMediaType(mediaType.toString());
+        }
+
+        Class<? extends TimeSeries> tsType = (granularity == TimeBucket.DAY) ? StatDailyRollupTimeSeries.class
+                : StatHourlyRollupTimeSeries.class;
+        StatRollupQueryResults result = new StatRollupQueryResults(marshaller, out, scope);
+        dbClient.queryTimeSeries(tsType, timeBucket, bucket, result, getThreadPool());
+        marshaller.tailer(out);
+    }
 }
@@ -17,6 +17,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.emc.storageos.db.client.model.Stat;
+import com.emc.storageos.db.client.model.StatRollup;
 
 public class JSONStatMarshaller implements StatMarshaller {
     final private Logger _logger = LoggerFactory
@@ -39,25 +40,38 @@ public class JSONStatMarshaller implements StatMarshaller {
     }
 
     @Override
-    public synchronized void marshall(Stat stat, PrintWriter writer) {
+    public void marshall(Stat stat, PrintWriter writer) {
         if (stat == null) {
             _logger.warn("Null Stat received");
         } else {
-            try {
-                if (_count > 0) {
-                    writer.print(",\n" + _mapper.writeValueAsString(stat));
-                } else {
-                    writer.print(_mapper.writeValueAsString(stat));
-                }
-            } catch (JsonGenerationException e) {
-                _logger.error("JSON Streaming Error", e);
-            } catch (JsonMappingException e) {
-                _logger.error("JSON Mapping Excpetion Error", e);
-            } catch (IOException e) {
-                _logger.error("JSON IO Exception", e);
+            write(stat, writer);
+        }
+    }
+
+    @Override
+    public void marshall(StatRollup rollup, PrintWriter writer) {
+        if (rollup == null) {
+            _logger.warn("Null StatRollup received");
+        } else {
+            write(rollup, writer);
+        }
+    }
+
+    private synchronized void write(Object stat, PrintWriter writer) {
+        try {
+            if (_count > 0) {
+                writer.print(",\n" + _mapper.writeValueAsString(stat));
+            } else {
+                writer.print(_mapper.writeValueAsString(stat));
             }
-            _count++;
+        } catch (JsonGenerationException e) {
+            _logger.error("JSON Streaming Error", e);
+        } catch (JsonMappingException e) {
+            _logger.error("JSON Mapping Excpetion Error", e);
+        } catch (IOException e) {
+            _logger.error("JSON IO Exception", e);
         }
+        _count++;
     }
 
     @Override
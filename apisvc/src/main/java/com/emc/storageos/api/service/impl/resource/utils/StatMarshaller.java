@@ -6,6 +6,7 @@ package com.emc.storageos.api.service.impl.resource.utils;
 
 import java.io.PrintWriter;
 import com.emc.storageos.db.client.model.Stat;
+import com.emc.storageos.db.client.model.StatRollup;
 
 /**
  * 
@@ -31,6 +32,15 @@ public interface StatMarshaller {
      */
     public void marshall(Stat stat, PrintWriter writer) throws Exception;
 
+    /**
+     * output a marshaled StatRollup to the writer
+     * 
+     * @param rollup
+     * @param writer
+     * @throws Exception
+     */
+    public void marshall(StatRollup rollup, PrintWriter writer) throws Exception;
+
     /**
      * output a tailer if needed to the writer
      * 
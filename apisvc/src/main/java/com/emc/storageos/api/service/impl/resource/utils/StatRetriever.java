@@ -30,4 +30,26 @@ public interface StatRetriever {
     public void getBulkStats(final DateTime timeBucket, TimeBucket granularity,
             final MediaType mediaType, final PrintWriter out)
             throws MarshallingExcetion;
+
+    /**
+     * Retrieves the hourly or daily stat rollups of a time bucket.
+     * 
+     * @param timeBucket
+     *            - time-bucket for retrieval of rollups
+     * @param bucket
+     *            - length of the time bucket, HOUR or DAY for hourly rollups,
+     *            DAY or MONTH for daily rollups
+     * @param granularity
+     *            - granularity of the rollups, HOUR or DAY
+     * @param scope
+     *            - resource, project or tenant, null for all the rollups
+     * @param MediaType
+     *            - mediaType application/xml (default) or application/json
+     * @param PrintWriter
+     *            - PrintWriter object
+     * @throws MarshallingExcetion
+     */
+    public void getStatRollups(final DateTime timeBucket, TimeBucket bucket,
+            TimeBucket granularity, String scope, final MediaType mediaType,
+            final PrintWriter out) throws MarshallingExcetion;
 }
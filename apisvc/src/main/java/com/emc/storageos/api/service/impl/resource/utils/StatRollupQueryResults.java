@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.api.service.impl.resource.utils;
+
+import java.io.PrintWriter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.emc.storageos.db.client.TimeSeriesQueryResult;
+import com.emc.storageos.db.client.model.StatRollup;
+
+/**
+ * Streams the stat rollups of a query, optionally only the ones of a scope
+ */
+public class StatRollupQueryResults implements TimeSeriesQueryResult<StatRollup> {
+    final private Logger _logger = LoggerFactory.getLogger(StatRollupQueryResults.class);
+    private final PrintWriter _out;
+    private final StatMarshaller _marshaller;
+    private final String _scope;
+
+    /**
+     * @param marshaller the marshaller of the rollups
+     * @param out the print writer for writing results one by one
+     * @param scope the scope of the rollups to write, null for all
+     */
+    StatRollupQueryResults(StatMarshaller marshaller, PrintWriter out, String scope) {
+        _out = out;
+        _marshaller = marshaller;
+        _scope = scope;
+    }
+
+    @Override
+    public void done() {
+    }
+
+    @Override
+    public void error(Throwable e) {
+        _marshaller.error(_out, e.toString());
+    }
+
+    @Override
+    public void data(StatRollup data, long insertionTimeMs) {
+        if (data != null && (_scope == null || _scope.equals(data.getScope()))) {
+            try {
+                _marshaller.marshall(data, _out);
+            } catch (Exception e) {
+                _logger.error("Exception during marshalling:", e);
+            }
+        }
+    }
+}
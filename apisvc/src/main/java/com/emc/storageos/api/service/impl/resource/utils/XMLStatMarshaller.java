@@ -14,6 +14,7 @@ import org.slf4j.LoggerFactory;
 import org.slf4j.Logger;
 
 import com.emc.storageos.db.client.model.Stat;
+import com.emc.storageos.db.client.model.StatRollup;
 import com.emc.storageos.svcs.errorhandling.resources.APIException;
 
 public class XMLStatMarshaller implements StatMarshaller {
@@ -23,7 +24,7 @@ public class XMLStatMarshaller implements StatMarshaller {
     private static JAXBContext _context = null;
     static {
         try {
-            _context = JAXBContext.newInstance(Stat.class);
+            _context = JAXBContext.newInstance(Stat.class, StatRollup.class);
         } catch (JAXBException e) {
             throw APIException.internalServerErrors.jaxbContextError(e.getMessage(), e);
         }
@@ -73,6 +74,26 @@ public class XMLStatMarshaller implements StatMarshaller {
         }
     }
 
+    @Override
+    public void marshall(StatRollup rollup, PrintWriter writer)
+            throws MarshallingExcetion {
+        try {
+            if (rollup == null) {
+                _logger.warn("null rollup dropped");
+            } else {
+                Marshaller marshaller = marshallers.get();
+                if (marshaller == null) {
+                    _logger.error("Unable to create XML marshaller");
+                }
+                marshaller.marshal(rollup, writer);
+                _count.incrementAndGet();
+            }
+        } catch (JAXBException e) {
+            throw new MarshallingExcetion("XML Marshalling Error"
+                    + rollup.getScopeId(), e);
+        }
+    }
+
     @Override
     public void tailer(PrintWriter writer) {
         writer.println("</stats>");
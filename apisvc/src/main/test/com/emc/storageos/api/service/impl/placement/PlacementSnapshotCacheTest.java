@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.api.service.impl.placement;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.emc.storageos.api.service.utils.DummyDBClient;
+import com.emc.storageos.db.client.impl.DbObjectCache;
+import com.emc.storageos.db.client.model.DataObject;
+import com.emc.storageos.db.client.model.StoragePool;
+import com.emc.storageos.db.client.model.StorageSystem;
+import com.emc.storageos.db.client.model.StringSet;
+import com.emc.storageos.db.client.model.VirtualPool;
+
+/**
+ * Checks PlacementSnapshotCache against VirtualPool.getValidStoragePools, and counts the
+ * objects read from the db for a burst of placements which each reserve capacity in a pool.
+ */
+public class PlacementSnapshotCacheTest {
+    private static final int POOLS = 200;
+    private static final int SYSTEMS = 10;
+    private static final int REQUESTS = 200;
+
+    private final AtomicLong objectReads = new AtomicLong();
+    private final List<StoragePool> pools = new ArrayList<StoragePool>();
+    private final List<StorageSystem> systems = new ArrayList<StorageSystem>();
+    private VirtualPool vpool;
+    private CountingDbClient dbClient;
+    private DbObjectCache objectCache;
+    private PlacementSnapshotCache snapshotCache;
+
+    @Before
+    public void setUp() {
+        dbClient = new CountingDbClient();
+        dbClient.start();
+        for (int i = 0; i < SYSTEMS; i++) {
+            StorageSystem system = new StorageSystem();
+            system.setId(URI.create("urn:storageos:StorageSystem:" + i + ":vdc1"));
+            system.setReachableStatus(true);
+            dbClient.createObject(system);
+            systems.add(system);
+        }
+        vpool = new VirtualPool();
+        vpool.setId(URI.create("urn:storageos:VirtualPool:1:vdc1"));
+        vpool.setUseMatchedPools(true);
+        StringSet matchedPools = new StringSet();
+        for (int i = 0; i < POOLS; i++) {
+            StoragePool pool = new StoragePool();
+            pool.setId(URI.create("urn:storageos:StoragePool:" + i + ":vdc1"));
+            pool.setInactive(false);
+            pool.setStorageDevice(systems.get(i % SYSTEMS).getId());
+            pool.setFreeCapacity(1000000L);
+            dbClient.createObject(pool);
+            pools.add(pool);
+            matchedPools.add(pool.getId().toString());
+        }
+        vpool.setMatchedStoragePools(matchedPools);
+        vpool.setInvalidMatchedPools(new StringSet());
+
+        // the row cache ships disabled, the snapshot only needs the changes to be tracked
+        objectCache = new DbObjectCache();
+        objectCache.start(null);
+
+        snapshotCache = new PlacementSnapshotCache();
+        snapshotCache.setDbClient(dbClient);
+        snapshotCache.setObjectCache(objectCache);
+        snapshotCache.init();
+    }
+
+    @After
+    public void tearDown() {
+        snapshotCache.destroy();
+        objectCache.stop();
+    }
+
+    @Test
+    public void testActiveWithoutRowCache() {
+        Assert.assertTrue(snapshotCache.isActive());
+        Assert.assertTrue(objectCache.isTracked(StoragePool.class));
+        Assert.assertTrue(objectCache.isTracked(StorageSystem.class));
+        Assert.assertFalse(objectCache.isCached(StoragePool.class));
+    }
+
+    @Test
+    public void testInactiveWithoutObjectCache() {
+        PlacementSnapshotCache inactiveCache = new PlacementSnapshotCache();
+        inactiveCache.setDbClient(dbClient);
+        inactiveCache.init();
+        Assert.assertFalse(inactiveCache.isActive());
+
+        // the pools are read as before
+        systems.get(1).setReachableStatus(false);
+        long reads = objectReads.get();
+        Assert.assertEquals(getPoolIds(VirtualPool.getValidStoragePools(vpool, dbClient, true)),
+                getPoolIds(inactiveCache.getValidStoragePools(vpool)));
+        Assert.assertEquals(reads + 2 * 2 * POOLS, objectReads.get());
+        Assert.assertEquals(0, inactiveCache.size());
+    }
+
+    @Test
+    public void testValidPools() {
+        // a pool of an unreachable system, an inactive pool and an invalid pool are not valid
+        systems.get(1).setReachableStatus(false);
+        pools.get(2).setInactive(true);
+        vpool.getInvalidMatchedPools().add(pools.get(3).getId().toString());
+        objectCache.invalidateAll(StorageSystem.class);
+        objectCache.invalidateAll(StoragePool.class);
+        assertSamePools();
+
+        // a changed pool is read again once its write is reported
+        URI poolId = pools.get(2).getId();
+        long reads = objectReads.get();
+        pools.get(2).setInactive(false);
+        Assert.assertFalse(getPoolIds(snapshotCache.getValidStoragePools(vpool)).contains(poolId));
+        Assert.assertEquals(reads, objectReads.get());
+        objectCache.invalidate(StoragePool.class, Collections.singletonList(poolId));
+        Assert.assertTrue(getPoolIds(snapshotCache.getValidStoragePools(vpool)).contains(poolId));
+        Assert.assertEquals(reads + 1, objectReads.get());
+        assertSamePools();
+
+        // changed matched pools of the vpool are seen right away
+        vpool.getInvalidMatchedPools().add(pools.get(5).getId().toString());
+        assertSamePools();
+
+        // callers get their own instances
+        StoragePool pool = snapshotCache.getValidStoragePools(vpool).get(0);
+        pool.setFreeCapacity(0L);
+        Assert.assertFalse(Long.valueOf(0L).equals(snapshotCache.getValidStoragePools(vpool).get(0).getFreeCapacity()));
+    }
+
+    /**
+     * A burst of placements, each of which reserves capacity in one pool, reads every pool and
+     * system per placement without the cache, and only the changed pool with it.
+     */
+    @Test
+    public void testBurstOfPlacements() {
+        for (int i = 0; i < REQUESTS; i++) {
+            Assert.assertFalse(VirtualPool.getValidStoragePools(vpool, dbClient, true).isEmpty());
+        }
+        Assert.assertEquals(REQUESTS * 2 * POOLS, objectReads.getAndSet(0));
+
+        for (int i = 0; i < REQUESTS; i++) {
+            Assert.assertEquals(POOLS, snapshotCache.getValidStoragePools(vpool).size());
+            StoragePool pool = pools.get(1 + (i % (POOLS - 1)));
+            pool.setFreeCapacity(pool.getFreeCapacity() - 1);
+            objectCache.invalidate(StoragePool.class, Collections.singletonList(pool.getId()));
+        }
+        long expectedReads = POOLS + SYSTEMS + REQUESTS - 1;
+        Assert.assertEquals(expectedReads, objectReads.get());
+        Assert.assertEquals(expectedReads, snapshotCache.getLoadCount());
+        Assert.assertEquals(REQUESTS, snapshotCache.getMissCount());
+        Assert.assertEquals(REQUESTS, snapshotCache.getInvalidationCount());
+
+        // without writes the snapshot is reused
+        Assert.assertEquals(POOLS, snapshotCache.getValidStoragePools(vpool).size());
+        Assert.assertEquals(expectedReads + 1, objectReads.get());
+        Assert.assertEquals(POOLS, snapshotCache.getValidStoragePools(vpool).size());
+        Assert.assertEquals(expectedReads + 1, objectReads.get());
+        Assert.assertEquals(1, snapshotCache.getHitCount());
+    }
+
+    private void assertSamePools() {
+        Assert.assertEquals(getPoolIds(VirtualPool.getValidStoragePools(vpool, dbClient, true)),
+                getPoolIds(snapshotCache.getValidStoragePools(vpool)));
+    }
+
+    private static List<URI> getPoolIds(List<StoragePool> pools) {
+        List<URI> poolIds = new ArrayList<URI>();
+        for (StoragePool pool : pools) {
+            poolIds.add(pool.getId());
+        }
+        return poolIds;
+    }
+
+    /**
+     * Counts the objects read
+     */
+    private class CountingDbClient extends DummyDBClient {
+        @Override
+        public <T extends DataObject> T queryObject(Class<T> clazz, URI id) {
+            objectReads.incrementAndGet();
+            return super.queryObject(clazz, id);
+        }
+
+        @Override
+        public <T extends DataObject> List<T> queryObject(Class<T> clazz, Collection<URI> ids) {
+            objectReads.addAndGet(ids.size());
+            return super.queryObject(clazz, ids);
+        }
+    }
+}
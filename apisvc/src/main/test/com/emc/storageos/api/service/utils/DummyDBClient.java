@@ -22,6 +22,7 @@ import org.slf4j.LoggerFactory;
 
 import com.emc.storageos.api.service.impl.resource.utils.MarshallingExcetion;
 import com.emc.storageos.db.client.DbAggregatorItf;
+import com.emc.storageos.db.client.DbBatchSession;
 import com.emc.storageos.db.client.DbClient;
 import com.emc.storageos.db.client.TimeSeriesMetadata;
 import com.emc.storageos.db.client.TimeSeriesMetadata.TimeBucket;
@@ -117,6 +118,18 @@ public class DummyDBClient implements DbClient {
         return null;
     }
 
+    @Override
+    public <T extends DataObject> Iterator<T> queryIterativeObjects(Class<T> clazz, Collection<URI> ids, boolean activeOnly,
+            int batchSize, int prefetchDepth) {
+        return queryIterativeObjects(clazz, ids, activeOnly);
+    }
+
+    @Override
+    public <T extends DataObject> Iterator<T> queryIterativeObjectField(Class<T> clazz, String fieldName, Collection<URI> ids,
+            int batchSize, int prefetchDepth) {
+        return queryIterativeObjectField(clazz, fieldName, ids);
+    }
+
     @Override
     public <T extends DataObject> List<T> queryObjectFields(Class<T> clazz, Collection<String> fieldNames,
             Collection<URI> ids) throws DatabaseException {
@@ -294,6 +307,16 @@ public class DummyDBClient implements DbClient {
         }
     }
 
+    @Override
+    public DbBatchSession openBatchSession() {
+        return null;
+    }
+
+    @Override
+    public DbBatchSession openBatchSession(int batchSize, int maxPending) {
+        return null;
+    }
+
     @Override
     public <T extends DataPoint> String insertTimeSeries(Class<? extends TimeSeries> tsType,
             T... data) throws DatabaseException {
@@ -308,6 +331,13 @@ public class DummyDBClient implements DbClient {
         return null;
     }
 
+    @Override
+    public <T extends DataPoint> String insertTimeSeries(Class<? extends TimeSeries> tsType,
+            DateTime time, String key, T data) throws DatabaseException {
+        // TODO Auto-generated method stub
+        return null;
+    }
+
     @Override
     public <T extends DataPoint> void queryTimeSeries(Class<? extends TimeSeries> tsType,
             DateTime timeBucket, TimeSeriesQueryResult<T> callback, ExecutorService workerThreads)
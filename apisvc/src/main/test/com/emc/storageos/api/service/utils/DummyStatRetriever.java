@@ -84,4 +84,14 @@ public class DummyStatRetriever implements StatRetriever {
         }
         marshaller.tailer(out);
     }
+
+    @Override
+    public void getStatRollups(DateTime timeBucket, TimeBucket bucket,
+            TimeBucket granularity, String scope, MediaType mediaType,
+            PrintWriter out) throws MarshallingExcetion {
+        StatMarshaller marshaller = StatMarshallerFactory
+                .getMarshaller(mediaType);
+        marshaller.header(out);
+        marshaller.tailer(out);
+    }
 }
@@ -358,6 +358,7 @@ public class CassandraTokenManager extends CassandraTokenValidator implements To
                 return;
             }
             deleteTokenInternal(verificationToken);
+            revokeCachedToken(tkId, true);
         } catch (DatabaseException ex) {
             throw SecurityException.fatals.databseExceptionDuringTokenDeletion(tokenIn,
                     ex);
@@ -398,6 +399,10 @@ public class CassandraTokenManager extends CassandraTokenValidator implements To
                     _dbClient.markForDeletion(userRecord);
                 }
             }
+            // one revocation for all the tokens of the user
+            if (!userRecords.isEmpty()) {
+                revokeCachedTokensOfUser(userName, true);
+            }
         } catch (DatabaseException ex) {
             throw SecurityException.fatals.exceptionDuringTokenDeletionForUser(userName,
                     ex);
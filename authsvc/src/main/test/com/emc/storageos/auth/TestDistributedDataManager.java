@@ -7,6 +7,7 @@ package com.emc.storageos.auth;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -93,6 +94,20 @@ public class TestDistributedDataManager implements DistributedDataManager {
         return _dataMap.get(path);
     }
 
+    @Override
+    public void putData(Map<String, Object> dataByPath) throws Exception {
+        _dataMap.putAll(dataByPath);
+    }
+
+    @Override
+    public Map<String, Object> getData(List<String> paths) throws Exception {
+        Map<String, Object> result = new LinkedHashMap<String, Object>();
+        for (String path : paths) {
+            result.put(path, _dataMap.get(path));
+        }
+        return result;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -166,6 +166,41 @@ public abstract class AttributeMatcher {
     protected abstract List<StoragePool> matchStoragePoolsWithAttributeOn(List<StoragePool> allPools, Map<String, Object> attributeMap,
             StringBuffer errorMessage);
 
+    /**
+     * Returns the StoragePool properties this matcher decides on, for matchers which match each
+     * pool on its own from these properties, the attribute values and the StorageSystem
+     * properties returned by getStorageSystemDependencies. Incremental matching reuses the
+     * results of such a matcher for a vpool until one of these properties of the pool changes.
+     *
+     * By default this returns null and the matcher runs on every pool.
+     *
+     * @return list of StoragePool property names else null.
+     */
+    public List<String> getPoolDependencies() {
+        return null;
+    }
+
+    /**
+     * Returns the properties of the pool's StorageSystem this matcher decides on.
+     * Only used if getPoolDependencies is not null.
+     *
+     * @return list of StorageSystem property names.
+     */
+    public List<String> getStorageSystemDependencies() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Returns whether this matcher can run concurrently on partitions of the pool list, which
+     * holds for matchers that match each pool on its own and keep no state between calls.
+     * By default the matchers declaring their pool dependencies are parallel safe.
+     *
+     * @return true if the pools can be matched in partitions.
+     */
+    public boolean isParallelSafe() {
+        return getPoolDependencies() != null;
+    }
+
     /**
      * For debug purpose, which lists the matched Pool Native Guids
      * 
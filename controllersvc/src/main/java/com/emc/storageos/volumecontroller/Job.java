@@ -4,6 +4,8 @@
  */
 package com.emc.storageos.volumecontroller;
 
+import java.net.URI;
+
 import com.emc.storageos.volumecontroller.impl.JobPollResult;
 
 /**
@@ -35,6 +37,27 @@ public abstract class Job {
 
     abstract public TaskCompleter getTaskCompleter();
 
+    /**
+     * Returns the storage system the job runs on. The job tracker polls the jobs of a storage
+     * system in a lane of their own, jobs which do not know their storage system share a lane
+     * per job type.
+     * 
+     * @return the storage system URI or null if not known
+     */
+    public URI getStorageSystemURI() {
+        return null;
+    }
+
+    /**
+     * Returns the batch poller which reads the status of this job together with the other
+     * jobs on the same provider.
+     * 
+     * @return the batch poller or null if the job is polled on its own
+     */
+    public JobBatchPoller getBatchPoller() {
+        return null;
+    }
+
     public long getPollingStartTime() {
         return pollingStartTime;
     }
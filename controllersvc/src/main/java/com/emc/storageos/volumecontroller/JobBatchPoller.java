@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.volumecontroller;
+
+import java.util.List;
+
+/**
+ * Reads the status of many jobs on the same provider with a single call. The job tracker
+ * polls the jobs of a provider together: it has the batch poller read their status first,
+ * then polls each job as usual, which uses the status read instead of asking the provider.
+ */
+public interface JobBatchPoller {
+
+    /**
+     * Returns the key of the provider the status of the job is read from.
+     *
+     * @param job the job
+     * @param jobContext the job context
+     * @return the provider key, null if the job is to be polled on its own
+     */
+    public String getProviderKey(Job job, JobContext jobContext);
+
+    /**
+     * Reads the status of the jobs from the provider and hands it to each job for its next
+     * poll. Jobs whose status was not found are left to read it themselves.
+     *
+     * @param providerKey the provider key of the jobs
+     * @param jobs the jobs, all of which returned this batch poller and provider key
+     * @param jobContext the job context
+     * @throws Exception when the status could not be read
+     */
+    public void readStatus(String providerKey, List<Job> jobs, JobContext jobContext) throws Exception;
+}
@@ -6,8 +6,12 @@
 package com.emc.storageos.volumecontroller.impl;
 
 import java.io.*;
+import java.net.URI;
 import java.util.*;
 
+import com.emc.storageos.coordinator.client.service.impl.CompactZkDataCodec;
+import com.emc.storageos.coordinator.client.service.impl.GenericSerializer;
+
 /**
  * Placeholder implementation of controller async task.
  */
@@ -19,9 +23,15 @@ public class ControlRequest implements Serializable {
     private static final String DEVICE_INFO_NAME = "deviceinfo";
     private static final String TIMESTAMP = "timestamp";
     private static final String LOCK_GROUP = "lockGroup";
+    private static final String PRIORITY_CLASS = "priorityClass";
+    private static final String TENANT = "tenant";
 
     private Map<String, Object> _req = new HashMap<String, Object>();
 
+    static {
+        CompactZkDataCodec.registerAdapter(new DeviceInfoAdapter());
+    }
+
     private ControlRequest() {
     }
 
@@ -67,29 +77,77 @@ public class ControlRequest implements Serializable {
         return (String) _req.get(LOCK_GROUP);
     }
 
-    @SuppressWarnings({ "squid:S2118" })
-    public byte[] serialize() {
+    /**
+     * The priority class is saved by name, so requests queued before it existed,
+     * or with a class unknown to this release, return null.
+     *
+     * @return priority class or null
+     */
+    public DispatchScheduler.PriorityClass getPriorityClass() {
+        String priorityClass = (String) _req.get(PRIORITY_CLASS);
+        if (priorityClass == null) {
+            return null;
+        }
         try {
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            ObjectOutputStream oout = new ObjectOutputStream(out);
-            oout.writeObject(_req); // Can not write non-serializable object(Map)
-            return out.toByteArray();
-        } catch (Exception e) {
-            throw new IllegalStateException(e);
+            return DispatchScheduler.PriorityClass.valueOf(priorityClass);
+        } catch (IllegalArgumentException e) {
+            return null;
         }
     }
 
+    public void setPriorityClass(DispatchScheduler.PriorityClass priorityClass) {
+        _req.put(PRIORITY_CLASS, priorityClass.name());
+    }
+
+    public URI getTenant() {
+        return (URI) _req.get(TENANT);
+    }
+
+    public void setTenant(URI tenant) {
+        _req.put(TENANT, tenant);
+    }
+
+    public byte[] serialize() {
+        return GenericSerializer.serialize(_req, getMethodName(), false);
+    }
+
     public static ControlRequest deserialize(byte[] data) {
-        try {
-            ControlRequest request = new ControlRequest();
-            ObjectInputStream oim = new ObjectInputStream(new ByteArrayInputStream(data));
-            Map<String, Object> req = (Map<String, Object>) oim.readObject();
-            request._req = req;
-            return request;
-        } catch (IOException e) {
-            throw new IllegalStateException(e);
-        } catch (ClassNotFoundException e) {
-            throw new IllegalStateException(e);
+        ControlRequest request = new ControlRequest();
+        request._req = (Map<String, Object>) GenericSerializer.deserialize(data);
+        return request;
+    }
+
+    /**
+     * Compact zookeeper encoding of Dispatcher.DeviceInfo
+     */
+    public static class DeviceInfoAdapter implements CompactZkDataCodec.TypeAdapter<Dispatcher.DeviceInfo> {
+        @Override
+        public Class<Dispatcher.DeviceInfo> getType() {
+            return Dispatcher.DeviceInfo.class;
+        }
+
+        @Override
+        public void write(Dispatcher.DeviceInfo value, CompactZkDataCodec.ValueWriter out) throws IOException {
+            out.writeField("uri", value.getURI());
+            out.writeField("type", value.getType());
+            out.writeField("needsLock", value.getNeedsLock());
+        }
+
+        @Override
+        public Dispatcher.DeviceInfo read(CompactZkDataCodec.ValueReader in) throws IOException {
+            Dispatcher.DeviceInfo info = new Dispatcher.DeviceInfo();
+            String field;
+            while ((field = in.nextField()) != null) {
+                Object value = in.readValue();
+                if ("uri".equals(field)) {
+                    info.setURI((URI) value);
+                } else if ("type".equals(field)) {
+                    info.setType((String) value);
+                } else if ("needsLock".equals(field)) {
+                    info.setNeedsLock((Boolean) value);
+                }
+            }
+            return info;
         }
     }
 }
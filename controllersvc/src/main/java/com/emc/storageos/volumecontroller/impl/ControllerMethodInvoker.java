@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.volumecontroller.impl;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.emc.storageos.Controller;
+
+/**
+ * A controller method pre-bound to its controller instance when the Dispatcher is built.
+ * The call goes through a MethodHandle spreading an Object[] into the parameters, so no
+ * access checks or argument array copies are made per dispatch as with Method.invoke.
+ * Exceptions thrown by the method are wrapped in InvocationTargetException and arguments
+ * not matching the parameters are rejected with IllegalArgumentException, as with
+ * Method.invoke, so callers can handle both the same way.
+ */
+public class ControllerMethodInvoker {
+    private static final Logger _log = LoggerFactory.getLogger(ControllerMethodInvoker.class);
+    private static final MethodType SPREAD_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+    private final Controller _controller;
+    private final Method _method;
+    private final MethodHandle _handle;
+    private final int _parameterCount;
+    // parameter types, primitives as their wrapper classes
+    private final Class<?>[] _argumentTypes;
+    // true for primitive parameters, which do not accept null
+    private final boolean[] _primitiveParameters;
+
+    public ControllerMethodInvoker(Controller controller, Method method) {
+        _controller = controller;
+        _method = method;
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        _parameterCount = parameterTypes.length;
+        _argumentTypes = new Class<?>[_parameterCount];
+        _primitiveParameters = new boolean[_parameterCount];
+        for (int i = 0; i < _parameterCount; i++) {
+            _argumentTypes[i] = MethodType.methodType(parameterTypes[i]).wrap().returnType();
+            _primitiveParameters[i] = parameterTypes[i].isPrimitive();
+        }
+        _handle = createHandle(controller, method, _parameterCount);
+    }
+
+    /**
+     * Returns a handle of type (Object[])Object calling the method on the controller,
+     * or null if none can be created, in which case the method is invoked reflectively.
+     */
+    private static MethodHandle createHandle(Controller controller, Method method, int parameterCount) {
+        try {
+            // The controller classes may not be public; the methods looked up are.
+            method.setAccessible(true);
+            MethodHandle handle = MethodHandles.lookup().unreflect(method).asFixedArity();
+            if (!Modifier.isStatic(method.getModifiers())) {
+                handle = handle.bindTo(controller);
+            }
+            return handle.asType(handle.type().generic())
+                    .asSpreader(Object[].class, parameterCount)
+                    .asType(SPREAD_TYPE);
+        } catch (Exception e) {
+            _log.warn("Method {} of {} will be invoked reflectively: {}", method.getName(),
+                    controller.getClass().getName(), e.getMessage());
+            return null;
+        }
+    }
+
+    public String getName() {
+        return _method.getName();
+    }
+
+    public Method getMethod() {
+        return _method;
+    }
+
+    /**
+     * Invokes the method with the given arguments.
+     *
+     * @param args -- must match the method parameters in number and type
+     * @return the method result, null for void methods
+     * @throws InvocationTargetException wrapping any exception thrown by the method
+     * @throws IllegalArgumentException if the arguments don't match the parameters
+     */
+    public Object invoke(Object[] args) throws InvocationTargetException {
+        if (args.length != _parameterCount) {
+            throw new IllegalArgumentException(String.format("%s expects %d arguments, got %d",
+                    _method.getName(), _parameterCount, args.length));
+        }
+        for (int i = 0; i < _parameterCount; i++) {
+            if (args[i] == null ? _primitiveParameters[i] : !_argumentTypes[i].isInstance(args[i])) {
+                throw new IllegalArgumentException(String.format("Argument %d of %s has the wrong type: %s",
+                        i, _method.getName(), (args[i] != null) ? args[i].getClass().getName() : null));
+            }
+        }
+        if (_handle == null) {
+            try {
+                return _method.invoke(_controller, args);
+            } catch (IllegalAccessException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+        try {
+            return (Object) _handle.invokeExact(args);
+        } catch (Throwable t) {
+            throw new InvocationTargetException(t);
+        }
+    }
+}
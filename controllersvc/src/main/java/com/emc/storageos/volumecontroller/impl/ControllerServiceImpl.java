@@ -69,6 +69,7 @@ import com.emc.storageos.volumecontroller.impl.plugins.discovery.smis.DataCollec
 import com.emc.storageos.volumecontroller.impl.plugins.discovery.smis.DataCollectionJobSerializer;
 import com.emc.storageos.volumecontroller.impl.plugins.discovery.smis.DiscoverTaskCompleter;
 import com.emc.storageos.volumecontroller.impl.plugins.discovery.smis.ScanTaskCompleter;
+import com.emc.storageos.volumecontroller.impl.plugins.metering.StatRollupProcessor;
 import com.emc.storageos.volumecontroller.impl.smis.CIMConnectionFactory;
 import com.emc.storageos.volumecontroller.impl.smis.SmisCommandHelper;
 import com.emc.storageos.volumecontroller.impl.smis.ibm.xiv.XIVSmisCommandHelper;
@@ -111,6 +112,11 @@ public class ControllerServiceImpl implements ControllerService {
     public static final String CUSTOM_CONFIG_PATH = "customconfigleader";
     public static final long DEFAULT_CAPACITY_COMPUTE_DELAY = 5;
     public static final long DEFAULT_CAPACITY_COMPUTE_INTERVAL = 3600;
+    public static final String STAT_ROLLUP_DELAY = "stat-rollup-delay";
+    public static final String STAT_ROLLUP_INTERVAL = "stat-rollup-interval";
+    public static final String STAT_ROLLUP_LEADER_PATH = "statrollupleader";
+    public static final long DEFAULT_STAT_ROLLUP_DELAY = 300;
+    public static final long DEFAULT_STAT_ROLLUP_INTERVAL = 900;
 
     // list of support discovery job type
     private static final String[] DISCOVERY_JOB_TYPES = new String[] { DISCOVERY, NS_DISCOVERY, CS_DISCOVERY, COMPUTE_DISCOVERY };
@@ -159,6 +165,8 @@ public class ControllerServiceImpl implements ControllerService {
     
     ManagedCapacityImpl _capacityCompute;
     LeaderSelector _capacityService;
+    StatRollupProcessor _statRollupProcessor;
+    LeaderSelector _statRollupService;
 
     public static enum Lock {
         SCAN_COLLECTION_LOCK("lock-scancollectionjob-"),
@@ -444,6 +452,10 @@ public class ControllerServiceImpl implements ControllerService {
         _capacityCompute = capacityCompute;
     }
 
+    public void setStatRollupProcessor(StatRollupProcessor statRollupProcessor) {
+        _statRollupProcessor = statRollupProcessor;
+    }
+
     /**
      * Set DataObjectScanner
      * 
@@ -533,6 +545,7 @@ public class ControllerServiceImpl implements ControllerService {
         _svcBeacon.start();
 
         startCapacityService();
+        startStatRollupService();
         loadCustomConfigDefaults();
     }
 
@@ -680,6 +693,33 @@ public class ControllerServiceImpl implements ControllerService {
         _capacityService.start();
     }
 
+    private void startStatRollupService() {
+        long delay = DEFAULT_STAT_ROLLUP_DELAY;
+        String delay_str = _configInfo.get(STAT_ROLLUP_DELAY);
+        if (delay_str != null) {
+            delay = Long.parseLong(delay_str);
+        }
+        long interval = DEFAULT_STAT_ROLLUP_INTERVAL;
+        String interval_str = _configInfo.get(STAT_ROLLUP_INTERVAL);
+        if (interval_str != null) {
+            interval = Long.parseLong(interval_str);
+        }
+        LeaderSelectorListenerForPeriodicTask executor = new LeaderSelectorListenerForPeriodicTask(_statRollupProcessor, delay,
+                interval) {
+            @Override
+            protected void startLeadership() throws Exception {
+                // another node may have rolled up the hours since this one was leader
+                _statRollupProcessor.reset();
+                super.startLeadership();
+            }
+        };
+
+        _statRollupService = _coordinator.getLeaderSelector(STAT_ROLLUP_LEADER_PATH,
+                executor);
+        _statRollupService.autoRequeue();
+        _statRollupService.start();
+    }
+
     private void startLockQueueService() {
         // Configure coordinator with the owner lock around-hook.
         DistributedAroundHook aroundHook = _distributedOwnerLockService.getDistributedOwnerLockAroundHook();
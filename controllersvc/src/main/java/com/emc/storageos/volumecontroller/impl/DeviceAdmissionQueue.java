@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.volumecontroller.impl;
+
+import java.net.URI;
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.curator.framework.recipes.locks.Lease;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.emc.storageos.coordinator.client.service.DistributedSemaphore;
+
+/**
+ * Local FIFO of the Dispatcher requests waiting for a lease of a device semaphore.
+ * A request acquires its lease without blocking when it is about to execute, so the
+ * leases only count running requests. If none is available, or older requests are
+ * waiting, the request waits here without holding a method executor thread.
+ * Whenever a lease may have become available (a lease is returned on this node,
+ * the semaphore's lease nodes change in ZK, or periodically as a fallback) the
+ * oldest waiting request is released to be dispatched again. Only one request is
+ * released at a time; when it gets a lease the next one is released, as more leases
+ * may be free.
+ */
+class DeviceAdmissionQueue implements Runnable {
+    private static final Logger _log = LoggerFactory.getLogger(DeviceAdmissionQueue.class);
+
+    /**
+     * A request admitted by the queue.
+     */
+    interface Request {
+        /**
+         * @return name of the request for logging
+         */
+        String getName();
+
+        /**
+         * Dispatches the request again; it calls acquireLease when it executes.
+         * Called on the admission thread; must not block.
+         */
+        void dispatch();
+    }
+
+    private final URI _deviceURI;
+    private final DistributedSemaphore _semaphore;
+    private final ScheduledExecutorService _admissionExecutor;
+    private final int _retryWaitTimeSeconds;
+    private final Deque<Request> _waiting = new LinkedList<Request>();
+    // request released from _waiting which has not called acquireLease yet
+    private Request _released;
+    private final AtomicBoolean _drainPending = new AtomicBoolean(false);
+    private final AtomicBoolean _retryScheduled = new AtomicBoolean(false);
+
+    private final Runnable _drainTask = new Runnable() {
+        @Override
+        public void run() {
+            _drainPending.set(false);
+            drain();
+        }
+    };
+
+    private final Runnable _retryTask = new Runnable() {
+        @Override
+        public void run() {
+            _retryScheduled.set(false);
+            DeviceAdmissionQueue.this.run();
+        }
+    };
+
+    /**
+     * @param deviceURI device of the requests
+     * @param semaphore semaphore of the device
+     * @param admissionExecutor single threaded executor running the drains
+     * @param retryWaitTimeSeconds time after which leases are tried again if none was available
+     */
+    DeviceAdmissionQueue(URI deviceURI, DistributedSemaphore semaphore, ScheduledExecutorService admissionExecutor,
+            int retryWaitTimeSeconds) {
+        _deviceURI = deviceURI;
+        _semaphore = semaphore;
+        _admissionExecutor = admissionExecutor;
+        _retryWaitTimeSeconds = retryWaitTimeSeconds;
+    }
+
+    /**
+     * Acquires a lease for a request about to execute, unless older requests are waiting.
+     * If no lease is returned the request waits until it is released, which dispatches
+     * it again.
+     *
+     * @param request
+     * @return Lease, which the request must return, or null if the request now waits
+     */
+    Lease acquireLease(Request request) {
+        boolean released;
+        synchronized (_waiting) {
+            released = (_released == request);
+            if (released) {
+                _released = null;
+            } else if (_released != null || !_waiting.isEmpty()) {
+                _waiting.add(request);
+                _log.info("Task {} waiting for device {}, {} queued", request.getName(), _deviceURI, _waiting.size());
+                return null;
+            }
+        }
+        Lease lease = null;
+        try {
+            lease = _semaphore.tryAcquireLease();
+        } catch (Exception e) {
+            _log.warn("Problem acquiring lease for device " + _deviceURI, e);
+        }
+        if (lease == null) {
+            int waiting;
+            synchronized (_waiting) {
+                // a released request keeps its place
+                if (released) {
+                    _waiting.addFirst(request);
+                } else {
+                    _waiting.add(request);
+                }
+                waiting = _waiting.size();
+            }
+            _log.info("Task {} waiting for device {}, {} queued", request.getName(), _deviceURI, waiting);
+            scheduleRetry();
+        } else if (released) {
+            run();
+        }
+        return lease;
+    }
+
+    /**
+     * Called when a released request executes or fails without calling acquireLease,
+     * so that the next waiting request is released.
+     *
+     * @param request
+     */
+    void cancel(Request request) {
+        synchronized (_waiting) {
+            if (_released != request) {
+                return;
+            }
+            _released = null;
+        }
+        run();
+    }
+
+    /**
+     * @return number of requests waiting for a lease
+     */
+    int getWaitingCount() {
+        synchronized (_waiting) {
+            return _waiting.size();
+        }
+    }
+
+    /**
+     * Lease available notification; schedules a drain unless one is pending.
+     */
+    @Override
+    public void run() {
+        if (_drainPending.compareAndSet(false, true)) {
+            _admissionExecutor.execute(_drainTask);
+        }
+    }
+
+    /**
+     * Releases the oldest waiting request, unless a released request has not executed yet.
+     * Only runs on the admission thread.
+     */
+    private void drain() {
+        Request next;
+        synchronized (_waiting) {
+            if (_released != null) {
+                return;
+            }
+            next = _waiting.poll();
+            if (next == null) {
+                return;
+            }
+            _released = next;
+        }
+        next.dispatch();
+    }
+
+    private void scheduleRetry() {
+        if (_retryScheduled.compareAndSet(false, true)) {
+            _admissionExecutor.schedule(_retryTask, _retryWaitTimeSeconds, TimeUnit.SECONDS);
+        }
+    }
+}
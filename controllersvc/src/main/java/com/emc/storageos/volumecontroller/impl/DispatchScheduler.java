@@ -0,0 +1,322 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.volumecontroller.impl;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Schedules the requests of a Dispatcher queue onto its method executor.
+ * At most as many requests as the executor has core threads are handed to it;
+ * the others wait here. When a thread frees up, the next request is chosen
+ * by weighted fair queueing across priority classes, then round robin across the
+ * tenants of the class, then round robin across the devices of the tenant, so that
+ * a flood of requests of one class, tenant or device cannot starve the others.
+ * Queue wait times are recorded per priority class.
+ */
+public class DispatchScheduler {
+    private static final Logger _log = LoggerFactory.getLogger(DispatchScheduler.class);
+    private static final URI NO_KEY = URI.create("");
+
+    /**
+     * Priority classes of ControlRequests, with their default weights.
+     */
+    public static enum PriorityClass {
+        // requests from API operations
+        INTERACTIVE(8),
+        // workflow steps
+        WORKFLOW(4),
+        // device connection maintenance and other background requests
+        BACKGROUND(1);
+
+        private final int _defaultWeight;
+
+        PriorityClass(int defaultWeight) {
+            _defaultWeight = defaultWeight;
+        }
+
+        public int getDefaultWeight() {
+            return _defaultWeight;
+        }
+    }
+
+    private final String _name;
+    private final ThreadPoolExecutor _executor;
+    private final Map<PriorityClass, ClassQueue> _classQueues = new EnumMap<PriorityClass, ClassQueue>(PriorityClass.class);
+    private double _virtualTime = 0;
+    private int _running = 0;
+
+    /**
+     * Round robin over the queues of a set of keys.
+     */
+    private static class RoundRobin<K, E> {
+        private final Map<K, Deque<E>> _queues = new HashMap<K, Deque<E>>();
+        private final Deque<K> _order = new ArrayDeque<K>();
+
+        void add(K key, E element) {
+            Deque<E> queue = _queues.get(key);
+            if (queue == null) {
+                queue = new ArrayDeque<E>();
+                _queues.put(key, queue);
+                _order.add(key);
+            }
+            queue.add(element);
+        }
+
+        E poll() {
+            K key = _order.poll();
+            if (key == null) {
+                return null;
+            }
+            Deque<E> queue = _queues.get(key);
+            E element = queue.poll();
+            if (queue.isEmpty()) {
+                _queues.remove(key);
+            } else {
+                _order.add(key);
+            }
+            return element;
+        }
+
+        boolean isEmpty() {
+            return _order.isEmpty();
+        }
+    }
+
+    /**
+     * The waiting requests of a priority class, by tenant and device.
+     */
+    private static class ClassQueue {
+        private final PriorityClass _priorityClass;
+        private int _weight;
+        private double _finishTag = 0;
+        private int _size = 0;
+        private final Map<URI, RoundRobin<URI, ScheduledTask>> _tenants = new HashMap<URI, RoundRobin<URI, ScheduledTask>>();
+        private final Deque<URI> _tenantOrder = new ArrayDeque<URI>();
+        private final AtomicLong _dispatched = new AtomicLong();
+        private final AtomicLong _totalWaitMillis = new AtomicLong();
+        private final AtomicLong _maxWaitMillis = new AtomicLong();
+
+        ClassQueue(PriorityClass priorityClass) {
+            _priorityClass = priorityClass;
+            _weight = priorityClass.getDefaultWeight();
+        }
+
+        void add(ScheduledTask task) {
+            RoundRobin<URI, ScheduledTask> devices = _tenants.get(task._tenant);
+            if (devices == null) {
+                devices = new RoundRobin<URI, ScheduledTask>();
+                _tenants.put(task._tenant, devices);
+                _tenantOrder.add(task._tenant);
+            }
+            devices.add(task._device, task);
+            _size++;
+        }
+
+        ScheduledTask poll() {
+            URI tenant = _tenantOrder.poll();
+            if (tenant == null) {
+                return null;
+            }
+            RoundRobin<URI, ScheduledTask> devices = _tenants.get(tenant);
+            ScheduledTask task = devices.poll();
+            if (devices.isEmpty()) {
+                _tenants.remove(tenant);
+            } else {
+                _tenantOrder.add(tenant);
+            }
+            _size--;
+            return task;
+        }
+
+        boolean isEmpty() {
+            return _size == 0;
+        }
+
+        void recordWait(long waitMillis) {
+            _dispatched.incrementAndGet();
+            _totalWaitMillis.addAndGet(waitMillis);
+            long max = _maxWaitMillis.get();
+            while (waitMillis > max && !_maxWaitMillis.compareAndSet(max, waitMillis)) {
+                max = _maxWaitMillis.get();
+            }
+        }
+    }
+
+    /**
+     * A request waiting to be run, which frees its thread for the next request when done.
+     */
+    private class ScheduledTask implements Runnable {
+        private final Runnable _task;
+        private final ClassQueue _classQueue;
+        private final URI _tenant;
+        private final URI _device;
+        private final long _queuedTime = System.currentTimeMillis();
+
+        ScheduledTask(Runnable task, ClassQueue classQueue, URI tenant, URI device) {
+            _task = task;
+            _classQueue = classQueue;
+            _tenant = (tenant != null) ? tenant : NO_KEY;
+            _device = (device != null) ? device : NO_KEY;
+        }
+
+        @Override
+        public void run() {
+            try {
+                _task.run();
+            } finally {
+                taskDone();
+            }
+        }
+    }
+
+    public DispatchScheduler(String name, ThreadPoolExecutor executor) {
+        _name = name;
+        _executor = executor;
+        for (PriorityClass priorityClass : PriorityClass.values()) {
+            _classQueues.put(priorityClass, new ClassQueue(priorityClass));
+        }
+    }
+
+    /**
+     * Sets the weight of a priority class; a class gets threads in proportion
+     * to its weight while requests of several classes are waiting.
+     *
+     * @param priorityClass
+     * @param weight -- must be positive
+     */
+    public synchronized void setWeight(PriorityClass priorityClass, int weight) {
+        if (weight <= 0) {
+            throw new IllegalArgumentException("Weight of " + priorityClass + " must be positive: " + weight);
+        }
+        _classQueues.get(priorityClass)._weight = weight;
+    }
+
+    /**
+     * Queues a request; it is run as soon as a thread is free and it is its turn.
+     *
+     * @param task
+     * @param priorityClass
+     * @param tenant -- tenant of the request, may be null
+     * @param device -- device of the request, may be null
+     */
+    public void submit(Runnable task, PriorityClass priorityClass, URI tenant, URI device) {
+        synchronized (this) {
+            ClassQueue classQueue = _classQueues.get(priorityClass);
+            if (classQueue.isEmpty()) {
+                // An idle class does not save up credit while it has nothing to run.
+                classQueue._finishTag = Math.max(classQueue._finishTag, _virtualTime);
+            }
+            classQueue.add(new ScheduledTask(task, classQueue, tenant, device));
+        }
+        dispatch();
+    }
+
+    /**
+     * Hands waiting requests to the executor while it has free threads.
+     */
+    private void dispatch() {
+        while (true) {
+            ScheduledTask next;
+            synchronized (this) {
+                if (_running >= _executor.getCorePoolSize()) {
+                    return;
+                }
+                next = pollNext();
+                if (next == null) {
+                    return;
+                }
+                _running++;
+            }
+            next._classQueue.recordWait(System.currentTimeMillis() - next._queuedTime);
+            try {
+                _executor.execute(next);
+            } catch (Exception e) {
+                _log.error("Unable to execute request on " + _name, e);
+                synchronized (this) {
+                    _running--;
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Picks the non-empty class with the smallest finish tag, as in start time fair queueing.
+     */
+    private ScheduledTask pollNext() {
+        ClassQueue selected = null;
+        double selectedTag = 0;
+        for (ClassQueue classQueue : _classQueues.values()) {
+            if (classQueue.isEmpty()) {
+                continue;
+            }
+            double tag = classQueue._finishTag + 1.0 / classQueue._weight;
+            if (selected == null || tag < selectedTag) {
+                selected = classQueue;
+                selectedTag = tag;
+            }
+        }
+        if (selected == null) {
+            return null;
+        }
+        _virtualTime = selected._finishTag;
+        selected._finishTag = selectedTag;
+        return selected.poll();
+    }
+
+    private void taskDone() {
+        synchronized (this) {
+            _running--;
+        }
+        dispatch();
+    }
+
+    public synchronized int getRunningCount() {
+        return _running;
+    }
+
+    public synchronized int getQueuedCount(PriorityClass priorityClass) {
+        return _classQueues.get(priorityClass)._size;
+    }
+
+    public long getDispatchedCount(PriorityClass priorityClass) {
+        return _classQueues.get(priorityClass)._dispatched.get();
+    }
+
+    public long getAverageWaitMillis(PriorityClass priorityClass) {
+        ClassQueue classQueue = _classQueues.get(priorityClass);
+        long dispatched = classQueue._dispatched.get();
+        return (dispatched > 0) ? classQueue._totalWaitMillis.get() / dispatched : 0;
+    }
+
+    public long getMaxWaitMillis(PriorityClass priorityClass) {
+        return _classQueues.get(priorityClass)._maxWaitMillis.get();
+    }
+
+    /**
+     * Returns the queue wait time metrics of each priority class for logging.
+     *
+     * @return statistics
+     */
+    public String getStatistics() {
+        StringBuilder builder = new StringBuilder(_name).append(": running ").append(getRunningCount());
+        for (PriorityClass priorityClass : PriorityClass.values()) {
+            builder.append(String.format("; %s queued %d dispatched %d wait avg %d ms max %d ms", priorityClass,
+                    getQueuedCount(priorityClass), getDispatchedCount(priorityClass),
+                    getAverageWaitMillis(priorityClass), getMaxWaitMillis(priorityClass)));
+        }
+        return builder.toString();
+    }
+}
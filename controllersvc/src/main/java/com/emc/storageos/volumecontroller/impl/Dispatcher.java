@@ -11,11 +11,11 @@ import java.io.Serializable;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.URI;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -37,12 +37,15 @@ import com.emc.storageos.coordinator.client.service.DistributedQueueItemProcesse
 import com.emc.storageos.coordinator.client.service.DistributedSemaphore;
 import com.emc.storageos.coordinator.client.service.impl.DistributedQueueConsumer;
 import com.emc.storageos.coordinator.exceptions.CoordinatorException;
+import com.emc.storageos.db.client.DbClient;
+import com.emc.storageos.db.client.model.Task;
+import com.emc.storageos.db.client.model.util.TaskUtils;
 import com.emc.storageos.exceptions.ClientControllerException;
 import com.emc.storageos.exceptions.DeviceControllerException;
 import com.emc.storageos.locking.LockRetryException;
+import com.emc.storageos.services.util.NamedScheduledThreadPoolExecutor;
 import com.emc.storageos.volumecontroller.ControllerException;
 import com.emc.storageos.workflow.WorkflowService;
-import com.google.common.base.Joiner;
 
 /**
  * Main API for queueing / dispatching calls to device specific controller implementations.
@@ -60,6 +63,10 @@ public class Dispatcher extends DistributedQueueConsumer<ControlRequest> {
     private static final int DEFAULT_CONTROLLER_MAX_ITEM = 1000;
     private static final int MAX_WORKFLOW_STEPS = 10000;
     private static final long STALE_ITEM_THRESHOLD = 24 * 60 * 60 * 1000; // 24 hours in milliseconds
+    private static final URI NO_RESOURCE_ID = URI.create("");
+    private static final long STATISTICS_LOG_INTERVAL_MINUTES = 10;
+    // controller queue methods run as BACKGROUND rather than INTERACTIVE requests
+    private static final String[] DEFAULT_BACKGROUND_METHODS = { "connect", "disconnect", "connectStorage", "disconnectStorage" };
 
     // Define the Queues used by the Dispatcher.
     // To add a new Queue, add its name to the QueueName enum, and then add a constructor
@@ -74,7 +81,6 @@ public class Dispatcher extends DistributedQueueConsumer<ControlRequest> {
         // _queue_max_item is not set for all queues hence its not a final variable
         Integer _queue_max_item;
         DistributedQueue<ControlRequest> _queue;
-        ScheduledThreadPoolExecutor _methodPoolExecutor;
 
         DispatcherQueue(QueueName name, Integer poolSize, Integer maxItem) {
             _queue_name = name;
@@ -106,14 +112,6 @@ public class Dispatcher extends DistributedQueueConsumer<ControlRequest> {
         public Integer getQueueMaxItem() {
             return _queue_max_item;
         }
-
-        public ScheduledThreadPoolExecutor getMethodPoolExecutor() {
-            return _methodPoolExecutor;
-        }
-
-        public void setMethodPoolExecutor(ScheduledThreadPoolExecutor executor) {
-            _methodPoolExecutor = executor;
-        }
     }
 
     DispatcherQueue[] _queues = {
@@ -148,12 +146,27 @@ public class Dispatcher extends DistributedQueueConsumer<ControlRequest> {
     }
 
     private CoordinatorClient _coordinator;
+    private DbClient _dbClient;
+    private Set<String> _backgroundMethods = new HashSet<String>(Arrays.asList(DEFAULT_BACKGROUND_METHODS));
+    private Map<String, Integer> _priorityClassWeights;
     private Map<String, Controller> _controller;
     private Map<Controller, Map<String, Method>> _methodMap;
+    // Pre-bound invokers for _methodMap, created by setController()
+    private volatile Map<Controller, Map<String, ControllerMethodInvoker>> _invokerMap;
     private Map<String, Integer> _deviceMaxConnectionMap;
     private final ConcurrentMap<URI, DistributedSemaphore> _deviceSemaphoreMap = new ConcurrentHashMap<URI, DistributedSemaphore>();
     private int _acquireLeaseWaitTimeSeconds = ACQUIRE_LEASE_WAIT_TIME_SECONDS;
     private int _acquireLeaseRetryWaitTimeSeconds = ACQUIRE_LEASE_RETRY_WAIT_TIME__SECONDS;
+    // if true, requests for devices with maxConnections wait in a DeviceAdmissionQueue
+    // instead of blocking a method executor thread in acquireLease
+    private boolean _nonBlockingAdmission = true;
+    private final ConcurrentMap<URI, DeviceAdmissionQueue> _deviceAdmissionQueueMap = new ConcurrentHashMap<URI, DeviceAdmissionQueue>();
+    private final ScheduledThreadPoolExecutor _admissionExecutor = new NamedScheduledThreadPoolExecutor("DispatcherAdmission", 1);
+    // method executor shared by the queues; by default as many threads as the queue pool sizes add up to
+    private Integer _methodExecutorPoolSize;
+    private ScheduledThreadPoolExecutor _methodPoolExecutor;
+    // schedules the requests of all the queues, so that their priority classes compete for the threads
+    private DispatchScheduler _scheduler;
 
     private DistributedLockQueueManager<ControlRequest> _lockQueueManager;
 
@@ -190,17 +203,39 @@ public class Dispatcher extends DistributedQueueConsumer<ControlRequest> {
         return deviceSemaphore;
     }
 
+    /**
+     * Returns the admission queue of a device, creating it on first use.
+     *
+     * @param info device of the requests
+     * @param deviceSemaphore semaphore of the device
+     * @return DeviceAdmissionQueue
+     */
+    private DeviceAdmissionQueue getAdmissionQueue(DeviceInfo info, DistributedSemaphore deviceSemaphore) {
+        DeviceAdmissionQueue admissionQueue = _deviceAdmissionQueueMap.get(info.getURI());
+        if (admissionQueue == null) {
+            DeviceAdmissionQueue newQueue = new DeviceAdmissionQueue(info.getURI(), deviceSemaphore, _admissionExecutor,
+                    _acquireLeaseRetryWaitTimeSeconds);
+            admissionQueue = _deviceAdmissionQueueMap.putIfAbsent(info.getURI(), newQueue);
+            if (admissionQueue == null) {
+                admissionQueue = newQueue;
+                deviceSemaphore.addLeaseAvailableListener(newQueue);
+            }
+        }
+        return admissionQueue;
+    }
+
     /**
      * A Runnable to enable periodic retries, in the event that the semaphore's leases are exhausted.
      * The item is processed and removed from the distributed queue when:
      * a) A semaphore cannot be acquired
      * b) A semaphore is acquired, and a lease is acquired
+     * The lease is acquired when the invoker executes, so it is not held while the request waits
+     * for a method executor thread.
      */
-    private class DeviceMethodInvoker implements Runnable {
+    private class DeviceMethodInvoker implements Runnable, DeviceAdmissionQueue.Request {
         private final ControlRequest _item;
-        private final DispatcherQueue _queue;
         private final Controller _innerController;
-        private final Method _method;
+        private final ControllerMethodInvoker _method;
         private final DistributedQueueItemProcessedCallback _callback;
         private final DistributedSemaphore _deviceSemaphore;
         private final Object[] _args;
@@ -208,22 +243,55 @@ public class Dispatcher extends DistributedQueueConsumer<ControlRequest> {
         public DeviceMethodInvoker(ControlRequest item,
                 DistributedQueueItemProcessedCallback callback) throws DeviceControllerException {
             _item = item;
-            _queue = getQueue(item.getQueueName());
             final String targetClassName = item.getTargetClassName();
             _innerController = _controller.get(targetClassName);
             if (_innerController == null) {
                 _log.info("Failed Getting target: " + targetClassName);
                 throw DeviceControllerException.exceptions.unableToDispatchToController(targetClassName);
             }
-            _method = _methodMap.get(_innerController).get(item.getMethodName());
+            _method = getInvoker(_innerController, item.getMethodName());
             _args = item.getArg();
             _deviceSemaphore = getSemaphore(item.getDeviceInfo());
             _callback = callback;
         }
 
+        @Override
+        public String getName() {
+            return _method.getName();
+        }
+
+        /**
+         * Submits the invoker again once released by the DeviceAdmissionQueue. If that fails,
+         * the request is put back on its queue rather than lost.
+         */
+        @Override
+        public void dispatch() {
+            try {
+                submit(this, _item);
+            } catch (Exception e) {
+                _log.error("Unable to dispatch task " + _method.getName(), e);
+                getAdmissionQueue(_item.getDeviceInfo(), _deviceSemaphore).cancel(this);
+                requeue();
+            }
+        }
+
+        /**
+         * Puts the request back on its distributed queue and removes this copy of it.
+         */
+        private void requeue() {
+            try {
+                queue(_item);
+                _callback.itemProcessed();
+                _log.info("Requeued task {}: {}", _method.getName(), _args);
+            } catch (Exception e) {
+                _log.error("Unable to requeue task " + _method.getName(), e);
+            }
+        }
+
         @Override
         public void run() {
             Lease lease = null;
+            boolean bLeaseRequested = false;
             boolean bRetryLease = false;
             boolean bInvocationProblem = false;
             boolean bRetryLock = false;
@@ -233,12 +301,10 @@ public class Dispatcher extends DistributedQueueConsumer<ControlRequest> {
                 // reference a thread name that may have already completed its work.
                 // Any log lines above this line will have a thread name that may
                 // reference work that may have already been completed.
-                String defaultName = String.format("%s-thread-%d", Thread.currentThread().getThreadGroup().getName(), Thread
-                        .currentThread().getId());
-                Thread.currentThread().setName(defaultName);
+                Thread.currentThread().setName(getThreadName());
                 _log.info("Invoking {}: {}", _method.getName(), _args);
                 String opId = "";
-                URI resourceId = new URI("");
+                URI resourceId = NO_RESOURCE_ID;
                 if (_args.length > 1) {
                     if (_args.length > 2
                             && _args[_args.length - 2] != null
@@ -246,17 +312,6 @@ public class Dispatcher extends DistributedQueueConsumer<ControlRequest> {
                         resourceId = (URI) _args[_args.length - 2];
                     }
                     opId = (String) _args[_args.length - 1];
-                    List<String> stringArgs = new ArrayList<String>();
-                    StringBuilder threadNameBuilder = new StringBuilder();
-                    threadNameBuilder.append(Thread.currentThread().getId()).append('|').
-                            append(_method.getName()).append('|');
-                    for (Object arg : _args) {
-                        if (arg instanceof String) {
-                            stringArgs.add((String) arg);
-                        }
-                    }
-                    threadNameBuilder.append(Joiner.on('|').join(stringArgs));
-                    Thread.currentThread().setName(threadNameBuilder.toString());
                 }
                 ControllerUtils.setThreadLocalLogData(resourceId, opId);
                 long now = System.currentTimeMillis();
@@ -265,16 +320,26 @@ public class Dispatcher extends DistributedQueueConsumer<ControlRequest> {
                     if (_deviceSemaphore == null) {
                         // this device did not specify maxConnections.
                         _log.info("Dispatching task {}: {}", _method.getName(), _args);
-                        _method.invoke(_innerController, _args);
+                        _method.invoke(_args);
+                    } else if (_nonBlockingAdmission) {
+                        // Take a free lease, or wait for one without holding this thread.
+                        bLeaseRequested = true;
+                        lease = getAdmissionQueue(_item.getDeviceInfo(), _deviceSemaphore).acquireLease(this);
+                        if (lease != null) {
+                            _log.info("Dispatching task {}: {}", _method.getName(), _args);
+                            _method.invoke(_args);
+                        } else {
+                            bRetryLease = true;
+                        }
                     } else {
                         lease = _deviceSemaphore.acquireLease(_acquireLeaseWaitTimeSeconds, TimeUnit.SECONDS);
                         if (lease != null) {
                             _log.info("Dispatching task {}: {}", _method.getName(), _args);
-                            _method.invoke(_innerController, _args);
+                            _method.invoke(_args);
                         } else {
                             // Could not get a lease. Retry.
                             _log.info("Rescheduling task {}: {}", _method.getName(), _args);
-                            _queue.getMethodPoolExecutor().schedule(this, _acquireLeaseRetryWaitTimeSeconds, TimeUnit.SECONDS);
+                            submitLater(this, _item, _acquireLeaseRetryWaitTimeSeconds);
                             bRetryLease = true;
                         }
                     }
@@ -290,7 +355,7 @@ public class Dispatcher extends DistributedQueueConsumer<ControlRequest> {
                     _item.setLockGroup(lockEx.getLockIdentifier());
                     if (!addRequestToLockQueue(lockEx, _item)) {
                         _log.warn("Rescheduling task {}: {}", _method.getName(), _args);
-                        _queue.getMethodPoolExecutor().schedule(this, LOCK_RETRY_WAIT_TIME_SECONDS, TimeUnit.SECONDS);
+                        submitLater(this, _item, LOCK_RETRY_WAIT_TIME_SECONDS);
                         bRetryLock = true;
                     }
                 } else {
@@ -305,6 +370,10 @@ public class Dispatcher extends DistributedQueueConsumer<ControlRequest> {
                     if (_deviceSemaphore != null && lease != null) {
                         _deviceSemaphore.returnLease(lease);
                     }
+                    if (_deviceSemaphore != null && _nonBlockingAdmission && !bLeaseRequested) {
+                        // if released by the admission queue, let the next request go
+                        getAdmissionQueue(_item.getDeviceInfo(), _deviceSemaphore).cancel(this);
+                    }
                     if ((!bRetryLease && !bInvocationProblem && !bRetryLock) || isStale) {
                         // The method was invoked. Cleanup.
                         _callback.itemProcessed();
@@ -315,6 +384,63 @@ public class Dispatcher extends DistributedQueueConsumer<ControlRequest> {
                 }
             }
         }
+
+        /**
+         * Returns the name for the executing thread. The String arguments, which carry
+         * the task id and resource names, are only added to the name if debug logging is
+         * on; the task id is in the thread local log data in any case.
+         *
+         * @return thread name
+         */
+        private String getThreadName() {
+            Thread thread = Thread.currentThread();
+            if (_args.length <= 1) {
+                // Reset the name so that log lines don't reference work already completed.
+                return thread.getThreadGroup().getName() + "-thread-" + thread.getId();
+            }
+            StringBuilder threadNameBuilder = new StringBuilder();
+            threadNameBuilder.append(thread.getId()).append('|').append(_method.getName()).append('|');
+            if (_log.isDebugEnabled()) {
+                boolean first = true;
+                for (Object arg : _args) {
+                    if (arg instanceof String) {
+                        if (!first) {
+                            threadNameBuilder.append('|');
+                        }
+                        threadNameBuilder.append((String) arg);
+                        first = false;
+                    }
+                }
+            }
+            return threadNameBuilder.toString();
+        }
+    }
+
+    /**
+     * Returns the invoker of the named method of a controller.
+     *
+     * @param controller
+     * @param methodName
+     * @return invoker, or null if the controller has no such method
+     */
+    private ControllerMethodInvoker getInvoker(Controller controller, String methodName) {
+        return _invokerMap.get(controller).get(methodName);
+    }
+
+    /**
+     * Creates the invokers for all the controller methods.
+     */
+    private void buildInvokers() {
+        Map<Controller, Map<String, ControllerMethodInvoker>> invokerMap = new HashMap<Controller, Map<String, ControllerMethodInvoker>>();
+        for (Map.Entry<Controller, Map<String, Method>> entry : _methodMap.entrySet()) {
+            Map<String, ControllerMethodInvoker> invokers = new HashMap<String, ControllerMethodInvoker>();
+            for (Map.Entry<String, Method> method : entry.getValue().entrySet()) {
+                invokers.put(method.getKey(), new ControllerMethodInvoker(entry.getKey(), method.getValue()));
+            }
+            invokerMap.put(entry.getKey(), invokers);
+        }
+        _invokerMap = invokerMap;
+        _log.info("Created invokers for {} controllers", invokerMap.size());
     }
 
     /**
@@ -360,6 +486,33 @@ public class Dispatcher extends DistributedQueueConsumer<ControlRequest> {
         _coordinator = coordinator;
     }
 
+    /**
+     * Sets the DbClient used to find the tenant of API requests
+     *
+     * @param dbClient
+     */
+    public void setDbClient(DbClient dbClient) {
+        _dbClient = dbClient;
+    }
+
+    /**
+     * Sets the controller queue methods scheduled as BACKGROUND requests
+     *
+     * @param backgroundMethods
+     */
+    public void setBackgroundMethods(Set<String> backgroundMethods) {
+        _backgroundMethods = backgroundMethods;
+    }
+
+    /**
+     * Sets the weights of the priority classes, by PriorityClass name
+     *
+     * @param priorityClassWeights
+     */
+    public void setPriorityClassWeights(Map<String, Integer> priorityClassWeights) {
+        _priorityClassWeights = priorityClassWeights;
+    }
+
     /**
      * Sets device specific controller implementations
      * 
@@ -379,6 +532,7 @@ public class Dispatcher extends DistributedQueueConsumer<ControlRequest> {
             }
             _methodMap.put(c, methodMap);
         }
+        buildInvokers();
     }
 
     /**
@@ -393,10 +547,10 @@ public class Dispatcher extends DistributedQueueConsumer<ControlRequest> {
     /**
      * Sets _methodExecutorPoolSize, if configured.
      * 
-     * @param corePoolSize Specified size of the _methodExecutorPool
+     * @param corePoolSize Specified size of the _methodExecutorPool shared by the queues
      */
     public void setMethodExecutorPoolSize(int corePoolSize) {
-        getDefaultQueue().getMethodPoolExecutor().setMaximumPoolSize(corePoolSize);
+        _methodExecutorPoolSize = corePoolSize;
     }
 
     /**
@@ -418,21 +572,49 @@ public class Dispatcher extends DistributedQueueConsumer<ControlRequest> {
     }
 
     /**
-     * Creates _methodPoolExecutor for each Queue
+     * Sets _nonBlockingAdmission if configured.
+     *
+     * @param nonBlockingAdmission if false, executor threads block in acquireLease
+     */
+    public void setNonBlockingAdmission(boolean nonBlockingAdmission) {
+        _nonBlockingAdmission = nonBlockingAdmission;
+    }
+
+    /**
+     * Creates the _methodPoolExecutor and the DispatchScheduler shared by the Queues.
+     * The requests of all the queues wait in the one scheduler, so that when the
+     * threads are busy the priority class weights decide whose request runs next.
      */
     public void build() {
-        for (DispatcherQueue q : getQueues()) {
-            q.setMethodPoolExecutor(
-                    new ScheduledThreadPoolExecutor(q.getMethodExecutorPoolSize()) {
-                        @Override
-                        protected void afterExecute(Runnable r, Throwable t) {
-                            // After executing the runnable, clear the thread local log data
-                            // that was set by the provisioning method invoked by the runnable.
-                            ControllerUtils.clearThreadLocalLogData();
-                        }
-                    }
-                    );
+        int poolSize = 0;
+        if (_methodExecutorPoolSize != null) {
+            poolSize = _methodExecutorPoolSize;
+        } else {
+            for (DispatcherQueue q : getQueues()) {
+                poolSize += q.getMethodExecutorPoolSize();
+            }
         }
+        _methodPoolExecutor = new ScheduledThreadPoolExecutor(poolSize) {
+            @Override
+            protected void afterExecute(Runnable r, Throwable t) {
+                // After executing the runnable, clear the thread local log data
+                // that was set by the provisioning method invoked by the runnable.
+                ControllerUtils.clearThreadLocalLogData();
+            }
+        };
+        DispatchScheduler scheduler = new DispatchScheduler("dispatcher", _methodPoolExecutor);
+        if (_priorityClassWeights != null) {
+            for (Map.Entry<String, Integer> weight : _priorityClassWeights.entrySet()) {
+                scheduler.setWeight(DispatchScheduler.PriorityClass.valueOf(weight.getKey()), weight.getValue());
+            }
+        }
+        _scheduler = scheduler;
+        _admissionExecutor.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                _log.info("Dispatcher queues " + _scheduler.getStatistics());
+            }
+        }, STATISTICS_LOG_INTERVAL_MINUTES, STATISTICS_LOG_INTERVAL_MINUTES, TimeUnit.MINUTES);
     }
 
     /**
@@ -486,6 +668,11 @@ public class Dispatcher extends DistributedQueueConsumer<ControlRequest> {
             Object target, String method, Object... args) throws ControllerException {
         ControlRequest req = new ControlRequest(queueName.name(),
                 new DeviceInfo(deviceURI, deviceType, lockDevice), target, method, args);
+        req.setPriorityClass(getPriorityClass(queueName.name(), method));
+        if (req.getPriorityClass() == DispatchScheduler.PriorityClass.INTERACTIVE) {
+            // looked up here rather than on the queue consumer thread, which must not block
+            req.setTenant(findTenant(args));
+        }
         try {
             if (QueueName.controller.equals(queueName)) {
                 checkZkStepToWorkflowSize();
@@ -577,12 +764,91 @@ public class Dispatcher extends DistributedQueueConsumer<ControlRequest> {
         for (DispatcherQueue q : getQueues()) {
             q.getQueue().stop(DEFAULT_MAX_WAIT_STOP);
         }
+        _admissionExecutor.shutdownNow();
     }
 
     @Override
     public void consumeItem(ControlRequest item, DistributedQueueItemProcessedCallback callback) throws Exception {
-        DispatcherQueue queue = getQueue(item.getQueueName());
-        queue.getMethodPoolExecutor().execute(new DeviceMethodInvoker(item, callback));
+        DeviceMethodInvoker invoker = new DeviceMethodInvoker(item, callback);
+        submit(invoker, item);
+    }
+
+    /**
+     * Hands a request to the DispatchScheduler, or straight to the method executor
+     * if there is no scheduler.
+     *
+     * @param invoker
+     * @param item the request run by the invoker
+     */
+    private void submit(Runnable invoker, ControlRequest item) {
+        if (_scheduler == null) {
+            _methodPoolExecutor.execute(invoker);
+            return;
+        }
+        DispatchScheduler.PriorityClass priorityClass = item.getPriorityClass();
+        if (priorityClass == null) {
+            // queued by a node which does not set the priority class
+            priorityClass = getPriorityClass(item.getQueueName(), item.getMethodName());
+            item.setPriorityClass(priorityClass);
+        }
+        _scheduler.submit(invoker, priorityClass, item.getTenant(), item.getDeviceInfo().getURI());
+    }
+
+    /**
+     * Submits a request after a delay; until then it takes no method executor thread.
+     *
+     * @param invoker
+     * @param item the request run by the invoker
+     * @param delaySeconds
+     */
+    private void submitLater(final Runnable invoker, final ControlRequest item, long delaySeconds) {
+        _admissionExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                submit(invoker, item);
+            }
+        }, delaySeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Workflow steps are WORKFLOW requests; the other requests are INTERACTIVE
+     * unless the method is one of the _backgroundMethods.
+     *
+     * @param queueName
+     * @param methodName
+     * @return PriorityClass
+     */
+    private DispatchScheduler.PriorityClass getPriorityClass(String queueName, String methodName) {
+        if (getQueue(queueName).getQueueName() != QueueName.controller) {
+            return DispatchScheduler.PriorityClass.WORKFLOW;
+        }
+        if (_backgroundMethods != null && _backgroundMethods.contains(methodName)) {
+            return DispatchScheduler.PriorityClass.BACKGROUND;
+        }
+        return DispatchScheduler.PriorityClass.INTERACTIVE;
+    }
+
+    /**
+     * Finds the tenant of an API request from the task of its operation id,
+     * which by convention is the last argument.
+     *
+     * @param args
+     * @return tenant URI or null
+     */
+    private URI findTenant(Object[] args) {
+        if (_dbClient == null || args.length == 0 || !(args[args.length - 1] instanceof String)) {
+            return null;
+        }
+        try {
+            for (Task task : TaskUtils.findTasksForRequestId(_dbClient, (String) args[args.length - 1])) {
+                if (task != null && task.getTenant() != null) {
+                    return task.getTenant();
+                }
+            }
+        } catch (Exception e) {
+            _log.debug("Unable to find the tenant of task {}", args[args.length - 1], e);
+        }
+        return null;
     }
 
     /**
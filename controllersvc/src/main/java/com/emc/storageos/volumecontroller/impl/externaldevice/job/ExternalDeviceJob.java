@@ -219,4 +219,12 @@ abstract public class ExternalDeviceJob extends Job implements Serializable {
     public TaskCompleter getTaskCompleter() {
         return _taskCompleter;
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public URI getStorageSystemURI() {
+        return _storageSystemURI;
+    }
 }
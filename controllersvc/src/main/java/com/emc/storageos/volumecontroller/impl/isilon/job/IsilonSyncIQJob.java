@@ -104,6 +104,11 @@ public class IsilonSyncIQJob extends Job implements Serializable {
         return _pollResult;
     }
 
+    @Override
+    public URI getStorageSystemURI() {
+        return _storageSystemUri;
+    }
+
     @Override
     public TaskCompleter getTaskCompleter() {
         return _taskCompleter;
@@ -7,36 +7,86 @@ package com.emc.storageos.volumecontroller.impl.job;
 import com.emc.storageos.coordinator.client.service.impl.DistributedQueueConsumer;
 import com.emc.storageos.coordinator.client.service.DistributedQueueItemProcessedCallback;
 import com.emc.storageos.exceptions.DeviceControllerException;
+import com.emc.storageos.services.util.NamedScheduledThreadPoolExecutor;
+import com.emc.storageos.services.util.NamedThreadPoolExecutor;
 import com.emc.storageos.svcs.errorhandling.model.ServiceError;
 import com.emc.storageos.volumecontroller.Job;
+import com.emc.storageos.volumecontroller.JobBatchPoller;
 import com.emc.storageos.volumecontroller.JobContext;
 import com.emc.storageos.volumecontroller.impl.JobPollResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.net.URI;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
- * QueueJobTracker tracks jobs in the job queue
+ * QueueJobTracker tracks jobs in the job queue.
+ *
+ * The jobs are polled on a pool of threads, in a lane per storage system, so that a slow or
+ * unreachable device only holds back the jobs on that device: a lane polls at most
+ * maxPollsPerDevice jobs at a time and all the lanes together at most maxConcurrentPolls.
+ * Each job is polled on its own schedule, sooner when its progress shows it is about to
+ * complete and less often while it makes no progress, within its minimum poll period and
+ * maxPollPeriodInMillis. Jobs in transient error are polled every trackingPeriodInMillis.
+ *
+ * Jobs with a batch poller are tracked in a lane per provider instead. The jobs of such a
+ * lane which are due are polled together, after their batch poller read their status with a
+ * single call to the provider, so that a provider is asked once per poll rather than once
+ * per job. The provider of a job is looked up once, on the tracker thread, when the job is
+ * queued. The jobs of a batch are then polled on as many poll threads as the lane and the
+ * pool have free.
  */
 public class QueueJobTracker extends DistributedQueueConsumer<QueueJob> implements Runnable
 {
     private static final Logger _logger = LoggerFactory.getLogger(QueueJobTracker.class);
+    // factor by which the poll period of a job grows while it makes no progress
+    private static final double POLL_PERIOD_BACKOFF = 1.5;
+    private static final String JOB_TYPE_LANE_PREFIX = "jobType:";
+    private static final String PROVIDER_LANE_PREFIX = "provider:";
+
     private long _trackingPeriodInMillis;
+    private long _minPollPeriodInMillis = 5000;
+    private long _maxPollPeriodInMillis = 30000;
+    private long _dispatchPeriodInMillis = 1000;
+    private int _maxConcurrentPolls = 10;
+    private int _maxPollsPerDevice = 2;
+    private int _minBatchSize = 5;
+    private int _maxBatchSize = 500;
+    private Map<String, Long> _minPollPeriodsByJobType = new HashMap<String, Long>();
 
-    private ExecutorService _trackerService = null;
-    private ConcurrentLinkedQueue<JobWrapper> _activeJobs = new ConcurrentLinkedQueue<JobWrapper>();
+    private ScheduledExecutorService _trackerService = null;
+    private ExecutorService _pollService = null;
+    // poll lanes by provider, storage system or job type, guards the lanes and the jobs waiting in them
+    private final Map<String, PollLane> _lanes = new TreeMap<String, PollLane>();
+    private int _pollsInProgress = 0;
+    private final HashMap<String, HashMap<String, Integer>> _jobProgressMap = new HashMap<String, HashMap<String, Integer>>();
+    private long _lastProgressLogTime = 0L;
     private JobContext _jobContext;
 
-    private class JobWrapper
+    private class JobWrapper implements Comparable<JobWrapper>
     {
         Job _job;
         DistributedQueueItemProcessedCallback _cb;
+        long _pollPeriod;
+        long _nextPollTime;
+        // time of the last poll, or when the job was queued
+        long _lastPollTime;
+        int _lastPercentComplete;
+        // provider whose batch poller reads the status of the job, null if it is polled on its own
+        String _providerKey;
 
         public JobWrapper(Job job, DistributedQueueItemProcessedCallback cb) {
             _job = job;
@@ -50,6 +100,133 @@ public class QueueJobTracker extends DistributedQueueConsumer<QueueJob> implemen
         public DistributedQueueItemProcessedCallback getJobDoneCallback() {
             return _cb;
         }
+
+        @Override
+        public int compareTo(JobWrapper other) {
+            return Long.compare(_nextPollTime, other._nextPollTime);
+        }
+    }
+
+    /**
+     * The jobs tracked on a provider, a storage system or of a job type, with the statistics of
+     * their polls. The polls of a provider lane each poll a batch of jobs.
+     */
+    public static class PollLane
+    {
+        private final String _name;
+        private final JobBatchPoller _batchPoller;
+        private final String _providerKey;
+        private final PriorityQueue<JobWrapper> _waiting;
+        private int _polling;
+        private int _pollingJobs;
+        private int _backlog;
+        private long _pollCount;
+        private long _jobPollCount;
+        private long _errorCount;
+        private long _totalLatency;
+        private long _maxLatency;
+        private long _lastLatency;
+
+        PollLane(String name, JobBatchPoller batchPoller, String providerKey) {
+            _name = name;
+            _batchPoller = batchPoller;
+            _providerKey = providerKey;
+            _waiting = new PriorityQueue<JobWrapper>();
+        }
+
+        PollLane(PollLane lane) {
+            _name = lane._name;
+            _batchPoller = lane._batchPoller;
+            _providerKey = lane._providerKey;
+            _waiting = new PriorityQueue<JobWrapper>(lane._waiting);
+            _polling = lane._polling;
+            _pollingJobs = lane._pollingJobs;
+            _backlog = lane._backlog;
+            _pollCount = lane._pollCount;
+            _jobPollCount = lane._jobPollCount;
+            _errorCount = lane._errorCount;
+            _totalLatency = lane._totalLatency;
+            _maxLatency = lane._maxLatency;
+            _lastLatency = lane._lastLatency;
+        }
+
+        private boolean hasDueJob(long now) {
+            return !_waiting.isEmpty() && _waiting.peek()._nextPollTime <= now;
+        }
+
+        private void updateBacklog(long now) {
+            _backlog = 0;
+            for (JobWrapper jobWrapper : _waiting) {
+                if (jobWrapper._nextPollTime <= now) {
+                    _backlog++;
+                }
+            }
+        }
+
+        private void addPoll(int jobCount, long latency, boolean failed) {
+            _pollCount++;
+            _jobPollCount += jobCount;
+            if (failed) {
+                _errorCount++;
+            }
+            _totalLatency += latency;
+            _lastLatency = latency;
+            _maxLatency = Math.max(_maxLatency, latency);
+        }
+
+        public String getName() {
+            return _name;
+        }
+
+        public int getJobCount() {
+            return _waiting.size() + _pollingJobs;
+        }
+
+        public int getPollsInProgress() {
+            return _polling;
+        }
+
+        /**
+         * @return the number of jobs which were due to be polled but waited for a poll thread
+         *         at the last dispatch
+         */
+        public int getBacklog() {
+            return _backlog;
+        }
+
+        /**
+         * @return the number of polls, of a job or of a batch of jobs in a provider lane
+         */
+        public long getPollCount() {
+            return _pollCount;
+        }
+
+        public long getJobPollCount() {
+            return _jobPollCount;
+        }
+
+        public long getErrorCount() {
+            return _errorCount;
+        }
+
+        public long getAverageLatency() {
+            return (_pollCount == 0) ? 0 : _totalLatency / _pollCount;
+        }
+
+        public long getMaxLatency() {
+            return _maxLatency;
+        }
+
+        public long getLastLatency() {
+            return _lastLatency;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: jobs %d, polling %d, backlog %d, polls %d, job polls %d, errors %d, " +
+                    "latency avg/max/last %d/%d/%d ms", _name, getJobCount(), _polling, _backlog, _pollCount, _jobPollCount,
+                    _errorCount, getAverageLatency(), _maxLatency, _lastLatency);
+        }
     }
 
     public void setJobContext(JobContext jobContext) {
@@ -57,91 +234,372 @@ public class QueueJobTracker extends DistributedQueueConsumer<QueueJob> implemen
     }
 
     public void start() {
-        _trackerService = Executors.newSingleThreadExecutor();
-        _trackerService.submit(this);
+        _pollService = new NamedThreadPoolExecutor("JobTrackerPoll", _maxConcurrentPolls);
+        _trackerService = new NamedScheduledThreadPoolExecutor("JobTracker", 1);
+        _trackerService.scheduleWithFixedDelay(this, _dispatchPeriodInMillis, _dispatchPeriodInMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        if (_trackerService != null) {
+            _trackerService.shutdownNow();
+        }
+        if (_pollService != null) {
+            _pollService.shutdownNow();
+        }
     }
 
     public void consumeItem(QueueJob job, DistributedQueueItemProcessedCallback cb) {
-        _activeJobs.add(new JobWrapper(job.getJob(), cb));
+        final JobWrapper jobWrapper = new JobWrapper(job.getJob(), cb);
+        jobWrapper._pollPeriod = getMinPollPeriod(jobWrapper.getJob());
+        jobWrapper._lastPollTime = System.currentTimeMillis();
+        if (jobWrapper.getJob().getBatchPoller() == null) {
+            schedule(jobWrapper, jobWrapper._lastPollTime + jobWrapper._pollPeriod);
+            return;
+        }
+        // the provider is looked up in the db, which is not done on the queue consumer thread
+        _trackerService.execute(new Runnable() {
+            @Override
+            public void run() {
+                jobWrapper._providerKey = getProviderKey(jobWrapper.getJob());
+                schedule(jobWrapper, jobWrapper._lastPollTime + jobWrapper._pollPeriod);
+            }
+        });
     }
 
+    private String getProviderKey(Job job) {
+        try {
+            return job.getBatchPoller().getProviderKey(job, _jobContext);
+        } catch (Exception e) {
+            _logger.warn("Tracker: Could not get the provider of the job, it is polled on its own.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Hands the jobs due to be polled to the poll threads, taking turns between the lanes.
+     * The due jobs of a provider lane are handed over together, with the jobs due within the
+     * minimum poll period, which would otherwise take a call to the provider of their own.
+     */
     public void run() {
-        HashMap<String, HashMap<String, Integer>> jobProgressMap = new HashMap<String, HashMap<String, Integer>>();
-        while (true) {
-            JobWrapper jobWrapper = null;
-            _logger.debug("Tracker: Will check job status after {} ms...", _trackingPeriodInMillis);
-            try {
-                ArrayList<String> completedJobs = new ArrayList<String>();
-                Thread.sleep(_trackingPeriodInMillis);
-                _logger.debug("Tracker: Checking status of {} jobs", _activeJobs.size());
-                for (Iterator<JobWrapper> iter = _activeJobs.iterator(); iter.hasNext();) {
-                    jobWrapper = iter.next();
-                    Job job = jobWrapper.getJob();
-                    try {
-                        setPollingStartTime(job);
-                        JobPollResult result = job.poll(_jobContext, _trackingPeriodInMillis);
-                        updateJobProgress(jobProgressMap, result);
-
-                        boolean stopJobTracking = false;
-                        String msg = null;
-                        // Check if we have to stop job tracking.
-                        if (result.isJobInTerminalState()) {
-                            // stop tracking jobs in final status and final post processing status
-                            msg = String.format("Tracker: Stopping tracking job %s with status: %s and post-processing status %s",
-                                    result.getJobId(), result.getJobStatus(), result.getJobPostProcessingStatus());
-                            stopJobTracking = true;
-                        } else {
-                            long trackingTime = System.currentTimeMillis() - job.getPollingStartTime();
-                            if (trackingTime > Job.JOB_TRACKING_LIMIT) {
-                                // Stop tracking job if maximum job tracking time was reached.
-                                msg = String.format("Tracker: Stopping tracking job %s with status: %s and post-processing status %s .\n" +
-                                        "The job tracking time reached job tracking time limit, job tracking time %d hours.",
-                                        result.getJobId(), result.getJobStatus(), result.getJobPostProcessingStatus(),
-                                        trackingTime / (60 * 60 * 1000));
-                                String errorMsg = String.format(
-                                        "Could not execute job %s on backend device. Exceeded time limit for job status tracking.",
-                                        result.getJobName());
-                                ServiceError error = DeviceControllerException.errors.unableToExecuteJob(errorMsg);
-                                job.getTaskCompleter().error(_jobContext.getDbClient(), error);
-                                stopJobTracking = true;
-                            }
+        try {
+            long now = System.currentTimeMillis();
+            long batchDueTime = now + _minPollPeriodInMillis;
+            List<Runnable> polls = new ArrayList<Runnable>();
+            synchronized (_lanes) {
+                boolean dispatched = true;
+                while (dispatched && _pollsInProgress < _maxConcurrentPolls) {
+                    dispatched = false;
+                    for (PollLane lane : _lanes.values()) {
+                        if (_pollsInProgress >= _maxConcurrentPolls) {
+                            break;
                         }
-                        if (stopJobTracking) {
-                            _logger.info(msg);
-                            stopTrackingJob(jobWrapper);
-                            completedJobs.add(result.getJobId());
+                        if (lane._polling < _maxPollsPerDevice && lane.hasDueJob(now)) {
+                            final PollLane pollLane = lane;
+                            final List<JobWrapper> dueJobs = new ArrayList<JobWrapper>();
+                            do {
+                                dueJobs.add(lane._waiting.poll());
+                            } while (lane._batchPoller != null && dueJobs.size() < _maxBatchSize && lane.hasDueJob(batchDueTime));
+                            polls.add(new Runnable() {
+                                @Override
+                                public void run() {
+                                    pollJobs(pollLane, dueJobs);
+                                }
+                            });
+                            lane._polling++;
+                            lane._pollingJobs += dueJobs.size();
+                            _pollsInProgress++;
+                            dispatched = true;
                         }
-                    } catch (Exception ex) {
-                        _logger.error("Tracker: Unexpected exception.", ex);
                     }
                 }
-                if (!jobProgressMap.isEmpty()) {
-                    _logger.info(String.format("Progress of jobs - %n %s", jobProgressMap.toString()));
+                for (PollLane lane : _lanes.values()) {
+                    lane.updateBacklog(now);
+                }
+            }
+            for (Runnable poll : polls) {
+                _pollService.execute(poll);
+            }
+            logProgress(now);
+        } catch (Exception e) {
+            _logger.info("Tracker: Unexpected exception.", e);
+        }
+    }
+
+    /**
+     * The jobs handed over from a lane in one poll, polled by one or more poll threads
+     */
+    private class LanePoll {
+        private final PollLane _lane;
+        private final int _jobCount;
+        private final Queue<JobWrapper> _jobs;
+        private final long _startTime = System.currentTimeMillis();
+        // guarded by _lanes
+        private int _remaining;
+        private boolean _failed;
+        private final List<JobWrapper> _stoppedJobs = new ArrayList<JobWrapper>();
+
+        private LanePoll(PollLane lane, List<JobWrapper> jobWrappers) {
+            _lane = lane;
+            _jobCount = jobWrappers.size();
+            _jobs = new ConcurrentLinkedQueue<JobWrapper>(jobWrappers);
+            _remaining = _jobCount;
+        }
+    }
+
+    /**
+     * Polls the jobs handed over from a lane, reading the status of a batch from its
+     * provider first. The jobs are then polled on as many poll threads as the lane and
+     * the pool have free, each thread taking a poll of the lane.
+     */
+    private void pollJobs(PollLane lane, List<JobWrapper> jobWrappers) {
+        final LanePoll lanePoll = new LanePoll(lane, jobWrappers);
+        boolean failed = false;
+        try {
+            if (lane._batchPoller != null && jobWrappers.size() >= _minBatchSize) {
+                List<Job> jobs = new ArrayList<Job>();
+                for (JobWrapper jobWrapper : jobWrappers) {
+                    jobs.add(jobWrapper.getJob());
+                }
+                try {
+                    lane._batchPoller.readStatus(lane._providerKey, jobs, _jobContext);
+                } catch (Exception e) {
+                    // the jobs read their status themselves
+                    _logger.warn(String.format("Tracker: Could not read the status of %d jobs on provider %s",
+                            jobs.size(), lane._providerKey), e);
+                    failed = true;
                 }
-                removeCompletedJobProgressItems(jobProgressMap, completedJobs);
-            } catch (InterruptedException ie) {
-                _logger.info("Tracker: Unexpected Interrupted exception.", ie);
-            } catch (Exception e) {
-                _logger.info("Tracker: Unexpected exception.", e);
             }
+            int helpers;
+            synchronized (_lanes) {
+                lanePoll._failed = failed;
+                helpers = Math.min(jobWrappers.size() - 1,
+                        Math.min(_maxPollsPerDevice - lane._polling, _maxConcurrentPolls - _pollsInProgress));
+                helpers = Math.max(0, helpers);
+                lane._polling += helpers;
+                _pollsInProgress += helpers;
+            }
+            for (int i = 0; i < helpers; i++) {
+                try {
+                    _pollService.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            pollJobs(lanePoll);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    releasePoll(lane);
+                }
+            }
+        } finally {
+            pollJobs(lanePoll);
+        }
+    }
+
+    /**
+     * Polls jobs of the lane poll until none is left, then returns the poll of the lane.
+     * The thread polling the last job accounts the lane poll and reports the jobs which
+     * are no longer tracked done.
+     */
+    private void pollJobs(LanePoll lanePoll) {
+        int polled = 0;
+        boolean failed = false;
+        List<JobWrapper> stoppedJobs = new ArrayList<JobWrapper>();
+        try {
+            for (JobWrapper jobWrapper = lanePoll._jobs.poll(); jobWrapper != null; jobWrapper = lanePoll._jobs.poll()) {
+                polled++;
+                if (!pollJob(jobWrapper, stoppedJobs)) {
+                    failed = true;
+                }
+            }
+        } finally {
+            List<JobWrapper> doneJobs = null;
+            PollLane lane = lanePoll._lane;
+            synchronized (_lanes) {
+                lane._polling--;
+                _pollsInProgress--;
+                lanePoll._failed |= failed;
+                lanePoll._stoppedJobs.addAll(stoppedJobs);
+                lanePoll._remaining -= polled;
+                if (polled > 0 && lanePoll._remaining == 0) {
+                    lane._pollingJobs -= lanePoll._jobCount;
+                    lane.addPoll(lanePoll._jobCount, System.currentTimeMillis() - lanePoll._startTime, lanePoll._failed);
+                    doneJobs = lanePoll._stoppedJobs;
+                }
+            }
+            if (doneJobs != null) {
+                for (JobWrapper jobWrapper : doneJobs) {
+                    stopTrackingJob(jobWrapper);
+                }
+            }
+        }
+    }
+
+    private void releasePoll(PollLane lane) {
+        synchronized (_lanes) {
+            lane._polling--;
+            _pollsInProgress--;
+        }
+    }
+
+    /**
+     * Polls a job and schedules its next poll unless it is no longer tracked.
+     *
+     * @param jobWrapper the job to poll
+     * @param stoppedJobs gets the job if it is no longer tracked
+     * @return false if the poll failed
+     */
+    private boolean pollJob(JobWrapper jobWrapper, List<JobWrapper> stoppedJobs) {
+        Job job = jobWrapper.getJob();
+        long startTime = System.currentTimeMillis();
+        JobPollResult result = null;
+        boolean stopJobTracking = false;
+        try {
+            setPollingStartTime(job);
+            result = job.poll(_jobContext, startTime - jobWrapper._lastPollTime);
+            updateJobProgress(result);
+
+            String msg = null;
+            // Check if we have to stop job tracking.
+            if (result.isJobInTerminalState()) {
+                // stop tracking jobs in final status and final post processing status
+                msg = String.format("Tracker: Stopping tracking job %s with status: %s and post-processing status %s",
+                        result.getJobId(), result.getJobStatus(), result.getJobPostProcessingStatus());
+                stopJobTracking = true;
+            } else {
+                long trackingTime = System.currentTimeMillis() - job.getPollingStartTime();
+                if (trackingTime > Job.JOB_TRACKING_LIMIT) {
+                    // Stop tracking job if maximum job tracking time was reached.
+                    msg = String.format("Tracker: Stopping tracking job %s with status: %s and post-processing status %s .\n" +
+                            "The job tracking time reached job tracking time limit, job tracking time %d hours.",
+                            result.getJobId(), result.getJobStatus(), result.getJobPostProcessingStatus(),
+                            trackingTime / (60 * 60 * 1000));
+                    String errorMsg = String.format(
+                            "Could not execute job %s on backend device. Exceeded time limit for job status tracking.",
+                            result.getJobName());
+                    ServiceError error = DeviceControllerException.errors.unableToExecuteJob(errorMsg);
+                    job.getTaskCompleter().error(_jobContext.getDbClient(), error);
+                    stopJobTracking = true;
+                }
+            }
+            if (stopJobTracking) {
+                _logger.info(msg);
+                stoppedJobs.add(jobWrapper);
+                removeJobProgress(result.getJobId());
+            }
+        } catch (Exception ex) {
+            _logger.error("Tracker: Unexpected exception.", ex);
+        } finally {
+            long endTime = System.currentTimeMillis();
+            if (!stopJobTracking) {
+                Job.JobStatus status = (result == null) ? null : result.getJobStatus();
+                int percentComplete = (result == null) ? jobWrapper._lastPercentComplete : result.getJobPercentComplete();
+                jobWrapper._pollPeriod = computePollPeriod(jobWrapper._pollPeriod, getMinPollPeriod(job),
+                        jobWrapper._lastPercentComplete, jobWrapper._lastPollTime, status, percentComplete, startTime);
+                jobWrapper._lastPercentComplete = percentComplete;
+                jobWrapper._lastPollTime = startTime;
+                schedule(jobWrapper, endTime + jobWrapper._pollPeriod);
+            }
+        }
+        return result != null;
+    }
+
+    /**
+     * Computes the period after which a job is polled next. A job which progressed is polled
+     * after half of the time its progress rate suggests it still needs, a job which did not
+     * progress after a period which grows by POLL_PERIOD_BACKOFF at every poll.
+     *
+     * @param pollPeriod the period after which the job was polled last
+     * @param minPollPeriod the minimum poll period of the job
+     * @param lastPercentComplete the percent complete at the previous poll
+     * @param lastPollTime the time of the previous poll, or when the job was queued
+     * @param status the job status, null if the poll failed
+     * @param percentComplete the percent complete now
+     * @param pollTime the time of this poll
+     * @return the poll period in milliseconds
+     */
+    long computePollPeriod(long pollPeriod, long minPollPeriod, int lastPercentComplete, long lastPollTime,
+            Job.JobStatus status, int percentComplete, long pollTime) {
+        long period;
+        if (status == Job.JobStatus.ERROR) {
+            // jobs account the time spent in transient error by the poll period
+            period = _trackingPeriodInMillis;
+        } else if (percentComplete > lastPercentComplete && percentComplete < 100 && pollTime > lastPollTime) {
+            long remainingTime = (pollTime - lastPollTime) * (100 - percentComplete) / (percentComplete - lastPercentComplete);
+            period = remainingTime / 2;
+        } else {
+            period = (long) (pollPeriod * POLL_PERIOD_BACKOFF);
+        }
+        return Math.max(minPollPeriod, Math.min(_maxPollPeriodInMillis, period));
+    }
+
+    private long getMinPollPeriod(Job job) {
+        Long minPollPeriod = _minPollPeriodsByJobType.get(job.getClass().getSimpleName());
+        return (minPollPeriod != null) ? minPollPeriod : _minPollPeriodInMillis;
+    }
+
+    private void schedule(JobWrapper jobWrapper, long nextPollTime) {
+        Job job = jobWrapper.getJob();
+        String providerKey = jobWrapper._providerKey;
+        JobBatchPoller batchPoller = null;
+        String laneName;
+        if (providerKey != null) {
+            batchPoller = job.getBatchPoller();
+            laneName = PROVIDER_LANE_PREFIX + providerKey;
+        } else {
+            URI storageSystemURI = job.getStorageSystemURI();
+            laneName = (storageSystemURI != null) ? storageSystemURI.toString() :
+                    JOB_TYPE_LANE_PREFIX + job.getClass().getSimpleName();
+        }
+        synchronized (_lanes) {
+            PollLane lane = _lanes.get(laneName);
+            if (lane == null) {
+                lane = new PollLane(laneName, batchPoller, providerKey);
+                _lanes.put(laneName, lane);
+            }
+            jobWrapper._nextPollTime = nextPollTime;
+            lane._waiting.add(jobWrapper);
         }
     }
 
-    private void updateJobProgress(HashMap<String, HashMap<String, Integer>> jobProgressMap, JobPollResult result) {
-        HashMap<String, Integer> jobInstancesForJobName = jobProgressMap.get(result.getJobName());
-        if (jobInstancesForJobName == null) {
-            jobInstancesForJobName = new HashMap<String, Integer>();
-            jobProgressMap.put(result.getJobName(), jobInstancesForJobName);
+    private void logProgress(long now) {
+        if (now - _lastProgressLogTime < _trackingPeriodInMillis) {
+            return;
+        }
+        _lastProgressLogTime = now;
+        synchronized (_jobProgressMap) {
+            if (!_jobProgressMap.isEmpty()) {
+                _logger.info(String.format("Progress of jobs - %n %s", _jobProgressMap.toString()));
+            }
+        }
+        StringBuilder lanes = new StringBuilder();
+        synchronized (_lanes) {
+            for (PollLane lane : _lanes.values()) {
+                if (lane.getJobCount() > 0) {
+                    lanes.append(String.format("%n %s", lane));
+                }
+            }
+        }
+        if (lanes.length() > 0) {
+            _logger.info("Tracker: Poll lanes - {}", lanes);
         }
-        jobInstancesForJobName.put(result.getJobId(), Integer.valueOf(result.getJobPercentComplete()));
     }
 
-    private void removeCompletedJobProgressItems(HashMap<String, HashMap<String, Integer>> jobProgressMap,
-            ArrayList<String> completedJobs) {
-        for (String jobId : completedJobs) {
-            Iterator<String> jobProgressMapIter = jobProgressMap.keySet().iterator();
+    private void updateJobProgress(JobPollResult result) {
+        synchronized (_jobProgressMap) {
+            HashMap<String, Integer> jobInstancesForJobName = _jobProgressMap.get(result.getJobName());
+            if (jobInstancesForJobName == null) {
+                jobInstancesForJobName = new HashMap<String, Integer>();
+                _jobProgressMap.put(result.getJobName(), jobInstancesForJobName);
+            }
+            jobInstancesForJobName.put(result.getJobId(), Integer.valueOf(result.getJobPercentComplete()));
+        }
+    }
+
+    private void removeJobProgress(String jobId) {
+        synchronized (_jobProgressMap) {
+            Iterator<String> jobProgressMapIter = _jobProgressMap.keySet().iterator();
             while (jobProgressMapIter.hasNext()) {
-                HashMap<String, Integer> jobProgressItemMap = jobProgressMap.get(jobProgressMapIter.next());
+                HashMap<String, Integer> jobProgressItemMap = _jobProgressMap.get(jobProgressMapIter.next());
                 if (jobProgressItemMap.containsKey(jobId)) {
                     jobProgressItemMap.remove(jobId);
                     if (jobProgressItemMap.isEmpty()) {
@@ -155,13 +613,25 @@ public class QueueJobTracker extends DistributedQueueConsumer<QueueJob> implemen
 
     private void stopTrackingJob(JobWrapper jobWrapper) {
         try {
-            _activeJobs.remove(jobWrapper);
             jobWrapper.getJobDoneCallback().itemProcessed();
         } catch (Exception e) {
             _logger.info("Tracker: Problem while stopping job tracking.", e);
         }
     }
 
+    /**
+     * Returns a copy of the poll lanes, by provider, storage system URI or job type.
+     */
+    public Map<String, PollLane> getPollLanes() {
+        Map<String, PollLane> lanes = new TreeMap<String, PollLane>();
+        synchronized (_lanes) {
+            for (PollLane lane : _lanes.values()) {
+                lanes.put(lane.getName(), new PollLane(lane));
+            }
+        }
+        return lanes;
+    }
+
     public long getTrackingPeriodInMillis() {
         return _trackingPeriodInMillis;
     }
@@ -170,6 +640,46 @@ public class QueueJobTracker extends DistributedQueueConsumer<QueueJob> implemen
         this._trackingPeriodInMillis = trackingPeriodInMillis;
     }
 
+    public void setMinPollPeriodInMillis(long minPollPeriodInMillis) {
+        _minPollPeriodInMillis = minPollPeriodInMillis;
+    }
+
+    public void setMaxPollPeriodInMillis(long maxPollPeriodInMillis) {
+        _maxPollPeriodInMillis = maxPollPeriodInMillis;
+    }
+
+    public void setDispatchPeriodInMillis(long dispatchPeriodInMillis) {
+        _dispatchPeriodInMillis = dispatchPeriodInMillis;
+    }
+
+    public void setMaxConcurrentPolls(int maxConcurrentPolls) {
+        _maxConcurrentPolls = maxConcurrentPolls;
+    }
+
+    public void setMaxPollsPerDevice(int maxPollsPerDevice) {
+        _maxPollsPerDevice = maxPollsPerDevice;
+    }
+
+    /**
+     * @param minBatchSize the number of jobs due on a provider from which their status is read
+     *            in a batch, fewer jobs read their own status
+     */
+    public void setMinBatchSize(int minBatchSize) {
+        _minBatchSize = minBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        _maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * @param minPollPeriodsByJobType minimum poll periods in milliseconds by the simple class
+     *            name of the job, for the jobs which are not to be polled as often as the others
+     */
+    public void setMinPollPeriodsByJobType(Map<String, Long> minPollPeriodsByJobType) {
+        _minPollPeriodsByJobType = minPollPeriodsByJobType;
+    }
+
     private void setPollingStartTime(Job job) {
         if (job.getPollingStartTime() == 0L) {
             // set job polling start time
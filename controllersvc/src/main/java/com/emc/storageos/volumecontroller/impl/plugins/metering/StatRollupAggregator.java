@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.volumecontroller.impl.plugins.metering;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.emc.storageos.db.client.TimeSeriesMetadata.TimeBucket;
+import com.emc.storageos.db.client.model.Stat;
+import com.emc.storageos.db.client.model.StatRollup;
+
+/**
+ * Summarizes the stats of an hour into rollups per resource, project and tenant, and the
+ * hourly rollups of a day into daily rollups.
+ *
+ * The counters of a resource are increased by the difference between consecutive stats,
+ * starting from the last stat of the resource in the previous hour, so that the increase
+ * between two hours is counted once. A counter lower than the previous one was reset and
+ * increased by its value.
+ */
+public class StatRollupAggregator {
+    private static final Comparator<Stat> BY_TIME = new Comparator<Stat>() {
+        @Override
+        public int compare(Stat stat1, Stat stat2) {
+            return Long.compare(stat1.getTimeInMillis(), stat2.getTimeInMillis());
+        }
+    };
+
+    private final Map<URI, Stat> _previousSamples;
+    private final Map<URI, List<Stat>> _samples = new HashMap<URI, List<Stat>>();
+
+    /**
+     * @param previousSamples the last stat of each resource in the previous hour
+     */
+    public StatRollupAggregator(Map<URI, Stat> previousSamples) {
+        _previousSamples = previousSamples;
+    }
+
+    /**
+     * Adds a stat of the hour, from any thread
+     */
+    public synchronized void add(Stat stat) {
+        if (stat == null || stat.getResourceId() == null) {
+            return;
+        }
+        List<Stat> samples = _samples.get(stat.getResourceId());
+        if (samples == null) {
+            samples = new ArrayList<Stat>();
+            _samples.put(stat.getResourceId(), samples);
+        }
+        samples.add(stat);
+    }
+
+    /**
+     * Returns the last stat of each resource in the hour
+     */
+    public synchronized Map<URI, Stat> getLastSamples() {
+        Map<URI, Stat> lastSamples = new HashMap<URI, Stat>();
+        for (Map.Entry<URI, List<Stat>> entry : _samples.entrySet()) {
+            lastSamples.put(entry.getKey(), Collections.max(entry.getValue(), BY_TIME));
+        }
+        return lastSamples;
+    }
+
+    /**
+     * Returns the rollups of the resources of the hour, followed by the rollups of their
+     * projects and tenants.
+     *
+     * @param hour start of the hour in milliseconds
+     */
+    public synchronized List<StatRollup> rollupHour(long hour) {
+        List<StatRollup> resourceRollups = new ArrayList<StatRollup>(_samples.size());
+        Map<String, StatRollup> projectRollups = new LinkedHashMap<String, StatRollup>();
+        Map<String, StatRollup> tenantRollups = new LinkedHashMap<String, StatRollup>();
+        for (Map.Entry<URI, List<Stat>> entry : _samples.entrySet()) {
+            StatRollup rollup = rollupResource(hour, entry.getKey(), entry.getValue());
+            resourceRollups.add(rollup);
+            if (rollup.getProject() != null) {
+                StatRollup projectRollup = getRollup(projectRollups, hour, TimeBucket.HOUR,
+                        StatRollup.Scope.project, rollup.getProject(), rollup.getServiceType());
+                projectRollup.setTenant(rollup.getTenant());
+                addResource(projectRollup, rollup);
+            }
+            if (rollup.getTenant() != null) {
+                addResource(getRollup(tenantRollups, hour, TimeBucket.HOUR,
+                        StatRollup.Scope.tenant, rollup.getTenant(), rollup.getServiceType()), rollup);
+            }
+        }
+        List<StatRollup> rollups = new ArrayList<StatRollup>(resourceRollups);
+        rollups.addAll(projectRollups.values());
+        rollups.addAll(tenantRollups.values());
+        return rollups;
+    }
+
+    /**
+     * Returns the daily rollups of the hourly rollups of a day, one for each resource,
+     * project and tenant. The capacities are the ones of the last hour.
+     *
+     * @param day start of the day in milliseconds
+     * @param hourlyRollups rollups of the hours of the day, in any order
+     */
+    public static List<StatRollup> rollupDay(long day, Collection<StatRollup> hourlyRollups) {
+        List<StatRollup> sorted = new ArrayList<StatRollup>(hourlyRollups);
+        Collections.sort(sorted, new Comparator<StatRollup>() {
+            @Override
+            public int compare(StatRollup rollup1, StatRollup rollup2) {
+                return Long.compare(rollup1.getTimeInMillis(), rollup2.getTimeInMillis());
+            }
+        });
+        Map<String, StatRollup> dailyRollups = new LinkedHashMap<String, StatRollup>();
+        for (StatRollup hourly : sorted) {
+            StatRollup daily = getRollup(dailyRollups, day, TimeBucket.DAY,
+                    StatRollup.Scope.valueOf(hourly.getScope()), hourly.getScopeId(), hourly.getServiceType());
+            daily.setProject(hourly.getProject());
+            daily.setTenant(hourly.getTenant());
+            daily.setResourceCount(Math.max(daily.getResourceCount(), hourly.getResourceCount()));
+            daily.setSampleCount(daily.getSampleCount() + hourly.getSampleCount());
+            setCapacities(daily, hourly);
+            addCounters(daily, hourly);
+        }
+        return new ArrayList<StatRollup>(dailyRollups.values());
+    }
+
+    private StatRollup rollupResource(long hour, URI resourceId, List<Stat> samples) {
+        Collections.sort(samples, BY_TIME);
+        Stat last = samples.get(samples.size() - 1);
+        StatRollup rollup = newRollup(hour, TimeBucket.HOUR, StatRollup.Scope.resource, resourceId, last.getServiceType());
+        rollup.setProject(last.getProject());
+        rollup.setTenant(last.getTenant());
+        rollup.setResourceCount(1);
+        rollup.setSampleCount(samples.size());
+        rollup.setProvisionedCapacity(valueOf(last.getProvisionedCapacity()));
+        rollup.setAllocatedCapacity(valueOf(last.getAllocatedCapacity()));
+        rollup.setSnapshotCapacity(valueOf(last.getSnapshotCapacity()));
+        rollup.setSnapshotCount(last.getSnapshotCount() == null ? 0 : last.getSnapshotCount());
+        rollup.setObjCount(valueOf(last.getObjCount()));
+        rollup.setUserSize(valueOf(last.getUserSize()));
+
+        Stat previous = _previousSamples.get(resourceId);
+        for (Stat sample : samples) {
+            if (previous != null && previous.getTimeInMillis() < sample.getTimeInMillis()) {
+                rollup.setTotalIOs(rollup.getTotalIOs() + increase(previous.getTotalIOs(), sample.getTotalIOs()));
+                rollup.setReadIOs(rollup.getReadIOs() + increase(previous.getReadIOs(), sample.getReadIOs()));
+                rollup.setWriteIOs(rollup.getWriteIOs() + increase(previous.getWriteIOs(), sample.getWriteIOs()));
+                rollup.setReadHitIOs(rollup.getReadHitIOs() + increase(previous.getReadHitIOs(), sample.getReadHitIOs()));
+                rollup.setWriteHitIOs(rollup.getWriteHitIOs() + increase(previous.getWriteHitIOs(), sample.getWriteHitIOs()));
+                rollup.setKbytesTransferred(rollup.getKbytesTransferred()
+                        + increase(previous.getKbytesTransferred(), sample.getKbytesTransferred()));
+                rollup.setBandwidthIn(rollup.getBandwidthIn() + increase(previous.getBandwidthIn(), sample.getBandwidthIn()));
+                rollup.setBandwidthOut(rollup.getBandwidthOut() + increase(previous.getBandwidthOut(), sample.getBandwidthOut()));
+            }
+            previous = sample;
+        }
+        return rollup;
+    }
+
+    private static StatRollup getRollup(Map<String, StatRollup> rollups, long time, TimeBucket granularity,
+            StatRollup.Scope scope, URI scopeId, String serviceType) {
+        String key = StatRollup.key(scope.name(), scopeId, serviceType);
+        StatRollup rollup = rollups.get(key);
+        if (rollup == null) {
+            rollup = newRollup(time, granularity, scope, scopeId, serviceType);
+            rollups.put(key, rollup);
+        }
+        return rollup;
+    }
+
+    private static StatRollup newRollup(long time, TimeBucket granularity, StatRollup.Scope scope, URI scopeId,
+            String serviceType) {
+        StatRollup rollup = new StatRollup();
+        rollup.setTimeInMillis(time);
+        rollup.setGranularity(granularity.name());
+        rollup.setScope(scope.name());
+        rollup.setScopeId(scopeId);
+        rollup.setServiceType(serviceType);
+        return rollup;
+    }
+
+    /**
+     * Adds the rollup of a resource to the rollup of its project or tenant
+     */
+    private static void addResource(StatRollup total, StatRollup resource) {
+        total.setResourceCount(total.getResourceCount() + resource.getResourceCount());
+        total.setSampleCount(total.getSampleCount() + resource.getSampleCount());
+        total.setProvisionedCapacity(total.getProvisionedCapacity() + resource.getProvisionedCapacity());
+        total.setAllocatedCapacity(total.getAllocatedCapacity() + resource.getAllocatedCapacity());
+        total.setSnapshotCapacity(total.getSnapshotCapacity() + resource.getSnapshotCapacity());
+        total.setSnapshotCount(total.getSnapshotCount() + resource.getSnapshotCount());
+        total.setObjCount(total.getObjCount() + resource.getObjCount());
+        total.setUserSize(total.getUserSize() + resource.getUserSize());
+        addCounters(total, resource);
+    }
+
+    private static void setCapacities(StatRollup target, StatRollup source) {
+        target.setProvisionedCapacity(source.getProvisionedCapacity());
+        target.setAllocatedCapacity(source.getAllocatedCapacity());
+        target.setSnapshotCapacity(source.getSnapshotCapacity());
+        target.setSnapshotCount(source.getSnapshotCount());
+        target.setObjCount(source.getObjCount());
+        target.setUserSize(source.getUserSize());
+    }
+
+    private static void addCounters(StatRollup target, StatRollup source) {
+        target.setTotalIOs(target.getTotalIOs() + source.getTotalIOs());
+        target.setReadIOs(target.getReadIOs() + source.getReadIOs());
+        target.setWriteIOs(target.getWriteIOs() + source.getWriteIOs());
+        target.setReadHitIOs(target.getReadHitIOs() + source.getReadHitIOs());
+        target.setWriteHitIOs(target.getWriteHitIOs() + source.getWriteHitIOs());
+        target.setKbytesTransferred(target.getKbytesTransferred() + source.getKbytesTransferred());
+        target.setBandwidthIn(target.getBandwidthIn() + source.getBandwidthIn());
+        target.setBandwidthOut(target.getBandwidthOut() + source.getBandwidthOut());
+    }
+
+    private static long increase(Long previous, Long current) {
+        if (current == null || previous == null) {
+            return 0;
+        }
+        return current < previous ? current : current - previous;
+    }
+
+    private static long valueOf(Long value) {
+        return value == null ? 0 : value;
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.volumecontroller.impl.plugins.metering;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.emc.storageos.db.client.DbClient;
+import com.emc.storageos.db.client.TimeSeriesMetadata.TimeBucket;
+import com.emc.storageos.db.client.TimeSeriesQueryResult;
+import com.emc.storageos.db.client.model.Stat;
+import com.emc.storageos.db.client.model.StatDailyRollupTimeSeries;
+import com.emc.storageos.db.client.model.StatHourlyRollupTimeSeries;
+import com.emc.storageos.db.client.model.StatRollup;
+import com.emc.storageos.db.client.model.StatTimeSeries;
+import com.emc.storageos.db.client.model.TimeSeries;
+import com.emc.storageos.db.client.model.TimeSeriesSerializer;
+import com.emc.storageos.services.util.NamedThreadPoolExecutor;
+
+/**
+ * Rolls up the stats of each hour once the hour is over, and the hourly rollups of each
+ * day after its last hour, so that metering clients do not have to aggregate the raw stats.
+ * Run periodically on the leader controller node.
+ *
+ * Rollups are written with the same time and key when an hour is rolled up again, so the
+ * hours of the last catchUpHours are rolled up again when a node becomes leader, to cover
+ * the hours missed while there was no leader. A day whose rollup failed is rolled up again
+ * on the next run.
+ */
+public class StatRollupProcessor implements Runnable {
+    private static final Logger _logger = LoggerFactory.getLogger(StatRollupProcessor.class);
+    private static final int DEFAULT_CATCH_UP_HOURS = 24;
+    private static final int DEFAULT_DELAY_MINUTES = 10;
+    private static final int DEFAULT_QUERY_THREAD_COUNT = 10;
+
+    private DbClient _dbClient;
+    private int _catchUpHours = DEFAULT_CATCH_UP_HOURS;
+    private int _delayMinutes = DEFAULT_DELAY_MINUTES;
+    private int _queryThreadCount = DEFAULT_QUERY_THREAD_COUNT;
+    private ExecutorService _queryPool;
+
+    // last hour rolled up by this node and the last stat of each resource in it
+    private DateTime _lastHour;
+    private Map<URI, Stat> _lastSamples;
+    // last day rolled up by this node
+    private DateTime _lastDay;
+
+    public void setDbClient(DbClient dbClient) {
+        _dbClient = dbClient;
+    }
+
+    /**
+     * Sets the number of past hours rolled up on the first run
+     */
+    public void setCatchUpHours(int catchUpHours) {
+        _catchUpHours = catchUpHours;
+    }
+
+    /**
+     * Sets the time after the end of an hour when its stats are all inserted
+     */
+    public void setDelayMinutes(int delayMinutes) {
+        _delayMinutes = delayMinutes;
+    }
+
+    public void setQueryThreadCount(int queryThreadCount) {
+        _queryThreadCount = queryThreadCount;
+    }
+
+    /**
+     * Forgets the hours and days rolled up, so that the next run catches up from the last
+     * catchUpHours. Called when this node becomes leader, since the hours after the ones it
+     * rolled up may have been rolled up by another leader meanwhile.
+     */
+    public synchronized void reset() {
+        _lastHour = null;
+        _lastSamples = null;
+        _lastDay = null;
+    }
+
+    @Override
+    public synchronized void run() {
+        if (Thread.currentThread().isInterrupted()) {
+            return;
+        }
+        DateTime lastCompleteHour = startOfHour(new DateTime(DateTimeZone.UTC).minusMinutes(_delayMinutes)).minusHours(1);
+        DateTime hour = (_lastHour == null) ? lastCompleteHour.minusHours(_catchUpHours - 1) : _lastHour.plusHours(1);
+        if (_lastDay == null) {
+            // the days whose last hour is rolled up from now on
+            _lastDay = hour.withHourOfDay(0).minusDays(1);
+        }
+        try {
+            rollupDays();
+            for (; !hour.isAfter(lastCompleteHour); hour = hour.plusHours(1)) {
+                rollupHour(hour);
+                rollupDays();
+            }
+        } catch (Exception e) {
+            // the hour or day is rolled up again on the next run
+            _logger.error("Failed to roll up the stats up to {}", lastCompleteHour, e);
+        }
+    }
+
+    /**
+     * Rolls up the days whose hours are all rolled up, and which are not yet
+     */
+    private void rollupDays() throws Exception {
+        if (_lastHour == null) {
+            return;
+        }
+        DateTime lastCompleteDay = _lastHour.plusHours(1).withHourOfDay(0).minusDays(1);
+        for (DateTime day = _lastDay.plusDays(1); !day.isAfter(lastCompleteDay); day = day.plusDays(1)) {
+            rollupDay(day);
+            _lastDay = day;
+        }
+    }
+
+    /**
+     * Writes the hourly rollups of an hour
+     */
+    void rollupHour(DateTime hour) throws Exception {
+        long start = System.currentTimeMillis();
+        DateTime previousHour = hour.minusHours(1);
+        if (_lastSamples == null || !previousHour.equals(_lastHour)) {
+            StatRollupAggregator previous = new StatRollupAggregator(Collections.<URI, Stat> emptyMap());
+            queryStats(previousHour, previous);
+            _lastSamples = previous.getLastSamples();
+        }
+        StatRollupAggregator aggregator = new StatRollupAggregator(_lastSamples);
+        queryStats(hour, aggregator);
+        List<StatRollup> rollups = aggregator.rollupHour(hour.getMillis());
+        for (StatRollup rollup : rollups) {
+            _dbClient.insertTimeSeries(StatHourlyRollupTimeSeries.class, hour,
+                    StatRollup.key(rollup.getScope(), rollup.getScopeId(), rollup.getServiceType()), rollup);
+        }
+        _lastHour = hour;
+        _lastSamples = aggregator.getLastSamples();
+        _logger.info("Rolled up the stats of {} into {} rollups in {} ms",
+                new Object[] { hour, rollups.size(), System.currentTimeMillis() - start });
+    }
+
+    /**
+     * Writes the daily rollups of a day, from its hourly rollups
+     */
+    void rollupDay(DateTime day) throws Exception {
+        final List<StatRollup> hourlyRollups = new ArrayList<StatRollup>();
+        query(StatHourlyRollupTimeSeries.class, day, TimeBucket.DAY, new QueryResult<StatRollup>() {
+            @Override
+            protected synchronized void add(StatRollup rollup) {
+                hourlyRollups.add(rollup);
+            }
+        });
+        List<StatRollup> rollups = StatRollupAggregator.rollupDay(day.getMillis(), hourlyRollups);
+        for (StatRollup rollup : rollups) {
+            _dbClient.insertTimeSeries(StatDailyRollupTimeSeries.class, day,
+                    StatRollup.key(rollup.getScope(), rollup.getScopeId(), rollup.getServiceType()), rollup);
+        }
+        _logger.info("Rolled up {} hourly rollups of {} into {} daily rollups",
+                new Object[] { hourlyRollups.size(), day.toLocalDate(), rollups.size() });
+    }
+
+    private void queryStats(DateTime hour, final StatRollupAggregator aggregator) throws Exception {
+        query(StatTimeSeries.class, hour, TimeBucket.HOUR, new QueryResult<Stat>() {
+            @Override
+            protected void add(Stat stat) {
+                aggregator.add(stat);
+            }
+        });
+    }
+
+    private <T extends TimeSeriesSerializer.DataPoint> void query(Class<? extends TimeSeries> tsType,
+            DateTime time, TimeBucket bucket, QueryResult<T> result) throws Exception {
+        _dbClient.queryTimeSeries(tsType, time, bucket, result, getQueryPool());
+        if (result._error != null) {
+            throw new Exception("Failed to query " + tsType.getSimpleName() + " of " + time, result._error);
+        }
+    }
+
+    private ExecutorService getQueryPool() {
+        if (_queryPool == null) {
+            _queryPool = new NamedThreadPoolExecutor(StatRollupProcessor.class.getSimpleName(), _queryThreadCount);
+        }
+        return _queryPool;
+    }
+
+    private static DateTime startOfHour(DateTime time) {
+        return time.withMinuteOfHour(0).withSecondOfMinute(0).withMillisOfSecond(0);
+    }
+
+    /**
+     * Query result which fails the rollup when a shard of the bucket could not be read,
+     * rather than writing partial rollups
+     */
+    private abstract static class QueryResult<T extends TimeSeriesSerializer.DataPoint> implements TimeSeriesQueryResult<T> {
+        private volatile Throwable _error;
+
+        protected abstract void add(T data);
+
+        @Override
+        public void data(T data, long insertionTimeMs) {
+            if (data != null) {
+                add(data);
+            }
+        }
+
+        @Override
+        public void done() {
+        }
+
+        @Override
+        public void error(Throwable e) {
+            _error = e;
+        }
+    }
+}
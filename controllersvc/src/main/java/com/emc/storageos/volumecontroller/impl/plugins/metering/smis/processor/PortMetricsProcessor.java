@@ -29,6 +29,7 @@ import com.emc.storageos.db.client.constraint.ContainmentConstraint;
 import com.emc.storageos.db.client.constraint.URIQueryResultList;
 import com.emc.storageos.db.client.model.AbstractChangeTrackingSet;
 import com.emc.storageos.db.client.model.BlockObject;
+import com.emc.storageos.db.client.model.DataObject;
 import com.emc.storageos.db.client.model.DiscoveredDataObject;
 import com.emc.storageos.db.client.model.DiscoveredDataObject.CompatibilityStatus;
 import com.emc.storageos.db.client.model.DiscoveredDataObject.DiscoveryStatus;
@@ -68,6 +69,7 @@ public class PortMetricsProcessor {
 
     private static volatile DbClient _dbClient;
     private static volatile CoordinatorClient _coordinator;
+    private static final PortMetricsStore _metricsStore = new PortMetricsStore();
     @Autowired
     private static CustomConfigHandler customConfigHandler;
 
@@ -117,29 +119,28 @@ public class PortMetricsProcessor {
     public void processFEAdaptMetrics(Double percentBusy, Long iops, StorageHADomain haDomain, String statisticTime,
             boolean usingCIMTime) {
         StorageSystem system = _dbClient.queryObject(StorageSystem.class, haDomain.getStorageDeviceURI());
-        StringMap dbMetrics = haDomain.getMetrics();
+        PortMetricsStore.Record record = _metricsStore.getRecord(haDomain);
         Long sampleTime = (usingCIMTime) ? convertCIMStatisticTime(statisticTime) : Long.valueOf(statisticTime);
         _log.info(String.format("FEAdaptMetrics %s %s percentBusy %f  iops %d sampleTime %d",
                 haDomain.getAdapterName(), haDomain.getNativeGuid(), percentBusy, iops, sampleTime));
 
-        // Read the current value of the database variables
-        Long iopsValue = MetricsKeys.getLong(MetricsKeys.iopsValue, dbMetrics);
+        // Read the current value of the stored variables
+        Long iopsValue = record.getLong(MetricsKeys.iopsValue);
         Long iopsDelta = iops - iopsValue;
 
         // Scale percentBusy to 1/10 percent for computing the averages
         percentBusy *= 10.0;
         if (percentBusy >= 0.0) {
             computePercentBusyAverages(percentBusy.longValue(), 1000L, iopsDelta,
-                    dbMetrics, haDomain.getNativeGuid(),
+                    record, haDomain.getNativeGuid(),
                     haDomain.getAdapterName() + " [cpu]", sampleTime, system);
         }
 
-        // Save the new values and persist.
-        MetricsKeys.putLong(MetricsKeys.iopsValue, iops, dbMetrics);
+        // Save the new values.
+        record.putLong(MetricsKeys.iopsValue, iops);
 
-        MetricsKeys.putLong(MetricsKeys.lastSampleTime, sampleTime, dbMetrics);
-        haDomain.setMetrics(dbMetrics);
-        _dbClient.persistObject(haDomain);
+        record.putLong(MetricsKeys.lastSampleTime, sampleTime);
+        saveMetrics(haDomain, haDomain.getMetrics(), record, false);
     }
 
     /**
@@ -155,15 +156,15 @@ public class PortMetricsProcessor {
     public void processFEAdaptMetrics(Long idleTicks, Long cumTicks, Long iops,
             StorageHADomain haDomain, String statisticTime) {
         StorageSystem system = _dbClient.queryObject(StorageSystem.class, haDomain.getStorageDeviceURI());
-        StringMap dbMetrics = haDomain.getMetrics();
+        PortMetricsStore.Record record = _metricsStore.getRecord(haDomain);
         Long sampleTime = convertCIMStatisticTime(statisticTime);
         _log.info(String.format("FEAdaptMetrics %s %s idleTicks %d cumTicks %d iops %d sampleTime %d",
                 haDomain.getAdapterName(), haDomain.getNativeGuid(), idleTicks, cumTicks, iops, sampleTime));
 
-        // Read the current value of the database variables
-        Long idleTicksValue = MetricsKeys.getLong(MetricsKeys.idleTicksValue, dbMetrics);
-        Long cumTicksValue = MetricsKeys.getLong(MetricsKeys.cumTicksValue, dbMetrics);
-        Long iopsValue = MetricsKeys.getLong(MetricsKeys.iopsValue, dbMetrics);
+        // Read the current value of the stored variables
+        Long idleTicksValue = record.getLong(MetricsKeys.idleTicksValue);
+        Long cumTicksValue = record.getLong(MetricsKeys.cumTicksValue);
+        Long iopsValue = record.getLong(MetricsKeys.iopsValue);
 
         Long idleTicksDelta = idleTicks - idleTicksValue;
         // Handle roll over, where the number will be negative
@@ -181,18 +182,65 @@ public class PortMetricsProcessor {
         // If we have had a previous sample, and this sample has accumulated time
         if (busyTicks >= 0 && cumTicksValue > 0L && cumTicksDelta > 0L) {
             computePercentBusyAverages(busyTicks, cumTicksDelta, iopsDelta,
-                    dbMetrics, haDomain.getNativeGuid(),
+                    record, haDomain.getNativeGuid(),
                     haDomain.getAdapterName() + " [cpu]", sampleTime, system);
         }
 
-        // Save the new values and persist.
-        MetricsKeys.putLong(MetricsKeys.idleTicksValue, idleTicks, dbMetrics);
-        MetricsKeys.putLong(MetricsKeys.cumTicksValue, cumTicks, dbMetrics);
-        MetricsKeys.putLong(MetricsKeys.iopsValue, iops, dbMetrics);
+        // Save the new values.
+        record.putLong(MetricsKeys.idleTicksValue, idleTicks);
+        record.putLong(MetricsKeys.cumTicksValue, cumTicks);
+        record.putLong(MetricsKeys.iopsValue, iops);
 
-        MetricsKeys.putLong(MetricsKeys.lastSampleTime, sampleTime, dbMetrics);
-        haDomain.setMetrics(dbMetrics);
-        _dbClient.persistObject(haDomain);
+        record.putLong(MetricsKeys.lastSampleTime, sampleTime);
+        saveMetrics(haDomain, haDomain.getMetrics(), record, false);
+    }
+
+    /**
+     * Computes the cpu percent busy of an adapter from its short and long term averages,
+     * for arrays where the adapter cpu is the only metric (XtremIO).
+     *
+     * @param haDomain -- the StorageHADomain corresponding to this cpu.
+     * @param processingTime -- the ViPR time the sample was processed.
+     */
+    public void computeCpuPercentBusy(StorageHADomain haDomain, Long processingTime) {
+        StorageSystem system = _dbClient.queryObject(StorageSystem.class, haDomain.getStorageDeviceURI());
+        double emaFactor = getEmaFactor(DiscoveredDataObject.Type.valueOf(system.getSystemType()));
+        if (emaFactor > 1.0) {
+            emaFactor = 1.0;  // in case of invalid user input
+        }
+        PortMetricsStore.Record record = _metricsStore.getRecord(haDomain);
+        Double avgBusy = record.getDouble(MetricsKeys.avgPercentBusy);
+        Double emaBusy = record.getDouble(MetricsKeys.emaPercentBusy);
+        Double percentBusy = (avgBusy * emaFactor) + ((1 - emaFactor) * emaBusy);
+        record.putDouble(MetricsKeys.avgCpuPercentBusy, percentBusy);
+        record.putLong(MetricsKeys.lastProcessingTime, processingTime);
+        saveMetrics(haDomain, haDomain.getMetrics(), record, false);
+    }
+
+    /**
+     * Returns the array time of the last sample processed for an adapter.
+     *
+     * @param haDomain -- the StorageHADomain corresponding to the cpu.
+     * @return time in msec, 0 if no sample was processed.
+     */
+    public Long getLastSampleTime(StorageHADomain haDomain) {
+        return _metricsStore.getRecordView(haDomain).getLong(MetricsKeys.lastSampleTime);
+    }
+
+    /**
+     * Saves the metrics record of a port or adapter. The element itself is only persisted
+     * when its published metrics changed, or when other metrics of the element changed.
+     *
+     * @param element -- the StoragePort or StorageHADomain
+     * @param dbMetrics -- the metrics of the element
+     * @param record -- the updated metrics record of the element
+     * @param changed -- true if other metrics of the element changed
+     */
+    private void saveMetrics(DataObject element, StringMap dbMetrics, PortMetricsStore.Record record, boolean changed) {
+        if (_metricsStore.publish(record, dbMetrics) || changed) {
+            _dbClient.persistObject(element);
+        }
+        _metricsStore.saveRecord(record);
     }
 
     /**
@@ -207,14 +255,15 @@ public class PortMetricsProcessor {
      */
     public void processFEPortMetrics(Long kbytes, Long iops, StoragePort port, Long sampleTime) {
         StringMap dbMetrics = port.getMetrics();
+        PortMetricsStore.Record record = _metricsStore.getRecord(port);
         _log.info(String.format("FEPortMetrics %s %s kbytes %d iops %d sampleTime %d",
                 port.getNativeGuid(), portName(port), kbytes, iops, sampleTime));
 
-        // Read the current value of the database variables
+        // Read the current value of the stored variables
         StorageSystem system = _dbClient.queryObject(StorageSystem.class, port.getStorageDevice());
-        Long iopsValue = MetricsKeys.getLong(MetricsKeys.iopsValue, dbMetrics);
-        Long kbytesValue = MetricsKeys.getLong(MetricsKeys.kbytesValue, dbMetrics);
-        Long lastSampleTimeValue = MetricsKeys.getLong(MetricsKeys.lastSampleTime, dbMetrics);
+        Long iopsValue = record.getLong(MetricsKeys.iopsValue);
+        Long kbytesValue = record.getLong(MetricsKeys.kbytesValue);
+        Long lastSampleTimeValue = record.getLong(MetricsKeys.lastSampleTime);
 
         // Compute the deltas, numerator, and denominator.
         Long kbytesDelta = kbytes - kbytesValue;
@@ -244,28 +293,27 @@ public class PortMetricsProcessor {
         // and the kbytesDelta is not negative, add it to the average.
         if (kbytesDelta >= 0 && secondsDelta > 0 && secondsDelta < SECONDS_PER_YEAR) {
             computePercentBusyAverages(kbytesDelta / secondsDelta, maxKBytesPerSecond, iopsDelta,
-                    dbMetrics, port.getNativeGuid(), portName(port), sampleTime, system);
+                    record, port.getNativeGuid(), portName(port), sampleTime, system);
             // Compute the current port metric.
             List<StoragePort> portList = new ArrayList<StoragePort>();
             portList.add(port);
             updateStaticPortUsage(portList);
-            Double portMetric = computePortMetric(port);
-            MetricsKeys.putDouble(MetricsKeys.portMetric, portMetric, dbMetrics);
-            MetricsKeys.putLong(MetricsKeys.lastProcessingTime, System.currentTimeMillis(), dbMetrics);
+            Double portMetric = computePortMetric(port, record);
+            record.putDouble(MetricsKeys.portMetric, portMetric);
+            record.putLong(MetricsKeys.lastProcessingTime, System.currentTimeMillis());
         }
 
-        // Save the new values and persist.
-        MetricsKeys.putLong(MetricsKeys.kbytesValue, kbytes, dbMetrics);
-        MetricsKeys.putLong(MetricsKeys.iopsValue, iops, dbMetrics);
-        MetricsKeys.putLong(MetricsKeys.lastSampleTime, sampleTime, dbMetrics);
+        // Save the new values.
+        record.putLong(MetricsKeys.kbytesValue, kbytes);
+        record.putLong(MetricsKeys.iopsValue, iops);
+        record.putLong(MetricsKeys.lastSampleTime, sampleTime);
         // Update the Unmanaged Initiator and Volume Count.
         // We count meta-members for the volumes only if it's a VMAX2
         boolean countMetaMembers = (
                 system.getSystemType().equals(DiscoveredDataObject.Type.vmax.name())
                 && !system.checkIfVmax3());
-        updateUnmanagedVolumeAndInitiatorCounts(port, countMetaMembers, dbMetrics);
-        port.setMetrics(dbMetrics);
-        _dbClient.persistObject(port);
+        boolean countsChanged = updateUnmanagedVolumeAndInitiatorCounts(port, countMetaMembers, dbMetrics);
+        saveMetrics(port, dbMetrics, record, countsChanged);
     }
 
     /**
@@ -280,14 +328,15 @@ public class PortMetricsProcessor {
      */
     public void processIPPortMetrics(Long kbytes, Long iops, StoragePort port, Long sampleTime) {
         StringMap dbMetrics = port.getMetrics();
+        PortMetricsStore.Record record = _metricsStore.getRecord(port);
         _log.info(String.format("IP PortMetrics %s %s kbytes %d iops %d sampleTime %d",
                 port.getNativeGuid(), portName(port), kbytes, iops, sampleTime));
 
-        // Read the current value of the database variables
+        // Read the current value of the stored variables
         StorageSystem system = _dbClient.queryObject(StorageSystem.class, port.getStorageDevice());
-        Long iopsValue = MetricsKeys.getLong(MetricsKeys.iopsValue, dbMetrics);
-        Long kbytesValue = MetricsKeys.getLong(MetricsKeys.kbytesValue, dbMetrics);
-        Long lastSampleTimeValue = MetricsKeys.getLong(MetricsKeys.lastSampleTime, dbMetrics);
+        Long iopsValue = record.getLong(MetricsKeys.iopsValue);
+        Long kbytesValue = record.getLong(MetricsKeys.kbytesValue);
+        Long lastSampleTimeValue = record.getLong(MetricsKeys.lastSampleTime);
 
         // Compute the deltas, numerator, and denominator.
         Long kbytesDelta = kbytes - kbytesValue;
@@ -317,23 +366,22 @@ public class PortMetricsProcessor {
         // and the kbytesDelta is not negative, add it to the average.
         if (kbytesDelta >= 0 && secondsDelta > 0 && secondsDelta < SECONDS_PER_YEAR) {
             computePercentBusyAverages(kbytesDelta / secondsDelta, maxKBytesPerSecond, iopsDelta,
-                    dbMetrics, port.getNativeGuid(), portName(port), sampleTime, system);
+                    record, port.getNativeGuid(), portName(port), sampleTime, system);
             // Compute the current port metric.
             List<StoragePort> portList = new ArrayList<StoragePort>();
             portList.add(port);
             updateStaticPortUsage(portList);
-            Double portMetric = computePortMetric(port);
-            MetricsKeys.putDouble(MetricsKeys.portMetric, portMetric, dbMetrics);
-            MetricsKeys.putLong(MetricsKeys.lastProcessingTime, System.currentTimeMillis(), dbMetrics);
+            Double portMetric = computePortMetric(port, record);
+            record.putDouble(MetricsKeys.portMetric, portMetric);
+            record.putLong(MetricsKeys.lastProcessingTime, System.currentTimeMillis());
         }
 
-        // Save the new values and persist.
-        MetricsKeys.putLong(MetricsKeys.kbytesValue, kbytes, dbMetrics);
-        MetricsKeys.putLong(MetricsKeys.iopsValue, iops, dbMetrics);
-        MetricsKeys.putLong(MetricsKeys.lastSampleTime, sampleTime, dbMetrics);
+        // Save the new values.
+        record.putLong(MetricsKeys.kbytesValue, kbytes);
+        record.putLong(MetricsKeys.iopsValue, iops);
+        record.putLong(MetricsKeys.lastSampleTime, sampleTime);
 
-        port.setMetrics(dbMetrics);
-        _dbClient.persistObject(port);
+        saveMetrics(port, dbMetrics, record, false);
     }
 
     /**
@@ -345,21 +393,21 @@ public class PortMetricsProcessor {
      * average and the second term is the longer term average.
      * 
      * @param port -- StoragePort the metric is to be computed for
+     * @param record -- the metrics record of the port
      * @return Double indicating the dbMetric b/w 0.0 < value <= 100.0
      */
-    Double computePortMetric(StoragePort port) {
+    Double computePortMetric(StoragePort port, PortMetricsStore.Record record) {
         StorageSystem system = _dbClient.queryObject(StorageSystem.class, port.getStorageDevice());
         DiscoveredDataObject.Type type = DiscoveredDataObject.Type.valueOf(system.getSystemType());
-        StringMap portMap = port.getMetrics();
         double emaFactor = getEmaFactor(DiscoveredDataObject.Type.valueOf(system.getSystemType()));
         if (emaFactor > 1.0)
         {
             emaFactor = 1.0;  // in case of invalid user input
         }
-        Double portAvgBusy = MetricsKeys.getDouble(MetricsKeys.avgPercentBusy, portMap);
-        Double portEmaBusy = MetricsKeys.getDouble(MetricsKeys.emaPercentBusy, portMap);
+        Double portAvgBusy = record.getDouble(MetricsKeys.avgPercentBusy);
+        Double portEmaBusy = record.getDouble(MetricsKeys.emaPercentBusy);
         Double portPercentBusy = (portAvgBusy * emaFactor) + ((1 - emaFactor) * portEmaBusy);
-        MetricsKeys.putDouble(MetricsKeys.avgPortPercentBusy, portPercentBusy, port.getMetrics());
+        record.putDouble(MetricsKeys.avgPortPercentBusy, portPercentBusy);
 
         // Calculate the overall port metric, which is a percent 0-100%
         Double cpuAvgBusy = null;
@@ -371,13 +419,13 @@ public class PortMetricsProcessor {
                 type == DiscoveredDataObject.Type.vnxblock ||
                 type == DiscoveredDataObject.Type.vplex) {
             StorageHADomain haDomain = _dbClient.queryObject(StorageHADomain.class, port.getStorageHADomain());
-            StringMap cpuMap = haDomain.getMetrics();
+            PortMetricsStore.Record cpuRecord = _metricsStore.getRecordView(haDomain);
 
-            cpuAvgBusy = MetricsKeys.getDouble(MetricsKeys.avgPercentBusy, cpuMap);
-            cpuEmaBusy = MetricsKeys.getDouble(MetricsKeys.emaPercentBusy, cpuMap);
+            cpuAvgBusy = cpuRecord.getDouble(MetricsKeys.avgPercentBusy);
+            cpuEmaBusy = cpuRecord.getDouble(MetricsKeys.emaPercentBusy);
             // Update port bandwidth and cpu usage average. These are used by the UI.
             Double cpuPercentBusy = (cpuAvgBusy * emaFactor) + ((1 - emaFactor) * cpuEmaBusy);
-            MetricsKeys.putDouble(MetricsKeys.avgCpuPercentBusy, cpuPercentBusy, port.getMetrics());
+            record.putDouble(MetricsKeys.avgCpuPercentBusy, cpuPercentBusy);
 
             portMetricDouble += cpuPercentBusy;
             portMetricDouble /= 2.0;        // maintain on a scale of 0 - 100%
@@ -393,23 +441,23 @@ public class PortMetricsProcessor {
 
     /**
      * Common routine used for both port and cpu metrics to update the short and long term
-     * averages. Will compute percent busy of whatever is presented.
+     * averages, and adds the sample to the hourly and daily rollups. Will compute percent busy of whatever is presented.
      * 
      * @param numeratorDelta -- The numerator of the percent calculated as the delta between two samplpes.
      * @param denomDelta -- The denominator of the percent calculated as the delta between two samples.
      * @param iopsDelta -- The iops delta between the two samples. Used for informational purposes now.
-     * @param dbMetrics -- The db metrics field of the appropriate structure (StoragePort or StorageHADomain).
+     * @param record -- The metrics record of the appropriate structure (StoragePort or StorageHADomain).
      * @param nativeGuid -- The native guid of the element (for logging).
      * @param name -- The name of the port or cpu (for logging).
      * @param sampleTime -- The sample time of this sample.
      */
     private void computePercentBusyAverages(Long numeratorDelta, Long denomDelta, Long iopsDelta,
-            StringMap dbMetrics, String nativeGuid, String name, Long sampleTime, StorageSystem system) {
+            PortMetricsStore.Record record, String nativeGuid, String name, Long sampleTime, StorageSystem system) {
         // Read existing values.
-        Long avgCountValue = MetricsKeys.getLong(MetricsKeys.avgCount, dbMetrics);
-        Long avgStartTimeValue = MetricsKeys.getLong(MetricsKeys.avgStartTime, dbMetrics);
-        Double avgPercentBusyValue = MetricsKeys.getDouble(MetricsKeys.avgPercentBusy, dbMetrics);
-        Double emaPercentBusy = MetricsKeys.getDouble(MetricsKeys.emaPercentBusy, dbMetrics);
+        Long avgCountValue = record.getLong(MetricsKeys.avgCount);
+        Long avgStartTimeValue = record.getLong(MetricsKeys.avgStartTime);
+        Double avgPercentBusyValue = record.getDouble(MetricsKeys.avgPercentBusy);
+        Double emaPercentBusy = record.getDouble(MetricsKeys.emaPercentBusy);
 
         // Compute percentbBusy and avgPercentBusy.
         Double percentBusy = (numeratorDelta * 100.0 / denomDelta);
@@ -439,28 +487,29 @@ public class PortMetricsProcessor {
         Long currentTime = System.currentTimeMillis();
         Long averagePeriod = getMinutesToAverage(DiscoveredDataObject.Type.valueOf(system.getSystemType()))
                 * MSEC_PER_MIN;
+        double emaFactor = getEmaFactor(DiscoveredDataObject.Type.valueOf(system.getSystemType()));
+        if (emaFactor > 1.0)
+        {
+            emaFactor = 1.0;  // in case of invalid user input
+        }
         avgCountValue++;
         if ((currentTime - avgStartTimeValue) > averagePeriod) {
             _log.debug("Resetting average for: " + nativeGuid + " " + name);
             avgCountValue = 0L;
-            MetricsKeys.putLong(MetricsKeys.avgStartTime, currentTime, dbMetrics);
-            double emaFactor = getEmaFactor(DiscoveredDataObject.Type.valueOf(system.getSystemType()));
-            if (emaFactor > 1.0)
-            {
-                emaFactor = 1.0;  // in case of invalid user input
-            }
+            record.putLong(MetricsKeys.avgStartTime, currentTime);
             if (emaPercentBusy.isNaN() || emaPercentBusy.isInfinite() || emaPercentBusy < 0.0) {
                 _log.error("emaPercentBusy invalid: " + emaPercentBusy.toString());
                 emaPercentBusy = avgPercentBusy;
             }
             emaPercentBusy = avgPercentBusy * emaFactor + (1.0 - emaFactor) * emaPercentBusy;
-            MetricsKeys.putDouble(MetricsKeys.emaPercentBusy, emaPercentBusy, dbMetrics);
+            record.putDouble(MetricsKeys.emaPercentBusy, emaPercentBusy);
         }
 
-        // Save new values and persist
-        MetricsKeys.putLong(MetricsKeys.avgCount, avgCountValue, dbMetrics);
-        MetricsKeys.putDouble(MetricsKeys.avgPercentBusy, avgPercentBusy, dbMetrics);
-        MetricsKeys.putLong(MetricsKeys.lastSampleTime, currentTime, dbMetrics);
+        // Save new values
+        record.putLong(MetricsKeys.avgCount, avgCountValue);
+        record.putDouble(MetricsKeys.avgPercentBusy, avgPercentBusy);
+        record.putLong(MetricsKeys.lastSampleTime, currentTime);
+        record.addSample(percentBusy, sampleTime, emaFactor);
 
         // Log results
         Date sampleDate = new Date(sampleTime);
@@ -530,11 +579,12 @@ public class PortMetricsProcessor {
                         for (String sp : storagePorts) {
 
                             StoragePort storagePort = _dbClient.queryObject(StoragePort.class, URI.create(sp));
+                            PortMetricsStore.Record record = _metricsStore.getRecordView(storagePort);
                             portPercentBusy = portPercentBusy
-                                    + MetricsKeys.getDouble(MetricsKeys.avgPortPercentBusy, storagePort.getMetrics());
+                                    + record.getDouble(MetricsKeys.avgPortPercentBusy);
 
                             percentBusy = percentBusy
-                                    + MetricsKeys.getDouble(MetricsKeys.avgPercentBusy, storagePort.getMetrics());
+                                    + record.getDouble(MetricsKeys.avgPercentBusy);
                         }
                         noOfInterface = storagePorts.size();
                         if (noOfInterface != 0) {
@@ -610,13 +660,13 @@ public class PortMetricsProcessor {
                     storagePorts.add(storagePortItr.next());
                 }
 
-                if (!metricsValid(storageDevice, storagePorts)) {
+                Map<URI, PortMetricsStore.Record> records = _metricsStore.getRecords(storagePorts);
+                if (!metricsValid(storageDevice, storagePorts, records)) {
                     // The metrics are not valid for this array. Log it and return 50.0%.
                     _log.info(String.format("Port metrics not valid for array %s (%s), using 50.0 percent for array metric",
                             storageDevice.getLabel(), storageSystemURI.toString()));
                     // clear the previous value
-                    storageDevice.setAveragePortMetrics(-1.0);
-                    _dbClient.updateObject(storageDevice);
+                    updateAveragePortMetrics(storageDevice, -1.0);
                     return 50.0;
                 }
 
@@ -624,7 +674,7 @@ public class PortMetricsProcessor {
                 for (StoragePort storagePort : storagePorts) {
                     // if port is usable, compute its port metrics
                     if (isPortUsable(storagePort, false)) {
-                        portMetricsSum += MetricsKeys.getDouble(MetricsKeys.portMetric, storagePort.getMetrics());
+                        portMetricsSum += records.get(storagePort.getId()).getDouble(MetricsKeys.portMetric);
                         usablePortCount++;
                     }
                 }
@@ -633,8 +683,7 @@ public class PortMetricsProcessor {
                 _log.info(String.format("Array %s metric %f", storageDevice.getLabel(), storageSystemPortsMetrics));
 
                 // persisted into storage system object for later retrieval
-                storageDevice.setAveragePortMetrics(storageSystemPortsMetrics);
-                _dbClient.updateObject(storageDevice);
+                updateAveragePortMetrics(storageDevice, storageSystemPortsMetrics);
 
             } else {
 
@@ -651,20 +700,20 @@ public class PortMetricsProcessor {
                     storageHADomains.add(storageHADomainItr.next());
                 }
 
-                if (!isMetricsValid(storageDevice, storageHADomains)) {
+                Map<URI, PortMetricsStore.Record> records = _metricsStore.getRecords(storageHADomains);
+                if (!isMetricsValid(storageDevice, storageHADomains, records)) {
                     // The metrics are not valid for this array. Log it and return 50.0%.
                     _log.info(String.format("CPU usage metrics not valid for array %s (%s), using 50.0 percent for array metric",
                             storageDevice.getLabel(), storageSystemURI.toString()));
                     // clear the previous value
-                    storageDevice.setAveragePortMetrics(-1.0);
-                    _dbClient.updateObject(storageDevice);
+                    updateAveragePortMetrics(storageDevice, -1.0);
                     return 50.0;
                 }
 
                 // compute sum of all CPU usages
                 for (StorageHADomain storageHADomain : storageHADomains) {
                     if (!storageHADomain.getInactive()) {
-                        portMetricsSum += MetricsKeys.getDouble(MetricsKeys.avgCpuPercentBusy, storageHADomain.getMetrics());
+                        portMetricsSum += records.get(storageHADomain.getId()).getDouble(MetricsKeys.avgCpuPercentBusy);
                         usablePortCount++;
                     }
                 }
@@ -673,8 +722,7 @@ public class PortMetricsProcessor {
                 _log.info(String.format("Array %s CPU usage %f", storageDevice.getLabel(), storageSystemPortsMetrics));
 
                 // persisted into storage system object for later retrieval
-                storageDevice.setAveragePortMetrics(storageSystemPortsMetrics);
-                _dbClient.updateObject(storageDevice);
+                updateAveragePortMetrics(storageDevice, storageSystemPortsMetrics);
 
             }
         }
@@ -683,6 +731,16 @@ public class PortMetricsProcessor {
         return storageSystemPortsMetrics;
     }
 
+    /**
+     * Persists the storage system's average port metrics if they changed.
+     */
+    private void updateAveragePortMetrics(StorageSystem storageDevice, Double averagePortMetrics) {
+        if (!averagePortMetrics.equals(storageDevice.getAveragePortMetrics())) {
+            storageDevice.setAveragePortMetrics(averagePortMetrics);
+            _dbClient.updateObject(storageDevice);
+        }
+    }
+
     /**
      * Computes the usage of a set of candidate StoragePorts.
      * This is done by finding all the ExportMasks containing the ports, and then
@@ -696,17 +754,18 @@ public class PortMetricsProcessor {
     public Map<StoragePort, Long> computeStoragePortUsage(
             List<StoragePort> candidatePorts, StorageSystem system, boolean updatePortUsages) {
         Map<StoragePort, Long> usages = new HashMap<StoragePort, Long>();
-        boolean metricsValid = metricsValid(system, candidatePorts);
+        Map<URI, PortMetricsStore.Record> records = _metricsStore.getRecords(candidatePorts);
+        boolean metricsValid = metricsValid(system, candidatePorts, records);
 
         // Disqualify any ports over one of their ceilings
-        List<StoragePort> portsUnderCeiling = eliminatePortsOverCeiling(candidatePorts, system, true);
+        List<StoragePort> portsUnderCeiling = eliminatePortsOverCeiling(candidatePorts, system, true, records);
 
         for (StoragePort sp : portsUnderCeiling) {
             // only compute port metric for front end port
             if (sp.getPortType().equals(StoragePort.PortType.frontend.name())) {
                 Long usage = 0L;
                 if (metricsValid) {
-                    Double metric = MetricsKeys.getDouble(MetricsKeys.portMetric, sp.getMetrics());
+                    Double metric = records.get(sp.getId()).getDouble(MetricsKeys.portMetric);
                     usage = new Double(metric * 10.0).longValue();
                 } else {
                     usage = MetricsKeys.getLong(MetricsKeys.volumeCount, sp.getMetrics());
@@ -732,6 +791,7 @@ public class PortMetricsProcessor {
     public void setDbClient(DbClient dbClient) {
         if (_dbClient == null) {
             _dbClient = dbClient;
+            _metricsStore.setDbClient(dbClient);
         }
     }
 
@@ -739,22 +799,27 @@ public class PortMetricsProcessor {
         return _dbClient;
     }
 
+    public PortMetricsStore getMetricsStore() {
+        return _metricsStore;
+    }
+
     /**
      * Eliminates ports from the candidate list that are over one of their ceilings.
      * 
      * @param ports -- List<StoragePort> the allocation candidates
      * @param system -- StorageSystem
      * @param updatePortUsages -- if true, recomputes the static use counts for initiators and volumes
+     * @param records -- the metrics records of the ports
      * @return updated list of candidate ports
      */
     private List<StoragePort> eliminatePortsOverCeiling(
-            List<StoragePort> ports, StorageSystem system, boolean updatePortUsages) {
+            List<StoragePort> ports, StorageSystem system, boolean updatePortUsages, Map<URI, PortMetricsStore.Record> records) {
         List<StoragePort> portList = new ArrayList<StoragePort>();
         for (StoragePort sp : ports) {
             // since this method is invoked locally, port metrics are ready
             // updated. Hence, no need to update in its callee --set "false" to avoid
             // redundant update
-            boolean overCeiling = isPortOverCeiling(sp, system, updatePortUsages);
+            boolean overCeiling = isPortOverCeiling(sp, system, updatePortUsages, records);
             if (!overCeiling) {
                 portList.add(sp);
             }
@@ -771,8 +836,14 @@ public class PortMetricsProcessor {
      * @return
      */
     public boolean isPortOverCeiling(StoragePort sp, StorageSystem system, boolean updatePortUsages) {
+        return isPortOverCeiling(sp, system, updatePortUsages, _metricsStore.getRecords(Collections.singletonList(sp)));
+    }
+
+    private boolean isPortOverCeiling(StoragePort sp, StorageSystem system, boolean updatePortUsages,
+            Map<URI, PortMetricsStore.Record> records) {
         boolean overCeiling = false;
-        boolean metricsValid = metricsValid(system, Collections.singletonList(sp));
+        boolean metricsValid = metricsValid(system, Collections.singletonList(sp), records);
+        PortMetricsStore.Record record = records.get(sp.getId());
 
         // to optimize performance, avoid redundant update port usage. When this method invoked
         // locally, port usage is already computed. Hence, usage values generally do not need to update
@@ -798,7 +869,7 @@ public class PortMetricsProcessor {
         // We only eliminate ports over the port percent busy or cpu percent busy if metrics are valid.
         // Otherwise we would be eliminating them based on stale (old) data.
         if (metricsValid) {
-            Double portPercentBusy = MetricsKeys.getDouble(MetricsKeys.avgPortPercentBusy, metrics);
+            Double portPercentBusy = record.getDoubleOrNull(MetricsKeys.avgPortPercentBusy);
             if (portPercentBusy == null) {
                 portPercentBusy = 0.0;
             }
@@ -811,7 +882,7 @@ public class PortMetricsProcessor {
                 overCeiling = true;
             }
 
-            Double cpuPercentBusy = MetricsKeys.getDouble(MetricsKeys.avgCpuPercentBusy, metrics);
+            Double cpuPercentBusy = record.getDoubleOrNull(MetricsKeys.avgCpuPercentBusy);
             if (cpuPercentBusy == null) {
                 cpuPercentBusy = 0.0;
             }
@@ -822,18 +893,36 @@ public class PortMetricsProcessor {
                         portName(sp), cpuPercentBusy.intValue(), ceiling));
                 overCeiling = true;
             }
-        } else {
+        }
+
+        boolean changed = false;
+        if (!metricsValid) {
             // Clear out the avgPortPercentBusy and avgCpuPercentBusy so UI will show N/A.
-            metrics.put(MetricsKeys.avgPortPercentBusy.name(), "");
-            metrics.put(MetricsKeys.avgCpuPercentBusy.name(), "");
+            changed |= putIfChanged(MetricsKeys.avgPortPercentBusy, "", metrics);
+            changed |= putIfChanged(MetricsKeys.avgCpuPercentBusy, "", metrics);
         }
 
         // Save the over ceiling value for display on the UI.
-        MetricsKeys.putBoolean(MetricsKeys.allocationDisqualified, overCeiling, sp.getMetrics());
-        _dbClient.persistObject(sp);
+        changed |= putIfChanged(MetricsKeys.allocationDisqualified, Boolean.toString(overCeiling), metrics);
+        if (changed) {
+            _dbClient.persistObject(sp);
+        }
         return overCeiling;
     }
 
+    /**
+     * Puts the value into the metrics map unless it is there already.
+     *
+     * @return true if the map changed
+     */
+    private static boolean putIfChanged(MetricsKeys key, String value, StringMap metrics) {
+        if (value.equals(metrics.get(key.name()))) {
+            return false;
+        }
+        metrics.put(key.name(), value);
+        return true;
+    }
+
     /**
      * Determines if all the ports have valid (dynamic) metrics. If so
      * returns true; otherwise returns false, which would cause static usage
@@ -847,6 +936,14 @@ public class PortMetricsProcessor {
         if (candidatePorts == null || candidatePorts.isEmpty()) {
             return false;
         }
+        return metricsValid(system, candidatePorts, _metricsStore.getRecords(candidatePorts));
+    }
+
+    private boolean metricsValid(StorageSystem system, List<StoragePort> candidatePorts,
+            Map<URI, PortMetricsStore.Record> records) {
+        if (candidatePorts == null || candidatePorts.isEmpty()) {
+            return false;
+        }
 
         // if port metrics allocation is disabled, than ports metrics are not used for
         // allocation. Just used volume count
@@ -860,7 +957,7 @@ public class PortMetricsProcessor {
             if (!port.getPortType().equals(StoragePort.PortType.frontend.name())) {
                 continue;
             }
-            Long lastProcessingTime = MetricsKeys.getLong(MetricsKeys.lastProcessingTime, port.getMetrics());
+            Long lastProcessingTime = records.get(port.getId()).getLong(MetricsKeys.lastProcessingTime);
             if (lastProcessingTime == 0 /* no sample received */
                     || (currentTime - lastProcessingTime) > MAX_SAMPLE_AGE_MSEC) {
                 return false;
@@ -882,6 +979,14 @@ public class PortMetricsProcessor {
         if (candidateAdapters == null || candidateAdapters.isEmpty()) {
             return false;
         }
+        return isMetricsValid(system, candidateAdapters, _metricsStore.getRecords(candidateAdapters));
+    }
+
+    private boolean isMetricsValid(StorageSystem system, List<StorageHADomain> candidateAdapters,
+            Map<URI, PortMetricsStore.Record> records) {
+        if (candidateAdapters == null || candidateAdapters.isEmpty()) {
+            return false;
+        }
 
         // if port metrics allocation is disabled, than ports metrics are not used for allocation.
         if (!isPortMetricsAllocationEnabled(DiscoveredDataObject.Type.valueOf(system.getSystemType()))) {
@@ -890,7 +995,7 @@ public class PortMetricsProcessor {
 
         Long currentTime = System.currentTimeMillis();
         for (StorageHADomain adapter : candidateAdapters) {
-            Long lastProcessingTime = MetricsKeys.getLong(MetricsKeys.lastProcessingTime, adapter.getMetrics());
+            Long lastProcessingTime = records.get(adapter.getId()).getLong(MetricsKeys.lastProcessingTime);
             if (lastProcessingTime == 0 /* no sample received */
                     || (currentTime - lastProcessingTime) > MAX_SAMPLE_AGE_MSEC) {
                 return false;
@@ -1055,10 +1160,12 @@ public class PortMetricsProcessor {
                 volumeCount += MetricsKeys.getLong(MetricsKeys.unmanagedVolumeCount, sp.getMetrics());
             }
 
-            // Update the counts.
-            MetricsKeys.putLong(MetricsKeys.initiatorCount, initiatorCount, sp.getMetrics());
-            MetricsKeys.putLong(MetricsKeys.volumeCount, volumeCount, sp.getMetrics());
-            _dbClient.persistObject(sp);
+            // Update the counts if they changed.
+            boolean changed = putIfChanged(MetricsKeys.initiatorCount, initiatorCount.toString(), sp.getMetrics());
+            changed |= putIfChanged(MetricsKeys.volumeCount, volumeCount.toString(), sp.getMetrics());
+            if (changed) {
+                _dbClient.persistObject(sp);
+            }
 
             _log.debug(String.format("Port %s %s updated initiatorCount %d volumeCount %d",
                     sp.getNativeGuid(), portName(sp), initiatorCount, volumeCount));
@@ -1176,8 +1283,9 @@ public class PortMetricsProcessor {
      * @param sp -- StoragePort
      * @param countMetaMembers -- count meta members instead of volumes
      * @param dbMetrics -- the MetricsKeys values from the database record to be updated
+     * @return true if the counts changed
      */
-    private void updateUnmanagedVolumeAndInitiatorCounts(
+    private boolean updateUnmanagedVolumeAndInitiatorCounts(
             StoragePort sp, boolean countMetaMembers, StringMap dbMetrics) {
         Long volumeCount = 0L;
         Long initiatorCount = 0L;
@@ -1228,8 +1336,9 @@ public class PortMetricsProcessor {
                 initiatorCount += unmanagedInitiators;
             }
         }
-        MetricsKeys.putLong(MetricsKeys.unmanagedInitiatorCount, initiatorCount, dbMetrics);
-        MetricsKeys.putLong(MetricsKeys.unmanagedVolumeCount, volumeCount, dbMetrics);
+        boolean changed = putIfChanged(MetricsKeys.unmanagedInitiatorCount, initiatorCount.toString(), dbMetrics);
+        changed |= putIfChanged(MetricsKeys.unmanagedVolumeCount, volumeCount.toString(), dbMetrics);
+        return changed;
     }
 
     /**
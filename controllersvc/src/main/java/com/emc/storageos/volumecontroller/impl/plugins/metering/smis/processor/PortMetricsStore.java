@@ -0,0 +1,648 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.volumecontroller.impl.plugins.metering.smis.processor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.emc.storageos.db.client.DbClient;
+import com.emc.storageos.db.client.URIUtil;
+import com.emc.storageos.db.client.model.DataObject;
+import com.emc.storageos.db.client.model.PortMetricsData;
+import com.emc.storageos.db.client.model.StorageHADomain;
+import com.emc.storageos.db.client.model.StoragePort;
+import com.emc.storageos.db.client.model.StringMap;
+
+/**
+ * Keeps the port and cpu metrics of StoragePorts and StorageHADomains as primitive records,
+ * stored compactly in PortMetricsData, one row per element. A record holds the sample state,
+ * the short and long term busy averages and min/avg/max/EMA rollups of the percent busy
+ * samples per hour and per day.
+ *
+ * Ingesting a sample only writes the element's PortMetricsData. The metrics map of the
+ * element itself, which is read by the UI and the REST API, is updated when one of the
+ * published percentages moved by at least the publish delta, or when the publish interval
+ * passed. Readers such as port allocation use getRecords, which serves the records from
+ * memory and reads them again in bulk once they are older than the refresh interval, as
+ * metrics may be collected on another node.
+ */
+public class PortMetricsStore {
+    private static final Logger _log = LoggerFactory.getLogger(PortMetricsStore.class);
+
+    private static final byte VERSION = 1;
+    private static final long DEFAULT_REFRESH_MSECS = 60 * 1000L;
+    private static final long DEFAULT_PUBLISH_MSECS = 15 * 60 * 1000L;
+    private static final double DEFAULT_PUBLISH_DELTA = 1.0;
+
+    // The metrics kept in a record, in the order they are encoded
+    private static final MetricsKeys[] LONG_KEYS = { MetricsKeys.kbytesValue, MetricsKeys.iopsValue,
+            MetricsKeys.idleTicksValue, MetricsKeys.cumTicksValue, MetricsKeys.lastSampleTime,
+            MetricsKeys.avgStartTime, MetricsKeys.avgCount, MetricsKeys.lastProcessingTime };
+    private static final MetricsKeys[] DOUBLE_KEYS = { MetricsKeys.avgPercentBusy, MetricsKeys.emaPercentBusy,
+            MetricsKeys.portMetric, MetricsKeys.avgPortPercentBusy, MetricsKeys.avgCpuPercentBusy };
+    private static final Map<MetricsKeys, Integer> _slots = new EnumMap<MetricsKeys, Integer>(MetricsKeys.class);
+
+    static {
+        for (MetricsKeys key : LONG_KEYS) {
+            _slots.put(key, _slots.size());
+        }
+        for (MetricsKeys key : DOUBLE_KEYS) {
+            _slots.put(key, _slots.size());
+        }
+    }
+
+    /**
+     * Rollup windows of the percent busy samples.
+     */
+    public static enum Granularity {
+        HOUR(60 * 60 * 1000L),
+        DAY(24 * 60 * 60 * 1000L);
+
+        private final long msecs;
+
+        private Granularity(long msecs) {
+            this.msecs = msecs;
+        }
+
+        public long getMsecs() {
+            return msecs;
+        }
+    }
+
+    private volatile DbClient _dbClient;
+    private long _refreshMsecs = DEFAULT_REFRESH_MSECS;
+    private long _publishMsecs = DEFAULT_PUBLISH_MSECS;
+    private double _publishDelta = DEFAULT_PUBLISH_DELTA;
+
+    private final ConcurrentMap<URI, Entry> _entries = new ConcurrentHashMap<URI, Entry>();
+    private final AtomicLong _hits = new AtomicLong();
+    private final AtomicLong _reads = new AtomicLong();
+    private final AtomicLong _writes = new AtomicLong();
+    private final AtomicLong _publishes = new AtomicLong();
+
+    private static class Entry {
+        // null if no metrics are stored for the element
+        private final Record record;
+        private final long loadTime;
+
+        private Entry(Record record, long loadTime) {
+            this.record = record;
+            this.loadTime = loadTime;
+        }
+    }
+
+    /**
+     * Rollup of the percent busy samples received in one window.
+     */
+    public static class Window {
+        private long startTime;
+        private int count;
+        private double min;
+        private double max;
+        private double sum;
+        private double ema;
+
+        private Window() {
+        }
+
+        private Window(Window window) {
+            startTime = window.startTime;
+            count = window.count;
+            min = window.min;
+            max = window.max;
+            sum = window.sum;
+            ema = window.ema;
+        }
+
+        private void add(double value, double emaFactor) {
+            if (count == 0) {
+                min = value;
+                max = value;
+                ema = value;
+            } else {
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+                ema = value * emaFactor + (1.0 - emaFactor) * ema;
+            }
+            sum += value;
+            count++;
+        }
+
+        public long getStartTime() {
+            return startTime;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public double getMin() {
+            return min;
+        }
+
+        public double getMax() {
+            return max;
+        }
+
+        public double getAverage() {
+            return (count == 0) ? 0.0 : sum / count;
+        }
+
+        public double getEma() {
+            return ema;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("[count=%d, min=%f, avg=%f, max=%f, ema=%f]", count, min, getAverage(), max, ema);
+        }
+    }
+
+    /**
+     * The metrics of one StoragePort or StorageHADomain. Records returned by getRecords are
+     * shared and must not be modified; getRecord returns a copy for the caller to update.
+     */
+    public static class Record {
+        private final URI elementId;
+        // long metrics followed by the raw bits of the double metrics, by slot
+        private final long[] values = new long[_slots.size()];
+        // bit set of the slots which have a value
+        private int present;
+        private long publishTime;
+        private final Window[] current = new Window[Granularity.values().length];
+        private final Window[] previous = new Window[Granularity.values().length];
+
+        Record(URI elementId) {
+            this.elementId = elementId;
+            for (int i = 0; i < current.length; i++) {
+                current[i] = new Window();
+                previous[i] = new Window();
+            }
+        }
+
+        private Record(Record record) {
+            elementId = record.elementId;
+            System.arraycopy(record.values, 0, values, 0, values.length);
+            present = record.present;
+            publishTime = record.publishTime;
+            for (int i = 0; i < current.length; i++) {
+                current[i] = new Window(record.current[i]);
+                previous[i] = new Window(record.previous[i]);
+            }
+        }
+
+        public URI getElementId() {
+            return elementId;
+        }
+
+        /**
+         * Returns the long value of the metric, 0 if it is not set.
+         */
+        public long getLong(MetricsKeys key) {
+            return values[slot(key)];
+        }
+
+        public void putLong(MetricsKeys key, long value) {
+            int slot = slot(key);
+            values[slot] = value;
+            present |= 1 << slot;
+        }
+
+        /**
+         * Returns the double value of the metric, 0.0 if it is not set.
+         */
+        public double getDouble(MetricsKeys key) {
+            Double value = getDoubleOrNull(key);
+            return (value == null) ? 0.0 : value;
+        }
+
+        public Double getDoubleOrNull(MetricsKeys key) {
+            int slot = slot(key);
+            return isPresent(slot) ? Double.longBitsToDouble(values[slot]) : null;
+        }
+
+        public void putDouble(MetricsKeys key, double value) {
+            int slot = slot(key);
+            values[slot] = Double.doubleToLongBits(value);
+            present |= 1 << slot;
+        }
+
+        /**
+         * Adds a percent busy sample to the rollups. A sample starting a new window
+         * makes the current window the previous one.
+         *
+         * @param percentBusy -- percent busy 0-100%
+         * @param time -- the sample time in msec
+         * @param emaFactor -- factor of the sample in the window EMA
+         */
+        public void addSample(double percentBusy, long time, double emaFactor) {
+            for (Granularity granularity : Granularity.values()) {
+                int i = granularity.ordinal();
+                long startTime = time - (time % granularity.getMsecs());
+                if (startTime > current[i].startTime) {
+                    if (current[i].count > 0) {
+                        previous[i] = current[i];
+                    }
+                    current[i] = new Window();
+                    current[i].startTime = startTime;
+                } else if (startTime < current[i].startTime) {
+                    // late sample of a window already rolled up
+                    continue;
+                }
+                current[i].add(percentBusy, emaFactor);
+            }
+        }
+
+        /**
+         * Returns the rollup of the window the latest sample is in.
+         */
+        public Window getCurrent(Granularity granularity) {
+            return current[granularity.ordinal()];
+        }
+
+        /**
+         * Returns the rollup of the last complete window.
+         */
+        public Window getPrevious(Granularity granularity) {
+            return previous[granularity.ordinal()];
+        }
+
+        Record copy() {
+            return new Record(this);
+        }
+
+        private boolean isPresent(int slot) {
+            return (present & (1 << slot)) != 0;
+        }
+
+        private static int slot(MetricsKeys key) {
+            Integer slot = _slots.get(key);
+            if (slot == null) {
+                throw new IllegalArgumentException(key + " is not kept in port metrics records");
+            }
+            return slot;
+        }
+
+        private String format(int slot) {
+            return (slot < LONG_KEYS.length) ? Long.toString(values[slot]) :
+                    Double.toString(Double.longBitsToDouble(values[slot]));
+        }
+
+        /**
+         * Builds a record from the metrics map of an element, where the metrics were kept
+         * before this store existed.
+         */
+        static Record fromMetrics(URI elementId, StringMap metrics) {
+            Record record = new Record(elementId);
+            if (metrics != null) {
+                for (MetricsKeys key : LONG_KEYS) {
+                    if (metrics.containsKey(key.name()) && !metrics.get(key.name()).equals("")) {
+                        record.putLong(key, MetricsKeys.getLong(key, metrics));
+                    }
+                }
+                for (MetricsKeys key : DOUBLE_KEYS) {
+                    Double value = MetricsKeys.getDoubleOrNull(key, metrics);
+                    if (value != null) {
+                        record.putDouble(key, value);
+                    }
+                }
+            }
+            return record;
+        }
+
+        /**
+         * Copies the metrics which are set into the metrics map of the element.
+         *
+         * @return true if an entry of the map changed
+         */
+        boolean toMetrics(StringMap metrics) {
+            boolean changed = false;
+            for (Map.Entry<MetricsKeys, Integer> slot : _slots.entrySet()) {
+                if (isPresent(slot.getValue())) {
+                    String value = format(slot.getValue());
+                    if (!value.equals(metrics.get(slot.getKey().name()))) {
+                        metrics.put(slot.getKey().name(), value);
+                        changed = true;
+                    }
+                }
+            }
+            return changed;
+        }
+
+        byte[] encode() {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(bytes);
+            try {
+                out.writeByte(VERSION);
+                out.writeInt(present);
+                for (int slot = 0; slot < values.length; slot++) {
+                    if (isPresent(slot)) {
+                        out.writeLong(values[slot]);
+                    }
+                }
+                out.writeLong(publishTime);
+                out.writeByte(current.length);
+                for (int i = 0; i < current.length; i++) {
+                    writeWindow(out, current[i]);
+                    writeWindow(out, previous[i]);
+                }
+                out.flush();
+            } catch (IOException e) {
+                // not thrown by a ByteArrayOutputStream
+                throw new IllegalStateException(e);
+            }
+            return bytes.toByteArray();
+        }
+
+        /**
+         * Decodes a record, returns null if the data was not written by this version.
+         */
+        static Record decode(URI elementId, byte[] data) {
+            if (data == null || data.length == 0) {
+                return null;
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+            try {
+                if (in.readByte() != VERSION) {
+                    _log.info("Ignoring port metrics of unknown version for {}", elementId);
+                    return null;
+                }
+                Record record = new Record(elementId);
+                record.present = in.readInt();
+                for (int slot = 0; slot < record.values.length; slot++) {
+                    if (record.isPresent(slot)) {
+                        record.values[slot] = in.readLong();
+                    }
+                }
+                record.publishTime = in.readLong();
+                int windows = Math.min(in.readByte(), record.current.length);
+                for (int i = 0; i < windows; i++) {
+                    record.current[i] = readWindow(in);
+                    record.previous[i] = readWindow(in);
+                }
+                return record;
+            } catch (IOException e) {
+                _log.error("Invalid port metrics for " + elementId, e);
+                return null;
+            }
+        }
+
+        private static void writeWindow(DataOutputStream out, Window window) throws IOException {
+            out.writeLong(window.startTime);
+            out.writeInt(window.count);
+            out.writeDouble(window.min);
+            out.writeDouble(window.max);
+            out.writeDouble(window.sum);
+            out.writeDouble(window.ema);
+        }
+
+        private static Window readWindow(DataInputStream in) throws IOException {
+            Window window = new Window();
+            window.startTime = in.readLong();
+            window.count = in.readInt();
+            window.min = in.readDouble();
+            window.max = in.readDouble();
+            window.sum = in.readDouble();
+            window.ema = in.readDouble();
+            return window;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder(elementId.toString()).append(" {");
+            for (Map.Entry<MetricsKeys, Integer> slot : _slots.entrySet()) {
+                if (isPresent(slot.getValue())) {
+                    builder.append(slot.getKey().name()).append('=').append(format(slot.getValue())).append(", ");
+                }
+            }
+            for (Granularity granularity : Granularity.values()) {
+                builder.append(granularity.name()).append('=').append(getCurrent(granularity)).append(", ");
+            }
+            return builder.append('}').toString();
+        }
+    }
+
+    public void setDbClient(DbClient dbClient) {
+        _dbClient = dbClient;
+    }
+
+    public DbClient getDbClient() {
+        return _dbClient;
+    }
+
+    public void setRefreshMsecs(long refreshMsecs) {
+        _refreshMsecs = refreshMsecs;
+    }
+
+    public void setPublishMsecs(long publishMsecs) {
+        _publishMsecs = publishMsecs;
+    }
+
+    public void setPublishDelta(double publishDelta) {
+        _publishDelta = publishDelta;
+    }
+
+    /**
+     * Returns the id of the PortMetricsData of an element, which is the element's id
+     * with the type replaced.
+     */
+    static URI getDataId(URI elementId) {
+        return URI.create(elementId.toString().replaceFirst(":" + URIUtil.getTypeName(elementId) + ":",
+                ":" + PortMetricsData.class.getSimpleName() + ":"));
+    }
+
+    /**
+     * Returns a copy of the element's record for ingesting a sample. If no metrics are stored
+     * for the element yet, the record is built from the element's metrics map.
+     *
+     * @param element -- StoragePort or StorageHADomain
+     * @return record to update and pass to saveRecord
+     */
+    public Record getRecord(DataObject element) {
+        Entry entry = _entries.get(element.getId());
+        if (entry == null || isStale(entry, System.currentTimeMillis())) {
+            entry = load(element.getId());
+        } else {
+            _hits.incrementAndGet();
+        }
+        return (entry.record != null) ? entry.record.copy() : Record.fromMetrics(element.getId(), getMetrics(element));
+    }
+
+    /**
+     * Returns the records of the given elements, read again in bulk for the elements whose
+     * records are older than the refresh interval. The records must not be modified.
+     *
+     * @param elements -- StoragePorts or StorageHADomains
+     * @return map of element id to record
+     */
+    public Map<URI, Record> getRecords(Collection<? extends DataObject> elements) {
+        Map<URI, Record> records = new HashMap<URI, Record>();
+        long now = System.currentTimeMillis();
+        List<URI> staleIds = new ArrayList<URI>();
+        for (DataObject element : elements) {
+            Entry entry = _entries.get(element.getId());
+            if (entry == null || isStale(entry, now)) {
+                staleIds.add(element.getId());
+            } else {
+                _hits.incrementAndGet();
+            }
+        }
+        if (!staleIds.isEmpty()) {
+            load(staleIds);
+        }
+        for (DataObject element : elements) {
+            Entry entry = _entries.get(element.getId());
+            records.put(element.getId(), (entry != null && entry.record != null) ? entry.record :
+                    Record.fromMetrics(element.getId(), getMetrics(element)));
+        }
+        return records;
+    }
+
+    /**
+     * Returns the record of a single element, see getRecords.
+     */
+    public Record getRecordView(DataObject element) {
+        return getRecords(Collections.singletonList(element)).get(element.getId());
+    }
+
+    /**
+     * Writes the record to the element's PortMetricsData.
+     *
+     * @param record -- record returned by getRecord
+     */
+    public void saveRecord(Record record) {
+        Entry entry = _entries.get(record.getElementId());
+        PortMetricsData data = new PortMetricsData();
+        data.setId(getDataId(record.getElementId()));
+        data.setElement(record.getElementId());
+        data.setData(record.encode());
+        if (entry == null || entry.record == null) {
+            _dbClient.createObject(data);
+        } else {
+            _dbClient.updateObject(data);
+        }
+        _writes.incrementAndGet();
+        _entries.put(record.getElementId(), new Entry(record.copy(), System.currentTimeMillis()));
+    }
+
+    /**
+     * Copies the record into the element's metrics map if one of the published percentages
+     * moved by at least the publish delta, or the publish interval passed since the last time.
+     *
+     * @param record -- record being ingested, saved afterwards
+     * @param metrics -- metrics map of the element
+     * @return true if the map changed and the element needs to be persisted
+     */
+    public boolean publish(Record record, StringMap metrics) {
+        long now = System.currentTimeMillis();
+        boolean due = (now - record.publishTime) >= _publishMsecs;
+        for (MetricsKeys key : DOUBLE_KEYS) {
+            Double value = record.getDoubleOrNull(key);
+            if (due || value == null) {
+                continue;
+            }
+            Double published = MetricsKeys.getDoubleOrNull(key, metrics);
+            due = (published == null) || Math.abs(value - published) >= _publishDelta;
+        }
+        if (!due) {
+            return false;
+        }
+        record.publishTime = now;
+        boolean changed = record.toMetrics(metrics);
+        if (changed) {
+            _publishes.incrementAndGet();
+        }
+        return changed;
+    }
+
+    /**
+     * Forgets the records kept in memory.
+     */
+    public void clear() {
+        _entries.clear();
+    }
+
+    public long getReadCount() {
+        return _reads.get();
+    }
+
+    public long getWriteCount() {
+        return _writes.get();
+    }
+
+    public long getPublishCount() {
+        return _publishes.get();
+    }
+
+    private boolean isStale(Entry entry, long now) {
+        return (now - entry.loadTime) >= _refreshMsecs;
+    }
+
+    private Entry load(URI elementId) {
+        _reads.incrementAndGet();
+        PortMetricsData data = _dbClient.queryObject(PortMetricsData.class, getDataId(elementId));
+        Entry entry = new Entry(isLive(data) ? Record.decode(elementId, data.getData()) : null,
+                System.currentTimeMillis());
+        _entries.put(elementId, entry);
+        return entry;
+    }
+
+    private void load(List<URI> elementIds) {
+        List<URI> dataIds = new ArrayList<URI>(elementIds.size());
+        for (URI elementId : elementIds) {
+            dataIds.add(getDataId(elementId));
+        }
+        _reads.addAndGet(elementIds.size());
+        Map<URI, Record> loaded = new HashMap<URI, Record>();
+        for (PortMetricsData data : _dbClient.queryObject(PortMetricsData.class, dataIds)) {
+            if (isLive(data) && data.getElement() != null) {
+                loaded.put(data.getElement(), Record.decode(data.getElement(), data.getData()));
+            }
+        }
+        long now = System.currentTimeMillis();
+        for (URI elementId : elementIds) {
+            _entries.put(elementId, new Entry(loaded.get(elementId), now));
+        }
+    }
+
+    /**
+     * Rows deactivated with their purged element are left to the garbage collector.
+     */
+    private static boolean isLive(PortMetricsData data) {
+        return data != null && !data.getInactive();
+    }
+
+    private static StringMap getMetrics(DataObject element) {
+        if (element instanceof StoragePort) {
+            return ((StoragePort) element).getMetrics();
+        } else if (element instanceof StorageHADomain) {
+            return ((StorageHADomain) element).getMetrics();
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PortMetricsStore[records=%d, hits=%d, reads=%d, writes=%d, publishes=%d]",
+                _entries.size(), _hits.get(), _reads.get(), _writes.get(), _publishes.get());
+    }
+}
@@ -44,7 +44,6 @@ import com.emc.storageos.db.client.model.StorageSystem;
 import com.emc.storageos.db.client.model.StringSet;
 import com.emc.storageos.plugins.AccessProfile;
 import com.emc.storageos.plugins.common.Constants;
-import com.emc.storageos.volumecontroller.impl.plugins.metering.smis.processor.MetricsKeys;
 import com.emc.storageos.volumecontroller.impl.plugins.metering.smis.processor.PortMetricsProcessor;
 import com.google.common.base.Strings;
 import com.iwave.ext.linux.LinuxSystemCLI;
@@ -153,7 +152,7 @@ public class VPlexPerpetualCSVFileCollector implements VPlexStatsCollector {
         MetricHeaderInfo headerInfo = metricHeaderInfoMap.get(HEADER_KEY_DIRECTOR_BUSY);
         if (headerInfo != null) {
             // Note: this call will return 0 if 'lastSampleTime' is not found
-            timeUTC = MetricsKeys.getLong(MetricsKeys.lastSampleTime, headerInfo.director.getMetrics());
+            timeUTC = portMetricsProcessor.getLastSampleTime(headerInfo.director);
         }
         return timeUTC;
     }
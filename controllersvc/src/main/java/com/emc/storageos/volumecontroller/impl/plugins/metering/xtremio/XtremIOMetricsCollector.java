@@ -19,13 +19,10 @@ import org.slf4j.LoggerFactory;
 import com.emc.storageos.db.client.DbClient;
 import com.emc.storageos.db.client.constraint.AlternateIdConstraint;
 import com.emc.storageos.db.client.constraint.URIQueryResultList;
-import com.emc.storageos.db.client.model.DiscoveredDataObject;
 import com.emc.storageos.db.client.model.StorageHADomain;
 import com.emc.storageos.db.client.model.StorageSystem;
-import com.emc.storageos.db.client.model.StringMap;
 import com.emc.storageos.plugins.common.Constants;
 import com.emc.storageos.volumecontroller.impl.NativeGUIDGenerator;
-import com.emc.storageos.volumecontroller.impl.plugins.metering.smis.processor.MetricsKeys;
 import com.emc.storageos.volumecontroller.impl.plugins.metering.smis.processor.PortMetricsProcessor;
 import com.emc.storageos.volumecontroller.impl.xtremio.prov.utils.XtremIOProvUtils;
 import com.emc.storageos.xtremio.restapi.XtremIOClient;
@@ -161,25 +158,13 @@ public class XtremIOMetricsCollector {
         }
 
         // calculate exponential average for each Storage controller
-        double emaFactor = PortMetricsProcessor.getEmaFactor(DiscoveredDataObject.Type.valueOf(system.getSystemType()));
-        if (emaFactor > 1.0) {
-            emaFactor = 1.0;  // in case of invalid user input
-        }
         for (URI scURI : scToAvgCPU.keySet()) {
             Double avgScCPU = scToAvgCPU.get(scURI);
             StorageHADomain sc = dbClient.queryObject(StorageHADomain.class, scURI);
             log.info("StorageHADomain: {}, average CPU Usage: {}", sc.getAdapterName(), avgScCPU);
 
             portMetricsProcessor.processFEAdaptMetrics(avgScCPU, 0l, sc, currentTime.toString(), false);
-
-            StringMap dbMetrics = sc.getMetrics();
-            Double scAvgBusy = MetricsKeys.getDouble(MetricsKeys.avgPercentBusy, dbMetrics);
-            Double scEmaBusy = MetricsKeys.getDouble(MetricsKeys.emaPercentBusy, dbMetrics);
-            Double scPercentBusy = (scAvgBusy * emaFactor) + ((1 - emaFactor) * scEmaBusy);
-            MetricsKeys.putDouble(MetricsKeys.avgCpuPercentBusy, scPercentBusy, dbMetrics);
-            MetricsKeys.putLong(MetricsKeys.lastProcessingTime, currentTime, dbMetrics);
-            sc.setMetrics(dbMetrics);
-            dbClient.updateObject(sc);
+            portMetricsProcessor.computeCpuPercentBusy(sc, currentTime);
         }
 
         // calculate storage system's average CPU usage by combining all XEnvs
@@ -17,6 +17,7 @@ import org.slf4j.LoggerFactory;
 import com.emc.storageos.db.client.model.StorageSystem;
 import com.emc.storageos.exceptions.DeviceControllerErrors;
 import com.emc.storageos.svcs.errorhandling.model.ServiceError;
+import com.emc.storageos.volumecontroller.JobBatchPoller;
 import com.emc.storageos.volumecontroller.JobContext;
 import com.emc.storageos.volumecontroller.impl.JobPollResult;
 import com.emc.storageos.volumecontroller.impl.smis.job.SmisSynchSubTaskJob;
@@ -201,6 +202,14 @@ public class IBMSmisSynchSubTaskJob extends SmisSynchSubTaskJob {
         return _pollResult;
     }
 
+    /**
+     * The sub-task checks the group members rather than a CIM job, so it is not batched.
+     */
+    @Override
+    public JobBatchPoller getBatchPoller() {
+        return null;
+    }
+
     public List<CIMObjectPath> getSGMemberPaths() {
         return sgMemberPaths;
     }
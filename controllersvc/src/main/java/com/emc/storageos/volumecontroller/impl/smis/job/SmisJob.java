@@ -11,6 +11,7 @@ import com.emc.storageos.db.client.model.StorageSystem;
 import com.emc.storageos.exceptions.DeviceControllerErrors;
 import com.emc.storageos.svcs.errorhandling.model.ServiceError;
 import com.emc.storageos.volumecontroller.Job;
+import com.emc.storageos.volumecontroller.JobBatchPoller;
 import com.emc.storageos.volumecontroller.JobContext;
 import com.emc.storageos.volumecontroller.TaskCompleter;
 import com.emc.storageos.volumecontroller.impl.JobPollResult;
@@ -50,6 +51,8 @@ public class SmisJob extends Job implements Serializable
     private static final String JOB_PROPERTY_KEY_OPERATIONAL_STS = "OperationalStatus";
     private static final String JOB_PROPERTY_KEY_ERROR_DESC = "ErrorDescription";
     private static final String JOB_PROPERTY_KEY_JOB_STATUS = "JobStatus";
+    static final String[] JOB_STATUS_PROPERTY_KEYS =
+    { JOB_PROPERTY_KEY_PERCENT_COMPLETE, JOB_PROPERTY_KEY_OPERATIONAL_STS, JOB_PROPERTY_KEY_ERROR_DESC };
     private static final long ERROR_TRACKING_LIMIT = 2 * 60 * 60 * 1000; // tracking limit for transient errors. set for 2 hours
     private static final long POST_PROCESSING_ERROR_TRACKING_LIMIT = 20 * 60 * 1000; // tracking limit for transient errors in post
                                                                                      // processing, 20 minutes
@@ -68,6 +71,8 @@ public class SmisJob extends Job implements Serializable
 
     protected Map<String, Object> _map = new HashMap<String, Object>();
     private String _smisIPAddress = null;
+    // the job instance read by the batch poller for the next poll
+    private transient CIMInstance _polledJobInstance = null;
 
     public SmisJob(CIMObjectPath cimJob, URI storageSystem, TaskCompleter taskCompleter, String jobName) {
         _map.put(CIM_OBJECT_NAME, cimJob);
@@ -98,6 +103,21 @@ public class SmisJob extends Job implements Serializable
         return (String) _map.get(JOB_NAME_NAME);
     }
 
+    @Override
+    public JobBatchPoller getBatchPoller() {
+        return SmisJobBatchPoller.getInstance();
+    }
+
+    /**
+     * Sets the job instance read from the provider by the batch poller, used instead of
+     * getting the instance at the next poll.
+     * 
+     * @param polledJobInstance the job instance with the job status properties
+     */
+    public void setPolledJobInstance(CIMInstance polledJobInstance) {
+        _polledJobInstance = polledJobInstance;
+    }
+
     private long getErrorTrackingStartTime() {
         return (Long) _map.get(ERROR_TRACKING_START_TIME);
     }
@@ -172,16 +192,17 @@ public class SmisJob extends Job implements Serializable
             }
             // poll only if job is not in terminal status
             if (_status == JobStatus.IN_PROGRESS || _status == JobStatus.ERROR) {
-                String[] jobPathPropertyKeys =
-                { JOB_PROPERTY_KEY_PERCENT_COMPLETE, JOB_PROPERTY_KEY_OPERATIONAL_STS, JOB_PROPERTY_KEY_ERROR_DESC };
-                CIMInstance jobPathInstance = null;
+                CIMInstance jobPathInstance = _polledJobInstance;
+                _polledJobInstance = null;
                 _logger.info("SmisJob: Looking up job: id {}, provider: {} ", instanceID.getValue(), _smisIPAddress);
                 WBEMClient wbemClient = getWBEMClient(jobContext.getDbClient(), jobContext.getCimConnectionFactory());
                 if (wbemClient == null) {
                     String errorMessage = "No CIMOM client found for provider ip: " + _smisIPAddress;
                     processTransientError(instanceID.getValue().toString(), trackingPeriodInMillis, errorMessage, null);
                 } else {
-                    jobPathInstance = wbemClient.getInstance(getCimJob(), false, false, jobPathPropertyKeys);
+                    if (jobPathInstance == null) {
+                        jobPathInstance = wbemClient.getInstance(getCimJob(), false, false, JOB_STATUS_PROPERTY_KEYS);
+                    }
                     CIMProperty<UnsignedInteger16> percentComplete =
                             (CIMProperty<UnsignedInteger16>) jobPathInstance.getProperty(JOB_PROPERTY_KEY_PERCENT_COMPLETE);
                     _pollResult.setJobPercentComplete(percentComplete.getValue().intValue());
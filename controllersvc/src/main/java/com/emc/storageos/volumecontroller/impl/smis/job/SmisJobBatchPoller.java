@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.volumecontroller.impl.smis.job;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.cim.CIMInstance;
+import javax.cim.CIMObjectPath;
+import javax.cim.CIMProperty;
+import javax.wbem.CloseableIterator;
+import javax.wbem.client.WBEMClient;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.emc.storageos.cimadapter.connections.cim.CimObjectPathCreator;
+import com.emc.storageos.db.client.model.StorageSystem;
+import com.emc.storageos.volumecontroller.Job;
+import com.emc.storageos.volumecontroller.JobBatchPoller;
+import com.emc.storageos.volumecontroller.JobContext;
+
+/**
+ * Reads the status of the SMI-S jobs on a provider by enumerating the CIM_ConcreteJob
+ * instances of the provider once, instead of getting the instance of each job.
+ */
+public class SmisJobBatchPoller implements JobBatchPoller {
+    private static final Logger _logger = LoggerFactory.getLogger(SmisJobBatchPoller.class);
+    private static final String CIM_CONCRETE_JOB = "CIM_ConcreteJob";
+    private static final String INSTANCE_ID = "InstanceID";
+    private static final SmisJobBatchPoller _instance = new SmisJobBatchPoller();
+
+    public static SmisJobBatchPoller getInstance() {
+        return _instance;
+    }
+
+    @Override
+    public String getProviderKey(Job job, JobContext jobContext) {
+        if (job.getStorageSystemURI() == null || ((SmisJob) job).getCimJob() == null) {
+            return null;
+        }
+        StorageSystem system = jobContext.getDbClient().queryObject(StorageSystem.class, job.getStorageSystemURI());
+        if (system == null || system.getSmisProviderIP() == null || system.getSmisPortNumber() == null) {
+            return null;
+        }
+        return String.format("smis:%s:%s", system.getSmisProviderIP(), system.getSmisPortNumber());
+    }
+
+    @Override
+    public void readStatus(String providerKey, List<Job> jobs, JobContext jobContext) throws Exception {
+        WBEMClient client = ((SmisJob) jobs.get(0)).getWBEMClient(jobContext.getDbClient(), jobContext.getCimConnectionFactory());
+        Map<String, Map<String, SmisJob>> jobsByNamespace = new HashMap<String, Map<String, SmisJob>>();
+        for (Job job : jobs) {
+            CIMObjectPath cimJob = ((SmisJob) job).getCimJob();
+            Map<String, SmisJob> jobsById = jobsByNamespace.get(cimJob.getNamespace());
+            if (jobsById == null) {
+                jobsById = new HashMap<String, SmisJob>();
+                jobsByNamespace.put(cimJob.getNamespace(), jobsById);
+            }
+            jobsById.put(getInstanceId(cimJob), (SmisJob) job);
+        }
+        int found = 0;
+        for (Map.Entry<String, Map<String, SmisJob>> entry : jobsByNamespace.entrySet()) {
+            CIMObjectPath path = CimObjectPathCreator.createInstance(CIM_CONCRETE_JOB, entry.getKey());
+            CloseableIterator<CIMInstance> instances = null;
+            try {
+                instances = client.enumerateInstances(path, true, false, false, SmisJob.JOB_STATUS_PROPERTY_KEYS);
+                while (instances.hasNext()) {
+                    CIMInstance instance = instances.next();
+                    SmisJob job = entry.getValue().get(getInstanceId(instance.getObjectPath()));
+                    if (job != null) {
+                        job.setPolledJobInstance(instance);
+                        found++;
+                    }
+                }
+            } finally {
+                if (instances != null) {
+                    instances.close();
+                }
+            }
+        }
+        _logger.info("SmisJobBatchPoller: Read the status of {} of {} jobs on provider {}",
+                new Object[] { found, jobs.size(), providerKey });
+    }
+
+    private String getInstanceId(CIMObjectPath path) {
+        CIMProperty<?> instanceId = path.getKey(INSTANCE_ID);
+        return (instanceId == null || instanceId.getValue() == null) ? null : instanceId.getValue().toString();
+    }
+}
@@ -17,6 +17,7 @@ import org.slf4j.LoggerFactory;
 import com.emc.storageos.db.client.DbClient;
 import com.emc.storageos.db.client.model.Volume;
 import com.emc.storageos.exceptions.DeviceControllerException;
+import com.emc.storageos.volumecontroller.JobBatchPoller;
 import com.emc.storageos.volumecontroller.JobContext;
 import com.emc.storageos.volumecontroller.TaskCompleter;
 import com.emc.storageos.volumecontroller.impl.JobPollResult;
@@ -88,6 +89,14 @@ public class SmisWaitForGroupSynchronizedJob extends SmisJob {
         return pollResult;
     }
 
+    /**
+     * Polls the group synchronization rather than a CIM job status.
+     */
+    @Override
+    public JobBatchPoller getBatchPoller() {
+        return null;
+    }
+
     private CIMObjectPath getGroupSyncPath() {
         return (CIMObjectPath) _map.get(GROUP_SYNC_PATH);
     }
@@ -7,6 +7,7 @@ package com.emc.storageos.volumecontroller.impl.smis.job;
 import com.emc.storageos.db.client.DbClient;
 import com.emc.storageos.db.client.model.BlockObject;
 import com.emc.storageos.exceptions.DeviceControllerException;
+import com.emc.storageos.volumecontroller.JobBatchPoller;
 import com.emc.storageos.volumecontroller.JobContext;
 import com.emc.storageos.volumecontroller.TaskCompleter;
 import com.emc.storageos.volumecontroller.impl.JobPollResult;
@@ -98,6 +99,14 @@ public class SmisWaitForSynchronizedJob extends SmisJob {
         return pollResult;
     }
 
+    /**
+     * Polls the synchronization of the target rather than a CIM job status.
+     */
+    @Override
+    public JobBatchPoller getBatchPoller() {
+        return null;
+    }
+
     private CIMObjectPath getTargetPath() {
         return (CIMObjectPath) _map.get(TARGET_PATH);
     }
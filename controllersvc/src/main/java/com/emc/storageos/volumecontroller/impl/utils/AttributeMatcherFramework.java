@@ -7,9 +7,12 @@ package com.emc.storageos.volumecontroller.impl.utils;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -43,6 +46,12 @@ public class AttributeMatcherFramework implements ApplicationContextAware {
     private static final Logger _logger = LoggerFactory
             .getLogger(AttributeMatcherFramework.class);
     private static volatile ApplicationContext _context;
+    private final PoolMatchResultCache _poolMatchResultCache = new PoolMatchResultCache();
+
+    // Parallel safe matchers run on partitions of this many pools on the fork-join pool
+    private int _poolsPerPartition = 100;
+    private int _parallelism = Runtime.getRuntime().availableProcessors();
+    private ForkJoinPool _forkJoinPool;
 
     @Override
     public void setApplicationContext(ApplicationContext appContext)
@@ -54,6 +63,21 @@ public class AttributeMatcherFramework implements ApplicationContextAware {
         return _context;
     }
 
+    public void setPoolsPerPartition(int poolsPerPartition) {
+        _poolsPerPartition = poolsPerPartition;
+    }
+
+    public void setParallelism(int parallelism) {
+        _parallelism = parallelism;
+    }
+
+    private synchronized ForkJoinPool getForkJoinPool() {
+        if (_forkJoinPool == null) {
+            _forkJoinPool = new ForkJoinPool(_parallelism);
+        }
+        return _forkJoinPool;
+    }
+
     /**
      * Match all attributes of CoS container & volumeParam container values against the given pools.
      * 
@@ -67,6 +91,35 @@ public class AttributeMatcherFramework implements ApplicationContextAware {
      */
     public List<StoragePool> matchAttributes(List<StoragePool> allPools, Map<String, Object> attributeMap,
             DbClient dbClient, CoordinatorClient coordinator, String matcherGroupName, StringBuffer errorMessage) {
+        return matchAttributes(allPools, null, attributeMap, dbClient, coordinator, matcherGroupName, errorMessage);
+    }
+
+    /**
+     * Match all attributes of a vpool against the given pools like matchAttributes, reusing the
+     * results of earlier runs for the same vpool. Matchers which declare their pool dependencies
+     * only run on the pools whose dependencies changed since, or which they did not see yet.
+     * 
+     * @param allPools : list of pools
+     * @param vpoolId : id of the vpool the attributes are built from
+     * @param attributeMap : vpool attribute values.
+     * @param dbClient
+     * @param coordinator
+     * @param matcherGroupName : groupName to execute the matchers.
+     * @param errorMessage : will contain error message
+     * @return Returns list of matched StoragePool instances
+     */
+    public List<StoragePool> matchAttributesIncrementally(List<StoragePool> allPools, URI vpoolId,
+            Map<String, Object> attributeMap, DbClient dbClient, CoordinatorClient coordinator, String matcherGroupName,
+            StringBuffer errorMessage) {
+        _poolMatchResultCache.checkSignature(vpoolId, PoolMatchResultCache.getSignature(attributeMap));
+        List<StoragePool> matchedPools = matchAttributes(allPools, vpoolId, attributeMap, dbClient, coordinator,
+                matcherGroupName, errorMessage);
+        _logger.debug("Incremental matching of vpool {}: {}", vpoolId, _poolMatchResultCache);
+        return matchedPools;
+    }
+
+    private List<StoragePool> matchAttributes(List<StoragePool> allPools, URI vpoolId, Map<String, Object> attributeMap,
+            DbClient dbClient, CoordinatorClient coordinator, String matcherGroupName, StringBuffer errorMessage) {
 
         List<StoragePool> matchedPools = new ArrayList<StoragePool>();
         if (!CollectionUtils.isEmpty(allPools)) {
@@ -82,7 +135,12 @@ public class AttributeMatcherFramework implements ApplicationContextAware {
                     int poolSizeAtTheStart = matchedPools.size();
                     if (!matchedPools.isEmpty()) {
                         _logger.debug("passing {} pools to match", matchedPools.size());
-                        matchedPools = matcher.runMatchStoragePools(matchedPools, attributeMap, errorMessage);
+                        if (vpoolId != null && PoolMatchResultCache.isCacheable(matcher)) {
+                            matchedPools = runMatcherIncrementally(matcher, matchedPools, vpoolId, attributeMap, cache,
+                                    errorMessage);
+                        } else {
+                            matchedPools = runMatcher(matcher, matchedPools, attributeMap, errorMessage);
+                        }
                         if (matchedPools.isEmpty()) {
                             _logger.info(String.format("Failed to find match because of %s",
                                     matcher.getClass().getSimpleName()));
@@ -110,6 +168,124 @@ public class AttributeMatcherFramework implements ApplicationContextAware {
         return matchedPools;
     }
 
+    /**
+     * Runs a cacheable matcher on the pools for which it has no result for the vpool yet and
+     * combines these results with the cached ones, keeping the order of the given pools.
+     * 
+     * @param matcher matcher declaring its pool dependencies
+     * @param pools pools to match
+     * @param vpoolId vpool id
+     * @param attributeMap vpool attribute values
+     * @param cache ObjectLocalCache of the matchers
+     * @param errorMessage will contain the matcher's error message if no pool matches
+     * @return matched pools
+     */
+    private List<StoragePool> runMatcherIncrementally(AttributeMatcher matcher, List<StoragePool> pools, URI vpoolId,
+            Map<String, Object> attributeMap, ObjectLocalCache cache, StringBuffer errorMessage) {
+        String matcherName = matcher.getClass().getName();
+        Map<URI, Boolean> results = new HashMap<URI, Boolean>();
+        Map<URI, String> fingerprints = new HashMap<URI, String>();
+        List<StoragePool> poolsToMatch = new ArrayList<StoragePool>();
+        for (StoragePool pool : pools) {
+            String fingerprint = PoolMatchResultCache.getFingerprint(matcher, pool, cache);
+            Boolean passed = _poolMatchResultCache.getResult(vpoolId, matcherName, pool.getId(), fingerprint);
+            if (passed != null) {
+                results.put(pool.getId(), passed);
+            } else {
+                fingerprints.put(pool.getId(), fingerprint);
+                poolsToMatch.add(pool);
+            }
+        }
+        // the matcher's message only applies to the pools it runs on
+        StringBuffer matcherMessage = new StringBuffer();
+        if (!poolsToMatch.isEmpty()) {
+            Set<URI> passedPools = new HashSet<URI>();
+            for (StoragePool pool : runMatcher(matcher, poolsToMatch, attributeMap, matcherMessage)) {
+                passedPools.add(pool.getId());
+            }
+            for (StoragePool pool : poolsToMatch) {
+                boolean passed = passedPools.contains(pool.getId());
+                _poolMatchResultCache.putResult(vpoolId, matcherName, pool.getId(), fingerprints.get(pool.getId()), passed);
+                results.put(pool.getId(), passed);
+            }
+        }
+        _logger.debug("{} matched {} of {} pools from earlier results", new Object[] { matcher.getClass().getSimpleName(),
+                pools.size() - poolsToMatch.size(), pools.size() });
+        List<StoragePool> matchedPools = new ArrayList<StoragePool>();
+        for (StoragePool pool : pools) {
+            if (results.get(pool.getId())) {
+                matchedPools.add(pool);
+            }
+        }
+        if (matchedPools.isEmpty()) {
+            if (poolsToMatch.size() < pools.size()) {
+                // run on all pools to report why none of them matched
+                return runMatcher(matcher, pools, attributeMap, errorMessage);
+            }
+            errorMessage.append(matcherMessage);
+        }
+        return matchedPools;
+    }
+
+    /**
+     * Runs the matcher on the pools. A parallel safe matcher is run on partitions of the pools
+     * on the fork-join pool if there are more pools than fit in two partitions.
+     * 
+     * @param matcher matcher to run
+     * @param pools pools to match
+     * @param attributeMap attribute values
+     * @param errorMessage will contain the matcher's error message if no pool matches
+     * @return matched pools in the order of the given pools
+     */
+    private List<StoragePool> runMatcher(AttributeMatcher matcher, List<StoragePool> pools,
+            Map<String, Object> attributeMap, StringBuffer errorMessage) {
+        if (!matcher.isParallelSafe() || _parallelism < 2 || pools.size() < 2 * _poolsPerPartition) {
+            return matcher.runMatchStoragePools(pools, attributeMap, errorMessage);
+        }
+        MatcherTask task = new MatcherTask(matcher, pools, attributeMap);
+        List<StoragePool> matchedPools = getForkJoinPool().invoke(task);
+        if (matchedPools.isEmpty()) {
+            errorMessage.append(task.errorMessage);
+        }
+        _logger.debug("{} matched {} of {} pools in partitions of {}", new Object[] { matcher.getClass().getSimpleName(),
+                matchedPools.size(), pools.size(), _poolsPerPartition });
+        return matchedPools;
+    }
+
+    /**
+     * Matches a range of pools, splitting it in halves until it fits into a partition.
+     */
+    private class MatcherTask extends RecursiveTask<List<StoragePool>> {
+        private static final long serialVersionUID = 1L;
+        private final AttributeMatcher matcher;
+        private final List<StoragePool> pools;
+        private final Map<String, Object> attributeMap;
+        // error message of the first partition, which applies if no pool matches
+        private StringBuffer errorMessage;
+
+        private MatcherTask(AttributeMatcher matcher, List<StoragePool> pools, Map<String, Object> attributeMap) {
+            this.matcher = matcher;
+            this.pools = pools;
+            this.attributeMap = attributeMap;
+        }
+
+        @Override
+        protected List<StoragePool> compute() {
+            if (pools.size() <= _poolsPerPartition) {
+                errorMessage = new StringBuffer();
+                return matcher.runMatchStoragePools(new ArrayList<StoragePool>(pools), attributeMap, errorMessage);
+            }
+            int middle = pools.size() / 2;
+            MatcherTask first = new MatcherTask(matcher, pools.subList(0, middle), attributeMap);
+            MatcherTask second = new MatcherTask(matcher, pools.subList(middle, pools.size()), attributeMap);
+            second.fork();
+            List<StoragePool> matchedPools = new ArrayList<StoragePool>(first.compute());
+            matchedPools.addAll(second.join());
+            errorMessage = first.errorMessage;
+            return matchedPools;
+        }
+    }
+
     /**
      * Method will iterate through all AttributeMatchers (not a subset) and apply common references to them.
      *
@@ -8,6 +8,7 @@ import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -202,11 +203,16 @@ public class ImplicitPoolMatcher {
         List<URI> vpoolURIs = dbClient.queryByType(VirtualPool.class, true);
         Iterator<VirtualPool> vpoolListItr = dbClient.queryIterativeObjects(VirtualPool.class, vpoolURIs);
         List<VirtualPool> vPoolsToUpdate = new ArrayList<VirtualPool>();
+        int vpoolCount = 0;
         while (vpoolListItr.hasNext()) {
             VirtualPool vpool = vpoolListItr.next();
-            matchvPoolWithStoragePools(vpool, updatedPoolList, dbClient, coordinator, null, errorMessage);
-            vPoolsToUpdate.add(vpool);
+            if (matchvPoolWithStoragePools(vpool, updatedPoolList, dbClient, coordinator, null, errorMessage)) {
+                vPoolsToUpdate.add(vpool);
+            }
+            vpoolCount++;
         }
+        _logger.info("Matched {} pools with {} vpools, {} vpools changed", new Object[] { updatedPoolList.size(),
+                vpoolCount, vPoolsToUpdate.size() });
         if (!vPoolsToUpdate.isEmpty()) {
             persistUpdatedVpoolList(vPoolsToUpdate, dbClient);
         }
@@ -228,8 +234,9 @@ public class ImplicitPoolMatcher {
         List<VirtualPool> vPoolsToUpdate = new ArrayList<VirtualPool>();
         while (vpoolListItr.hasNext()) {
             VirtualPool vpool = vpoolListItr.next();
-            matchvPoolWithStoragePools(vpool, updatedPoolList, dbClient, coordinator, matcherGroupName, errorMessage);
-            vPoolsToUpdate.add(vpool);
+            if (matchvPoolWithStoragePools(vpool, updatedPoolList, dbClient, coordinator, matcherGroupName, errorMessage)) {
+                vPoolsToUpdate.add(vpool);
+            }
         }
         if (!vPoolsToUpdate.isEmpty()) {
             persistUpdatedVpoolList(vPoolsToUpdate, dbClient);
@@ -238,7 +245,8 @@ public class ImplicitPoolMatcher {
 
     /**
      * Matches given VirtualPool with list of pools provided and update matched/invalid pools in
-     * VirtualPool.
+     * VirtualPool. Matchers are only run on the pools whose inputs to them changed since the
+     * vpool was last matched.
      * 
      * @param vpool
      *            : vpool to match.
@@ -247,14 +255,16 @@ public class ImplicitPoolMatcher {
      * @param dbClient
      * @param matcherGroupName group name of attribute matchers to run
      * @param errorMessage
+     * @return true if the matched or invalid pools of the vpool changed.
      */
-    public static void matchvPoolWithStoragePools(VirtualPool vpool, List<StoragePool> pools, DbClient dbClient,
+    public static boolean matchvPoolWithStoragePools(VirtualPool vpool, List<StoragePool> pools, DbClient dbClient,
             CoordinatorClient coordinator, String matcherGroupName, StringBuffer errorMessage) {
         List<StoragePool> filterPools = getMatchedPoolWithStoragePools(vpool, pools,
                 VirtualPool.getProtectionSettings(vpool, dbClient),
                 VirtualPool.getRemoteProtectionSettings(vpool, dbClient),
-                VirtualPool.getFileRemoteProtectionSettings(vpool, dbClient), dbClient, coordinator, matcherGroupName, errorMessage);
-        updateInvalidAndMatchedPoolsForVpool(vpool, filterPools, pools, dbClient);
+                VirtualPool.getFileRemoteProtectionSettings(vpool, dbClient), dbClient, coordinator, matcherGroupName, true,
+                errorMessage);
+        return updateInvalidAndMatchedPoolsForVpool(vpool, filterPools, pools);
     }
 
     /**
@@ -269,6 +279,17 @@ public class ImplicitPoolMatcher {
             Map<URI, VpoolRemoteCopyProtectionSettings> fileRemoteSettingsMap,
             DbClient dbClient,
             CoordinatorClient coordinator, String matcherGroupName, StringBuffer errorMessage) {
+        return getMatchedPoolWithStoragePools(vpool, pools, protectionVarraySettings, remoteSettingsMap,
+                fileRemoteSettingsMap, dbClient, coordinator, matcherGroupName, false, errorMessage);
+    }
+
+    private static List<StoragePool> getMatchedPoolWithStoragePools(VirtualPool vpool,
+            List<StoragePool> pools,
+            Map<URI, VpoolProtectionVarraySettings> protectionVarraySettings,
+            Map<URI, VpoolRemoteCopyProtectionSettings> remoteSettingsMap,
+            Map<URI, VpoolRemoteCopyProtectionSettings> fileRemoteSettingsMap,
+            DbClient dbClient,
+            CoordinatorClient coordinator, String matcherGroupName, boolean incremental, StringBuffer errorMessage) {
         // By default use all vpool matchers.
         if (matcherGroupName == null) {
             matcherGroupName = AttributeMatcher.VPOOL_MATCHERS;
@@ -279,22 +300,24 @@ public class ImplicitPoolMatcher {
                 VirtualPool.getFileProtectionRemoteSettings(vpool.getId(), dbClient));
         Map<String, Object> attributeMap = vpoolMapBuilder.buildMap();
         _logger.info("Implict Pool matching populated attribute map: {}", attributeMap);
-        List<StoragePool> filterPools = _matcherFramework.matchAttributes(pools, attributeMap, dbClient, coordinator,
-                matcherGroupName, errorMessage);
+        List<StoragePool> filterPools = null;
+        if (incremental) {
+            filterPools = _matcherFramework.matchAttributesIncrementally(pools, vpool.getId(), attributeMap, dbClient,
+                    coordinator, matcherGroupName, errorMessage);
+        } else {
+            filterPools = _matcherFramework.matchAttributes(pools, attributeMap, dbClient, coordinator,
+                    matcherGroupName, errorMessage);
+        }
         _logger.info("Ended matching pools with vpool attributes. Found {} matching pools", filterPools.size());
         return filterPools;
     }
 
     /**
-     * 1. Loop thru each processed pool. 2. Get the previously matched VirtualPool for this pool by
-     * doing constraint query. 3. If the pool is not in any of the previously matched VirtualPool,
-     * then add all matched pools to VirtualPool. 4. Now, check processed pool is in current matched
-     * pools, then check whether it is in invalidMatched pools or not. 5. If it is in invalid
-     * Matched pools, then remove it. means an invalid pool become active now. 6. Also verify the
-     * VirtualPool is a previously matched VirtualPool. If it is not, then add it to
-     * newMatchedPools. 6. If processed pools is not in matched pools, then check if the pools is
-     * not in previously matched pool or not. 7. If it is in the previously matched pool then add it
-     * to invalidMatched pools.
+     * Applies the result of matching the processed pools to the matched and invalid pools of the
+     * VirtualPool. 1. A processed pool in the matched pools is added to the matched pools and, if it
+     * was invalid, it became active now and is removed from the invalid pools. 2. A processed pool
+     * not in the matched pools, which was matched before, became invalid now and is moved to the
+     * invalid pools. Pools which were not processed are left as they are.
      * 
      * @param vpool
      *            : vpool to update.
@@ -302,12 +325,10 @@ public class ImplicitPoolMatcher {
      *            : List of pools matched after running attribute matchers.
      * @param storagePools
      *            : List of processed pools.
-     * @param dbClient
-     *            : dbClient reference.
+     * @return true if the matched or invalid pools changed.
      */
-    private static void updateInvalidAndMatchedPoolsForVpool(VirtualPool vpool, List<StoragePool> matchedPools,
-            List<StoragePool> storagePools, DbClient dbClient) {
-        URI currentVpoolId = vpool.getId();
+    private static boolean updateInvalidAndMatchedPoolsForVpool(VirtualPool vpool, List<StoragePool> matchedPools,
+            List<StoragePool> storagePools) {
         StringSet newMatchedPools = new StringSet();
         StringSet newInvalidPools = new StringSet();
         if (null != vpool.getMatchedStoragePools()) {
@@ -316,66 +337,40 @@ public class ImplicitPoolMatcher {
         if (null != vpool.getInvalidMatchedPools()) {
             newInvalidPools.addAll(vpool.getInvalidMatchedPools());
         }
+        Set<URI> matchedPoolURIs = new HashSet<URI>();
+        for (StoragePool pool : matchedPools) {
+            matchedPoolURIs.add(pool.getId());
+        }
+        boolean changed = false;
         for (StoragePool pool : storagePools) {
             String poolIdStr = pool.getId().toString();
-            URIQueryResultList queryResult = new URIQueryResultList();
-            dbClient.queryByConstraint(
-                    ContainmentConstraint.Factory.getMatchedPoolVirtualPoolConstraint(pool.getId()), queryResult);
-            Iterator<URI> oldMatchedVpoolItr = queryResult.iterator();
-            if (!oldMatchedVpoolItr.hasNext()) {
-                if (matchedPools.contains(pool)) {
+            if (matchedPoolURIs.contains(pool.getId())) {
+                if (newMatchedPools.add(poolIdStr)) {
                     _logger.debug("New pool found {}", poolIdStr);
-                    newMatchedPools.add(poolIdStr);
-                    // current vpool is already active but check whether the invalid pool became
-                    // active.
-                    removeInvalidPools(vpool, newInvalidPools, poolIdStr);
+                    changed = true;
                 }
-            }
-            // If the processed pool is in matched pools.
-            if (matchedPools.contains(pool)) {
-                // Get the previously matched VirtualPool for this pool.
-                while (oldMatchedVpoolItr.hasNext()) {
-                    URI oldMatchedVpoolURI = oldMatchedVpoolItr.next();
-                    // current vpool is already active but check whether the invalid pool became
-                    // active.
-                    removeInvalidPools(vpool, newInvalidPools, poolIdStr);
-                    // old vpool is not matching with the current VirtualPool.
-                    // then add the pool to matched list.
-                    if (!currentVpoolId.equals(oldMatchedVpoolURI)) {
-                        _logger.debug("Adding pool {}", poolIdStr);
-                        newMatchedPools.add(poolIdStr);
-                    }
+                if (newInvalidPools.remove(poolIdStr)) {
+                    _logger.debug("Invalid Pool {} became active now.", poolIdStr);
+                    changed = true;
                 }
-            } else { // processed pool is not in matched pools
+            } else if (newMatchedPools.remove(poolIdStr)) {
                 // Since it was matched pool and now became invalid
-                if (newMatchedPools.contains(poolIdStr)) {
-                    _logger.debug("pool {} became invalid now.", poolIdStr);
-                    newMatchedPools.remove(poolIdStr);
-                    newInvalidPools.add(poolIdStr);
-                }
+                _logger.debug("pool {} became invalid now.", poolIdStr);
+                newInvalidPools.add(poolIdStr);
+                changed = true;
             }
         }
+        if (!changed) {
+            _logger.info("Matched and invalid pools of VPool {} are unchanged", vpool.getId());
+            return false;
+        }
         _logger.info(MessageFormatter.arrayFormat(
                 "Updating VPool {} with Matched Pools:{}, Invalid pools:{}", new Object[] { vpool.getId(),
                         newMatchedPools.size(), newInvalidPools.size() })
                 .getMessage());
         vpool.addMatchedStoragePools(newMatchedPools);
         vpool.addInvalidMatchedPools(newInvalidPools);
-    }
-
-    /**
-     * Remove if new pool from invalid pools if it becomes active.
-     * 
-     * @param vpool
-     * @param newInvalidPools
-     * @param poolIdStr
-     */
-    private static void removeInvalidPools(VirtualPool vpool, StringSet newInvalidPools, String poolIdStr) {
-        if (null != vpool.getInvalidMatchedPools()
-                && vpool.getInvalidMatchedPools().contains(poolIdStr)) {
-            _logger.debug("Invalid Pool {} became active now.", poolIdStr);
-            newInvalidPools.remove(poolIdStr);
-        }
+        return true;
     }
 
     /**
@@ -9,10 +9,12 @@ import com.emc.storageos.db.client.DbClient;
 import java.lang.ref.SoftReference;
 import java.net.URI;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This class should be used instead of DbClient if activity is expected to query DB for the same set of objects.
- * This class is NOT thread safe. The cache should be local with a scope of a single thread.
+ * The cache should be local with a scope of a single activity. It is thread safe, so that the
+ * attribute matchers run on partitions of the pools of an activity can share it.
  * An example where it is appropriate might be in matching and placement activities run by apisvc and also, to a lesser extend by
  * controllers.
  * Activities are moved through a net of methods where each method is likely to query DB for the same set of objects.
@@ -33,7 +35,7 @@ public class ObjectLocalCache {
      * Maps URI/String to a Soft Reference to DataObjects
      * Soft References are guaranteed to get GCed before the process goes OOM
      */
-    private final Map<URI, SoftReference<DataObject>> CACHE_MAP = new HashMap<>();
+    private final Map<URI, SoftReference<DataObject>> CACHE_MAP = new ConcurrentHashMap<>();
 
     public ObjectLocalCache(DbClient dbClient) {
         this.dbClient = dbClient;
@@ -116,12 +118,16 @@ public class ObjectLocalCache {
     }
 
     private <T extends DataObject> T getObject(URI id, Class<T> clazz) {
+        // the map takes no null keys
+        if (id == null) {
+            return null;
+        }
         SoftReference<DataObject> objRef = CACHE_MAP.get(id);
         return objRef == null ? null : clazz.cast(objRef.get());
     }
 
     private <T extends DataObject> void putObject(URI id, T object) {
-        if (enabled && CACHE_MAP.size() < maxHashSize) {
+        if (enabled && id != null && CACHE_MAP.size() < maxHashSize) {
             CACHE_MAP.put(id, new SoftReference<DataObject>(object));
         }
     }
@@ -131,7 +137,9 @@ public class ObjectLocalCache {
     }
 
     public void clearCache(URI cached) {
-        CACHE_MAP.remove(cached);
+        if (cached != null) {
+            CACHE_MAP.remove(cached);
+        }
     }
 
     public <T extends DataObject> T refresh(Class<T> clazz, URI id) {
@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.volumecontroller.impl.utils;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.emc.storageos.db.client.model.DataObject;
+import com.emc.storageos.db.client.model.StoragePool;
+import com.emc.storageos.db.client.model.StorageSystem;
+import com.emc.storageos.volumecontroller.AttributeMatcher;
+
+/**
+ * Remembers which storage pools passed each attribute matcher for a vpool, so that vpool
+ * matching only runs a matcher on the pools whose inputs to that matcher have changed.
+ *
+ * Only matchers which declare their dependencies through AttributeMatcher.getPoolDependencies
+ * are cached. For those, a fingerprint of the declared pool and storage system properties is
+ * kept per pool; a changed fingerprint drops the pool's results for that matcher in all
+ * vpools. The results of a vpool are dropped when its attribute map changes.
+ *
+ * Results are kept per pool index in bit sets, hence a vpool costs two bits per pool for
+ * each cached matcher. This class is thread safe.
+ */
+public class PoolMatchResultCache {
+    private static final Logger _logger = LoggerFactory.getLogger(PoolMatchResultCache.class);
+
+    // Maximum number of vpools and pools to keep results for
+    private static final int MAX_VPOOLS = 2000;
+    private static final int MAX_POOLS = 100000;
+
+    // Read methods of the model properties, by class and property name
+    private static final Map<Class<?>, Map<String, Method>> _readMethods = new ConcurrentHashMap<Class<?>, Map<String, Method>>();
+
+    private final Map<URI, Integer> _poolIndexes = new HashMap<URI, Integer>();
+    // matcher -> pool index -> fingerprint of the pool's inputs to the matcher
+    private final Map<String, Map<Integer, String>> _fingerprints = new HashMap<String, Map<Integer, String>>();
+    private final Map<URI, VpoolResults> _vpoolResults = new LinkedHashMap<URI, VpoolResults>(16, 0.75f, true);
+    private long _hits = 0;
+    private long _misses = 0;
+
+    private static class VpoolResults {
+        private final String signature;
+        private final Map<String, BitSet> known = new HashMap<String, BitSet>();
+        private final Map<String, BitSet> passed = new HashMap<String, BitSet>();
+
+        private VpoolResults(String signature) {
+            this.signature = signature;
+        }
+    }
+
+    /**
+     * Returns whether the given matcher's results can be cached.
+     */
+    public static boolean isCacheable(AttributeMatcher matcher) {
+        return matcher.getPoolDependencies() != null;
+    }
+
+    /**
+     * Builds the signature of a vpool's attribute map. Collections and maps are
+     * sorted so that equal attribute maps always give the same signature.
+     *
+     * @param attributeMap vpool attribute map
+     * @return signature
+     */
+    public static String getSignature(Map<String, Object> attributeMap) {
+        return String.valueOf(normalize(attributeMap));
+    }
+
+    /**
+     * Builds the fingerprint of the given pool's inputs to a cacheable matcher.
+     *
+     * @param matcher the matcher
+     * @param pool the pool
+     * @param cache used to look up the pool's storage system
+     * @return fingerprint
+     */
+    public static String getFingerprint(AttributeMatcher matcher, StoragePool pool, ObjectLocalCache cache) {
+        StringBuilder fingerprint = new StringBuilder();
+        appendProperties(fingerprint, pool, matcher.getPoolDependencies());
+        List<String> systemDependencies = matcher.getStorageSystemDependencies();
+        if (!systemDependencies.isEmpty()) {
+            StorageSystem system = (pool.getStorageDevice() != null) ?
+                    cache.queryObject(StorageSystem.class, pool.getStorageDevice()) : null;
+            fingerprint.append('|');
+            appendProperties(fingerprint, system, systemDependencies);
+        }
+        return fingerprint.toString();
+    }
+
+    private static void appendProperties(StringBuilder fingerprint, DataObject object, List<String> properties) {
+        if (object == null) {
+            fingerprint.append("null");
+            return;
+        }
+        Map<String, Method> readMethods = getReadMethods(object.getClass());
+        for (String property : properties) {
+            Method readMethod = readMethods.get(property);
+            if (readMethod == null) {
+                throw new IllegalArgumentException(String.format("%s has no property %s",
+                        object.getClass().getSimpleName(), property));
+            }
+            try {
+                fingerprint.append(normalize(readMethod.invoke(object))).append(',');
+            } catch (Exception e) {
+                throw new IllegalStateException(String.format("Failed to read %s of %s", property, object.getId()), e);
+            }
+        }
+    }
+
+    private static Map<String, Method> getReadMethods(Class<?> clazz) {
+        Map<String, Method> readMethods = _readMethods.get(clazz);
+        if (readMethods == null) {
+            readMethods = new HashMap<String, Method>();
+            try {
+                BeanInfo beanInfo = Introspector.getBeanInfo(clazz);
+                for (PropertyDescriptor descriptor : beanInfo.getPropertyDescriptors()) {
+                    if (descriptor.getReadMethod() != null) {
+                        readMethods.put(descriptor.getName(), descriptor.getReadMethod());
+                    }
+                }
+            } catch (IntrospectionException e) {
+                throw new IllegalStateException("Failed to introspect " + clazz.getName(), e);
+            }
+            _readMethods.put(clazz, readMethods);
+        }
+        return readMethods;
+    }
+
+    private static Object normalize(Object value) {
+        if (value instanceof Map) {
+            Map<String, Object> sorted = new TreeMap<String, Object>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                sorted.put(String.valueOf(entry.getKey()), normalize(entry.getValue()));
+            }
+            return sorted;
+        } else if (value instanceof Collection) {
+            TreeSet<String> sorted = new TreeSet<String>();
+            for (Object element : (Collection<?>) value) {
+                sorted.add(String.valueOf(normalize(element)));
+            }
+            return sorted;
+        }
+        return value;
+    }
+
+    /**
+     * Drops the results of the given vpool if its attribute map changed since they were recorded.
+     *
+     * @param vpoolId vpool id
+     * @param signature signature of the vpool's current attribute map
+     */
+    public synchronized void checkSignature(URI vpoolId, String signature) {
+        VpoolResults results = _vpoolResults.get(vpoolId);
+        if (results == null || !results.signature.equals(signature)) {
+            if (results != null) {
+                _logger.info("Attributes of vpool {} changed, dropping its matched pool results", vpoolId);
+            }
+            _vpoolResults.put(vpoolId, new VpoolResults(signature));
+            if (_vpoolResults.size() > MAX_VPOOLS) {
+                Iterator<URI> eldest = _vpoolResults.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns whether the pool passed the matcher for the vpool, or null if that is not known
+     * for the pool's current fingerprint. checkSignature must be called for the vpool first.
+     *
+     * @param vpoolId vpool id
+     * @param matcherName name of the matcher
+     * @param poolId pool id
+     * @param fingerprint fingerprint of the pool's inputs to the matcher
+     * @return whether the pool passed the matcher else null
+     */
+    public synchronized Boolean getResult(URI vpoolId, String matcherName, URI poolId, String fingerprint) {
+        VpoolResults results = _vpoolResults.get(vpoolId);
+        Integer index = _poolIndexes.get(poolId);
+        if (results == null || index == null || !checkFingerprint(matcherName, index, fingerprint)) {
+            _misses++;
+            return null;
+        }
+        BitSet known = results.known.get(matcherName);
+        if (known == null || !known.get(index)) {
+            _misses++;
+            return null;
+        }
+        _hits++;
+        return results.passed.get(matcherName).get(index);
+    }
+
+    /**
+     * Records whether the pool passed the matcher for the vpool.
+     *
+     * @param vpoolId vpool id
+     * @param matcherName name of the matcher
+     * @param poolId pool id
+     * @param fingerprint fingerprint of the pool's inputs to the matcher
+     * @param passed whether the pool passed the matcher
+     */
+    public synchronized void putResult(URI vpoolId, String matcherName, URI poolId, String fingerprint, boolean passed) {
+        VpoolResults results = _vpoolResults.get(vpoolId);
+        if (results == null) {
+            return;
+        }
+        Integer index = _poolIndexes.get(poolId);
+        if (index == null) {
+            if (_poolIndexes.size() >= MAX_POOLS) {
+                _logger.info("Matched pool results exceed {} pools, clearing them", MAX_POOLS);
+                clear();
+                return;
+            }
+            index = _poolIndexes.size();
+            _poolIndexes.put(poolId, index);
+        }
+        checkFingerprint(matcherName, index, fingerprint);
+        BitSet known = results.known.get(matcherName);
+        if (known == null) {
+            known = new BitSet();
+            results.known.put(matcherName, known);
+            results.passed.put(matcherName, new BitSet());
+        }
+        known.set(index);
+        results.passed.get(matcherName).set(index, passed);
+    }
+
+    /**
+     * Compares the pool's fingerprint for the matcher with the recorded one. If it changed,
+     * the pool's results for the matcher are dropped in all vpools and the new fingerprint recorded.
+     *
+     * @return true if the fingerprint did not change
+     */
+    private boolean checkFingerprint(String matcherName, int index, String fingerprint) {
+        Map<Integer, String> fingerprints = _fingerprints.get(matcherName);
+        if (fingerprints == null) {
+            fingerprints = new HashMap<Integer, String>();
+            _fingerprints.put(matcherName, fingerprints);
+        }
+        String recorded = fingerprints.put(index, fingerprint);
+        if (fingerprint.equals(recorded)) {
+            return true;
+        }
+        if (recorded != null) {
+            for (VpoolResults results : _vpoolResults.values()) {
+                BitSet known = results.known.get(matcherName);
+                if (known != null) {
+                    known.clear(index);
+                }
+            }
+        }
+        return false;
+    }
+
+    public synchronized void clear() {
+        _poolIndexes.clear();
+        _fingerprints.clear();
+        _vpoolResults.clear();
+    }
+
+    public synchronized long getHitCount() {
+        return _hits;
+    }
+
+    public synchronized long getMissCount() {
+        return _misses;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("PoolMatchResultCache[vpools=%d, pools=%d, hits=%d, misses=%d]",
+                _vpoolResults.size(), _poolIndexes.size(), _hits, _misses);
+    }
+}
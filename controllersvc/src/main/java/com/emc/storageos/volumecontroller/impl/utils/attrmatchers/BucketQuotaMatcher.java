@@ -66,4 +66,8 @@ private static final Logger _logger = LoggerFactory.getLogger(BucketQuotaMatcher
 
     }
 
+    @Override
+    public boolean isParallelSafe() {
+        return true;
+    }
 }
@@ -366,4 +366,8 @@ public class CapacityMatcher extends AttributeMatcher {
                         ControllerUtils.getPropertyValueFromCoordinator(coordinator, MAX_THIN_POOL_SUBSCRIPTION_PERCENTAGE));
     }
 
+    @Override
+    public boolean isParallelSafe() {
+        return true;
+    }
 }
@@ -5,6 +5,7 @@
 package com.emc.storageos.volumecontroller.impl.utils.attrmatchers;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -60,4 +61,9 @@ public class CoSTypeAttributeMatcher extends AttributeMatcher {
     protected boolean isAttributeOn(Map<String, Object> attributeMap) {
         return attributeMap.containsKey(Attributes.vpool_type.toString());
     }
+
+    @Override
+    public List<String> getPoolDependencies() {
+        return Arrays.asList("poolServiceType");
+    }
 }
@@ -6,6 +6,7 @@
 package com.emc.storageos.volumecontroller.impl.utils.attrmatchers;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -55,4 +56,8 @@ public class CompatiblePoolMatcher extends AttributeMatcher {
         return matchedPools;
     }
 
+    @Override
+    public List<String> getPoolDependencies() {
+        return Arrays.asList("compatibilityStatus");
+    }
 }
@@ -5,6 +5,7 @@
 package com.emc.storageos.volumecontroller.impl.utils.attrmatchers;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -68,4 +69,9 @@ public class CompressionMatcher extends AttributeMatcher {
         }
         return status;
     }
+
+    @Override
+    public List<String> getPoolDependencies() {
+        return Arrays.asList("compressionEnabled");
+    }
 }
@@ -5,6 +5,7 @@
 package com.emc.storageos.volumecontroller.impl.utils.attrmatchers;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -63,4 +64,9 @@ public class DedupMatcher extends AttributeMatcher {
                 Joiner.on("\t").join(getNativeGuidFromPools(allPools)));
         return filteredPoolList;
 	}
+
+	@Override
+	public List<String> getPoolDependencies() {
+		return Arrays.asList("dedupCapable");
+	}
 }
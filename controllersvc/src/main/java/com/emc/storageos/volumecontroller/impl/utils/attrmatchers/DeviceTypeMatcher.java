@@ -6,6 +6,7 @@ package com.emc.storageos.volumecontroller.impl.utils.attrmatchers;
 
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -101,4 +102,13 @@ public class DeviceTypeMatcher extends AttributeMatcher {
         return Collections.emptyMap();
     }
 
+    @Override
+    public List<String> getPoolDependencies() {
+        return Arrays.asList("storageDevice");
+    }
+
+    @Override
+    public List<String> getStorageSystemDependencies() {
+        return Arrays.asList("systemType");
+    }
 }
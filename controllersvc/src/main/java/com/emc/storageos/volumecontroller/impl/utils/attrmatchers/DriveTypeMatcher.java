@@ -6,6 +6,7 @@ package com.emc.storageos.volumecontroller.impl.utils.attrmatchers;
 
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -100,4 +101,14 @@ public class DriveTypeMatcher extends ConditionalAttributeMatcher {
         }
         return Collections.emptyMap();
     }
+
+    @Override
+    public List<String> getPoolDependencies() {
+        return Arrays.asList("supportedDriveTypes", "storageDevice");
+    }
+
+    @Override
+    public List<String> getStorageSystemDependencies() {
+        return Arrays.asList("systemType");
+    }
 }
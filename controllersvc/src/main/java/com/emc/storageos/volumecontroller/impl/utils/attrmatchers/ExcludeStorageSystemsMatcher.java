@@ -101,4 +101,9 @@ public class ExcludeStorageSystemsMatcher extends AttributeMatcher {
         }
         return builder.toString();
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean isParallelSafe() {
+        return true;
+    }
+}
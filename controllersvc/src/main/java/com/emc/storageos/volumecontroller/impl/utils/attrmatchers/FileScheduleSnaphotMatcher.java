@@ -5,6 +5,7 @@
 package com.emc.storageos.volumecontroller.impl.utils.attrmatchers;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -77,4 +78,9 @@ public class FileScheduleSnaphotMatcher extends AttributeMatcher {
 
         return attributeMap != null && attributeMap.containsKey(Attributes.schedule_snapshots.toString());
     }
+
+    @Override
+    public List<String> getPoolDependencies() {
+        return Arrays.asList("supportedCopyTypes");
+    }
 }
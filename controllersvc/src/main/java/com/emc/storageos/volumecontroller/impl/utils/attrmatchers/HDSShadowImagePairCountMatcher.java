@@ -6,6 +6,7 @@ package com.emc.storageos.volumecontroller.impl.utils.attrmatchers;
 
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -73,4 +74,13 @@ public class HDSShadowImagePairCountMatcher extends AttributeMatcher {
         return filteredPoolList;
     }
 
+    @Override
+    public List<String> getPoolDependencies() {
+        return Arrays.asList("storageDevice");
+    }
+
+    @Override
+    public List<String> getStorageSystemDependencies() {
+        return Arrays.asList("systemType");
+    }
 }
@@ -5,6 +5,7 @@
 package com.emc.storageos.volumecontroller.impl.utils.attrmatchers;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -54,4 +55,9 @@ public class LongTermRetentionMatcher extends AttributeMatcher {
         // Since this is a defaultMatcher, it should always return true.
         return true;
     }
+
+    @Override
+    public List<String> getPoolDependencies() {
+        return Arrays.asList("longTermRetention");
+    }
 }
@@ -130,4 +130,8 @@ public class MaxResourcesMatcher extends AttributeMatcher {
         return count;
     }
 
+    @Override
+    public boolean isParallelSafe() {
+        return true;
+    }
 }
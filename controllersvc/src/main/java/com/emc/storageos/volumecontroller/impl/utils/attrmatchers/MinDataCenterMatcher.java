@@ -5,6 +5,7 @@
 package com.emc.storageos.volumecontroller.impl.utils.attrmatchers;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -60,4 +61,8 @@ public class MinDataCenterMatcher extends AttributeMatcher {
         return filteredPoolList;
 	}
 
+	@Override
+	public List<String> getPoolDependencies() {
+		return Arrays.asList("dataCenters");
+	}
 }
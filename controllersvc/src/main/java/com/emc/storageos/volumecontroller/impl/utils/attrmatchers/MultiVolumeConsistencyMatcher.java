@@ -11,6 +11,7 @@ import static com.google.common.collect.Lists.newArrayList;
 
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -112,4 +113,13 @@ public class MultiVolumeConsistencyMatcher extends AttributeMatcher {
         return false;
     }
 
+    @Override
+    public List<String> getPoolDependencies() {
+        return Arrays.asList("storageDevice");
+    }
+
+    @Override
+    public List<String> getStorageSystemDependencies() {
+        return Arrays.asList("supportedAsynchronousActions", "systemType");
+    }
 }
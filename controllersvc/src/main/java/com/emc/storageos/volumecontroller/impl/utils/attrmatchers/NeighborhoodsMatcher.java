@@ -6,6 +6,7 @@ package com.emc.storageos.volumecontroller.impl.utils.attrmatchers;
 
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -45,7 +46,7 @@ public class NeighborhoodsMatcher extends AttributeMatcher {
         Set<String> vArrays = (Set<String>) attributeMap.get(Attributes.varrays.toString());
         if (vArrays != null && !vArrays.isEmpty()) {
             _logger.info("Pools Matching vArrays Started {}, {} :", vArrays, Joiner.on("\t").join(getNativeGuidFromPools(pools)));
-            List<URI> vArrayPools = getVarrayPools(vArrays);
+            Set<URI> vArrayPools = getVarrayPools(vArrays);
             Iterator<StoragePool> poolIterator = pools.iterator();
             while (poolIterator.hasNext()) {
                 StoragePool pool = poolIterator.next();
@@ -71,8 +72,8 @@ public class NeighborhoodsMatcher extends AttributeMatcher {
      * @return
      */
 
-    private List<URI> getVarrayPools(Set<String> vArrays) {
-        List<URI> poolURIs = new ArrayList<URI>();
+    private Set<URI> getVarrayPools(Set<String> vArrays) {
+        Set<URI> poolURIs = new HashSet<URI>();
         Iterator<String> vArrayItr = vArrays.iterator();
         while (vArrayItr.hasNext()) {
             URIQueryResultList vArrayPoolsQueryResult = new URIQueryResultList();
@@ -45,4 +45,8 @@ public class NotificationLimitMatcher extends AttributeMatcher {
         return filteredPools;
     }
 
+    @Override
+    public boolean isParallelSafe() {
+        return true;
+    }
 }
@@ -6,6 +6,7 @@ package com.emc.storageos.volumecontroller.impl.utils.attrmatchers;
 
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -78,4 +79,13 @@ public class ProvisioningTypeMatcher extends AttributeMatcher {
 
     }
 
+    @Override
+    public List<String> getPoolDependencies() {
+        return Arrays.asList("supportedResourceTypes", "storageDevice");
+    }
+
+    @Override
+    public List<String> getStorageSystemDependencies() {
+        return Arrays.asList("supportedProvisioningType");
+    }
 }
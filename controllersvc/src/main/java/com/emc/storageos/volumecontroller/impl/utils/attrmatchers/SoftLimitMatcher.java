@@ -47,4 +47,8 @@ public class SoftLimitMatcher extends AttributeMatcher {
         return filteredPools;
     }
 
+    @Override
+    public boolean isParallelSafe() {
+        return true;
+    }
 }
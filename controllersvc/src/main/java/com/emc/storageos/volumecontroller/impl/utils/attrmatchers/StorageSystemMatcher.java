@@ -75,4 +75,9 @@ public class StorageSystemMatcher extends AttributeMatcher {
     protected List<StoragePool> matchStoragePoolsWithAttributeOff(List<StoragePool> pools, Map<String, Object> attributeMap) {
         return pools;
     }
+
+    @Override
+    public boolean isParallelSafe() {
+        return true;
+    }
 }
@@ -5,6 +5,7 @@
 package com.emc.storageos.volumecontroller.impl.utils.attrmatchers;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -71,4 +72,14 @@ public class ThinVolumePreAllocationMatcher extends AttributeMatcher {
         }
         return filteredPoolList;
     }
+
+    @Override
+    public List<String> getPoolDependencies() {
+        return Arrays.asList("thinVolumePreAllocationSupported", "storageDevice");
+    }
+
+    @Override
+    public List<String> getStorageSystemDependencies() {
+        return Arrays.asList("systemType", "firmwareVersion");
+    }
 }
@@ -199,6 +199,11 @@ public class VNXeJob extends Job implements Serializable {
         this._storageSystemUri = _storageSystemUri;
     }
 
+    @Override
+    public URI getStorageSystemURI() {
+        return _storageSystemUri;
+    }
+
     public TaskCompleter getTaskCompleter() {
         return _taskCompleter;
     }
@@ -47,6 +47,9 @@ public class VPlexCacheStatusJob extends Job implements Serializable {
     // A reference to an error description.
     private String _errorDescription = null;
 
+    // The VPlex system, known once the job was polled.
+    private URI _vplexSystemURI = null;
+
     // Logger reference.
     private static final Logger s_logger = LoggerFactory.getLogger(VPlexCacheStatusJob.class);
 
@@ -79,6 +82,7 @@ public class VPlexCacheStatusJob extends Job implements Serializable {
         StorageSystem vplexSystem = dbClient.queryObject(StorageSystem.class,
                 vplexVolume.getStorageController());
         s_logger.debug("VPlex system is {}", vplexSystem.getId());
+        _vplexSystemURI = vplexSystem.getId();
 
         try {
             // Update the job info.
@@ -177,4 +181,12 @@ public class VPlexCacheStatusJob extends Job implements Serializable {
     public TaskCompleter getTaskCompleter() {
         return _taskCompleter;
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public URI getStorageSystemURI() {
+        return _vplexSystemURI;
+    }
 }
@@ -58,6 +58,9 @@ public class VPlexMigrationJob extends Job implements Serializable {
     // time we will wait by the interval at which the job is polled.
     private Integer _maxRetries = null;
 
+    // The VPlex system, known once the job was polled.
+    private URI _vplexSystemURI = null;
+
     // Keeps track of how many times we have tried to get the migration status
     // since the last successful attempt to get the status.
     private int _retryCount = 0;
@@ -117,6 +120,7 @@ public class VPlexMigrationJob extends Job implements Serializable {
             vplexSystem = dbClient.queryObject(StorageSystem.class,
                     virtualVolume.getStorageController());
             s_logger.debug("VPlex system is {}", vplexSystem.getId());
+            _vplexSystemURI = vplexSystem.getId();
 
             // Get the VPlex API client for this VPlex storage system
             // and get the latest info for the migration.
@@ -328,4 +332,12 @@ public class VPlexMigrationJob extends Job implements Serializable {
     public TaskCompleter getTaskCompleter() {
         return _taskCompleter;
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public URI getStorageSystemURI() {
+        return _vplexSystemURI;
+    }
 }
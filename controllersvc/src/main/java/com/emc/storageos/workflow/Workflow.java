@@ -98,6 +98,10 @@ public class Workflow implements Serializable {
 
     private static final Logger _log = LoggerFactory.getLogger(Workflow.class);
 
+    static {
+        WorkflowZkDataAdapters.register();
+    }
+
     /**
      * The state of a Step.
      */
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.workflow;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Node-local cache of fully loaded Workflows, keyed by workflow URI.
+ * Each entry records the ZK Stat version of the workflow's version node at the time
+ * the Workflow was loaded or last written by this node. An entry is only returned
+ * if that version still matches ZK; otherwise it is dropped and the caller reloads.
+ */
+class WorkflowCache {
+    private final int _maxEntries;
+    private final Map<URI, Entry> _entries;
+    private final AtomicLong _hits = new AtomicLong();
+    private final AtomicLong _misses = new AtomicLong();
+    private final AtomicLong _stale = new AtomicLong();
+
+    private static class Entry {
+        private final Workflow workflow;
+        private int version;
+
+        Entry(Workflow workflow, int version) {
+            this.workflow = workflow;
+            this.version = version;
+        }
+    }
+
+    WorkflowCache(int maxEntries) {
+        _maxEntries = maxEntries;
+        _entries = new LinkedHashMap<URI, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<URI, Entry> eldest) {
+                return size() > _maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached Workflow without validating it. Only used where a
+     * stale copy is harmless, e.g. to find the workflow lock.
+     *
+     * @param workflowURI
+     * @return Workflow or null
+     */
+    synchronized Workflow peek(URI workflowURI) {
+        Entry entry = _entries.get(workflowURI);
+        return (entry != null) ? entry.workflow : null;
+    }
+
+    /**
+     * Returns the cached Workflow if it was cached at the given ZK version.
+     * A mismatching entry is removed.
+     *
+     * @param workflowURI
+     * @param version -- current version of the workflow's version node
+     * @return Workflow or null if the caller must reload from ZK
+     */
+    synchronized Workflow get(URI workflowURI, int version) {
+        Entry entry = _entries.get(workflowURI);
+        if (entry == null) {
+            _misses.incrementAndGet();
+            return null;
+        }
+        if (entry.version != version) {
+            _entries.remove(workflowURI);
+            _stale.incrementAndGet();
+            return null;
+        }
+        _hits.incrementAndGet();
+        return entry.workflow;
+    }
+
+    synchronized void put(Workflow workflow, int version) {
+        _entries.put(workflow.getWorkflowURI(), new Entry(workflow, version));
+    }
+
+    /**
+     * Called after this node wrote the workflow's version node once. If the cached
+     * instance is the one written, its version is advanced; a concurrent write by
+     * another node makes the versions differ and causes a reload.
+     * Writes of any other instance invalidate the entry.
+     *
+     * @param workflow
+     */
+    synchronized void written(Workflow workflow) {
+        Entry entry = _entries.get(workflow.getWorkflowURI());
+        if (entry == null) {
+            return;
+        }
+        if (entry.workflow == workflow) {
+            entry.version++;
+        } else {
+            _entries.remove(workflow.getWorkflowURI());
+        }
+    }
+
+    synchronized void invalidate(URI workflowURI) {
+        _entries.remove(workflowURI);
+    }
+
+    synchronized void clear() {
+        _entries.clear();
+    }
+
+    synchronized int size() {
+        return _entries.size();
+    }
+
+    long getHitCount() {
+        return _hits.get();
+    }
+
+    long getMissCount() {
+        return _misses.get();
+    }
+
+    long getStaleCount() {
+        return _stale.get();
+    }
+}
@@ -10,10 +10,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -87,6 +89,13 @@ public class WorkflowService implements WorkflowController {
     private ControllerLockingService _locker;
     private DistributedOwnerLockService _ownerLocker;
     private WorkflowScrubberExecutor _scrubber;
+    // if true, workflow and step state is written with multi-node transactions
+    // and a workflow's steps are read with pipelined requests
+    private boolean _batchedPersistence = false;
+    // steps written per transaction when batched; each step is a step node and a step2workflow node
+    private static final int STEPS_PER_TRANSACTION = 100;
+    // node-local cache of loaded workflows, validated against the workflow version node; null if disabled
+    private WorkflowCache _workflowCache = null;
 
     // Config properties
     private final String WORKFLOW_SUSPEND_ON_ERROR_PROPERTY = "workflow_suspend_on_error";
@@ -98,6 +107,9 @@ public class WorkflowService implements WorkflowController {
     private final String _zkStepDataPath = ZkPath.WORKFLOW.toString() + "/stepdata/%s";
     private final String _zkStepToWorkflowPath = ZkPath.WORKFLOW.toString() + "/step2workflow/%s";
     private final String _zkStepToWorkflow = ZkPath.WORKFLOW.toString() + "/step2workflow";
+    // Child of the workflow node whose Stat version is bumped by every workflow or step write,
+    // written only when the workflow cache is enabled
+    private final String _zkWorkflowVersion = "/_version";
 
     // Other constants
     private static final String WORKFLOW_URI_Match = "urn:storageos:Workflow.*";
@@ -120,6 +132,16 @@ public class WorkflowService implements WorkflowController {
         return path;
     }
 
+    /**
+     * Returns the ZK path of the workflow version node. Its data is ignored when loading steps.
+     *
+     * @param workflow
+     * @return
+     */
+    private String getZKWorkflowVersionPath(Workflow workflow) {
+        return getZKWorkflowPath(workflow) + _zkWorkflowVersion;
+    }
+
     /**
      * Returns the ZK path for a step state. The parent node represents a Workflow.
      *
@@ -171,6 +193,29 @@ public class WorkflowService implements WorkflowController {
         this._locker = locker;
     }
 
+    public void setBatchedPersistence(boolean batchedPersistence) {
+        this._batchedPersistence = batchedPersistence;
+    }
+
+    public boolean isBatchedPersistence() {
+        return _batchedPersistence;
+    }
+
+    /**
+     * Sets the number of workflows cached on this node for step status updates; 0 disables the cache.
+     * The workflow version node, which validates cached workflows, is only written while the cache
+     * is enabled, so all controller nodes must be configured alike.
+     *
+     * @param workflowCacheSize
+     */
+    public void setWorkflowCacheSize(int workflowCacheSize) {
+        this._workflowCache = (workflowCacheSize > 0) ? new WorkflowCache(workflowCacheSize) : null;
+    }
+
+    public int getWorkflowCacheSize() {
+        return (_workflowCache != null) ? _workflowCache.size() : 0;
+    }
+
     /**
      * Start the service.
      */
@@ -205,11 +250,21 @@ public class WorkflowService implements WorkflowController {
 
     /**
      * Log connection states in case they cause trouble with locking.
+     * The workflow cache is dropped when the connection is interrupted, as
+     * workflow updates may move to other nodes.
      */
     private final ConnectionStateListener _connectionStateListener = new ConnectionStateListener() {
         @Override
         public void stateChanged(CuratorFramework client, ConnectionState newState) {
             switch (newState) {
+                case SUSPENDED:
+                case LOST:
+                case RECONNECTED:
+                    _log.info("ZK connection: " + newState.name());
+                    if (_workflowCache != null) {
+                        _workflowCache.clear();
+                    }
+                    break;
                 default:
                     _log.info("ZK connection: " + newState.name());
                     break;
@@ -592,8 +647,13 @@ public class WorkflowService implements WorkflowController {
             if (workflowPath == null) {
                 return;
             }
-            // Load the Workflow state from ZK
-            workflow = (Workflow) _dataManager.getData(workflowPath, false);
+            // Load the Workflow state from ZK, unless this node has it cached
+            if (_workflowCache != null) {
+                workflow = _workflowCache.peek(URI.create(workflowPath.substring(workflowPath.lastIndexOf('/') + 1)));
+            }
+            if (workflow == null) {
+                workflow = (Workflow) _dataManager.getData(workflowPath, false);
+            }
             if (workflow == null) {
                 WorkflowException ex = WorkflowException.exceptions.workflowNotFound(workflowPath);
                 _log.info("Workflow not found: " + workflowPath, ex);
@@ -602,7 +662,7 @@ public class WorkflowService implements WorkflowController {
             // Lock the Workflow
             lock = lockWorkflow(workflow);
             // Load the entire workflow state including the steps
-            workflow = loadWorkflow(workflow);
+            workflow = loadLockedWorkflow(workflow);
             if (workflow == null) {
                 WorkflowException ex = WorkflowException.exceptions.workflowNotFound(workflowPath);
                 _log.info("Workflow not found: " + workflowPath, ex);
@@ -701,6 +761,10 @@ public class WorkflowService implements WorkflowController {
                 }
             }
         } catch (Exception ex) {
+            // The cached workflow may have been modified without being persisted.
+            if (_workflowCache != null && workflow != null) {
+                _workflowCache.invalidate(workflow.getWorkflowURI());
+            }
             String exMsg = "Exception processing updateStepStatus stepId: " + stepId + ": " + ex.getMessage();
             _log.error(exMsg, ex);
             throw new WorkflowException(exMsg, ex);
@@ -958,6 +1022,9 @@ public class WorkflowService implements WorkflowController {
      */
     public void destroyWorkflow(Workflow workflow) {
         String id = workflow.getOrchTaskId();
+        if (_workflowCache != null) {
+            _workflowCache.invalidate(workflow.getWorkflowURI());
+        }
         try {
             destroyNestedWorkflows(workflow);
 
@@ -1044,6 +1111,10 @@ public class WorkflowService implements WorkflowController {
      */
     private void persistWorkflowStep(Workflow workflow, Step step)
             throws WorkflowException {
+        if (_batchedPersistence) {
+            persistBatched(workflow, Collections.singletonList(step), false);
+            return;
+        }
         Workflow.Method executeMethod = step.executeMethod;
         Workflow.Method rollbackMethod = step.rollbackMethod;
         try {
@@ -1067,7 +1138,12 @@ public class WorkflowService implements WorkflowController {
             path = getZKStep2WorkflowPath(step.stepId);
             _dataManager.putData(path, workflowPath);
             _log.debug("Created step path: " + path);
+            if (_workflowCache != null) {
+                _dataManager.putData(getZKWorkflowVersionPath(workflow), System.currentTimeMillis());
+            }
+            workflowWritten(workflow);
         } catch (Exception ex) {
+            workflowWriteFailed(workflow);
             throw new WorkflowException("Cannot persist step in ZK", ex);
         } finally {
             step.executeMethod = executeMethod;
@@ -1075,6 +1151,148 @@ public class WorkflowService implements WorkflowController {
         }
     }
 
+    /**
+     * Persists the workflow (unless it has already been persisted) and all its steps.
+     *
+     * @param workflow
+     * @throws WorkflowException
+     */
+    void persistWorkflowAndSteps(Workflow workflow) throws WorkflowException {
+        if (_batchedPersistence) {
+            persistBatched(workflow, new ArrayList<Step>(workflow.getStepMap().values()), true);
+            return;
+        }
+        persistWorkflow(workflow);
+        for (Step step : workflow.getStepMap().values()) {
+            persistWorkflowStep(workflow, step);
+        }
+    }
+
+    /**
+     * Writes the steps, and optionally the workflow, with multi-node putData calls, each
+     * of which is one transaction. The ZK nodes are the same as those written by
+     * persistWorkflow and persistWorkflowStep.
+     *
+     * A step node and its step2workflow node are always written together. When there are
+     * more steps than fit in one transaction the steps are written in several, and the
+     * workflow and version nodes go in the last one. Large steps can still make a
+     * transaction exceed the size limit of the data manager; such a transaction is split,
+     * see putNodes. If writing a new workflow fails part way, the nodes already written
+     * are removed, so the workflow is either entirely in ZK or not there at all.
+     *
+     * @param workflow
+     * @param steps
+     * @param includeWorkflow if true the workflow node is written as well
+     * @throws WorkflowException
+     */
+    private void persistBatched(Workflow workflow, List<Step> steps, boolean includeWorkflow)
+            throws WorkflowException {
+        Map<String, Workflow.Step> stepMap = workflow.getStepMap();
+        Map<String, StepStatus> stepStatusMap = workflow.getStepStatusMap();
+        List<Workflow.Method[]> methods = new ArrayList<Workflow.Method[]>(steps.size());
+        String workflowPath = getZKWorkflowPath(workflow);
+        boolean newWorkflow = includeWorkflow && !isExistingWorkflow(workflow);
+        List<String> stepIds = new ArrayList<String>(steps.size());
+        try {
+            Map<String, Object> nodes = new LinkedHashMap<String, Object>();
+            for (int i = 0; i < steps.size(); i++) {
+                Step step = steps.get(i);
+                logStep(workflow, step);
+                // The methods are saved in the database only.
+                methods.add(new Workflow.Method[] { step.executeMethod, step.rollbackMethod });
+                step.executeMethod = null;
+                step.rollbackMethod = null;
+                nodes.put(getZKStepPath(workflow, step), step);
+                nodes.put(getZKStep2WorkflowPath(step.stepId), workflowPath);
+                stepIds.add(step.stepId);
+                if ((i + 1) % STEPS_PER_TRANSACTION == 0 && i + 1 < steps.size()) {
+                    // Nodes are serialized before putData returns, so the values can be restored.
+                    putNodes(nodes);
+                    nodes.clear();
+                }
+            }
+            if (includeWorkflow) {
+                // The step maps are saved as separate step nodes.
+                workflow.setStepMap(null);
+                workflow.setStepStatusMap(null);
+                nodes.put(workflowPath, workflow);
+            }
+            if (_workflowCache != null) {
+                nodes.put(getZKWorkflowVersionPath(workflow), System.currentTimeMillis());
+            }
+            putNodes(nodes);
+            _log.debug("Persisted {} steps of workflow {}", steps.size(), workflowPath);
+            workflowWritten(workflow);
+        } catch (Exception ex) {
+            workflowWriteFailed(workflow);
+            if (newWorkflow) {
+                removePartialWorkflow(workflowPath, stepIds);
+            }
+            throw new WorkflowException("Cannot persist workflow steps in ZK", ex);
+        } finally {
+            for (int i = 0; i < methods.size(); i++) {
+                steps.get(i).executeMethod = methods.get(i)[0];
+                steps.get(i).rollbackMethod = methods.get(i)[1];
+            }
+            workflow.setStepMap(stepMap);
+            workflow.setStepStatusMap(stepStatusMap);
+        }
+    }
+
+    /**
+     * Writes the nodes in one transaction. If the data manager rejects the transaction
+     * because it exceeds its size or operation limit, the nodes are split in two halves
+     * written one after the other, in order, down to single node writes. The halves are
+     * cut at an even node so a step node and its step2workflow node stay together.
+     *
+     * @param nodes node values by path, in write order
+     * @throws Exception
+     */
+    private void putNodes(Map<String, Object> nodes) throws Exception {
+        if (nodes.size() == 1) {
+            Map.Entry<String, Object> node = nodes.entrySet().iterator().next();
+            _dataManager.putData(node.getKey(), node.getValue());
+            return;
+        }
+        try {
+            _dataManager.putData(nodes);
+        } catch (IllegalArgumentException ex) {
+            int half = nodes.size() / 2;
+            if (half > 1) {
+                half -= half % 2;
+            }
+            _log.info("Splitting write of {} workflow nodes: {}", nodes.size(), ex.getMessage());
+            Map<String, Object> first = new LinkedHashMap<String, Object>();
+            Map<String, Object> second = new LinkedHashMap<String, Object>();
+            for (Map.Entry<String, Object> node : nodes.entrySet()) {
+                if (first.size() < half) {
+                    first.put(node.getKey(), node.getValue());
+                } else {
+                    second.put(node.getKey(), node.getValue());
+                }
+            }
+            putNodes(first);
+            putNodes(second);
+        }
+    }
+
+    /**
+     * Removes the nodes of a new workflow whose first write failed part way.
+     *
+     * @param workflowPath
+     * @param stepIds ids of the steps which may have been written
+     */
+    private void removePartialWorkflow(String workflowPath, List<String> stepIds) {
+        try {
+            _dataManager.removeNode(workflowPath, true);
+            for (String stepId : stepIds) {
+                _dataManager.removeNode(getZKStep2WorkflowPath(stepId));
+            }
+        } catch (Exception ex) {
+            _log.error("Cannot remove partially written workflow " + workflowPath, ex);
+        }
+    }
+
     /**
      * Returns false if this workflow doesn't exist.
      *
@@ -1130,9 +1348,16 @@ public class WorkflowService implements WorkflowController {
             workflow._service = this;
             // Load all the step states.
             List<String> children = _dataManager.getChildren(zkWorkflowPath);
+            List<String> childPaths = new ArrayList<String>(children.size());
             for (String child : children) {
-                String childPath = zkWorkflowPath + "/" + child;
-                Object stepObj = _dataManager.getData(childPath, false);
+                childPaths.add(zkWorkflowPath + "/" + child);
+            }
+            Map<String, Object> childData = null;
+            if (_batchedPersistence) {
+                childData = _dataManager.getData(childPaths);
+            }
+            for (String childPath : childPaths) {
+                Object stepObj = (childData != null) ? childData.get(childPath) : _dataManager.getData(childPath, false);
                 if (stepObj == null || false == (stepObj instanceof Step)) {
                     continue;
                 }
@@ -1182,11 +1407,79 @@ public class WorkflowService implements WorkflowController {
             // Restore the values
             workflow.setStepMap(stepMap);
             workflow.setStepStatusMap(stepStatusMap);
+            if (_workflowCache != null) {
+                _dataManager.putData(getZKWorkflowVersionPath(workflow), System.currentTimeMillis());
+            }
+            workflowWritten(workflow);
         } catch (Exception ex) {
+            workflowWriteFailed(workflow);
             throw new WorkflowException("Cannot persist workflow data in ZK", ex);
         }
     }
 
+    /**
+     * Records that the workflow version node was written once by this node.
+     *
+     * @param workflow
+     */
+    private void workflowWritten(Workflow workflow) {
+        if (_workflowCache != null) {
+            _workflowCache.written(workflow);
+        }
+    }
+
+    /**
+     * Drops the cached workflow after a failed write, as ZK may not match memory.
+     *
+     * @param workflow
+     */
+    private void workflowWriteFailed(Workflow workflow) {
+        if (_workflowCache != null) {
+            _workflowCache.invalidate(workflow.getWorkflowURI());
+        }
+    }
+
+    /**
+     * Loads the entire workflow for a step status update. If the workflow version node
+     * still has the version at which this node loaded or last wrote the workflow, the
+     * cached Workflow is returned without reading the steps; otherwise the workflow
+     * is reloaded from ZK and cached. Must be called holding the workflow lock.
+     *
+     * @param workflow -- template from which the ZK path is constructed
+     * @return Workflow, or null if the workflow no longer exists
+     */
+    Workflow loadLockedWorkflow(Workflow workflow) {
+        if (_workflowCache == null) {
+            return loadWorkflow(workflow);
+        }
+        URI workflowURI = workflow.getWorkflowURI();
+        Stat stat = null;
+        try {
+            stat = _dataManager.checkExists(getZKWorkflowVersionPath(workflow));
+        } catch (Exception ex) {
+            _log.info("Cannot check version of workflow " + workflowURI, ex);
+        }
+        if (stat == null) {
+            // Destroyed, or written only by nodes which do not maintain the version node.
+            _workflowCache.invalidate(workflowURI);
+            if (!isExistingWorkflow(workflow)) {
+                return null;
+            }
+            return loadWorkflow(workflow);
+        }
+        Workflow cached = _workflowCache.get(workflowURI, stat.getVersion());
+        if (cached != null) {
+            _log.debug("Using cached workflow {} version {}", workflowURI, stat.getVersion());
+            return cached;
+        }
+        // The version is read before the data, so a concurrent write can only make the entry stale.
+        Workflow loaded = loadWorkflow(workflow);
+        _workflowCache.put(loaded, stat.getVersion());
+        _log.debug("Cached workflow {} version {}, cache hits {} misses {} stale {}", workflowURI, stat.getVersion(),
+                _workflowCache.getHitCount(), _workflowCache.getMissCount(), _workflowCache.getStaleCount());
+        return loaded;
+    }
+
     /**
      * Execute the workflow. It is saved here and control is passed to WorkflowExecutor.
      *
@@ -1206,11 +1499,7 @@ public class WorkflowService implements WorkflowController {
                 // before parent was executed
                 workflow._nested = associateToParentWorkflow(workflow);
 
-                persistWorkflow(workflow);
-
-                for (Step step : workflow.getStepMap().values()) {
-                    persistWorkflowStep(workflow, step);
-                }
+                persistWorkflowAndSteps(workflow);
 
                 // Check suspended state and modify states
                 if (checkSuspendedSteps(workflow)) {
@@ -2979,6 +3268,15 @@ public class WorkflowService implements WorkflowController {
         this._ownerLocker = _ownerLocker;
     }
 
+    /**
+     * Specific to unit testing, where start() is not called to get the data manager from the coordinator.
+     *
+     * @param dataManager
+     */
+    void setDataManagerTestOnly(DistributedDataManager dataManager) {
+        _dataManager = dataManager;
+    }
+
     /**
      * Specific to unit testing since we should not modify system-wide properties as part of a unit tester.
      *
@@ -0,0 +1,315 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.workflow;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+
+import com.emc.storageos.coordinator.client.service.impl.CompactZkDataCodec;
+import com.emc.storageos.coordinator.client.service.impl.CompactZkDataCodec.ValueReader;
+import com.emc.storageos.coordinator.client.service.impl.CompactZkDataCodec.ValueWriter;
+import com.emc.storageos.svcs.errorhandling.resources.ServiceCode;
+import com.emc.storageos.volumecontroller.TaskCompleter;
+
+/**
+ * Compact zookeeper encoding of the Workflow classes. The fields written are those
+ * persisted by Java serialization; handlers, completers and method arguments which
+ * have no adapter of their own are still Java serialized by the codec.
+ */
+public class WorkflowZkDataAdapters {
+
+    private WorkflowZkDataAdapters() {
+    }
+
+    static void register() {
+        CompactZkDataCodec.registerAdapter(new WorkflowAdapter());
+        CompactZkDataCodec.registerAdapter(new StepAdapter());
+        CompactZkDataCodec.registerAdapter(new StepStatusAdapter());
+        CompactZkDataCodec.registerAdapter(new MethodAdapter());
+    }
+
+    public static class WorkflowAdapter implements CompactZkDataCodec.TypeAdapter<Workflow> {
+        @Override
+        public Class<Workflow> getType() {
+            return Workflow.class;
+        }
+
+        @Override
+        public void write(Workflow value, ValueWriter out) throws IOException {
+            out.writeField("_orchControllerName", value._orchControllerName);
+            out.writeField("_orchMethod", value._orchMethod);
+            out.writeField("_orchTaskId", value._orchTaskId);
+            out.writeField("_successMessage", value._successMessage);
+            out.writeField("_callbackHandler", value._callbackHandler);
+            out.writeField("_callbackHandlerArgs", value._callbackHandlerArgs);
+            out.writeField("_rollbackHandler", value._rollbackHandler);
+            out.writeField("_rollbackHandlerArgs", value._rollbackHandlerArgs);
+            out.writeField("_taskCompleter", value._taskCompleter);
+            out.writeField("_stepGroupMap", value._stepGroupMap);
+            out.writeField("_rollbackContOnError", value._rollbackContOnError);
+            out.writeField("_rollbackState", value._rollbackState);
+            out.writeField("_workflowURI", value._workflowURI);
+            out.writeField("_childWorkflows", value._childWorkflows);
+            out.writeField("_nested", value._nested);
+            out.writeField("_stepMap", value._stepMap);
+            out.writeField("_stepStatusMap", value._stepStatusMap);
+            out.writeField("_suspendOnError", value._suspendOnError);
+            out.writeField("_workflowState", value.getWorkflowState());
+            out.writeField("_suspendSteps", value._suspendSteps);
+            out.writeField("_treatSuspendRollbackAsTerminate", value.isTreatSuspendRollbackAsTerminate());
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public Workflow read(ValueReader in) throws IOException {
+            Workflow workflow = new Workflow(null, null, null, null);
+            String field;
+            while ((field = in.nextField()) != null) {
+                Object value = in.readValue();
+                switch (field) {
+                    case "_orchControllerName":
+                        workflow._orchControllerName = (String) value;
+                        break;
+                    case "_orchMethod":
+                        workflow._orchMethod = (String) value;
+                        break;
+                    case "_orchTaskId":
+                        workflow._orchTaskId = (String) value;
+                        break;
+                    case "_successMessage":
+                        workflow._successMessage = (String) value;
+                        break;
+                    case "_callbackHandler":
+                        workflow._callbackHandler = (Workflow.WorkflowCallbackHandler) value;
+                        break;
+                    case "_callbackHandlerArgs":
+                        workflow._callbackHandlerArgs = (Object[]) value;
+                        break;
+                    case "_rollbackHandler":
+                        workflow._rollbackHandler = (Workflow.WorkflowRollbackHandler) value;
+                        break;
+                    case "_rollbackHandlerArgs":
+                        workflow._rollbackHandlerArgs = (Object[]) value;
+                        break;
+                    case "_taskCompleter":
+                        workflow._taskCompleter = (TaskCompleter) value;
+                        break;
+                    case "_stepGroupMap":
+                        workflow._stepGroupMap = (Map<String, Set<String>>) value;
+                        break;
+                    case "_rollbackContOnError":
+                        workflow._rollbackContOnError = (Boolean) value;
+                        break;
+                    case "_rollbackState":
+                        workflow._rollbackState = (Boolean) value;
+                        break;
+                    case "_workflowURI":
+                        workflow._workflowURI = (URI) value;
+                        break;
+                    case "_childWorkflows":
+                        workflow._childWorkflows = (Set<URI>) value;
+                        break;
+                    case "_nested":
+                        workflow._nested = (Boolean) value;
+                        break;
+                    case "_stepMap":
+                        workflow._stepMap = (Map<String, Workflow.Step>) value;
+                        break;
+                    case "_stepStatusMap":
+                        workflow._stepStatusMap = (Map<String, Workflow.StepStatus>) value;
+                        break;
+                    case "_suspendOnError":
+                        workflow._suspendOnError = (Boolean) value;
+                        break;
+                    case "_workflowState":
+                        workflow.setWorkflowState((WorkflowState) value);
+                        break;
+                    case "_suspendSteps":
+                        workflow._suspendSteps = (Set<URI>) value;
+                        break;
+                    case "_treatSuspendRollbackAsTerminate":
+                        workflow.setTreatSuspendRollbackAsTerminate((Boolean) value);
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return workflow;
+        }
+    }
+
+    public static class StepAdapter implements CompactZkDataCodec.TypeAdapter<Workflow.Step> {
+        @Override
+        public Class<Workflow.Step> getType() {
+            return Workflow.Step.class;
+        }
+
+        @Override
+        public void write(Workflow.Step value, ValueWriter out) throws IOException {
+            out.writeField("stepId", value.stepId);
+            out.writeField("description", value.description);
+            out.writeField("stepGroup", value.stepGroup);
+            out.writeField("waitFor", value.waitFor);
+            out.writeField("deviceURI", value.deviceURI);
+            out.writeField("deviceType", value.deviceType);
+            out.writeField("lockDevice", value.lockDevice);
+            out.writeField("controllerName", value.controllerName);
+            out.writeField("executeMethod", value.executeMethod);
+            out.writeField("rollbackMethod", value.rollbackMethod);
+            out.writeField("status", value.status);
+            out.writeField("workflowStepURI", value.workflowStepURI);
+            out.writeField("isRollbackStep", value.isRollbackStep);
+            out.writeField("foundingStepId", value.foundingStepId);
+            out.writeField("suspendStep", value.suspendStep);
+            out.writeField("suspendedMessage", value.suspendedMessage);
+        }
+
+        @Override
+        public Workflow.Step read(ValueReader in) throws IOException {
+            Workflow.Step step = new Workflow.Step();
+            String field;
+            while ((field = in.nextField()) != null) {
+                Object value = in.readValue();
+                switch (field) {
+                    case "stepId":
+                        step.stepId = (String) value;
+                        break;
+                    case "description":
+                        step.description = (String) value;
+                        break;
+                    case "stepGroup":
+                        step.stepGroup = (String) value;
+                        break;
+                    case "waitFor":
+                        step.waitFor = (String) value;
+                        break;
+                    case "deviceURI":
+                        step.deviceURI = (URI) value;
+                        break;
+                    case "deviceType":
+                        step.deviceType = (String) value;
+                        break;
+                    case "lockDevice":
+                        step.lockDevice = (Boolean) value;
+                        break;
+                    case "controllerName":
+                        step.controllerName = (String) value;
+                        break;
+                    case "executeMethod":
+                        step.executeMethod = (Workflow.Method) value;
+                        break;
+                    case "rollbackMethod":
+                        step.rollbackMethod = (Workflow.Method) value;
+                        break;
+                    case "status":
+                        step.status = (Workflow.StepStatus) value;
+                        break;
+                    case "workflowStepURI":
+                        step.workflowStepURI = (URI) value;
+                        break;
+                    case "isRollbackStep":
+                        step.isRollbackStep = (Boolean) value;
+                        break;
+                    case "foundingStepId":
+                        step.foundingStepId = (String) value;
+                        break;
+                    case "suspendStep":
+                        step.suspendStep = (Boolean) value;
+                        break;
+                    case "suspendedMessage":
+                        step.suspendedMessage = (String) value;
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return step;
+        }
+    }
+
+    public static class StepStatusAdapter implements CompactZkDataCodec.TypeAdapter<Workflow.StepStatus> {
+        @Override
+        public Class<Workflow.StepStatus> getType() {
+            return Workflow.StepStatus.class;
+        }
+
+        @Override
+        public void write(Workflow.StepStatus value, ValueWriter out) throws IOException {
+            out.writeField("stepId", value.stepId);
+            out.writeField("state", value.state);
+            out.writeField("message", value.message);
+            out.writeField("description", value.description);
+            out.writeField("startTime", value.startTime);
+            out.writeField("endTime", value.endTime);
+            out.writeField("serviceCode", value.serviceCode);
+        }
+
+        @Override
+        public Workflow.StepStatus read(ValueReader in) throws IOException {
+            Workflow.StepStatus status = new Workflow.StepStatus();
+            String field;
+            while ((field = in.nextField()) != null) {
+                Object value = in.readValue();
+                switch (field) {
+                    case "stepId":
+                        status.stepId = (String) value;
+                        break;
+                    case "state":
+                        status.state = (Workflow.StepState) value;
+                        break;
+                    case "message":
+                        status.message = (String) value;
+                        break;
+                    case "description":
+                        status.description = (String) value;
+                        break;
+                    case "startTime":
+                        status.startTime = (Date) value;
+                        break;
+                    case "endTime":
+                        status.endTime = (Date) value;
+                        break;
+                    case "serviceCode":
+                        status.serviceCode = (ServiceCode) value;
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return status;
+        }
+    }
+
+    public static class MethodAdapter implements CompactZkDataCodec.TypeAdapter<Workflow.Method> {
+        @Override
+        public Class<Workflow.Method> getType() {
+            return Workflow.Method.class;
+        }
+
+        @Override
+        public void write(Workflow.Method value, ValueWriter out) throws IOException {
+            out.writeField("methodName", value.methodName);
+            out.writeField("args", value.args);
+        }
+
+        @Override
+        public Workflow.Method read(ValueReader in) throws IOException {
+            Workflow.Method method = new Workflow.Method((String) null);
+            String field;
+            while ((field = in.nextField()) != null) {
+                Object value = in.readValue();
+                if ("methodName".equals(field)) {
+                    method.methodName = (String) value;
+                } else if ("args".equals(field)) {
+                    method.args = (Object[]) value;
+                }
+            }
+            return method;
+        }
+    }
+}
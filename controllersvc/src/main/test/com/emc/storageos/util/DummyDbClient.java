@@ -13,6 +13,7 @@ import java.util.concurrent.ExecutorService;
 import org.joda.time.DateTime;
 
 import com.emc.storageos.db.client.DbAggregatorItf;
+import com.emc.storageos.db.client.DbBatchSession;
 import com.emc.storageos.db.client.DbClient;
 import com.emc.storageos.db.client.TimeSeriesMetadata;
 import com.emc.storageos.db.client.TimeSeriesMetadata.TimeBucket;
@@ -120,6 +121,18 @@ public class DummyDbClient implements DbClient {
         return null;
     }
 
+    @Override
+    public <T extends DataObject> Iterator<T> queryIterativeObjects(Class<T> clazz, Collection<URI> ids, boolean activeOnly,
+            int batchSize, int prefetchDepth) {
+        return queryIterativeObjects(clazz, ids, activeOnly);
+    }
+
+    @Override
+    public <T extends DataObject> Iterator<T> queryIterativeObjectField(Class<T> clazz, String fieldName, Collection<URI> ids,
+            int batchSize, int prefetchDepth) {
+        return queryIterativeObjectField(clazz, fieldName, ids);
+    }
+
     @Override
     public <T extends DataObject> void aggregateObjectField(Class<T> clazz, Iterator<URI> ids,
             DbAggregatorItf aggregator) throws DatabaseException {
@@ -336,6 +349,16 @@ public class DummyDbClient implements DbClient {
 
     }
 
+    @Override
+    public DbBatchSession openBatchSession() {
+        return null;
+    }
+
+    @Override
+    public DbBatchSession openBatchSession(int batchSize, int maxPending) {
+        return null;
+    }
+
     @Override
     public <T extends DataPoint> String insertTimeSeries(Class<? extends TimeSeries> tsType,
             T... data) throws DatabaseException {
@@ -350,6 +373,13 @@ public class DummyDbClient implements DbClient {
         return null;
     }
 
+    @Override
+    public <T extends DataPoint> String insertTimeSeries(Class<? extends TimeSeries> tsType,
+            DateTime time, String key, T data) throws DatabaseException {
+        // TODO Auto-generated method stub
+        return null;
+    }
+
     @Override
     public <T extends DataPoint> void queryTimeSeries(Class<? extends TimeSeries> tsType,
             DateTime timeBucket, TimeSeriesQueryResult<T> callback,
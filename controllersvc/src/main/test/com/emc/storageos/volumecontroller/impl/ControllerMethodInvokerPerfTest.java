@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.volumecontroller.impl;
+
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import com.emc.storageos.volumecontroller.impl.ControllerMethodInvokerTest.TestController;
+import com.google.common.base.Joiner;
+
+/**
+ * Prints the dispatch overhead per ControlRequest: method lookup, thread naming and
+ * invocation, as before with Method.invoke and now with the invokers. Excluded from
+ * the unit tests, run by the PerformanceTest task.
+ */
+public class ControllerMethodInvokerPerfTest {
+    private static final int REQUESTS = 200000;
+
+    @Test
+    public void testPerformance() throws Exception {
+        TestController controller = new TestController();
+        Map<String, Method> methods = new HashMap<String, Method>();
+        for (Method method : TestController.class.getMethods()) {
+            methods.put(method.getName(), method);
+        }
+        Map<String, ControllerMethodInvoker> invokers = ControllerMethodInvokerTest.createInvokers(controller);
+
+        List<URI> volumes = new ArrayList<URI>();
+        volumes.add(URI.create("urn:storageos:Volume:" + UUID.randomUUID() + ":vdc1"));
+        ControlRequest[] requests = new ControlRequest[1000];
+        for (int i = 0; i < requests.length; i++) {
+            requests[i] = new ControlRequest(Dispatcher.QueueName.controller.name(),
+                    new Dispatcher.DeviceInfo(URI.create("urn:storageos:StorageSystem:1:vdc1"), "vmax", true),
+                    controller, "createVolumes", URI.create("urn:storageos:StorageSystem:1:vdc1"),
+                    URI.create("urn:storageos:StoragePool:1:vdc1"), volumes, UUID.randomUUID().toString());
+        }
+
+        // the first round warms up
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < REQUESTS; i++) {
+                ControlRequest request = requests[i % requests.length];
+                Object[] args = request.getArg();
+                Method method = methods.get(request.getMethodName());
+                List<String> stringArgs = new ArrayList<String>();
+                StringBuilder threadName = new StringBuilder();
+                threadName.append(Thread.currentThread().getId()).append('|').append(method.getName()).append('|');
+                for (Object arg : args) {
+                    if (arg instanceof String) {
+                        stringArgs.add((String) arg);
+                    }
+                }
+                threadName.append(Joiner.on('|').join(stringArgs));
+                method.invoke(controller, args);
+            }
+            long reflectiveNanos = (System.nanoTime() - start) / REQUESTS;
+
+            start = System.nanoTime();
+            for (int i = 0; i < REQUESTS; i++) {
+                ControlRequest request = requests[i % requests.length];
+                Object[] args = request.getArg();
+                ControllerMethodInvoker invoker = invokers.get(request.getMethodName());
+                StringBuilder threadName = new StringBuilder();
+                threadName.append(Thread.currentThread().getId()).append('|').append(invoker.getName()).append('|');
+                invoker.invoke(args);
+            }
+            long invokerNanos = (System.nanoTime() - start) / REQUESTS;
+            if (round > 0) {
+                System.out.println(String.format("Dispatch overhead per ControlRequest: Method.invoke %d ns, invoker %d ns",
+                        reflectiveNanos, invokerNanos));
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.volumecontroller.impl;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.emc.storageos.Controller;
+import com.emc.storageos.locking.LockRetryException;
+
+/**
+ * Checks that ControllerMethodInvoker behaves as the reflective Method.invoke it replaces.
+ */
+public class ControllerMethodInvokerTest {
+    public static class TestController implements Controller {
+        private long _calls;
+
+        public void createVolumes(URI systemURI, URI poolURI, List<URI> volumeURIs, String opId) {
+            _calls++;
+        }
+
+        public int add(int a, Integer b) {
+            return a + b;
+        }
+
+        public void lockedStep(String opId) {
+            throw new LockRetryException("lock", 10L);
+        }
+
+        public String castStep(Object value) {
+            return (String) value;
+        }
+    }
+
+    @Test
+    public void testInvoke() throws Exception {
+        TestController controller = new TestController();
+        Map<String, ControllerMethodInvoker> invokers = createInvokers(controller);
+
+        Assert.assertEquals(5, invokers.get("add").invoke(new Object[] { 2, 3 }));
+        Assert.assertNull(invokers.get("createVolumes").invoke(
+                new Object[] { URI.create("urn:a"), URI.create("urn:b"), new ArrayList<URI>(), "op" }));
+        Assert.assertEquals(1, controller._calls);
+        // Object methods are dispatched too
+        Assert.assertEquals(controller.toString(), invokers.get("toString").invoke(new Object[0]));
+    }
+
+    @Test
+    public void testExceptionsAreWrapped() throws Exception {
+        Map<String, ControllerMethodInvoker> invokers = createInvokers(new TestController());
+        try {
+            invokers.get("lockedStep").invoke(new Object[] { "op" });
+            Assert.fail();
+        } catch (InvocationTargetException e) {
+            Assert.assertTrue(e.getCause() instanceof LockRetryException);
+        }
+        try {
+            invokers.get("add").invoke(new Object[] { 1 });
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testArgumentsAreCheckedAsByMethodInvoke() throws Exception {
+        TestController controller = new TestController();
+        Map<String, ControllerMethodInvoker> invokers = createInvokers(controller);
+        Object[][] argLists = { { 1, "2" }, { null, 2 }, { 1, null } };
+        for (Object[] args : argLists) {
+            boolean rejected = false;
+            try {
+                TestController.class.getMethod("add", int.class, Integer.class).invoke(controller, args);
+            } catch (IllegalArgumentException e) {
+                rejected = true;
+            } catch (InvocationTargetException e) {
+                // the method ran
+            }
+            try {
+                invokers.get("add").invoke(args);
+                Assert.assertFalse(rejected);
+            } catch (IllegalArgumentException e) {
+                Assert.assertTrue(rejected);
+            } catch (InvocationTargetException e) {
+                Assert.assertFalse(rejected);
+            }
+        }
+        // a ClassCastException thrown by the method itself is wrapped
+        try {
+            invokers.get("castStep").invoke(new Object[] { 1 });
+            Assert.fail();
+        } catch (InvocationTargetException e) {
+            Assert.assertTrue(e.getCause() instanceof ClassCastException);
+        }
+    }
+
+    /**
+     * Returns invokers of the public methods of the controller by name; shared with the perf test.
+     */
+    static Map<String, ControllerMethodInvoker> createInvokers(Controller controller) {
+        Map<String, ControllerMethodInvoker> invokers = new HashMap<String, ControllerMethodInvoker>();
+        for (Method method : controller.getClass().getMethods()) {
+            invokers.put(method.getName(), new ControllerMethodInvoker(controller, method));
+        }
+        return invokers;
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.volumecontroller.impl;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.curator.framework.recipes.locks.Lease;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.emc.storageos.coordinator.client.service.DistributedSemaphore;
+
+public class DeviceAdmissionQueueTest {
+    private static final URI DEVICE = URI.create("urn:storageos:StorageSystem:1:vdc1");
+
+    private ScheduledThreadPoolExecutor executor;
+    private TestSemaphore semaphore;
+    private DeviceAdmissionQueue queue;
+    private final List<String> dispatched = Collections.synchronizedList(new ArrayList<String>());
+    private final List<String> leased = Collections.synchronizedList(new ArrayList<String>());
+
+    @Before
+    public void setUp() {
+        executor = new ScheduledThreadPoolExecutor(1);
+        semaphore = new TestSemaphore();
+        queue = new DeviceAdmissionQueue(DEVICE, semaphore, executor, 1);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testRequestsAdmittedInOrder() throws Exception {
+        Assert.assertNull(queue.acquireLease(request("A")));
+        Assert.assertNull(queue.acquireLease(request("B")));
+        Assert.assertNull(queue.acquireLease(request("C")));
+        Assert.assertEquals(3, queue.getWaitingCount());
+
+        // one lease returned: the oldest request gets it, the next one is released and waits again
+        semaphore.permits.set(1);
+        queue.run();
+        waitFor(Arrays.asList("A", "B"), dispatched);
+        Assert.assertEquals(Arrays.asList("A"), leased);
+        Assert.assertEquals(2, queue.getWaitingCount());
+
+        semaphore.permits.set(5);
+        queue.run();
+        waitFor(Arrays.asList("A", "B", "C"), leased);
+        Assert.assertEquals(0, queue.getWaitingCount());
+        Assert.assertEquals(3, semaphore.permits.get());
+    }
+
+    @Test
+    public void testLeaseTakenWhenExecuting() throws Exception {
+        semaphore.permits.set(1);
+        Assert.assertNotNull(queue.acquireLease(request("A")));
+        Assert.assertEquals(0, semaphore.permits.get());
+        Assert.assertNull(queue.acquireLease(request("B")));
+
+        // a new request does not go ahead of a waiting one
+        semaphore.permits.set(1);
+        Assert.assertNull(queue.acquireLease(request("C")));
+        Assert.assertEquals(2, queue.getWaitingCount());
+        queue.run();
+        waitFor(Arrays.asList("B", "C"), dispatched);
+        Assert.assertEquals(Arrays.asList("B"), leased);
+    }
+
+    @Test
+    public void testRetriedWithoutNotification() throws Exception {
+        Assert.assertNull(queue.acquireLease(request("A")));
+        Assert.assertEquals(1, queue.getWaitingCount());
+
+        // a lease freed without a notification is found by the periodic retry
+        semaphore.permits.set(1);
+        waitFor(Arrays.asList("A"), leased);
+    }
+
+    @Test
+    public void testRequestWaitsWhenLeaseCannotBeAcquired() throws Exception {
+        semaphore.permits.set(1);
+        semaphore.failing = true;
+        Assert.assertNull(queue.acquireLease(request("A")));
+        Assert.assertEquals(1, queue.getWaitingCount());
+
+        semaphore.failing = false;
+        queue.run();
+        waitFor(Arrays.asList("A"), leased);
+    }
+
+    @Test
+    public void testCanceledRequestReleasesNext() throws Exception {
+        DeviceAdmissionQueue.Request stale = new DeviceAdmissionQueue.Request() {
+            @Override
+            public String getName() {
+                return "stale";
+            }
+
+            @Override
+            public void dispatch() {
+                // executes without asking for a lease
+                dispatched.add(getName());
+                queue.cancel(this);
+            }
+        };
+        Assert.assertNull(queue.acquireLease(stale));
+        Assert.assertNull(queue.acquireLease(request("B")));
+        semaphore.permits.set(1);
+        queue.run();
+        waitFor(Arrays.asList("B"), leased);
+        Assert.assertEquals(Arrays.asList("stale", "B"), dispatched);
+    }
+
+    /**
+     * Waits until the list has the expected names
+     */
+    private void waitFor(List<String> expected, List<String> names) throws Exception {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!expected.equals(names) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        Assert.assertEquals(expected, names);
+    }
+
+    /**
+     * Request which, when released, executes at once and records whether it got a lease
+     */
+    private DeviceAdmissionQueue.Request request(final String name) {
+        return new DeviceAdmissionQueue.Request() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public void dispatch() {
+                dispatched.add(name);
+                if (queue.acquireLease(this) != null) {
+                    leased.add(name);
+                }
+            }
+        };
+    }
+
+    /**
+     * Semaphore handing out a given number of leases; shared with DispatcherTest
+     */
+    static class TestSemaphore implements DistributedSemaphore {
+        final AtomicInteger permits = new AtomicInteger();
+        private volatile boolean failing;
+
+        @Override
+        public Lease tryAcquireLease() throws Exception {
+            if (failing) {
+                throw new Exception("lease nodes cannot be read");
+            }
+            if (permits.get() <= 0) {
+                return null;
+            }
+            permits.decrementAndGet();
+            return EasyMock.createNiceMock(Lease.class);
+        }
+
+        @Override
+        public void returnLease(Lease lease) {
+            permits.incrementAndGet();
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public Lease acquireLease() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Lease acquireLease(long waitTime, TimeUnit waitTimeUnit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void addLeaseAvailableListener(Runnable listener) {
+        }
+
+        @Override
+        public void removeLeaseAvailableListener(Runnable listener) {
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.volumecontroller.impl;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.emc.storageos.volumecontroller.impl.DispatchScheduler.PriorityClass;
+
+public class DispatchSchedulerTest {
+    private ThreadPoolExecutor executor;
+    private DispatchScheduler scheduler;
+    private final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+
+    @Before
+    public void setUp() {
+        executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        scheduler = new DispatchScheduler("test", executor);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testWeightedClasses() throws Exception {
+        CountDownLatch blocker = blockThread();
+        for (int i = 0; i < 20; i++) {
+            scheduler.submit(record("B"), PriorityClass.BACKGROUND, null, null);
+        }
+        for (int i = 0; i < 16; i++) {
+            scheduler.submit(record("I"), PriorityClass.INTERACTIVE, null, null);
+        }
+        release(blocker, 37);
+
+        // 8 interactive requests for each background request while both wait
+        List<String> first = order.subList(1, 19);
+        Assert.assertEquals(16, Collections.frequency(first, "I"));
+        Assert.assertEquals(2, Collections.frequency(first, "B"));
+        Assert.assertEquals(16, scheduler.getDispatchedCount(PriorityClass.INTERACTIVE));
+        Assert.assertEquals(20, scheduler.getDispatchedCount(PriorityClass.BACKGROUND));
+        Assert.assertTrue(scheduler.getMaxWaitMillis(PriorityClass.BACKGROUND) >= scheduler.getMaxWaitMillis(PriorityClass.INTERACTIVE));
+    }
+
+    @Test
+    public void testTenantsAndDevicesRoundRobin() throws Exception {
+        URI tenant1 = URI.create("urn:storageos:TenantOrg:1:");
+        URI tenant2 = URI.create("urn:storageos:TenantOrg:2:");
+        URI device1 = URI.create("urn:storageos:StorageSystem:1:");
+        URI device2 = URI.create("urn:storageos:StorageSystem:2:");
+        CountDownLatch blocker = blockThread();
+        for (int i = 0; i < 4; i++) {
+            scheduler.submit(record("t1d1"), PriorityClass.WORKFLOW, tenant1, device1);
+        }
+        for (int i = 0; i < 2; i++) {
+            scheduler.submit(record("t1d2"), PriorityClass.WORKFLOW, tenant1, device2);
+        }
+        for (int i = 0; i < 2; i++) {
+            scheduler.submit(record("t2d1"), PriorityClass.WORKFLOW, tenant2, device1);
+        }
+        release(blocker, 9);
+
+        Assert.assertEquals(
+                Arrays.asList("block", "t1d1", "t2d1", "t1d2", "t2d1", "t1d1", "t1d2", "t1d1", "t1d1"), order);
+    }
+
+    /**
+     * Occupies the only thread so that the following requests wait in the scheduler.
+     */
+    private CountDownLatch blockThread() {
+        final CountDownLatch blocker = new CountDownLatch(1);
+        scheduler.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    blocker.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                order.add("block");
+            }
+        }, PriorityClass.WORKFLOW, null, null);
+        return blocker;
+    }
+
+    /**
+     * Frees the thread and waits until the given number of requests, including the blocking one, ran.
+     */
+    private void release(CountDownLatch blocker, int requests) throws InterruptedException {
+        blocker.countDown();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (order.size() < requests && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(requests, order.size());
+    }
+
+    private Runnable record(final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                order.add(name);
+            }
+        };
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.volumecontroller.impl;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.emc.storageos.Controller;
+import com.emc.storageos.coordinator.client.service.CoordinatorClient;
+import com.emc.storageos.coordinator.client.service.DistributedQueueItemProcessedCallback;
+
+/**
+ * Checks how the Dispatcher schedules the requests it consumes from its queues
+ */
+public class DispatcherTest {
+    private static final URI DEVICE = URI.create("urn:storageos:StorageSystem:1:vdc1");
+
+    private final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+    private final CountDownLatch blocker = new CountDownLatch(1);
+    private final AtomicInteger processed = new AtomicInteger();
+    private final DeviceAdmissionQueueTest.TestSemaphore semaphore = new DeviceAdmissionQueueTest.TestSemaphore();
+    private TestController controller;
+    private Dispatcher dispatcher;
+
+    public class TestController implements Controller {
+        public void block(String name, String opId) throws InterruptedException {
+            blocker.await();
+            order.add(name);
+        }
+
+        public void record(String name, String opId) {
+            order.add(name);
+        }
+
+        public void recordLeases(String name, String opId) {
+            order.add(name + " " + semaphore.permits.get());
+        }
+    }
+
+    @Before
+    public void setUp() {
+        controller = new TestController();
+        dispatcher = new Dispatcher();
+        dispatcher.setController(Collections.<Controller> singleton(controller));
+    }
+
+    @After
+    public void tearDown() {
+        blocker.countDown();
+    }
+
+    @Test
+    public void testQueuesShareThreads() throws Exception {
+        dispatcher.setMethodExecutorPoolSize(1);
+        dispatcher.build();
+        consume(Dispatcher.QueueName.workflow_inner, "block", "block");
+        for (int i = 0; i < 8; i++) {
+            consume(Dispatcher.QueueName.workflow_inner, "record", "workflow");
+        }
+        consume(Dispatcher.QueueName.controller, "record", "interactive");
+
+        // the workflow step holds the only thread, the API request waits for it
+        Thread.sleep(200);
+        Assert.assertTrue(order.isEmpty());
+        blocker.countDown();
+        waitForProcessed(10);
+
+        // and then goes ahead of the workflow steps waiting longer
+        Assert.assertEquals("block", order.get(0));
+        Assert.assertEquals("interactive", order.get(1));
+    }
+
+    @Test
+    public void testLeaseTakenWhenExecuting() throws Exception {
+        CoordinatorClient coordinator = EasyMock.createMock(CoordinatorClient.class);
+        EasyMock.expect(coordinator.getSemaphore(DEVICE.toString(), 1)).andReturn(semaphore).anyTimes();
+        EasyMock.replay(coordinator);
+        Map<String, Integer> maxConnections = new HashMap<String, Integer>();
+        maxConnections.put("vmax", 1);
+        semaphore.permits.set(1);
+        dispatcher.setCoordinator(coordinator);
+        dispatcher.setDeviceMaxConnectionMap(maxConnections);
+        dispatcher.setMethodExecutorPoolSize(1);
+        dispatcher.build();
+        consume(Dispatcher.QueueName.workflow_inner, "block", "block");
+        consume(Dispatcher.QueueName.workflow_inner, "recordLeases", "first", true);
+        consume(Dispatcher.QueueName.workflow_inner, "recordLeases", "second", true);
+
+        // requests waiting for a thread hold no lease
+        Thread.sleep(200);
+        Assert.assertEquals(1, semaphore.permits.get());
+        blocker.countDown();
+        waitForProcessed(3);
+
+        // each request held the only lease while it ran, and returned it
+        Assert.assertEquals(3, order.size());
+        Assert.assertEquals("first 0", order.get(1));
+        Assert.assertEquals("second 0", order.get(2));
+        Assert.assertEquals(1, semaphore.permits.get());
+    }
+
+    private void consume(Dispatcher.QueueName queueName, String method, String name) throws Exception {
+        consume(queueName, method, name, false);
+    }
+
+    private void consume(Dispatcher.QueueName queueName, String method, String name, boolean lockDevice) throws Exception {
+        ControlRequest request = new ControlRequest(queueName.name(), new Dispatcher.DeviceInfo(DEVICE, "vmax", lockDevice),
+                controller, method, name, "op-" + name);
+        dispatcher.consumeItem(request, new DistributedQueueItemProcessedCallback() {
+            @Override
+            public void itemProcessed() {
+                processed.incrementAndGet();
+            }
+        });
+    }
+
+    private void waitForProcessed(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (processed.get() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(count, processed.get());
+    }
+}
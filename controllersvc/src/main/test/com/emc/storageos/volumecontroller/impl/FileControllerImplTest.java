@@ -19,6 +19,7 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import com.emc.storageos.db.client.DbAggregatorItf;
+import com.emc.storageos.db.client.DbBatchSession;
 import com.emc.storageos.db.client.DbClient;
 import com.emc.storageos.db.client.TimeSeriesMetadata;
 import com.emc.storageos.db.client.TimeSeriesMetadata.TimeBucket;
@@ -135,6 +136,18 @@ public class FileControllerImplTest {
             return null;
         }
 
+        @Override
+        public <T extends DataObject> Iterator<T> queryIterativeObjects(Class<T> clazz, Collection<URI> ids, boolean activeOnly,
+                int batchSize, int prefetchDepth) {
+            return queryIterativeObjects(clazz, ids, activeOnly);
+        }
+
+        @Override
+        public <T extends DataObject> Iterator<T> queryIterativeObjectField(Class<T> clazz, String fieldName, Collection<URI> ids,
+                int batchSize, int prefetchDepth) {
+            return queryIterativeObjectField(clazz, fieldName, ids);
+        }
+
         @Override
         public <T extends DataObject> void aggregateObjectField(Class<T> clazz, Iterator<URI> ids, DbAggregatorItf aggregator)
                 throws DatabaseException {
@@ -308,6 +321,16 @@ public class FileControllerImplTest {
         public void removeObject(DataObject... object) throws DatabaseException {
         }
 
+        @Override
+        public DbBatchSession openBatchSession() {
+            return null;
+        }
+
+        @Override
+        public DbBatchSession openBatchSession(int batchSize, int maxPending) {
+            return null;
+        }
+
         @SuppressWarnings("rawtypes")
         @Override
         public <T extends DataPoint> String insertTimeSeries(Class<? extends TimeSeries> tsType,
@@ -322,6 +345,13 @@ public class FileControllerImplTest {
             return null;
         }
 
+        @SuppressWarnings("rawtypes")
+        @Override
+        public <T extends DataPoint> String insertTimeSeries(Class<? extends TimeSeries> tsType,
+                DateTime time, String key, T data) throws DatabaseException {
+            return null;
+        }
+
         @SuppressWarnings("rawtypes")
         @Override
         public <T extends DataPoint> void queryTimeSeries(Class<? extends TimeSeries> tsType,
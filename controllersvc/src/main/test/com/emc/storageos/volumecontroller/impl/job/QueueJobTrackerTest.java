@@ -0,0 +1,292 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.volumecontroller.impl.job;
+
+import java.io.Serializable;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.emc.storageos.coordinator.client.service.DistributedQueueItemProcessedCallback;
+import com.emc.storageos.volumecontroller.Job;
+import com.emc.storageos.volumecontroller.JobBatchPoller;
+import com.emc.storageos.volumecontroller.JobContext;
+import com.emc.storageos.volumecontroller.TaskCompleter;
+import com.emc.storageos.volumecontroller.impl.JobPollResult;
+
+public class QueueJobTrackerTest {
+    private static final URI SLOW_SYSTEM = URI.create("urn:storageos:StorageSystem:slow:vdc1");
+    private static final URI FAST_SYSTEM = URI.create("urn:storageos:StorageSystem:fast:vdc1");
+
+    private QueueJobTracker tracker;
+
+    @Before
+    public void setUp() {
+        tracker = createTracker();
+    }
+
+    @After
+    public void tearDown() {
+        tracker.stop();
+    }
+
+    @Test
+    public void testSlowDevice() throws Exception {
+        CountDownLatch slowJobs = new CountDownLatch(6);
+        CountDownLatch fastJobs = new CountDownLatch(6);
+        tracker.start();
+        for (int i = 0; i < 6; i++) {
+            queue(new TestJob(SLOW_SYSTEM, 500, 2), slowJobs);
+            queue(new TestJob(FAST_SYSTEM, 1, 3), fastJobs);
+        }
+        // the jobs of the fast system complete while the slow system is still being polled
+        Assert.assertTrue(fastJobs.await(1000, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(6, slowJobs.getCount());
+        Assert.assertTrue(slowJobs.await(10, TimeUnit.SECONDS));
+
+        QueueJobTracker.PollLane slowLane = getIdleLane(SLOW_SYSTEM.toString());
+        QueueJobTracker.PollLane fastLane = getIdleLane(FAST_SYSTEM.toString());
+        Assert.assertEquals(12, slowLane.getPollCount());
+        Assert.assertEquals(18, fastLane.getPollCount());
+        Assert.assertTrue(slowLane.getMaxLatency() >= 500);
+        Assert.assertTrue(fastLane.getAverageLatency() < 500);
+    }
+
+    @Test
+    public void testPollPeriods() {
+        // no progress: backs off up to the maximum
+        Assert.assertEquals(15, tracker.computePollPeriod(10, 10, 0, 0, Job.JobStatus.IN_PROGRESS, 0, 1000));
+        Assert.assertEquals(50, tracker.computePollPeriod(40, 10, 0, 0, Job.JobStatus.IN_PROGRESS, 0, 1000));
+        // 40% in 40 ms: 40 ms left, polled again after half of it, within the maximum
+        Assert.assertEquals(20, tracker.computePollPeriod(20, 10, 20, 1000, Job.JobStatus.IN_PROGRESS, 60, 1040));
+        Assert.assertEquals(50, tracker.computePollPeriod(20, 10, 10, 1000, Job.JobStatus.IN_PROGRESS, 11, 1020));
+        // about to complete: the minimum
+        Assert.assertEquals(10, tracker.computePollPeriod(20, 10, 50, 1000, Job.JobStatus.IN_PROGRESS, 98, 1020));
+        Assert.assertEquals(30, tracker.computePollPeriod(20, 30, 50, 1000, Job.JobStatus.IN_PROGRESS, 98, 1020));
+        // transient errors are polled every tracking period
+        Assert.assertEquals(50, tracker.computePollPeriod(10, 10, 0, 0, Job.JobStatus.ERROR, 0, 1000));
+        tracker.setMaxPollPeriodInMillis(200);
+        Assert.assertEquals(100, tracker.computePollPeriod(10, 10, 0, 0, Job.JobStatus.ERROR, 0, 1000));
+    }
+
+    /**
+     * Tracks jobs on a simulated provider, with and without reading their status in batches,
+     * and compares the calls made to the provider.
+     */
+    @Test
+    public void testBatchPolls() throws Exception {
+        int[] providerCalls = new int[2];
+        for (int batched = 0; batched < 2; batched++) {
+            tracker.stop();
+            tracker = createTracker();
+            tracker.setMinBatchSize(batched == 1 ? 5 : Integer.MAX_VALUE);
+            SimulatedProvider provider = new SimulatedProvider();
+            CountDownLatch jobsDone = new CountDownLatch(100);
+            tracker.start();
+            for (int i = 0; i < 100; i++) {
+                queue(new SimulatedJob(provider, URI.create("urn:storageos:StorageSystem:" + (i % 4) + ":vdc1"), "job" + i), jobsDone);
+            }
+            Assert.assertTrue(jobsDone.await(10, TimeUnit.SECONDS));
+            providerCalls[batched] = provider.calls.get();
+            Assert.assertEquals(400, getIdleLane("provider:simulator").getJobPollCount());
+        }
+        Assert.assertEquals(400, providerCalls[0]);
+        Assert.assertTrue(providerCalls[1] < 40);
+    }
+
+    /**
+     * The jobs of a batch are polled on as many threads as their lane allows
+     */
+    @Test
+    public void testBatchJobsPolledConcurrently() throws Exception {
+        tracker.setMinBatchSize(5);
+        SimulatedProvider provider = new SimulatedProvider();
+        provider.pollMillis = 20;
+        CountDownLatch jobsDone = new CountDownLatch(8);
+        tracker.start();
+        for (int i = 0; i < 8; i++) {
+            queue(new SimulatedJob(provider, SLOW_SYSTEM, "job" + i), jobsDone);
+        }
+        Assert.assertTrue(jobsDone.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(32, getIdleLane("provider:simulator").getJobPollCount());
+        Assert.assertEquals(2, provider.maxPolling.get());
+    }
+
+    /**
+     * Returns the lane once the polls of its last jobs are accounted
+     */
+    private QueueJobTracker.PollLane getIdleLane(String name) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            QueueJobTracker.PollLane lane = tracker.getPollLanes().get(name);
+            if (lane.getJobCount() == 0) {
+                return lane;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("jobs still tracked in lane " + name);
+    }
+
+    private QueueJobTracker createTracker() {
+        QueueJobTracker tracker = new QueueJobTracker();
+        tracker.setTrackingPeriodInMillis(100);
+        tracker.setMinPollPeriodInMillis(10);
+        tracker.setMaxPollPeriodInMillis(50);
+        tracker.setDispatchPeriodInMillis(5);
+        tracker.setMaxConcurrentPolls(4);
+        tracker.setMaxPollsPerDevice(2);
+        tracker.setJobContext(new JobContext(null, null, null, null, null, null, null));
+        return tracker;
+    }
+
+    private void queue(Job job, final CountDownLatch done) {
+        tracker.consumeItem(new QueueJob(job), new DistributedQueueItemProcessedCallback() {
+            @Override
+            public void itemProcessed() {
+                done.countDown();
+            }
+        });
+    }
+
+    /**
+     * Job which takes pollMillis to poll and completes at the given poll
+     */
+    private static class TestJob extends Job implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final URI storageSystemURI;
+        private final long pollMillis;
+        private final int polls;
+        private int pollCount;
+
+        TestJob(URI storageSystemURI, long pollMillis, int polls) {
+            this.storageSystemURI = storageSystemURI;
+            this.pollMillis = pollMillis;
+            this.polls = polls;
+        }
+
+        @Override
+        public JobPollResult poll(JobContext jobContext, long trackingPeriodInMillis) {
+            try {
+                Thread.sleep(pollMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            pollCount++;
+            JobPollResult result = new JobPollResult();
+            result.setJobId(toString());
+            result.setJobName("TestJob");
+            result.setJobPercentComplete(100 * pollCount / polls);
+            result.setJobStatus(pollCount < polls ? JobStatus.IN_PROGRESS : JobStatus.SUCCESS);
+            return result;
+        }
+
+        @Override
+        public TaskCompleter getTaskCompleter() {
+            return null;
+        }
+
+        @Override
+        public URI getStorageSystemURI() {
+            return storageSystemURI;
+        }
+    }
+
+    /**
+     * Provider which advances a job by 25% each time its status is read, counting the calls
+     */
+    private static class SimulatedProvider implements JobBatchPoller {
+        private final AtomicInteger calls = new AtomicInteger();
+        private final Map<String, Integer> percentComplete = new ConcurrentHashMap<String, Integer>();
+        // time the jobs take to poll, with the most jobs polled at the same time
+        private long pollMillis;
+        private final AtomicInteger polling = new AtomicInteger();
+        private final AtomicInteger maxPolling = new AtomicInteger();
+
+        int readStatus(String jobId) {
+            calls.incrementAndGet();
+            return advance(jobId);
+        }
+
+        private int advance(String jobId) {
+            Integer percent = percentComplete.get(jobId);
+            percent = Math.min(100, (percent == null ? 0 : percent) + 25);
+            percentComplete.put(jobId, percent);
+            return percent;
+        }
+
+        @Override
+        public String getProviderKey(Job job, JobContext jobContext) {
+            return "simulator";
+        }
+
+        @Override
+        public void readStatus(String providerKey, List<Job> jobs, JobContext jobContext) {
+            calls.incrementAndGet();
+            for (Job job : jobs) {
+                SimulatedJob simulatedJob = (SimulatedJob) job;
+                simulatedJob.polledPercent = advance(simulatedJob.jobId);
+            }
+        }
+    }
+
+    private static class SimulatedJob extends Job implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final transient SimulatedProvider provider;
+        private final URI storageSystemURI;
+        private final String jobId;
+        private Integer polledPercent;
+
+        SimulatedJob(SimulatedProvider provider, URI storageSystemURI, String jobId) {
+            this.provider = provider;
+            this.storageSystemURI = storageSystemURI;
+            this.jobId = jobId;
+        }
+
+        @Override
+        public JobPollResult poll(JobContext jobContext, long trackingPeriodInMillis) {
+            int polling = provider.polling.incrementAndGet();
+            while (provider.maxPolling.get() < polling) {
+                provider.maxPolling.compareAndSet(provider.maxPolling.get(), polling);
+            }
+            try {
+                Thread.sleep(provider.pollMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            provider.polling.decrementAndGet();
+            int percent = (polledPercent != null) ? polledPercent : provider.readStatus(jobId);
+            polledPercent = null;
+            JobPollResult result = new JobPollResult();
+            result.setJobId(jobId);
+            result.setJobName("SimulatedJob");
+            result.setJobPercentComplete(percent);
+            result.setJobStatus(percent < 100 ? JobStatus.IN_PROGRESS : JobStatus.SUCCESS);
+            return result;
+        }
+
+        @Override
+        public TaskCompleter getTaskCompleter() {
+            return null;
+        }
+
+        @Override
+        public URI getStorageSystemURI() {
+            return storageSystemURI;
+        }
+
+        @Override
+        public JobBatchPoller getBatchPoller() {
+            return provider;
+        }
+    }
+}
@@ -33,6 +33,7 @@ import com.emc.storageos.customconfigcontroller.DataSource;
 import com.emc.storageos.customconfigcontroller.exceptions.CustomConfigControllerException;
 import com.emc.storageos.customconfigcontroller.impl.CustomConfigHandler;
 import com.emc.storageos.db.client.DbAggregatorItf;
+import com.emc.storageos.db.client.DbBatchSession;
 import com.emc.storageos.db.client.DbClient;
 import com.emc.storageos.db.client.TimeSeriesMetadata;
 import com.emc.storageos.db.client.TimeSeriesQueryResult;
@@ -363,6 +364,18 @@ public class VPlexMeteringTest {
             return null;
         }
 
+        @Override
+        public <T extends DataObject> Iterator<T> queryIterativeObjects(Class<T> clazz, Collection<URI> ids, boolean activeOnly,
+                int batchSize, int prefetchDepth) {
+            return queryIterativeObjects(clazz, ids, activeOnly);
+        }
+
+        @Override
+        public <T extends DataObject> Iterator<T> queryIterativeObjectField(Class<T> clazz, String fieldName, Collection<URI> ids,
+                int batchSize, int prefetchDepth) {
+            return queryIterativeObjectField(clazz, fieldName, ids);
+        }
+
         @Override
         public <T extends DataObject> void aggregateObjectField(Class<T> clazz, Iterator<URI> ids, DbAggregatorItf aggregator) {
 
@@ -566,6 +579,16 @@ public class VPlexMeteringTest {
 
         }
 
+        @Override
+        public DbBatchSession openBatchSession() {
+            return null;
+        }
+
+        @Override
+        public DbBatchSession openBatchSession(int batchSize, int maxPending) {
+            return null;
+        }
+
         @Override
         public <T extends TimeSeriesSerializer.DataPoint> String insertTimeSeries(Class<? extends TimeSeries> tsType, T... data) {
             return null;
@@ -577,6 +600,12 @@ public class VPlexMeteringTest {
             return null;
         }
 
+        @Override
+        public <T extends TimeSeriesSerializer.DataPoint> String insertTimeSeries(Class<? extends TimeSeries> tsType, DateTime time,
+                String key, T data) {
+            return null;
+        }
+
         @Override
         public <T extends TimeSeriesSerializer.DataPoint> void queryTimeSeries(Class<? extends TimeSeries> tsType, DateTime timeBucket,
                 TimeSeriesQueryResult<T> callback, ExecutorService workerThreads) {
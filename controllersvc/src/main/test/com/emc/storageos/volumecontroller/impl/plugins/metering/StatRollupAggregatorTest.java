@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.volumecontroller.impl.plugins.metering;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.emc.storageos.db.client.model.Stat;
+import com.emc.storageos.db.client.model.StatRollup;
+
+public class StatRollupAggregatorTest {
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final URI VOLUME1 = URI.create("urn:storageos:Volume:1:vdc1");
+    private static final URI VOLUME2 = URI.create("urn:storageos:Volume:2:vdc1");
+    private static final URI PROJECT = URI.create("urn:storageos:Project:1:global");
+    private static final URI TENANT = URI.create("urn:storageos:TenantOrg:1:global");
+
+    @Test
+    public void testRollupHour() {
+        Map<URI, Stat> previous = new HashMap<URI, Stat>();
+        previous.put(VOLUME1, createStat(VOLUME1, HOUR - 1000, 100, 1000));
+        StatRollupAggregator aggregator = new StatRollupAggregator(previous);
+        // the stats of the hour in any order, volume 1 counters reset in the middle of the hour
+        aggregator.add(createStat(VOLUME1, HOUR + 40 * 60000, 30, 1000));
+        aggregator.add(createStat(VOLUME1, HOUR + 20 * 60000, 150, 2000));
+        aggregator.add(createStat(VOLUME1, HOUR + 50 * 60000, 80, 3000));
+        aggregator.add(createStat(VOLUME2, HOUR + 10 * 60000, 500, 5000));
+        aggregator.add(createStat(VOLUME2, HOUR + 30 * 60000, 600, 5000));
+
+        Map<String, StatRollup> rollups = byKey(aggregator.rollupHour(HOUR));
+        Assert.assertEquals(4, rollups.size());
+
+        // 100 -> 150, reset to 30, 30 -> 80
+        StatRollup volume1 = rollups.get(StatRollup.key("resource", VOLUME1, "block"));
+        Assert.assertEquals(HOUR, volume1.getTimeInMillis());
+        Assert.assertEquals("HOUR", volume1.getGranularity());
+        Assert.assertEquals(50 + 30 + 50, volume1.getTotalIOs());
+        Assert.assertEquals(3000, volume1.getProvisionedCapacity());
+        Assert.assertEquals(3, volume1.getSampleCount());
+        Assert.assertEquals(PROJECT, volume1.getProject());
+
+        // no stat in the previous hour: counted from the first stat of the hour
+        StatRollup volume2 = rollups.get(StatRollup.key("resource", VOLUME2, "block"));
+        Assert.assertEquals(100, volume2.getTotalIOs());
+
+        StatRollup project = rollups.get(StatRollup.key("project", PROJECT, "block"));
+        Assert.assertEquals(2, project.getResourceCount());
+        Assert.assertEquals(5, project.getSampleCount());
+        Assert.assertEquals(230, project.getTotalIOs());
+        Assert.assertEquals(8000, project.getProvisionedCapacity());
+        Assert.assertEquals(TENANT, project.getTenant());
+        Assert.assertEquals(230, rollups.get(StatRollup.key("tenant", TENANT, "block")).getTotalIOs());
+
+        Assert.assertEquals(80, aggregator.getLastSamples().get(VOLUME1).getTotalIOs().longValue());
+    }
+
+    @Test
+    public void testRollupDay() {
+        List<StatRollup> hourly = new ArrayList<StatRollup>();
+        for (int hour = 23; hour >= 0; hour--) {
+            StatRollupAggregator aggregator = new StatRollupAggregator(
+                    Collections.singletonMap(VOLUME1, createStat(VOLUME1, hour * HOUR - 1000, hour * 10, 1000)));
+            aggregator.add(createStat(VOLUME1, hour * HOUR + 1000, hour * 10 + 10, 1000 + hour));
+            hourly.addAll(aggregator.rollupHour(hour * HOUR));
+        }
+
+        Map<String, StatRollup> rollups = byKey(StatRollupAggregator.rollupDay(0, hourly));
+        Assert.assertEquals(3, rollups.size());
+        StatRollup project = rollups.get(StatRollup.key("project", PROJECT, "block"));
+        Assert.assertEquals("DAY", project.getGranularity());
+        Assert.assertEquals(0, project.getTimeInMillis());
+        Assert.assertEquals(240, project.getTotalIOs());
+        Assert.assertEquals(24, project.getSampleCount());
+        Assert.assertEquals(1, project.getResourceCount());
+        // the capacity of the last hour
+        Assert.assertEquals(1023, project.getProvisionedCapacity());
+    }
+
+    private static Map<String, StatRollup> byKey(List<StatRollup> rollups) {
+        Map<String, StatRollup> byKey = new HashMap<String, StatRollup>();
+        for (StatRollup rollup : rollups) {
+            byKey.put(StatRollup.key(rollup.getScope(), rollup.getScopeId(), rollup.getServiceType()), rollup);
+        }
+        return byKey;
+    }
+
+    private static Stat createStat(URI resourceId, long time, long totalIOs, long provisionedCapacity) {
+        Stat stat = new Stat();
+        stat.setResourceId(resourceId);
+        stat.setTimeInMillis(time);
+        stat.setServiceType("block");
+        stat.setProject(PROJECT);
+        stat.setTenant(TENANT);
+        stat.setTotalIOs(totalIOs);
+        stat.setProvisionedCapacity(provisionedCapacity);
+        return stat;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.volumecontroller.impl.plugins.metering;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.easymock.EasyMock;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeUtils;
+import org.joda.time.DateTimeZone;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.emc.storageos.db.client.DbClient;
+
+/**
+ * Checks which hours and days the StatRollupProcessor rolls up on each run
+ */
+public class StatRollupProcessorTest {
+    private final List<DateTime> hours = new ArrayList<DateTime>();
+    private final List<DateTime> days = new ArrayList<DateTime>();
+    private int failingDays;
+    private StatRollupProcessor processor;
+
+    @Before
+    public void setUp() {
+        DbClient dbClient = EasyMock.createNiceMock(DbClient.class);
+        EasyMock.replay(dbClient);
+        processor = new StatRollupProcessor() {
+            @Override
+            void rollupHour(DateTime hour) throws Exception {
+                super.rollupHour(hour);
+                hours.add(hour);
+            }
+
+            @Override
+            void rollupDay(DateTime day) throws Exception {
+                days.add(day);
+                if (failingDays > 0) {
+                    failingDays--;
+                    throw new Exception("hourly rollups of " + day + " cannot be read");
+                }
+            }
+        };
+        processor.setDbClient(dbClient);
+        processor.setCatchUpHours(2);
+        processor.setDelayMinutes(10);
+    }
+
+    @After
+    public void tearDown() {
+        DateTimeUtils.setCurrentMillisSystem();
+    }
+
+    @Test
+    public void testFailedDayRolledUpAgain() {
+        failingDays = 1;
+        setNow(time(2, 0, 15));
+        processor.run();
+        Assert.assertEquals(Arrays.asList(time(1, 22, 0), time(1, 23, 0)), hours);
+        Assert.assertEquals(Arrays.asList(time(1, 0, 0)), days);
+
+        // the day is rolled up again although its hours are not
+        processor.run();
+        Assert.assertEquals(2, hours.size());
+        Assert.assertEquals(Arrays.asList(time(1, 0, 0), time(1, 0, 0)), days);
+
+        // and only once
+        setNow(time(2, 2, 15));
+        processor.run();
+        Assert.assertEquals(Arrays.asList(time(1, 22, 0), time(1, 23, 0), time(2, 0, 0), time(2, 1, 0)), hours);
+        Assert.assertEquals(2, days.size());
+    }
+
+    @Test
+    public void testResetOnLeadership() {
+        setNow(time(1, 10, 15));
+        processor.run();
+        Assert.assertEquals(Arrays.asList(time(1, 8, 0), time(1, 9, 0)), hours);
+
+        // leader again two days later: the hours rolled up meanwhile by other leaders are skipped
+        hours.clear();
+        processor.reset();
+        setNow(time(3, 10, 15));
+        processor.run();
+        Assert.assertEquals(Arrays.asList(time(3, 8, 0), time(3, 9, 0)), hours);
+        Assert.assertEquals(Collections.<DateTime> emptyList(), days);
+    }
+
+    private static DateTime time(int day, int hour, int minute) {
+        return new DateTime(2017, 3, day, hour, minute, DateTimeZone.UTC);
+    }
+
+    private static void setNow(DateTime now) {
+        DateTimeUtils.setCurrentMillisFixed(now.getMillis());
+    }
+}
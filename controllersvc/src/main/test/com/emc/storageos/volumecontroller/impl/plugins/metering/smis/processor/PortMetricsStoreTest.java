@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.volumecontroller.impl.plugins.metering.smis.processor;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.emc.storageos.db.client.model.DataObject;
+import com.emc.storageos.db.client.model.StoragePort;
+import com.emc.storageos.db.client.model.StringMap;
+import com.emc.storageos.util.DummyDbClient;
+import com.emc.storageos.volumecontroller.impl.plugins.metering.smis.processor.PortMetricsStore.Granularity;
+import com.emc.storageos.volumecontroller.impl.plugins.metering.smis.processor.PortMetricsStore.Record;
+
+public class PortMetricsStoreTest {
+    private static final long HOUR = Granularity.HOUR.getMsecs();
+
+    private final Map<URI, DataObject> rows = new HashMap<URI, DataObject>();
+    private int rowReads;
+    private RowDbClient dbClient;
+    private PortMetricsStore store;
+    private StoragePort port;
+
+    @Before
+    public void setUp() {
+        dbClient = new RowDbClient();
+        store = new PortMetricsStore();
+        store.setDbClient(dbClient);
+        port = new StoragePort();
+        port.setId(URI.create("urn:storageos:StoragePort:1a2b3c:vdc1"));
+        port.setMetrics(new StringMap());
+    }
+
+    @Test
+    public void testEncoding() {
+        // records start from the metrics kept in the port before
+        MetricsKeys.putLong(MetricsKeys.kbytesValue, 123456789L, port.getMetrics());
+        MetricsKeys.putDouble(MetricsKeys.emaPercentBusy, 12.5, port.getMetrics());
+        Record record = store.getRecord(port);
+        Assert.assertEquals(123456789L, record.getLong(MetricsKeys.kbytesValue));
+        Assert.assertEquals(12.5, record.getDouble(MetricsKeys.emaPercentBusy), 0.0);
+        Assert.assertNull(record.getDoubleOrNull(MetricsKeys.avgCpuPercentBusy));
+
+        record.putLong(MetricsKeys.lastSampleTime, 10 * HOUR);
+        record.addSample(40.0, 10 * HOUR, 0.6);
+        record.addSample(60.0, 10 * HOUR + 1000, 0.6);
+        byte[] data = record.encode();
+        Record decoded = Record.decode(port.getId(), data);
+        Assert.assertEquals(record.toString(), decoded.toString());
+        Assert.assertEquals(50.0, decoded.getCurrent(Granularity.HOUR).getAverage(), 0.0);
+        Assert.assertNull(decoded.getDoubleOrNull(MetricsKeys.avgCpuPercentBusy));
+        Assert.assertTrue("record of " + data.length + " bytes", data.length < 256);
+
+        Assert.assertNull(Record.decode(port.getId(), new byte[] { 99 }));
+        Assert.assertEquals(URI.create("urn:storageos:PortMetricsData:1a2b3c:vdc1"), PortMetricsStore.getDataId(port.getId()));
+    }
+
+    @Test
+    public void testRollups() {
+        Record record = new Record(port.getId());
+        record.addSample(10.0, 5 * HOUR + 1, 0.5);
+        record.addSample(30.0, 5 * HOUR + 2, 0.5);
+        record.addSample(50.0, 5 * HOUR + 3, 0.5);
+        record.addSample(70.0, 6 * HOUR, 0.5);
+        // a late sample of an hour already rolled up is only added to the day
+        record.addSample(90.0, 5 * HOUR + 4, 0.5);
+
+        PortMetricsStore.Window hour = record.getPrevious(Granularity.HOUR);
+        Assert.assertEquals(5 * HOUR, hour.getStartTime());
+        Assert.assertEquals(3, hour.getCount());
+        Assert.assertEquals(10.0, hour.getMin(), 0.0);
+        Assert.assertEquals(50.0, hour.getMax(), 0.0);
+        Assert.assertEquals(30.0, hour.getAverage(), 0.0);
+        Assert.assertEquals(35.0, hour.getEma(), 0.0);
+        Assert.assertEquals(1, record.getCurrent(Granularity.HOUR).getCount());
+        Assert.assertEquals(5, record.getCurrent(Granularity.DAY).getCount());
+        Assert.assertEquals(90.0, record.getCurrent(Granularity.DAY).getMax(), 0.0);
+    }
+
+    @Test
+    public void testPublish() {
+        int portWrites = 0;
+        for (int i = 0; i < 100; i++) {
+            Record record = store.getRecord(port);
+            record.putLong(MetricsKeys.iopsValue, i * 1000L);
+            record.putDouble(MetricsKeys.avgPortPercentBusy, 30.0 + (i % 5) * 0.1);
+            if (store.publish(record, port.getMetrics())) {
+                portWrites++;
+            }
+            store.saveRecord(record);
+        }
+        // the port is written once, its metrics record on every sample
+        Assert.assertEquals(1, portWrites);
+        Assert.assertEquals(100, store.getWriteCount());
+        Assert.assertEquals("0", port.getMetrics().get(MetricsKeys.iopsValue.name()));
+
+        // a change by more than the publish delta is published right away
+        Record record = store.getRecord(port);
+        record.putDouble(MetricsKeys.avgPortPercentBusy, 45.0);
+        Assert.assertTrue(store.publish(record, port.getMetrics()));
+        store.saveRecord(record);
+        Assert.assertEquals(45.0, MetricsKeys.getDouble(MetricsKeys.avgPortPercentBusy, port.getMetrics()), 0.0);
+        Assert.assertEquals("99000", port.getMetrics().get(MetricsKeys.iopsValue.name()));
+
+        // as is everything once the publish interval passed
+        store.setPublishMsecs(0);
+        record = store.getRecord(port);
+        record.putLong(MetricsKeys.iopsValue, 123L);
+        Assert.assertTrue(store.publish(record, port.getMetrics()));
+        Assert.assertEquals("123", port.getMetrics().get(MetricsKeys.iopsValue.name()));
+    }
+
+    @Test
+    public void testView() {
+        List<StoragePort> ports = new ArrayList<StoragePort>();
+        for (int i = 0; i < 10; i++) {
+            StoragePort sp = new StoragePort();
+            sp.setId(URI.create("urn:storageos:StoragePort:" + i + ":vdc1"));
+            sp.setMetrics(new StringMap());
+            MetricsKeys.putDouble(MetricsKeys.portMetric, 5.0, sp.getMetrics());
+            ports.add(sp);
+        }
+        // metrics collected on another node
+        PortMetricsStore collector = new PortMetricsStore();
+        collector.setDbClient(dbClient);
+        Record record = collector.getRecord(ports.get(0));
+        record.putDouble(MetricsKeys.portMetric, 80.0);
+        collector.saveRecord(record);
+
+        rowReads = 0;
+        Map<URI, Record> records = store.getRecords(ports);
+        Assert.assertEquals(80.0, records.get(ports.get(0).getId()).getDouble(MetricsKeys.portMetric), 0.0);
+        Assert.assertEquals(5.0, records.get(ports.get(1).getId()).getDouble(MetricsKeys.portMetric), 0.0);
+        Assert.assertEquals(10, rowReads);
+
+        // served from memory until the refresh interval passed
+        record = collector.getRecord(ports.get(0));
+        record.putDouble(MetricsKeys.portMetric, 20.0);
+        collector.saveRecord(record);
+        records = store.getRecords(ports);
+        Assert.assertEquals(80.0, records.get(ports.get(0).getId()).getDouble(MetricsKeys.portMetric), 0.0);
+        Assert.assertEquals(10, rowReads);
+        store.setRefreshMsecs(0);
+        records = store.getRecords(Arrays.asList(ports.get(0)));
+        Assert.assertEquals(20.0, records.get(ports.get(0).getId()).getDouble(MetricsKeys.portMetric), 0.0);
+        Assert.assertEquals(11, rowReads);
+    }
+
+    @Test
+    public void testPurgedElement() {
+        Record record = store.getRecord(port);
+        record.putDouble(MetricsKeys.portMetric, 80.0);
+        store.saveRecord(record);
+
+        // the purger deactivates the row with its port
+        rows.get(PortMetricsStore.getDataId(port.getId())).setInactive(true);
+        store.setRefreshMsecs(0);
+        Assert.assertNull(store.getRecordView(port).getDoubleOrNull(MetricsKeys.portMetric));
+        Assert.assertNull(store.getRecord(port).getDoubleOrNull(MetricsKeys.portMetric));
+    }
+
+    /**
+     * Keeps the PortMetricsData rows in memory, counting the rows read
+     */
+    private class RowDbClient extends DummyDbClient {
+        @Override
+        public <T extends DataObject> void createObject(T object) {
+            rows.put(object.getId(), object);
+        }
+
+        @Override
+        public <T extends DataObject> void updateObject(T object) {
+            rows.put(object.getId(), object);
+        }
+
+        @Override
+        public <T extends DataObject> T queryObject(Class<T> clazz, URI id) {
+            rowReads++;
+            return clazz.cast(rows.get(id));
+        }
+
+        @Override
+        public <T extends DataObject> List<T> queryObject(Class<T> clazz, Collection<URI> ids) {
+            List<T> result = new ArrayList<T>();
+            for (URI id : ids) {
+                rowReads++;
+                if (rows.containsKey(id)) {
+                    result.add(clazz.cast(rows.get(id)));
+                }
+            }
+            return result;
+        }
+    }
+}
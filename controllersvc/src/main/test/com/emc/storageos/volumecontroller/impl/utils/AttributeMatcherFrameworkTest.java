@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.volumecontroller.impl.utils;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.ApplicationContext;
+
+import com.emc.storageos.db.client.model.StoragePool;
+import com.emc.storageos.volumecontroller.AttributeMatcher;
+
+/**
+ * Checks that matching the pools in partitions on the fork-join pool gives the
+ * same result as matching them sequentially.
+ */
+public class AttributeMatcherFrameworkTest {
+    private static final String GROUP = "testMatchers";
+    private static final int POOLS = 1000;
+
+    private final AtomicInteger matcherCalls = new AtomicInteger();
+    private final List<StoragePool> pools = new ArrayList<StoragePool>();
+    private AttributeMatcherFramework framework;
+
+    @Before
+    public void setUp() {
+        List<AttributeMatcher> matchers = Arrays.<AttributeMatcher> asList(new CompressedPoolMatcher());
+        ApplicationContext context = EasyMock.createMock(ApplicationContext.class);
+        for (String group : new String[] { GROUP, AttributeMatcher.VPOOL_MATCHERS, AttributeMatcher.BASIC_PLACEMENT_MATCHERS,
+                AttributeMatcher.PLACEMENT_MATCHERS }) {
+            EasyMock.expect(context.getBean(group)).andReturn(matchers).anyTimes();
+        }
+        EasyMock.replay(context);
+        framework = new AttributeMatcherFramework();
+        framework.setApplicationContext(context);
+        framework.setPoolsPerPartition(10);
+
+        for (int i = 0; i < POOLS; i++) {
+            StoragePool pool = new StoragePool();
+            pool.setId(URI.create("urn:storageos:StoragePool:" + i + ":"));
+            pool.setCompressionEnabled(i % 3 == 0);
+            pools.add(pool);
+        }
+    }
+
+    @Test
+    public void testParallelMatchingGivesSequentialResult() {
+        StringBuffer errorMessage = new StringBuffer();
+        framework.setParallelism(1);
+        List<StoragePool> sequential = match(errorMessage);
+        Assert.assertEquals(1, matcherCalls.getAndSet(0));
+
+        framework.setParallelism(4);
+        List<StoragePool> parallel = match(errorMessage);
+        Assert.assertTrue(matcherCalls.get() >= POOLS / 10);
+        Assert.assertEquals(POOLS / 3 + 1, sequential.size());
+        Assert.assertEquals(sequential, parallel);
+        Assert.assertEquals(0, errorMessage.length());
+    }
+
+    @Test
+    public void testErrorMessageWhenNoPoolMatches() {
+        for (StoragePool pool : pools) {
+            pool.setCompressionEnabled(false);
+        }
+        StringBuffer sequentialMessage = new StringBuffer();
+        framework.setParallelism(1);
+        Assert.assertTrue(match(sequentialMessage).isEmpty());
+
+        StringBuffer parallelMessage = new StringBuffer();
+        framework.setParallelism(4);
+        Assert.assertTrue(match(parallelMessage).isEmpty());
+        Assert.assertEquals(sequentialMessage.toString(), parallelMessage.toString());
+    }
+
+    private List<StoragePool> match(StringBuffer errorMessage) {
+        return framework.matchAttributes(pools, new HashMap<String, Object>(), null, null, GROUP, errorMessage);
+    }
+
+    /**
+     * Matches the pools with compression enabled, each pool on its own
+     */
+    private class CompressedPoolMatcher extends AttributeMatcher {
+        @Override
+        protected boolean isAttributeOn(Map<String, Object> attributeMap) {
+            return true;
+        }
+
+        @Override
+        public List<String> getPoolDependencies() {
+            return Arrays.asList("compressionEnabled");
+        }
+
+        @Override
+        protected List<StoragePool> matchStoragePoolsWithAttributeOn(List<StoragePool> pools,
+                Map<String, Object> attributeMap, StringBuffer errorMessage) {
+            matcherCalls.incrementAndGet();
+            List<StoragePool> matchedPools = new ArrayList<StoragePool>();
+            for (StoragePool pool : pools) {
+                if (pool.getCompressionEnabled()) {
+                    matchedPools.add(pool);
+                }
+            }
+            if (matchedPools.isEmpty()) {
+                errorMessage.append("No pool has compression enabled. ");
+            }
+            return matchedPools;
+        }
+    }
+}
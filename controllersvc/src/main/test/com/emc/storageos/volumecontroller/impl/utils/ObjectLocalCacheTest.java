@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.volumecontroller.impl.utils;
+
+import java.net.URI;
+
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.emc.storageos.db.client.DbClient;
+import com.emc.storageos.db.client.model.StoragePool;
+
+public class ObjectLocalCacheTest {
+    private static final URI POOL = URI.create("urn:storageos:StoragePool:1:vdc1");
+
+    @Test
+    public void testNullIds() {
+        StoragePool pool = new StoragePool();
+        pool.setId(POOL);
+        DbClient dbClient = EasyMock.createMock(DbClient.class);
+        EasyMock.expect(dbClient.queryObject(StoragePool.class, (URI) null)).andReturn(null);
+        EasyMock.expect(dbClient.queryObject(StoragePool.class, POOL)).andReturn(pool);
+        EasyMock.replay(dbClient);
+
+        ObjectLocalCache cache = new ObjectLocalCache(dbClient);
+        Assert.assertNull(cache.queryObject(StoragePool.class, (URI) null));
+        Assert.assertSame(pool, cache.queryObject(StoragePool.class, POOL));
+        cache.clearCache(null);
+        Assert.assertSame(pool, cache.queryObject(StoragePool.class, POOL));
+        EasyMock.verify(dbClient);
+    }
+}
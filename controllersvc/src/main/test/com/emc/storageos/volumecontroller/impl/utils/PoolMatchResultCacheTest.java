@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.volumecontroller.impl.utils;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.emc.storageos.db.client.model.DataObject;
+import com.emc.storageos.db.client.model.StoragePool;
+import com.emc.storageos.db.client.model.StorageSystem;
+import com.emc.storageos.db.client.model.StringSet;
+import com.emc.storageos.volumecontroller.AttributeMatcher;
+import com.emc.storageos.volumecontroller.impl.utils.attrmatchers.CompressionMatcher;
+import com.emc.storageos.volumecontroller.impl.utils.attrmatchers.DeviceTypeMatcher;
+
+public class PoolMatchResultCacheTest {
+    private static final URI VPOOL1 = URI.create("urn:storageos:VirtualPool:1:");
+    private static final URI VPOOL2 = URI.create("urn:storageos:VirtualPool:2:");
+    private static final String MATCHER = DeviceTypeMatcher.class.getName();
+
+    private final Map<URI, DataObject> objects = new HashMap<URI, DataObject>();
+    private ObjectLocalCache objectCache;
+    private StorageSystem system;
+    private StoragePool pool;
+
+    @Before
+    public void setUp() {
+        objectCache = new ObjectLocalCache(null) {
+            @Override
+            public <T extends DataObject> T queryObject(Class<T> clazz, URI id) {
+                return clazz.cast(objects.get(id));
+            }
+        };
+        system = new StorageSystem();
+        system.setId(URI.create("urn:storageos:StorageSystem:1:"));
+        system.setSystemType("vmax");
+        objects.put(system.getId(), system);
+        pool = new StoragePool();
+        pool.setId(URI.create("urn:storageos:StoragePool:1:"));
+        pool.setStorageDevice(system.getId());
+        pool.setCompressionEnabled(true);
+    }
+
+    @Test
+    public void testFingerprint() {
+        AttributeMatcher compressionMatcher = new CompressionMatcher();
+        AttributeMatcher deviceTypeMatcher = new DeviceTypeMatcher();
+        String compression = PoolMatchResultCache.getFingerprint(compressionMatcher, pool, objectCache);
+        String deviceType = PoolMatchResultCache.getFingerprint(deviceTypeMatcher, pool, objectCache);
+
+        // only the properties a matcher depends on change its fingerprint
+        system.setSystemType("vnxblock");
+        Assert.assertEquals(compression, PoolMatchResultCache.getFingerprint(compressionMatcher, pool, objectCache));
+        Assert.assertFalse(deviceType.equals(PoolMatchResultCache.getFingerprint(deviceTypeMatcher, pool, objectCache)));
+        pool.setCompressionEnabled(false);
+        Assert.assertFalse(compression.equals(PoolMatchResultCache.getFingerprint(compressionMatcher, pool, objectCache)));
+    }
+
+    @Test
+    public void testResults() {
+        PoolMatchResultCache cache = new PoolMatchResultCache();
+        String fingerprint = PoolMatchResultCache.getFingerprint(new DeviceTypeMatcher(), pool, objectCache);
+        cache.checkSignature(VPOOL1, getSignature("vmax"));
+        cache.checkSignature(VPOOL2, getSignature("vnxblock"));
+        Assert.assertNull(cache.getResult(VPOOL1, MATCHER, pool.getId(), fingerprint));
+        cache.putResult(VPOOL1, MATCHER, pool.getId(), fingerprint, true);
+        cache.putResult(VPOOL2, MATCHER, pool.getId(), fingerprint, false);
+        Assert.assertEquals(Boolean.TRUE, cache.getResult(VPOOL1, MATCHER, pool.getId(), fingerprint));
+        Assert.assertEquals(Boolean.FALSE, cache.getResult(VPOOL2, MATCHER, pool.getId(), fingerprint));
+
+        // a changed pool is matched again in all vpools
+        system.setSystemType("vnxblock");
+        String changed = PoolMatchResultCache.getFingerprint(new DeviceTypeMatcher(), pool, objectCache);
+        Assert.assertNull(cache.getResult(VPOOL1, MATCHER, pool.getId(), changed));
+        Assert.assertNull(cache.getResult(VPOOL2, MATCHER, pool.getId(), changed));
+        cache.putResult(VPOOL1, MATCHER, pool.getId(), changed, false);
+        Assert.assertEquals(Boolean.FALSE, cache.getResult(VPOOL1, MATCHER, pool.getId(), changed));
+
+        // results are kept as long as the vpool attributes are the same
+        cache.checkSignature(VPOOL1, getSignature("vmax"));
+        Assert.assertEquals(Boolean.FALSE, cache.getResult(VPOOL1, MATCHER, pool.getId(), changed));
+        cache.checkSignature(VPOOL1, getSignature("vnxblock"));
+        Assert.assertNull(cache.getResult(VPOOL1, MATCHER, pool.getId(), changed));
+    }
+
+    private String getSignature(String systemType) {
+        Map<String, Object> attributeMap = new HashMap<String, Object>();
+        StringSet systemTypes = new StringSet();
+        systemTypes.add(systemType);
+        attributeMap.put(AttributeMatcher.Attributes.system_type.toString(), systemTypes);
+        attributeMap.put(AttributeMatcher.Attributes.varrays.toString(),
+                new LinkedHashSet<String>(Arrays.asList("urn:storageos:VirtualArray:2:", "urn:storageos:VirtualArray:1:")));
+        return PoolMatchResultCache.getSignature(attributeMap);
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.workflow;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.curator.framework.api.CuratorListener;
+import org.apache.curator.framework.state.ConnectionStateListener;
+import org.apache.zookeeper.data.Stat;
+
+import com.emc.storageos.coordinator.client.service.DistributedDataManager;
+import com.emc.storageos.coordinator.client.service.impl.GenericSerializer;
+
+/**
+ * In memory DistributedDataManager for WorkflowService unit tests. Values are stored
+ * serialized, so later changes of the written objects are not seen, and multi-node
+ * writes are rejected above a byte and node limit like WorkflowDataManagerImpl does.
+ */
+public class TestWorkflowDataManager implements DistributedDataManager {
+    private final Map<String, byte[]> _nodes = new TreeMap<String, byte[]>();
+    private final Map<String, Integer> _versions = new TreeMap<String, Integer>();
+    private final int _maxTransactionBytes;
+    private final int _maxTransactionOps;
+    private int _transactionCount = 0;
+    private int _rejectedTransactionCount = 0;
+    private int _maxCommittedBytes = 0;
+
+    public TestWorkflowDataManager(int maxTransactionBytes, int maxTransactionOps) {
+        _maxTransactionBytes = maxTransactionBytes;
+        _maxTransactionOps = maxTransactionOps;
+    }
+
+    @Override
+    public synchronized void setListener(CuratorListener listener) throws Exception {
+        // Nothing to do here
+    }
+
+    @Override
+    public synchronized void setConnectionStateListener(ConnectionStateListener listener) throws Exception {
+        // Nothing to do here
+    }
+
+    @Override
+    public synchronized Stat checkExists(String path) throws Exception {
+        if (!_versions.containsKey(path)) {
+            return null;
+        }
+        Stat stat = new Stat();
+        stat.setVersion(_versions.get(path));
+        byte[] data = _nodes.get(path);
+        stat.setDataLength((data != null) ? data.length : 0);
+        return stat;
+    }
+
+    @Override
+    public synchronized void createNode(String path, boolean watch) throws Exception {
+        if (!_versions.containsKey(path)) {
+            write(path, null);
+        }
+    }
+
+    @Override
+    public synchronized void removeNode(String path) throws Exception {
+        _nodes.remove(path);
+        _versions.remove(path);
+    }
+
+    @Override
+    public synchronized void removeNode(String path, boolean recursive) throws Exception {
+        removeNode(path);
+        if (recursive) {
+            for (String child : new ArrayList<String>(_versions.keySet())) {
+                if (child.startsWith(path + "/")) {
+                    removeNode(child);
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void putData(String path, Object data) throws Exception {
+        write(path, GenericSerializer.serialize(data, path, true));
+    }
+
+    @Override
+    public synchronized Object getData(String path, boolean watch) throws Exception {
+        byte[] data = _nodes.get(path);
+        return (data != null) ? GenericSerializer.deserialize(data) : null;
+    }
+
+    @Override
+    public synchronized void putData(Map<String, Object> dataByPath) throws Exception {
+        Map<String, byte[]> dataMap = new LinkedHashMap<String, byte[]>();
+        int bytes = 0;
+        for (Map.Entry<String, Object> entry : dataByPath.entrySet()) {
+            byte[] data = GenericSerializer.serialize(entry.getValue(), entry.getKey(), true);
+            dataMap.put(entry.getKey(), data);
+            bytes += data.length;
+        }
+        if (bytes > _maxTransactionBytes || dataMap.size() > _maxTransactionOps) {
+            _rejectedTransactionCount++;
+            throw new IllegalArgumentException(String.format("Write of %d nodes, %d bytes exceeds the transaction limit",
+                    dataMap.size(), bytes));
+        }
+        _transactionCount++;
+        _maxCommittedBytes = Math.max(_maxCommittedBytes, bytes);
+        for (Map.Entry<String, byte[]> entry : dataMap.entrySet()) {
+            write(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public synchronized Map<String, Object> getData(List<String> paths) throws Exception {
+        Map<String, Object> result = new LinkedHashMap<String, Object>();
+        for (String path : paths) {
+            result.put(path, getData(path, false));
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized List<String> getChildren(String path) throws Exception {
+        List<String> children = new ArrayList<String>();
+        for (String node : _versions.keySet()) {
+            if (node.startsWith(path + "/") && node.indexOf('/', path.length() + 1) < 0) {
+                children.add(node.substring(path.length() + 1));
+            }
+        }
+        return children;
+    }
+
+    @Override
+    public void close() {
+        // Nothing to do here
+    }
+
+    /**
+     * @return the number of multi-node writes committed
+     */
+    public synchronized int getTransactionCount() {
+        return _transactionCount;
+    }
+
+    /**
+     * @return the number of multi-node writes rejected for exceeding the limits
+     */
+    public synchronized int getRejectedTransactionCount() {
+        return _rejectedTransactionCount;
+    }
+
+    /**
+     * @return the largest number of bytes committed by one multi-node write
+     */
+    public synchronized int getMaxCommittedBytes() {
+        return _maxCommittedBytes;
+    }
+
+    private void write(String path, byte[] data) {
+        Integer version = _versions.get(path);
+        _versions.put(path, (version != null) ? version + 1 : 0);
+        if (data != null) {
+            _nodes.put(path, data);
+        }
+        // like creatingParentsIfNeeded
+        for (int i = path.indexOf('/', 1); i > 0; i = path.indexOf('/', i + 1)) {
+            String parent = path.substring(0, i);
+            if (!_versions.containsKey(parent)) {
+                _versions.put(parent, 0);
+            }
+        }
+    }
+}
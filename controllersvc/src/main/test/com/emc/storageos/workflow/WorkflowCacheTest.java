@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.workflow;
+
+import java.net.URI;
+import java.util.UUID;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.emc.storageos.db.client.URIUtil;
+
+public class WorkflowCacheTest {
+
+    @Test
+    public void testVersionValidation() {
+        WorkflowCache cache = new WorkflowCache(10);
+        Workflow workflow = createWorkflow();
+        URI uri = workflow.getWorkflowURI();
+
+        Assert.assertNull(cache.get(uri, 0));
+        cache.put(workflow, 3);
+        Assert.assertSame(workflow, cache.get(uri, 3));
+
+        // own write advances the version
+        cache.written(workflow);
+        Assert.assertSame(workflow, cache.get(uri, 4));
+
+        // a write by another node is detected and the entry dropped
+        Assert.assertNull(cache.get(uri, 6));
+        Assert.assertNull(cache.get(uri, 6));
+        Assert.assertEquals(1, cache.getStaleCount());
+        Assert.assertEquals(2, cache.getHitCount());
+    }
+
+    @Test
+    public void testWriteOfOtherInstanceInvalidates() {
+        WorkflowCache cache = new WorkflowCache(10);
+        Workflow workflow = createWorkflow();
+        cache.put(workflow, 0);
+
+        Workflow copy = new Workflow(null, "controller", "method", workflow.getOrchTaskId(), workflow.getWorkflowURI());
+        cache.written(copy);
+        Assert.assertNull(cache.peek(workflow.getWorkflowURI()));
+    }
+
+    @Test
+    public void testBounded() {
+        WorkflowCache cache = new WorkflowCache(2);
+        Workflow first = createWorkflow();
+        cache.put(first, 0);
+        cache.put(createWorkflow(), 0);
+        cache.put(createWorkflow(), 0);
+        Assert.assertEquals(2, cache.size());
+        Assert.assertNull(cache.peek(first.getWorkflowURI()));
+    }
+
+    private Workflow createWorkflow() {
+        URI workflowURI = URIUtil.createId(com.emc.storageos.db.client.model.Workflow.class);
+        return new Workflow(null, "controller", "method", UUID.randomUUID().toString(), workflowURI);
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.workflow;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.emc.storageos.db.client.model.DataObject;
+import com.emc.storageos.util.DummyDbClient;
+import com.emc.storageos.workflow.Workflow.Step;
+
+/**
+ * Checks how WorkflowService writes workflows to zookeeper, using an in memory data manager
+ */
+public class WorkflowServiceTest {
+    private static final int MAX_TRANSACTION_BYTES = 512 * 1024;
+    private static final int MAX_TRANSACTION_OPS = 1000;
+    private static final String ZK_WORKFLOW_PATH = "/workflow/workflows/%s/%s/%s";
+    private static final String ZK_STEP2WORKFLOW_PATH = "/workflow/step2workflow/%s";
+
+    private final StepDbClient dbClient = new StepDbClient();
+    private WorkflowService service;
+
+    @Before
+    public void setUp() {
+        service = createService(0);
+    }
+
+    @Test
+    public void testBatchedStepsPersisted() throws Exception {
+        TestWorkflowDataManager dataManager = new TestWorkflowDataManager(MAX_TRANSACTION_BYTES, MAX_TRANSACTION_OPS);
+        service.setDataManagerTestOnly(dataManager);
+        Workflow workflow = createWorkflow(250, 0);
+        service.persistWorkflowAndSteps(workflow);
+
+        assertPersisted(dataManager, workflow);
+        Assert.assertEquals(3, dataManager.getTransactionCount());
+        Assert.assertEquals(0, dataManager.getRejectedTransactionCount());
+    }
+
+    @Test
+    public void testOversizedStepsPersisted() throws Exception {
+        TestWorkflowDataManager dataManager = new TestWorkflowDataManager(MAX_TRANSACTION_BYTES, MAX_TRANSACTION_OPS);
+        service.setDataManagerTestOnly(dataManager);
+        // each step node is over 40KB, so 100 steps do not fit in one transaction
+        Workflow workflow = createWorkflow(120, 20000);
+        service.persistWorkflowAndSteps(workflow);
+
+        assertPersisted(dataManager, workflow);
+        Assert.assertTrue(dataManager.getRejectedTransactionCount() > 0);
+        Assert.assertTrue(dataManager.getMaxCommittedBytes() <= MAX_TRANSACTION_BYTES);
+    }
+
+    @Test
+    public void testStepsOverOperationLimitPersisted() throws Exception {
+        TestWorkflowDataManager dataManager = new TestWorkflowDataManager(MAX_TRANSACTION_BYTES, 30);
+        service.setDataManagerTestOnly(dataManager);
+        Workflow workflow = createWorkflow(40, 0);
+        service.persistWorkflowAndSteps(workflow);
+
+        assertPersisted(dataManager, workflow);
+        Assert.assertTrue(dataManager.getRejectedTransactionCount() > 0);
+    }
+
+    @Test
+    public void testCachedWorkflowReloadedAfterWriteByOtherNode() throws Exception {
+        TestWorkflowDataManager dataManager = new TestWorkflowDataManager(MAX_TRANSACTION_BYTES, MAX_TRANSACTION_OPS);
+        service = createService(10);
+        service.setDataManagerTestOnly(dataManager);
+        WorkflowService otherService = createService(10);
+        otherService.setDataManagerTestOnly(dataManager);
+        Workflow workflow = createWorkflow(5, 0);
+        service.persistWorkflowAndSteps(workflow);
+
+        Workflow loaded = service.loadLockedWorkflow(workflow);
+        Assert.assertEquals(5, loaded.getStepMap().size());
+        Assert.assertSame(loaded, service.loadLockedWorkflow(workflow));
+        // writes of the cached instance by this node keep it valid
+        service.persistWorkflowAndSteps(loaded);
+        Assert.assertSame(loaded, service.loadLockedWorkflow(workflow));
+
+        Workflow otherLoaded = otherService.loadLockedWorkflow(workflow);
+        Step step = otherLoaded.getStepMap().values().iterator().next();
+        step.status.message = "Updated by the other node";
+        otherService.persistWorkflowAndSteps(otherLoaded);
+
+        Workflow reloaded = service.loadLockedWorkflow(workflow);
+        Assert.assertNotSame(loaded, reloaded);
+        Assert.assertEquals("Updated by the other node", reloaded.getStepMap().get(step.stepId).status.message);
+        Assert.assertSame(reloaded, service.loadLockedWorkflow(workflow));
+    }
+
+    @Test
+    public void testVersionNodeWrittenOnlyWithCache() throws Exception {
+        TestWorkflowDataManager dataManager = new TestWorkflowDataManager(MAX_TRANSACTION_BYTES, MAX_TRANSACTION_OPS);
+        service.setDataManagerTestOnly(dataManager);
+        Workflow workflow = createWorkflow(5, 0);
+        service.persistWorkflowAndSteps(workflow);
+        service.setBatchedPersistence(false);
+        service.persistWorkflow(workflow);
+        String versionPath = String.format(ZK_WORKFLOW_PATH, workflow._orchControllerName,
+                workflow._orchMethod, workflow._workflowURI) + "/_version";
+        Assert.assertNull(dataManager.checkExists(versionPath));
+
+        service = createService(10);
+        service.setDataManagerTestOnly(dataManager);
+        service.persistWorkflow(workflow);
+        Assert.assertNotNull(dataManager.checkExists(versionPath));
+    }
+
+    private WorkflowService createService(int workflowCacheSize) {
+        WorkflowService workflowService = new WorkflowService();
+        workflowService.setDbClient(dbClient);
+        workflowService.setBatchedPersistence(true);
+        workflowService.setWorkflowCacheSize(workflowCacheSize);
+        return workflowService;
+    }
+
+    private static void assertPersisted(TestWorkflowDataManager dataManager, Workflow workflow) throws Exception {
+        String workflowPath = String.format(ZK_WORKFLOW_PATH, workflow._orchControllerName,
+                workflow._orchMethod, workflow._workflowURI);
+        Workflow persisted = (Workflow) dataManager.getData(workflowPath, false);
+        Assert.assertNotNull(persisted);
+        Assert.assertEquals(workflow._orchTaskId, persisted._orchTaskId);
+        for (Step step : workflow.getStepMap().values()) {
+            Step persistedStep = (Step) dataManager.getData(workflowPath + "/" + step.stepId, false);
+            Assert.assertNotNull(persistedStep);
+            Assert.assertEquals(step.description, persistedStep.description);
+            Assert.assertNull(persistedStep.executeMethod);
+            Assert.assertEquals(workflowPath, dataManager.getData(String.format(ZK_STEP2WORKFLOW_PATH, step.stepId), false));
+            // the methods are only left out of the zookeeper nodes
+            Assert.assertNotNull(step.executeMethod);
+        }
+    }
+
+    /**
+     * @param steps number of steps
+     * @param descriptionLength if not 0, the length of each step description
+     */
+    private static Workflow createWorkflow(int steps, int descriptionLength) {
+        Workflow workflow = WorkflowZkDataCodecTest.createWorkflow(steps);
+        StringBuilder description = new StringBuilder();
+        while (description.length() < descriptionLength) {
+            description.append("Creating volumes on array ");
+        }
+        for (Step step : workflow.getStepMap().values()) {
+            // not logged yet, so logStep creates the database record
+            step.workflowStepURI = null;
+            if (descriptionLength > 0) {
+                step.description = description.substring(0, descriptionLength);
+                step.status.message = step.description;
+            }
+        }
+        return workflow;
+    }
+
+    /**
+     * Keeps the step records logged by WorkflowService, which restores the step methods from them
+     */
+    private static class StepDbClient extends DummyDbClient {
+        private final Map<URI, DataObject> objects = new HashMap<URI, DataObject>();
+
+        @Override
+        public <T extends DataObject> T queryObject(Class<T> clazz, URI id) {
+            return clazz.cast(objects.get(id));
+        }
+
+        @Override
+        public <T extends DataObject> void createObject(T object) {
+            objects.put(object.getId(), object);
+        }
+
+        @Override
+        public <T extends DataObject> void updateObject(T object) {
+            objects.put(object.getId(), object);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.workflow;
+
+import org.junit.Test;
+
+import com.emc.storageos.coordinator.client.service.impl.CompactZkDataCodec;
+import com.emc.storageos.coordinator.client.service.impl.JavaZkDataCodec;
+import com.emc.storageos.coordinator.client.service.impl.ZkDataCodec;
+
+/**
+ * Prints encode/decode times and sizes of Java serialization and the compact codec for small
+ * and large workflows. Excluded from the unit tests, run by the PerformanceTest task.
+ */
+public class WorkflowZkDataCodecPerfTest {
+    private static final int ITERATIONS = 2000;
+
+    @Test
+    public void testPerformance() throws Exception {
+        ZkDataCodec[] codecs = new ZkDataCodec[] { new JavaZkDataCodec(), new CompactZkDataCodec() };
+        for (int steps : new int[] { 5, 50, 200 }) {
+            Workflow workflow = WorkflowZkDataCodecTest.createWorkflow(steps);
+            for (ZkDataCodec codec : codecs) {
+                byte[] data = codec.encode(workflow);
+                // warm up
+                for (int i = 0; i < ITERATIONS / 10; i++) {
+                    codec.decode(codec.encode(workflow));
+                }
+                long start = System.nanoTime();
+                for (int i = 0; i < ITERATIONS; i++) {
+                    data = codec.encode(workflow);
+                }
+                long encodeNanos = (System.nanoTime() - start) / ITERATIONS;
+                start = System.nanoTime();
+                for (int i = 0; i < ITERATIONS; i++) {
+                    codec.decode(data);
+                }
+                long decodeNanos = (System.nanoTime() - start) / ITERATIONS;
+                System.out.println(String.format("%s workflow with %d steps: %d bytes, encode %d us, decode %d us",
+                        codec.getClass().getSimpleName(), steps, data.length, encodeNanos / 1000, decodeNanos / 1000));
+            }
+        }
+    }
+}
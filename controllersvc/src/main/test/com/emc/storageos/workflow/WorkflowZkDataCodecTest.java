@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.workflow;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.emc.storageos.coordinator.client.service.impl.CompactZkDataCodec;
+import com.emc.storageos.coordinator.client.service.impl.JavaZkDataCodec;
+import com.emc.storageos.coordinator.client.service.impl.ZkDataCodec;
+import com.emc.storageos.db.client.URIUtil;
+import com.emc.storageos.db.client.model.StorageSystem;
+import com.emc.storageos.db.client.model.Volume;
+import com.emc.storageos.volumecontroller.impl.block.taskcompleter.VolumeWorkflowCompleter;
+
+/**
+ * Checks the compact zookeeper encoding of Workflows and compares it with Java serialization
+ */
+public class WorkflowZkDataCodecTest {
+    private final ZkDataCodec javaCodec = new JavaZkDataCodec();
+    private final ZkDataCodec compactCodec = new CompactZkDataCodec();
+
+    @Test
+    public void testWorkflowRoundTrip() throws Exception {
+        Workflow workflow = createWorkflow(20);
+        Workflow decoded = (Workflow) compactCodec.decode(compactCodec.encode(workflow));
+
+        Assert.assertEquals(workflow._orchControllerName, decoded._orchControllerName);
+        Assert.assertEquals(workflow._orchTaskId, decoded._orchTaskId);
+        Assert.assertEquals(workflow._workflowURI, decoded._workflowURI);
+        Assert.assertEquals(workflow.getWorkflowState(), decoded.getWorkflowState());
+        Assert.assertEquals(workflow._stepGroupMap, decoded._stepGroupMap);
+        Assert.assertEquals(workflow._stepMap.keySet(), decoded._stepMap.keySet());
+        Assert.assertNotNull(decoded._taskCompleter);
+        for (Workflow.Step step : workflow._stepMap.values()) {
+            Workflow.Step other = decoded._stepMap.get(step.stepId);
+            Assert.assertEquals(step.deviceURI, other.deviceURI);
+            Assert.assertEquals(step.executeMethod.methodName, other.executeMethod.methodName);
+            Assert.assertArrayEquals(step.executeMethod.args, other.executeMethod.args);
+            Assert.assertEquals(step.status.state, other.status.state);
+            // step status is shared with the status map, as with Java serialization
+            Assert.assertSame(other.status, decoded._stepStatusMap.get(step.stepId));
+        }
+    }
+
+    @Test
+    public void testStepRoundTrip() throws Exception {
+        Workflow.Step step = createWorkflow(1)._stepMap.values().iterator().next();
+        Workflow.Step decoded = (Workflow.Step) compactCodec.decode(compactCodec.encode(step));
+        Assert.assertEquals(step.stepId, decoded.stepId);
+        Assert.assertEquals(step.lockDevice, decoded.lockDevice);
+        Assert.assertEquals(step.rollbackMethod.methodName, decoded.rollbackMethod.methodName);
+    }
+
+    @Test
+    public void testSmallerThanJavaSerialization() throws Exception {
+        for (int steps : new int[] { 5, 50, 200 }) {
+            Workflow workflow = createWorkflow(steps);
+            int javaSize = javaCodec.encode(workflow).length;
+            int compactSize = compactCodec.encode(workflow).length;
+            Assert.assertTrue(String.format("%d steps: compact %d bytes, java %d bytes", steps, compactSize, javaSize),
+                    compactSize < javaSize);
+        }
+    }
+
+    /**
+     * Creates a workflow of volume creation steps on one array, shared with WorkflowZkDataCodecPerfTest
+     */
+    static Workflow createWorkflow(int steps) {
+        URI workflowURI = URIUtil.createId(com.emc.storageos.db.client.model.Workflow.class);
+        String taskId = UUID.randomUUID().toString();
+        Workflow workflow = new Workflow(null, "BlockOrchestrationDeviceController", "createVolumes", taskId, workflowURI);
+        List<URI> volumes = new ArrayList<URI>();
+        for (int i = 0; i < 4; i++) {
+            volumes.add(URIUtil.createId(Volume.class));
+        }
+        workflow._taskCompleter = new VolumeWorkflowCompleter(volumes, taskId);
+        URI device = URIUtil.createId(StorageSystem.class);
+
+        String waitFor = null;
+        for (int i = 0; i < steps; i++) {
+            Workflow.Step step = new Workflow.Step();
+            step.stepId = UUID.randomUUID().toString();
+            step.stepGroup = (i % 2 == 0) ? "BlockDeviceCreateVolumes" : "BlockDeviceExportVolumes";
+            step.description = "Creating volumes on array " + device;
+            step.waitFor = waitFor;
+            step.deviceURI = device;
+            step.deviceType = "vmax";
+            step.lockDevice = true;
+            step.controllerName = "com.emc.storageos.volumecontroller.impl.block.BlockDeviceController";
+            step.executeMethod = new Workflow.Method("createVolumes", device, URIUtil.createId(Volume.class), volumes, taskId);
+            step.rollbackMethod = new Workflow.Method("rollbackCreateVolumes", device, volumes, taskId);
+            step.workflowStepURI = URIUtil.createId(com.emc.storageos.db.client.model.WorkflowStep.class);
+            step.status = new Workflow.StepStatus(step.stepId, Workflow.StepState.CREATED, step.description);
+
+            workflow._stepMap.put(step.stepId, step);
+            workflow._stepStatusMap.put(step.stepId, step.status);
+            if (!workflow._stepGroupMap.containsKey(step.stepGroup)) {
+                workflow._stepGroupMap.put(step.stepGroup, new HashSet<String>());
+            }
+            workflow._stepGroupMap.get(step.stepGroup).add(step.stepId);
+            waitFor = step.stepGroup;
+        }
+        return workflow;
+    }
+}
@@ -640,6 +640,21 @@ public interface CoordinatorClient {
      * @param listener
      */
     public void removeNodeListener(NodeListener listener);
+
+    /**
+     * add a ServiceChangeListener notified when service beacons of a looked up site change.
+     * Changes are only reported while the service registry cache is enabled.
+     * 
+     * @param listener
+     */
+    public void addServiceChangeListener(ServiceChangeListener listener);
+
+    /**
+     * remove the ServiceChangeListener from coordinator client.
+     * 
+     * @param listener
+     */
+    public void removeServiceChangeListener(ServiceChangeListener listener);
     
     /**
      * Get a unique id for current site, which is used to access site specific area in ZK
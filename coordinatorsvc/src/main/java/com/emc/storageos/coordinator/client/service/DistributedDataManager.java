@@ -5,6 +5,7 @@
 package com.emc.storageos.coordinator.client.service;
 
 import java.util.List;
+import java.util.Map;
 
 import org.apache.zookeeper.data.Stat;
 import org.apache.curator.framework.api.CuratorListener;
@@ -99,6 +100,32 @@ public interface DistributedDataManager {
      */
     public Object getData(String path, boolean watch) throws Exception;
 
+    /**
+     * Stores several Java objects, as putData(path, data) does for each of them, but
+     * using as few zookeeper round trips as the implementation allows. Missing parent
+     * nodes are created.
+     * 
+     * The workflow data manager writes all the nodes in one transaction, so a failed
+     * call writes none of them, and rejects a call too large for one transaction.
+     * Other implementations may write node by node, leaving some nodes written when
+     * the call fails.
+     * 
+     * @param dataByPath -- Serializable Java objects by String zookeeper path.
+     * @throws Exception
+     */
+    public void putData(Map<String, Object> dataByPath) throws Exception;
+
+    /**
+     * Returns the data of several nodes, as getData(path, false) does for each of them,
+     * but using as few zookeeper round trips as the implementation allows.
+     * 
+     * @param paths -- String zookeeper paths.
+     * @return map of the Java object of each path (null if the node does not exist
+     *         or has no data), in the order of the given paths
+     * @throws Exception
+     */
+    public Map<String, Object> getData(List<String> paths) throws Exception;
+
     /**
      * Returns a list of the child node names. For example if called on
      * a path /a/b that has children c1 and c2, returns { c1, c2 }.
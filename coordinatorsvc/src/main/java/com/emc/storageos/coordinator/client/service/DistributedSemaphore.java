@@ -43,6 +43,31 @@ public interface DistributedSemaphore {
      */
     public Lease acquireLease(long waitTime, TimeUnit waitTimeUnit) throws Exception;
 
+    /**
+     * Non-blocking P operation of the semaphore.
+     * 
+     * @return Lease:
+     *         valid, if a permit was available
+     *         null, otherwise.
+     */
+    public Lease tryAcquireLease() throws Exception;
+
+    /**
+     * Adds a listener that is run when a lease may have become available because a lease
+     * was returned by this or any other client. The listener is run on a ZK event thread
+     * and must not block; a listener is not guaranteed to get a lease.
+     * 
+     * @param listener
+     */
+    public void addLeaseAvailableListener(Runnable listener);
+
+    /**
+     * Removes a listener added with addLeaseAvailableListener.
+     * 
+     * @param listener
+     */
+    public void removeLeaseAvailableListener(Runnable listener);
+
     /**
      * V operation of the semaphore.
      * This method <b>must</b> be called by clients who called acquireLease methods to release
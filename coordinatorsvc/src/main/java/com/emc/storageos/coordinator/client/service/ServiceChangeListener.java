@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.coordinator.client.service;
+
+/**
+ * Client should implement this interface if it has interest in service beacons
+ * being registered, updated or removed, and then add the listener to CoordinatorClient.
+ * Changes are only reported for sites whose services have been looked up.
+ */
+public interface ServiceChangeListener {
+
+    public static enum ChangeType {
+        ADDED, UPDATED, REMOVED
+    }
+
+    /**
+     * Called when the beacon of a service instance at
+     * /sites/<siteId>/service/<name>/<version>/<serviceId> changes.
+     * 
+     * @param siteId site of the service, null for the global /service path
+     * @param name service name
+     * @param version service version
+     * @param serviceId id of the service instance
+     * @param type type of the change
+     */
+    public void serviceChanged(String siteId, String name, String version, String serviceId, ChangeType type);
+}
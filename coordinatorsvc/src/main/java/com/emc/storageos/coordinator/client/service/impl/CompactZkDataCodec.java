@@ -0,0 +1,601 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.coordinator.client.service.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compact binary encoding for zookeeper node data.
+ *
+ * Layout: 2 magic bytes (distinct from the 0xACED Java stream magic), a format version
+ * byte and a flags byte, followed by the payload, deflated if it is larger than the
+ * compression threshold. The payload is a tagged encoding of the object graph:
+ * <ul>
+ * <li>strings, boxed primitives, URIs, enums, dates, byte arrays, Object and String arrays,
+ * and the common JDK lists, sets and maps are written natively; repeated strings are
+ * written once and then referenced by index</li>
+ * <li>classes with a registered TypeAdapter are written as named fields, so fields can be
+ * added or removed without breaking data written by another release</li>
+ * <li>anything else is written with Java serialization, in a single object stream appended
+ * to the payload so that shared references among those objects are preserved</li>
+ * </ul>
+ * Shared references to collections, arrays, dates and adapted objects are preserved.
+ * Adapted objects must not refer back to themselves; such graphs fail to encode.
+ *
+ * A type adapter is identified in the data by its class name. A reader which has not
+ * registered the adapter instantiates it through its public no-arg constructor.
+ */
+public class CompactZkDataCodec implements ZkDataCodec {
+    public static final int DEFAULT_COMPRESS_THRESHOLD = 1024;
+
+    private static final byte MAGIC_0 = (byte) 0xC0;
+    private static final byte MAGIC_1 = (byte) 0xDC;
+    private static final byte FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 4;
+    private static final int FLAG_DEFLATE = 0x01;
+    private static final int FLAG_JAVA_OBJECTS = 0x02;
+
+    private static final int T_NULL = 0;
+    private static final int T_STRING = 1;
+    private static final int T_INT = 2;
+    private static final int T_LONG = 3;
+    private static final int T_TRUE = 4;
+    private static final int T_FALSE = 5;
+    private static final int T_DOUBLE = 6;
+    private static final int T_URI = 7;
+    private static final int T_ENUM = 8;
+    private static final int T_BYTES = 9;
+    private static final int T_DATE = 10;
+    private static final int T_OBJECT_ARRAY = 11;
+    private static final int T_STRING_ARRAY = 12;
+    private static final int T_LIST = 13;
+    private static final int T_LINKED_LIST = 14;
+    private static final int T_SET = 15;
+    private static final int T_LINKED_SET = 16;
+    private static final int T_TREE_SET = 17;
+    private static final int T_MAP = 18;
+    private static final int T_LINKED_MAP = 19;
+    private static final int T_TREE_MAP = 20;
+    private static final int T_ADAPTER = 21;
+    private static final int T_REF = 22;
+    private static final int T_JAVA = 23;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Class<?> ARRAYS_LIST_CLASS = Arrays.asList().getClass();
+
+    private static final ConcurrentMap<Class<?>, TypeAdapter<?>> _adaptersByType = new ConcurrentHashMap<Class<?>, TypeAdapter<?>>();
+    private static final ConcurrentMap<String, TypeAdapter<?>> _adaptersByName = new ConcurrentHashMap<String, TypeAdapter<?>>();
+
+    private final int _compressThreshold;
+
+    /**
+     * Encodes and decodes objects of one class as a list of named fields.
+     *
+     * write() calls ValueWriter.writeField for each field. read() calls ValueReader.nextField
+     * until it returns null, reading each field value with ValueReader.readValue, including
+     * the values of fields it doesn't know.
+     */
+    public interface TypeAdapter<T> {
+        /**
+         * @return the exact class handled by this adapter (subclasses are not)
+         */
+        Class<T> getType();
+
+        void write(T value, ValueWriter out) throws IOException;
+
+        T read(ValueReader in) throws IOException;
+    }
+
+    /**
+     * Registers a type adapter for all codec instances
+     */
+    public static void registerAdapter(TypeAdapter<?> adapter) {
+        _adaptersByType.put(adapter.getType(), adapter);
+        _adaptersByName.put(adapter.getClass().getName(), adapter);
+    }
+
+    public CompactZkDataCodec() {
+        this(DEFAULT_COMPRESS_THRESHOLD);
+    }
+
+    /**
+     * @param compressThreshold payload size from which the payload is deflated, negative to never compress
+     */
+    public CompactZkDataCodec(int compressThreshold) {
+        _compressThreshold = compressThreshold;
+    }
+
+    @Override
+    public boolean accepts(byte[] data) {
+        return data != null && data.length >= HEADER_SIZE && data[0] == MAGIC_0 && data[1] == MAGIC_1;
+    }
+
+    @Override
+    public byte[] encode(Object object) throws IOException {
+        ValueWriter writer = new ValueWriter();
+        writer.writeValue(object);
+        byte[] body = writer._bytes.toByteArray();
+
+        int flags = 0;
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(body.length + 8);
+        DataOutputStream out = new DataOutputStream(payload);
+        writeVarInt(out, body.length);
+        out.write(body);
+        if (!writer._javaObjects.isEmpty()) {
+            flags |= FLAG_JAVA_OBJECTS;
+            ObjectOutputStream oout = new ObjectOutputStream(out);
+            oout.writeInt(writer._javaObjects.size());
+            for (Object javaObject : writer._javaObjects) {
+                oout.writeObject(javaObject);
+            }
+            oout.flush();
+        }
+        out.flush();
+
+        byte[] bytes = payload.toByteArray();
+        if (_compressThreshold >= 0 && bytes.length >= _compressThreshold) {
+            byte[] deflated = deflate(bytes);
+            if (deflated.length < bytes.length) {
+                bytes = deflated;
+                flags |= FLAG_DEFLATE;
+            }
+        }
+
+        byte[] data = new byte[HEADER_SIZE + bytes.length];
+        data[0] = MAGIC_0;
+        data[1] = MAGIC_1;
+        data[2] = FORMAT_VERSION;
+        data[3] = (byte) flags;
+        System.arraycopy(bytes, 0, data, HEADER_SIZE, bytes.length);
+        return data;
+    }
+
+    @Override
+    public Object decode(byte[] data) throws IOException, ClassNotFoundException {
+        if (!accepts(data)) {
+            throw new IOException("Not compact zk data");
+        }
+        if (data[2] > FORMAT_VERSION) {
+            throw new IOException("Unsupported compact zk data version " + data[2]);
+        }
+        int flags = data[3];
+
+        InputStream stream = new ByteArrayInputStream(data, HEADER_SIZE, data.length - HEADER_SIZE);
+        if ((flags & FLAG_DEFLATE) != 0) {
+            stream = new InflaterInputStream(stream);
+        }
+        DataInputStream in = new DataInputStream(stream);
+        byte[] body = new byte[readVarInt(in)];
+        in.readFully(body);
+
+        List<Object> javaObjects = Collections.emptyList();
+        if ((flags & FLAG_JAVA_OBJECTS) != 0) {
+            ObjectInputStream oin = new ObjectInputStream(in);
+            int count = oin.readInt();
+            javaObjects = new ArrayList<Object>(count);
+            for (int i = 0; i < count; i++) {
+                javaObjects.add(oin.readObject());
+            }
+        }
+        return new ValueReader(body, javaObjects).readValue();
+    }
+
+    private static byte[] deflate(byte[] bytes) throws IOException {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2);
+            DeflaterOutputStream dout = new DeflaterOutputStream(out, deflater);
+            dout.write(bytes);
+            dout.finish();
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static int getContainerTag(Object value, Class<?> clazz) {
+        if (clazz == Date.class) {
+            return T_DATE;
+        } else if (clazz == Object[].class) {
+            return T_OBJECT_ARRAY;
+        } else if (clazz == String[].class) {
+            return T_STRING_ARRAY;
+        } else if (clazz == ArrayList.class || clazz == ARRAYS_LIST_CLASS) {
+            return T_LIST;
+        } else if (clazz == LinkedList.class) {
+            return T_LINKED_LIST;
+        } else if (clazz == HashSet.class) {
+            return T_SET;
+        } else if (clazz == LinkedHashSet.class) {
+            return T_LINKED_SET;
+        } else if (clazz == TreeSet.class && ((TreeSet<?>) value).comparator() == null) {
+            return T_TREE_SET;
+        } else if (clazz == HashMap.class) {
+            return T_MAP;
+        } else if (clazz == LinkedHashMap.class) {
+            return T_LINKED_MAP;
+        } else if (clazz == TreeMap.class && ((TreeMap<?, ?>) value).comparator() == null) {
+            return T_TREE_MAP;
+        }
+        return T_JAVA;
+    }
+
+    private static TypeAdapter<?> getAdapter(String name) throws IOException {
+        TypeAdapter<?> adapter = _adaptersByName.get(name);
+        if (adapter == null) {
+            try {
+                adapter = (TypeAdapter<?>) loadClass(name).newInstance();
+            } catch (Exception e) {
+                throw new IOException("No type adapter " + name, e);
+            }
+            registerAdapter(adapter);
+        }
+        return adapter;
+    }
+
+    private static Class<?> loadClass(String name) throws ClassNotFoundException {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        if (loader == null) {
+            loader = CompactZkDataCodec.class.getClassLoader();
+        }
+        return Class.forName(name, false, loader);
+    }
+
+    private static void writeVarInt(DataOutput out, int value) throws IOException {
+        writeVarLong(out, value & 0xFFFFFFFFL);
+    }
+
+    private static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static int readVarInt(DataInput in) throws IOException {
+        return (int) readVarLong(in);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable length number");
+    }
+
+    /**
+     * Writes one object graph
+     */
+    public static final class ValueWriter {
+        private final ByteArrayOutputStream _bytes = new ByteArrayOutputStream(256);
+        private final DataOutputStream _out = new DataOutputStream(_bytes);
+        private final Map<String, Integer> _strings = new HashMap<String, Integer>();
+        private final Map<Object, Integer> _refs = new IdentityHashMap<Object, Integer>();
+        private final Map<Object, Boolean> _inProgress = new IdentityHashMap<Object, Boolean>();
+        private final List<Object> _javaObjects = new ArrayList<Object>();
+
+        private ValueWriter() {
+        }
+
+        /**
+         * Writes one field of an adapted object
+         */
+        public void writeField(String name, Object value) throws IOException {
+            if (name == null) {
+                throw new IllegalArgumentException("field name is null");
+            }
+            writeString(name);
+            writeValue(value);
+        }
+
+        public void writeValue(Object value) throws IOException {
+            if (value == null) {
+                _out.writeByte(T_NULL);
+                return;
+            }
+            Class<?> clazz = value.getClass();
+            if (clazz == String.class) {
+                _out.writeByte(T_STRING);
+                writeString((String) value);
+            } else if (clazz == Integer.class) {
+                _out.writeByte(T_INT);
+                int i = (Integer) value;
+                writeVarInt(_out, (i << 1) ^ (i >> 31));
+            } else if (clazz == Long.class) {
+                _out.writeByte(T_LONG);
+                long l = (Long) value;
+                writeVarLong(_out, (l << 1) ^ (l >> 63));
+            } else if (clazz == Boolean.class) {
+                _out.writeByte((Boolean) value ? T_TRUE : T_FALSE);
+            } else if (clazz == Double.class) {
+                _out.writeByte(T_DOUBLE);
+                _out.writeDouble((Double) value);
+            } else if (clazz == URI.class) {
+                _out.writeByte(T_URI);
+                writeString(value.toString());
+            } else if (value instanceof Enum) {
+                _out.writeByte(T_ENUM);
+                writeString(((Enum<?>) value).getDeclaringClass().getName());
+                writeString(((Enum<?>) value).name());
+            } else if (clazz == byte[].class) {
+                _out.writeByte(T_BYTES);
+                writeVarInt(_out, ((byte[]) value).length);
+                _out.write((byte[]) value);
+            } else {
+                writeObject(value, clazz);
+            }
+        }
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        private void writeObject(Object value, Class<?> clazz) throws IOException {
+            Integer ref = _refs.get(value);
+            if (ref != null) {
+                if (_inProgress.containsKey(value)) {
+                    throw new IOException("Cyclic reference to " + clazz.getName());
+                }
+                _out.writeByte(T_REF);
+                writeVarInt(_out, ref);
+                return;
+            }
+
+            TypeAdapter adapter = _adaptersByType.get(clazz);
+            int tag = (adapter != null) ? T_ADAPTER : getContainerTag(value, clazz);
+            if (tag == T_JAVA) {
+                // the shared object stream keeps references between these objects
+                _out.writeByte(T_JAVA);
+                writeVarInt(_out, _javaObjects.size());
+                _javaObjects.add(value);
+                return;
+            }
+
+            _refs.put(value, _refs.size());
+            _out.writeByte(tag);
+            switch (tag) {
+                case T_ADAPTER:
+                    writeString(adapter.getClass().getName());
+                    _inProgress.put(value, Boolean.TRUE);
+                    adapter.write(value, this);
+                    _inProgress.remove(value);
+                    writeString(null);
+                    break;
+                case T_DATE:
+                    _out.writeLong(((Date) value).getTime());
+                    break;
+                case T_OBJECT_ARRAY:
+                    writeVarInt(_out, ((Object[]) value).length);
+                    for (Object element : (Object[]) value) {
+                        writeValue(element);
+                    }
+                    break;
+                case T_STRING_ARRAY:
+                    writeVarInt(_out, ((String[]) value).length);
+                    for (String element : (String[]) value) {
+                        writeString(element);
+                    }
+                    break;
+                case T_LIST:
+                case T_LINKED_LIST:
+                case T_SET:
+                case T_LINKED_SET:
+                case T_TREE_SET:
+                    writeVarInt(_out, ((Collection<?>) value).size());
+                    for (Object element : (Collection<?>) value) {
+                        writeValue(element);
+                    }
+                    break;
+                default:
+                    writeVarInt(_out, ((Map<?, ?>) value).size());
+                    for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                        writeValue(entry.getKey());
+                        writeValue(entry.getValue());
+                    }
+                    break;
+            }
+        }
+
+        private void writeString(String s) throws IOException {
+            // 0: null, 1: new string, n > 1: string n - 2 of the string table
+            if (s == null) {
+                writeVarInt(_out, 0);
+                return;
+            }
+            Integer index = _strings.get(s);
+            if (index != null) {
+                writeVarInt(_out, index + 2);
+                return;
+            }
+            _strings.put(s, _strings.size());
+            byte[] utf8 = s.getBytes(UTF_8);
+            writeVarInt(_out, 1);
+            writeVarInt(_out, utf8.length);
+            _out.write(utf8);
+        }
+    }
+
+    /**
+     * Reads one object graph
+     */
+    public static final class ValueReader {
+        private final DataInputStream _in;
+        private final List<String> _strings = new ArrayList<String>();
+        private final List<Object> _refs = new ArrayList<Object>();
+        private final List<Object> _javaObjects;
+
+        private ValueReader(byte[] body, List<Object> javaObjects) {
+            _in = new DataInputStream(new ByteArrayInputStream(body));
+            _javaObjects = javaObjects;
+        }
+
+        /**
+         * @return name of the next field of an adapted object, null after the last one
+         */
+        public String nextField() throws IOException {
+            return readString();
+        }
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        public Object readValue() throws IOException {
+            int tag = _in.readUnsignedByte();
+            switch (tag) {
+                case T_NULL:
+                    return null;
+                case T_STRING:
+                    return readString();
+                case T_INT:
+                    int i = readVarInt(_in);
+                    return (i >>> 1) ^ -(i & 1);
+                case T_LONG:
+                    long l = readVarLong(_in);
+                    return (l >>> 1) ^ -(l & 1);
+                case T_TRUE:
+                    return Boolean.TRUE;
+                case T_FALSE:
+                    return Boolean.FALSE;
+                case T_DOUBLE:
+                    return _in.readDouble();
+                case T_URI:
+                    return URI.create(readString());
+                case T_ENUM:
+                    String className = readString();
+                    String name = readString();
+                    try {
+                        return Enum.valueOf((Class) loadClass(className), name);
+                    } catch (ClassNotFoundException e) {
+                        throw new IOException(e);
+                    }
+                case T_BYTES:
+                    byte[] bytes = new byte[readVarInt(_in)];
+                    _in.readFully(bytes);
+                    return bytes;
+                case T_DATE:
+                    Date date = new Date(_in.readLong());
+                    _refs.add(date);
+                    return date;
+                case T_OBJECT_ARRAY:
+                    Object[] objects = new Object[readVarInt(_in)];
+                    _refs.add(objects);
+                    for (int j = 0; j < objects.length; j++) {
+                        objects[j] = readValue();
+                    }
+                    return objects;
+                case T_STRING_ARRAY:
+                    String[] strings = new String[readVarInt(_in)];
+                    _refs.add(strings);
+                    for (int j = 0; j < strings.length; j++) {
+                        strings[j] = readString();
+                    }
+                    return strings;
+                case T_LIST:
+                    int listSize = readVarInt(_in);
+                    return readElements(new ArrayList<Object>(listSize), listSize);
+                case T_LINKED_LIST:
+                    return readElements(new LinkedList<Object>(), readVarInt(_in));
+                case T_SET:
+                    int setSize = readVarInt(_in);
+                    return readElements(new HashSet<Object>(capacity(setSize)), setSize);
+                case T_LINKED_SET:
+                    int linkedSetSize = readVarInt(_in);
+                    return readElements(new LinkedHashSet<Object>(capacity(linkedSetSize)), linkedSetSize);
+                case T_TREE_SET:
+                    return readElements(new TreeSet<Object>(), readVarInt(_in));
+                case T_MAP:
+                    int mapSize = readVarInt(_in);
+                    return readEntries(new HashMap<Object, Object>(capacity(mapSize)), mapSize);
+                case T_LINKED_MAP:
+                    int linkedMapSize = readVarInt(_in);
+                    return readEntries(new LinkedHashMap<Object, Object>(capacity(linkedMapSize)), linkedMapSize);
+                case T_TREE_MAP:
+                    return readEntries(new TreeMap<Object, Object>(), readVarInt(_in));
+                case T_ADAPTER:
+                    TypeAdapter<?> adapter = getAdapter(readString());
+                    int slot = _refs.size();
+                    _refs.add(null);
+                    Object value = adapter.read(this);
+                    _refs.set(slot, value);
+                    return value;
+                case T_REF:
+                    return _refs.get(readVarInt(_in));
+                case T_JAVA:
+                    return _javaObjects.get(readVarInt(_in));
+                default:
+                    throw new IOException("Unknown compact zk data tag " + tag);
+            }
+        }
+
+        private Collection<Object> readElements(Collection<Object> collection, int size) throws IOException {
+            _refs.add(collection);
+            for (int j = 0; j < size; j++) {
+                collection.add(readValue());
+            }
+            return collection;
+        }
+
+        private Map<Object, Object> readEntries(Map<Object, Object> map, int size) throws IOException {
+            _refs.add(map);
+            for (int j = 0; j < size; j++) {
+                Object key = readValue();
+                map.put(key, readValue());
+            }
+            return map;
+        }
+
+        private static int capacity(int size) {
+            return Math.max(16, (int) (size / 0.75f) + 1);
+        }
+
+        private String readString() throws IOException {
+            int index = readVarInt(_in);
+            if (index == 0) {
+                return null;
+            }
+            if (index > 1) {
+                return _strings.get(index - 2);
+            }
+            byte[] utf8 = new byte[readVarInt(_in)];
+            _in.readFully(utf8);
+            String s = new String(utf8, UTF_8);
+            _strings.add(s);
+            return s;
+        }
+    }
+}
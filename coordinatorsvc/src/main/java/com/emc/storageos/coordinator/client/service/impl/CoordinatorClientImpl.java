@@ -87,6 +87,7 @@ import com.emc.storageos.coordinator.client.service.DistributedSemaphore;
 import com.emc.storageos.coordinator.client.service.DrUtil;
 import com.emc.storageos.coordinator.client.service.LicenseInfo;
 import com.emc.storageos.coordinator.client.service.NodeListener;
+import com.emc.storageos.coordinator.client.service.ServiceChangeListener;
 import com.emc.storageos.coordinator.client.service.WorkPool;
 import com.emc.storageos.coordinator.common.Configuration;
 import com.emc.storageos.coordinator.common.Service;
@@ -144,6 +145,14 @@ public class CoordinatorClientImpl implements CoordinatorClient {
 
     private NodeCacheWatcher nodeWatcher = new NodeCacheWatcher();
 
+    // number of items distributed queues claim at a time, 1 to claim them one by one
+    private int queueBatchSize = 1;
+
+    // watch-driven copy of the service beacons, created on first lookup if enabled
+    private boolean serviceRegistryCacheEnabled = false;
+    private volatile ServiceRegistryCache serviceRegistryCache;
+    private final Set<ServiceChangeListener> serviceChangeListeners = new CopyOnWriteArraySet<ServiceChangeListener>();
+
     private DistributedAroundHook ownerLockAroundHook;
     
     // ThreadLocal variable to hold zk transaction handler
@@ -198,6 +207,59 @@ public class CoordinatorClientImpl implements CoordinatorClient {
         return sysSvcVersion;
     }
 
+    public void setQueueBatchSize(int queueBatchSize) {
+        this.queueBatchSize = queueBatchSize;
+    }
+
+    public void setServiceRegistryCacheEnabled(boolean enabled) {
+        serviceRegistryCacheEnabled = enabled;
+    }
+
+    public boolean isServiceRegistryCacheEnabled() {
+        return serviceRegistryCacheEnabled;
+    }
+
+    /**
+     * @return number of service registry ZK reads answered from the local cache
+     */
+    public long getServiceCacheAvoidedReadCount() {
+        ServiceRegistryCache cache = serviceRegistryCache;
+        return (cache != null) ? cache.getAvoidedReadCount() : 0;
+    }
+
+    /**
+     * @return number of service registry lookups which read ZK
+     */
+    public long getServiceCacheZkReadCount() {
+        ServiceRegistryCache cache = serviceRegistryCache;
+        return (cache != null) ? cache.getZkReadCount() : 0;
+    }
+
+    /**
+     * Returns the service registry cache, creating it once connected.
+     * 
+     * @return ServiceRegistryCache, or null if disabled or not connected
+     */
+    private ServiceRegistryCache getServiceRegistryCache() {
+        if (!serviceRegistryCacheEnabled || _zkConnection == null || !_zkConnection.curator().isStarted()) {
+            return null;
+        }
+        ServiceRegistryCache cache = serviceRegistryCache;
+        if (cache == null) {
+            synchronized (this) {
+                cache = serviceRegistryCache;
+                if (cache == null) {
+                    cache = new ServiceRegistryCache(_zkConnection.curator(), nodeChangeWorker);
+                    for (ServiceChangeListener listener : serviceChangeListeners) {
+                        cache.addListener(listener);
+                    }
+                    serviceRegistryCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
     @Override
     public void setDbVersionInfo(DbVersionInfo info) {
         dbVersionInfo = info;
@@ -443,6 +505,12 @@ public class CoordinatorClientImpl implements CoordinatorClient {
 
     @Override
     public void stop() {
+        synchronized (this) {
+            if (serviceRegistryCache != null) {
+                serviceRegistryCache.close();
+                serviceRegistryCache = null;
+            }
+        }
         if (_zkConnection.curator().isStarted()) {
             _zkConnection.disconnect();
         }
@@ -865,6 +933,13 @@ public class CoordinatorClientImpl implements CoordinatorClient {
      * @throws CoordinatorException
      */
     private List<String> lookupServicePath(String siteId, String serviceRoot) throws CoordinatorException {
+        ServiceRegistryCache cache = getServiceRegistryCache();
+        if (cache != null) {
+            List<String> cached = cache.getChildren(siteId, getServicePath(siteId), serviceRoot);
+            if (cached != null) {
+                return cached;
+            }
+        }
         List<String> services = null;
         String fullPath = String.format("%1$s/%2$s", getServicePath(siteId), serviceRoot);
         try {
@@ -895,6 +970,13 @@ public class CoordinatorClientImpl implements CoordinatorClient {
      * @return zk node content if node exists. null if no node with given id / path exists
      */
     private byte[] getServiceData(String siteId, String serviceRoot, String id) {
+        ServiceRegistryCache cache = getServiceRegistryCache();
+        if (cache != null) {
+            byte[] cached = cache.getData(siteId, getServicePath(siteId), serviceRoot, id);
+            if (cached != null) {
+                return cached;
+            }
+        }
         byte[] data = null;
         try {
             data = _zkConnection
@@ -1000,8 +1082,9 @@ public class CoordinatorClientImpl implements CoordinatorClient {
     @Override
     public <T> DistributedQueue<T> getQueue(String name, DistributedQueueConsumer<T> consumer,
             QueueSerializer<T> serializer, int maxThreads, int maxItem) throws CoordinatorException {
-        DistributedQueue<T> queue = new DistributedQueueImpl<T>(_zkConnection, consumer,
+        DistributedQueueImpl<T> queue = new DistributedQueueImpl<T>(_zkConnection, consumer,
                 serializer, name, maxThreads, maxItem);
+        queue.setBatchSize(queueBatchSize);
         queue.start();
         return queue;
     }
@@ -1009,8 +1092,9 @@ public class CoordinatorClientImpl implements CoordinatorClient {
     @Override
     public <T> DistributedQueue<T> getQueue(String name, DistributedQueueConsumer<T> consumer,
             QueueSerializer<T> serializer, int maxThreads) throws CoordinatorException {
-        DistributedQueue<T> queue = new DistributedQueueImpl<T>(_zkConnection, consumer,
+        DistributedQueueImpl<T> queue = new DistributedQueueImpl<T>(_zkConnection, consumer,
                 serializer, name, maxThreads);
+        queue.setBatchSize(queueBatchSize);
         queue.start();
         return queue;
     }
@@ -1865,6 +1949,24 @@ public class CoordinatorClientImpl implements CoordinatorClient {
         this.inetAddressLookupMap.setCoordinatorClient(this);
     }
 
+    @Override
+    public void addServiceChangeListener(ServiceChangeListener listener) {
+        serviceChangeListeners.add(listener);
+        ServiceRegistryCache cache = serviceRegistryCache;
+        if (cache != null) {
+            cache.addListener(listener);
+        }
+    }
+
+    @Override
+    public void removeServiceChangeListener(ServiceChangeListener listener) {
+        serviceChangeListeners.remove(listener);
+        ServiceRegistryCache cache = serviceRegistryCache;
+        if (cache != null) {
+            cache.removeListener(listener);
+        }
+    }
+
     @Override
     public void addNodeListener(NodeListener listener) throws Exception {
         nodeWatcher.addListener(listener);
@@ -7,7 +7,9 @@ package com.emc.storageos.coordinator.client.service.impl;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.zookeeper.CreateMode;
@@ -159,6 +161,22 @@ public class DistributedDataManagerImpl implements DistributedDataManager {
         return obj;
     }
 
+    @Override
+    public void putData(Map<String, Object> dataByPath) throws Exception {
+        for (Map.Entry<String, Object> entry : dataByPath.entrySet()) {
+            putData(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public Map<String, Object> getData(List<String> paths) throws Exception {
+        Map<String, Object> result = new LinkedHashMap<String, Object>();
+        for (String path : paths) {
+            result.put(path, getData(path, false));
+        }
+        return result;
+    }
+
     @Override
     public void setListener(CuratorListener listener) throws Exception {
         if (_listener != null) {
@@ -8,12 +8,21 @@ package com.emc.storageos.coordinator.client.service.impl;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.BackgroundCallback;
 import org.apache.curator.framework.api.CuratorEvent;
 import org.apache.curator.framework.api.CuratorEventType;
 import org.apache.curator.framework.api.CuratorListener;
@@ -63,6 +72,28 @@ public class DistributedQueueImpl<T> implements DistributedQueue<T> {
     private int _maxItem = DEFAULT_MAX_ITEM;
     private int _maxThreads = 10; // this is for distributed queue consumer threads
 
+    // when greater than 1, items are claimed in batches from a local index of the queue
+    private int _batchSize = 1;
+    // how long a batch may take to be locked and read
+    private static final long BATCH_TIMEOUT_MS = 60 * 1000;
+    // log statistics after this many items were started
+    private static final int STATISTICS_LOG_INTERVAL = 1000;
+
+    // Local index of the queue, used in batch mode and guarded by this.
+    // _pendingItems holds the sorted queue items which are not locked.
+    private final Set<String> _queuedItems = new HashSet<String>();
+    private final Set<String> _lockedItems = new HashSet<String>();
+    private final TreeSet<String> _pendingItems = new TreeSet<String>();
+    private boolean _queueChanged = true;
+    private boolean _locksChanged = true;
+
+    // ZK operations made by the dispatcher and enqueue to start latency of the items it started
+    private final AtomicLong _zkOps = new AtomicLong();
+    private final AtomicLong _startedItems = new AtomicLong();
+    private final AtomicLong _totalStartLatencyMs = new AtomicLong();
+    private final AtomicLong _maxStartLatencyMs = new AtomicLong();
+    private long _loggedItems = 0;
+
     /**
      * Responds to connection drops / reconnects.
      */
@@ -101,7 +132,7 @@ public class DistributedQueueImpl<T> implements DistributedQueue<T> {
                         _notifyExecutor.execute(new Runnable() {
                             @Override
                             public void run() {
-                                notifyPendingChange();
+                                notifyPendingChange(true, true);
                             }
                         });
                         return null;
@@ -120,10 +151,11 @@ public class DistributedQueueImpl<T> implements DistributedQueue<T> {
             if (event.getType() == CuratorEventType.WATCHED) {
                 if (event.getWatchedEvent().getType() == Watcher.Event.EventType.NodeChildrenChanged &&
                         (event.getPath().startsWith(_queuePath) || event.getPath().startsWith(_lockPath))) {
+                    final boolean queueChanged = event.getPath().startsWith(_queuePath);
                     _notifyExecutor.execute(new Runnable() {
                         @Override
                         public void run() {
-                            notifyPendingChange();
+                            notifyPendingChange(queueChanged, !queueChanged);
                         }
                     });
                 }
@@ -134,9 +166,11 @@ public class DistributedQueueImpl<T> implements DistributedQueue<T> {
     /**
      * Wakes up main dispatch loop
      */
-    private synchronized void notifyPendingChange() {
-        // This is not a naked notify, we do status mutation outside this method, safe to suppress
-        notifyAll(); // NOSONAR("findbugs:NN_NAKED_NOTIFY")
+    private synchronized void notifyPendingChange(boolean queueChanged, boolean locksChanged) {
+        // the watch which fired has to be re-armed by listing the children again
+        _queueChanged |= queueChanged;
+        _locksChanged |= locksChanged;
+        notifyAll();
     }
 
     /**
@@ -182,6 +216,86 @@ public class DistributedQueueImpl<T> implements DistributedQueue<T> {
         return _consumer;
     }
 
+    /**
+     * Sets the number of items claimed at a time. With a batch size greater than 1,
+     * the dispatcher keeps a sorted local index of the queue, updated from the watch
+     * notifications, and locks and reads the items of a batch with pipelined
+     * asynchronous requests instead of re-listing the queue for every item.
+     * Must be called before start().
+     *
+     * @param batchSize
+     */
+    public void setBatchSize(int batchSize) {
+        _batchSize = Math.max(1, batchSize);
+    }
+
+    public int getBatchSize() {
+        return _batchSize;
+    }
+
+    /**
+     * @return number of items started by this dispatcher
+     */
+    public long getStartedItemCount() {
+        return _startedItems.get();
+    }
+
+    /**
+     * @return number of ZK operations made by this dispatcher
+     */
+    public long getZkOperationCount() {
+        return _zkOps.get();
+    }
+
+    /**
+     * @return average time from enqueue to start of the items started by this dispatcher
+     */
+    public long getAverageStartLatencyMs() {
+        long started = _startedItems.get();
+        return (started > 0) ? _totalStartLatencyMs.get() / started : 0;
+    }
+
+    public long getMaxStartLatencyMs() {
+        return _maxStartLatencyMs.get();
+    }
+
+    public String getStatistics() {
+        long started = _startedItems.get();
+        return String.format("Queue %s (batch size %d): started %d items, enqueue to start latency avg %d ms max %d ms, "
+                + "%.2f ZK ops per item", _name, _batchSize, started, getAverageStartLatencyMs(), getMaxStartLatencyMs(),
+                (started > 0) ? (double) _zkOps.get() / started : 0.0);
+    }
+
+    /**
+     * Records the start of an item.
+     *
+     * @param ctime creation time of the queue item node
+     */
+    private void itemStarted(long ctime) {
+        _startedItems.incrementAndGet();
+        if (ctime <= 0) {
+            return;
+        }
+        // the clocks of the nodes may differ slightly
+        long latency = Math.max(0, System.currentTimeMillis() - ctime);
+        _totalStartLatencyMs.addAndGet(latency);
+        long max = _maxStartLatencyMs.get();
+        while (latency > max && !_maxStartLatencyMs.compareAndSet(max, latency)) {
+            max = _maxStartLatencyMs.get();
+        }
+    }
+
+    /**
+     * Logs the statistics when the dispatcher goes idle, if items were started since last time.
+     */
+    private void logStatistics(boolean idle) {
+        long started = _startedItems.get();
+        if (started > _loggedItems && (idle || started - _loggedItems >= STATISTICS_LOG_INTERVAL)) {
+            _loggedItems = started;
+            _log.info(getStatistics());
+        }
+    }
+
     @Override
     public synchronized void start() {
         if (_workers.isTerminated()) {
@@ -203,7 +317,11 @@ public class DistributedQueueImpl<T> implements DistributedQueue<T> {
             _workers.submit(new Callable<Object>() {
                 @Override
                 public Object call() throws Exception {
-                    dispatch();
+                    if (_batchSize > 1) {
+                        dispatchBatches();
+                    } else {
+                        dispatch();
+                    }
                     return null;
                 }
             });
@@ -223,7 +341,7 @@ public class DistributedQueueImpl<T> implements DistributedQueue<T> {
             }
         }
 
-        _log.info("Stopping dispatcher");
+        _log.info("Stopping dispatcher. {}", getStatistics());
         _zkClient.getConnectionStateListenable().removeListener(_connectionListener);
         _zkClient.getCuratorListenable().removeListener(_childListener);
         _workers.shutdownNow();
@@ -286,10 +404,12 @@ public class DistributedQueueImpl<T> implements DistributedQueue<T> {
                     do {
                         locks = _zkClient.getChildren().watched().forPath(_lockPath);
                         children = _zkClient.getChildren().watched().forPath(_queuePath);
+                        _zkOps.addAndGet(2);
                         _log.info("Processing queue {} - #items: {}, #locks: {}",
                                 new Object[] { _name, children.size(), locks.size() });
                         children.removeAll(locks);
                         if (children.isEmpty()) {
+                            logStatistics(true);
                             wait();
                             needRescan = true;
                         } else if (_consumer.isBusy(_queueName)) {
@@ -337,8 +457,10 @@ public class DistributedQueueImpl<T> implements DistributedQueue<T> {
 
         final String itemPath = ZKPaths.makePath(_queuePath, child);
         byte[] data = null;
+        Stat stat = new Stat();
         try {
-            data = _zkClient.getData().forPath(itemPath);
+            _zkOps.incrementAndGet();
+            data = _zkClient.getData().storingStatIn(stat).forPath(itemPath);
         } catch (Exception e) {
             // 1. free the lock if there is any issue reading the item.
             // 2. it also might be raised because the item has been handled by others quickly.
@@ -357,6 +479,7 @@ public class DistributedQueueImpl<T> implements DistributedQueue<T> {
 
         if (data != null) {
             final T item = _serializer.deserialize(data);
+            itemStarted(stat.getCtime());
             _consumer.startConsumeItem(_queueName, child, item);
         }
     }
@@ -387,6 +510,7 @@ public class DistributedQueueImpl<T> implements DistributedQueue<T> {
             final String child = children.get(i);
             final String lockPath = ZKPaths.makePath(_lockPath, child);
             try {
+                _zkOps.incrementAndGet();
                 _zkClient.create().withMode(CreateMode.EPHEMERAL).forPath(lockPath);
                 _log.info("processChildren(): Created lock zNode {} for Queue {}", child, _queuePath);
                 spawnWork(child);
@@ -402,6 +526,212 @@ public class DistributedQueueImpl<T> implements DistributedQueue<T> {
         }
     }
 
+    /**
+     * Dispatcher loop of the batch mode that
+     * <p/>
+     * 1. updates the local index of the queue from the children of the queue and lock paths
+     * whose watch fired 2. claims the first pending items of the index, up to the batch size
+     */
+    private void dispatchBatches() throws Exception {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                List<String> batch = new ArrayList<String>();
+                synchronized (this) {
+                    while (true) {
+                        refreshIndex();
+                        if (_pendingItems.isEmpty()) {
+                            logStatistics(true);
+                            wait();
+                        } else if (_consumer.isBusy(_queueName)) {
+                            _log.info("The consumer {} is busy", _consumer);
+                            wait();
+                        } else {
+                            break;
+                        }
+                    }
+                    // Claimed items leave the index now; they come back if their lock is
+                    // removed while the item is still queued.
+                    Iterator<String> it = _pendingItems.iterator();
+                    while (it.hasNext() && batch.size() < _batchSize) {
+                        String child = it.next();
+                        it.remove();
+                        _lockedItems.add(child);
+                        batch.add(child);
+                    }
+                }
+                claimBatch(batch);
+                logStatistics(false);
+            } catch (KeeperException e) {
+                _log.warn("KeeperException in dispatch loop, retrying in dispatch loop", e);
+                synchronized (this) {
+                    _queueChanged = true;
+                    _locksChanged = true;
+                }
+            } catch (Exception e) {
+                _log.error("Exception in dispatch loop, quiting", e);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Re-lists the queue and lock paths whose watch fired, which re-arms the watch,
+     * and applies the differences to the local index.
+     */
+    private synchronized void refreshIndex() throws Exception {
+        if (_queueChanged) {
+            // reset before listing, so that a change made meanwhile is not missed
+            _queueChanged = false;
+            _zkOps.incrementAndGet();
+            Set<String> children = new HashSet<String>(_zkClient.getChildren().watched().forPath(_queuePath));
+            for (Iterator<String> it = _queuedItems.iterator(); it.hasNext();) {
+                String child = it.next();
+                if (!children.contains(child)) {
+                    it.remove();
+                    _pendingItems.remove(child);
+                }
+            }
+            for (String child : children) {
+                if (_queuedItems.add(child) && !_lockedItems.contains(child)) {
+                    _pendingItems.add(child);
+                }
+            }
+        }
+        if (_locksChanged) {
+            _locksChanged = false;
+            _zkOps.incrementAndGet();
+            Set<String> locks = new HashSet<String>(_zkClient.getChildren().watched().forPath(_lockPath));
+            for (Iterator<String> it = _lockedItems.iterator(); it.hasNext();) {
+                String child = it.next();
+                if (!locks.contains(child)) {
+                    it.remove();
+                    if (_queuedItems.contains(child)) {
+                        _pendingItems.add(child);
+                    }
+                }
+            }
+            for (String lock : locks) {
+                if (_lockedItems.add(lock)) {
+                    _pendingItems.remove(lock);
+                }
+            }
+        }
+    }
+
+    /**
+     * Claim of a queue item in a batch, completed by the background callbacks
+     */
+    private class ItemClaim {
+        private static final int PENDING = 0;
+        private static final int DONE = 1;
+        private static final int ABANDONED = 2;
+
+        private final String _child;
+        private final CountDownLatch _latch;
+        private final AtomicInteger _state = new AtomicInteger(PENDING);
+        private volatile boolean _locked = false;
+        private volatile boolean _lockFailed = false;
+        private volatile byte[] _data;
+        private volatile long _ctime;
+
+        ItemClaim(String child, CountDownLatch latch) {
+            _child = child;
+            _latch = latch;
+        }
+
+        void done() {
+            if (_state.compareAndSet(PENDING, DONE)) {
+                _latch.countDown();
+            } else if (_locked) {
+                // the dispatcher gave up on this claim, don't hold the item
+                deleteLock(_child);
+            }
+        }
+    }
+
+    /**
+     * Locks the items of a batch and reads them with pipelined background requests,
+     * then starts the items which were locked, in queue order. The consumer is checked
+     * before each item is started; once it is busy, the remaining locks are released
+     * so that the items can be taken by other nodes or later by this one.
+     *
+     * @param batch items to claim
+     */
+    private void claimBatch(List<String> batch) throws Exception {
+        CountDownLatch latch = new CountDownLatch(batch.size());
+        List<ItemClaim> claims = new ArrayList<ItemClaim>(batch.size());
+        for (String child : batch) {
+            final ItemClaim claim = new ItemClaim(child, latch);
+            claims.add(claim);
+            _zkOps.incrementAndGet();
+            _zkClient.create().withMode(CreateMode.EPHEMERAL).inBackground(new BackgroundCallback() {
+                @Override
+                public void processResult(CuratorFramework client, CuratorEvent event) throws Exception {
+                    if (event.getResultCode() != KeeperException.Code.OK.intValue()) {
+                        if (event.getResultCode() != KeeperException.Code.NODEEXISTS.intValue()) {
+                            claim._lockFailed = true;
+                            _log.info("For Queue: {}, Problem while creating lock {}: {}",
+                                    new Object[] { _queuePath, claim._child, KeeperException.Code.get(event.getResultCode()) });
+                        }
+                        claim.done();
+                        return;
+                    }
+                    claim._locked = true;
+                    _zkOps.incrementAndGet();
+                    _zkClient.getData().inBackground(new BackgroundCallback() {
+                        @Override
+                        public void processResult(CuratorFramework client, CuratorEvent event) throws Exception {
+                            if (event.getResultCode() == KeeperException.Code.OK.intValue()) {
+                                claim._data = event.getData();
+                                claim._ctime = (event.getStat() != null) ? event.getStat().getCtime() : 0;
+                            }
+                            claim.done();
+                        }
+                    }).forPath(ZKPaths.makePath(_queuePath, claim._child));
+                }
+            }).forPath(ZKPaths.makePath(_lockPath, child));
+        }
+
+        if (!latch.await(BATCH_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+            _log.warn("Timed out claiming a batch of {} items of queue {}", batch.size(), _queuePath);
+        }
+        for (ItemClaim claim : claims) {
+            if (!claim._state.compareAndSet(ItemClaim.PENDING, ItemClaim.ABANDONED) && claim._locked) {
+                if (claim._data == null) {
+                    // the item might have been handled by others quickly
+                    _log.warn("Queue item {} of {} could not be read, it might be already handled by other workers",
+                            claim._child, _queuePath);
+                    deleteLock(claim._child);
+                    continue;
+                }
+                if (_consumer.isBusy(_queueName)) {
+                    _log.info("The consumer {} is busy, releasing queue item {}", _consumer, claim._child);
+                    deleteLock(claim._child);
+                    continue;
+                }
+                _log.info("Created lock zNode {} for Queue {}", claim._child, _queuePath);
+                itemStarted(claim._ctime);
+                _consumer.startConsumeItem(_queueName, claim._child, _serializer.deserialize(claim._data));
+            } else if (claim._lockFailed) {
+                // not locked by anyone; list the locks again to put it back in the index
+                synchronized (this) {
+                    _locksChanged = true;
+                }
+            }
+        }
+    }
+
+    private void deleteLock(String child) {
+        final String lockPath = ZKPaths.makePath(_lockPath, child);
+        try {
+            _log.info("delete lock {}", lockPath);
+            _zkOps.incrementAndGet();
+            _zkClient.delete().guaranteed().inBackground().forPath(lockPath);
+        } catch (Exception ex) {
+            _log.warn("Problem deleting lock item: {} e={}", lockPath, ex);
+        }
+    }
+
     private String getQueueName(String queuePath) {
         // Extract queue name from ZPath
         // ZPath format for queue: /queue/<queuename>/queue
@@ -6,9 +6,12 @@
 package com.emc.storageos.coordinator.client.service.impl;
 
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
 import org.apache.zookeeper.data.Stat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,6 +21,8 @@ import com.emc.storageos.coordinator.common.impl.ZkConnection;
 import com.emc.storageos.coordinator.exceptions.CoordinatorException;
 import com.emc.storageos.services.util.NamedScheduledThreadPoolExecutor;
 import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.BackgroundCallback;
+import org.apache.curator.framework.api.CuratorEvent;
 import org.apache.curator.framework.recipes.locks.InterProcessSemaphore;
 import org.apache.curator.framework.recipes.locks.Lease;
 import org.apache.curator.framework.state.ConnectionState;
@@ -39,6 +44,31 @@ public class DistributedSemaphoreImpl implements DistributedSemaphore {
     private final int _maxPermits;
     private final ExecutorService _leaseCleanupExecutor;
     private static final String POOL_NAME = "DSCleaner";
+    private final List<Runnable> _leaseListeners = new CopyOnWriteArrayList<Runnable>();
+    private boolean _watching = false;
+
+    /**
+     * Re-arms the watch on the lease nodes whenever they change. Listeners are told a lease
+     * may be available only if fewer lease nodes than permits exist, so that the short lived
+     * nodes of failed non-blocking acquires don't wake up the waiters on other nodes.
+     */
+    private final Watcher _leaseWatcher = new Watcher() {
+        @Override
+        public void process(WatchedEvent event) {
+            if (event.getType() == Watcher.Event.EventType.NodeChildrenChanged) {
+                watchLeases();
+            }
+        }
+    };
+
+    private final BackgroundCallback _leaseCallback = new BackgroundCallback() {
+        @Override
+        public void processResult(CuratorFramework client, CuratorEvent event) throws Exception {
+            if (event.getChildren() != null && event.getChildren().size() < _maxPermits) {
+                notifyLeaseListeners();
+            }
+        }
+    };
 
     /**
      * If there is any connection issue, we release the leases; else we risk leaking them.
@@ -47,6 +77,12 @@ public class DistributedSemaphoreImpl implements DistributedSemaphore {
         @Override
         public void stateChanged(final CuratorFramework client, final ConnectionState newState) {
             if (newState == ConnectionState.RECONNECTED) {
+                // Watches are lost with the session; re-arm and let waiters retry.
+                synchronized (DistributedSemaphoreImpl.this) {
+                    if (_watching) {
+                        watchLeases();
+                    }
+                }
                 _leaseCleanupExecutor.execute(new Runnable() {
                     @Override
                     public void run() {
@@ -120,8 +156,47 @@ public class DistributedSemaphoreImpl implements DistributedSemaphore {
         return _semaphore.acquire(waitTime, waitTimeUnit);
     }
 
+    @Override
+    public Lease tryAcquireLease() throws Exception {
+        return _semaphore.acquire(0, TimeUnit.MILLISECONDS);
+    }
+
     @Override
     public void returnLease(Lease lease) throws Exception {
         _semaphore.returnLease(lease);
+        // Local waiters need not wait for the watch.
+        notifyLeaseListeners();
+    }
+
+    @Override
+    public synchronized void addLeaseAvailableListener(Runnable listener) {
+        _leaseListeners.add(listener);
+        if (!_watching) {
+            _watching = true;
+            watchLeases();
+        }
+    }
+
+    @Override
+    public void removeLeaseAvailableListener(Runnable listener) {
+        _leaseListeners.remove(listener);
+    }
+
+    private void watchLeases() {
+        try {
+            _zkClient.getChildren().usingWatcher(_leaseWatcher).inBackground(_leaseCallback).forPath(_semaphorePath);
+        } catch (Exception e) {
+            _logger.warn("Unable to watch leases of semaphore " + _semaphorePath, e);
+        }
+    }
+
+    private void notifyLeaseListeners() {
+        for (Runnable listener : _leaseListeners) {
+            try {
+                listener.run();
+            } catch (Exception e) {
+                _logger.warn("Lease listener of semaphore " + _semaphorePath + " failed", e);
+            }
+        }
     }
 }
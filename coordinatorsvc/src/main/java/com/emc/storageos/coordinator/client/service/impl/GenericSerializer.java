@@ -4,11 +4,7 @@
  */
 package com.emc.storageos.coordinator.client.service.impl;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.lang.reflect.Array;
+import java.io.IOException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,6 +14,10 @@ import com.emc.storageos.coordinator.exceptions.CoordinatorException;
 /**
  * Generic serialization for an Object
  * 
+ * Objects are written with Java serialization unless compact encoding is turned on,
+ * in which case CompactZkDataCodec is used. Data in either format is always readable,
+ * so compact encoding can be turned on once every node runs a release which reads it.
+ * 
  * @author watson
  * 
  */
@@ -26,6 +26,29 @@ public class GenericSerializer {
     private static final int MAX_ZK_OBJECT_SIZE_IN_BYTES = 250000;
     private static final int LOG_SIZE_IN_BYTES =  4 * MAX_ZK_OBJECT_SIZE_IN_BYTES;
 
+    private static final ZkDataCodec JAVA_CODEC = new JavaZkDataCodec();
+    private static volatile ZkDataCodec _compactCodec = new CompactZkDataCodec();
+    private static volatile boolean _compactEncoding = false;
+
+    /**
+     * @param compactEncoding if true, objects are written with the compact codec
+     */
+    public static void setCompactEncoding(boolean compactEncoding) {
+        _compactEncoding = compactEncoding;
+        _log.info("Compact encoding of zookeeper data is {}", compactEncoding ? "on" : "off");
+    }
+
+    public static boolean isCompactEncoding() {
+        return _compactEncoding;
+    }
+
+    /**
+     * @param compressThreshold size from which compact data is deflated, negative to never compress
+     */
+    public static void setCompressThreshold(int compressThreshold) {
+        _compactCodec = new CompactZkDataCodec(compressThreshold);
+    }
+
     /**
      * Will serialize any serializable object.
      * @param object -- Java object that is serializable.
@@ -38,10 +61,7 @@ public class GenericSerializer {
         String className = (object != null) ? object.getClass().getSimpleName() : "";
         String label = (logName != null) ? logName : "";
         try {
-            ByteArrayOutputStream stream = new ByteArrayOutputStream();
-            ObjectOutputStream ostream = new ObjectOutputStream(stream);
-            ostream.writeObject(object);
-            byte[] byteArray = stream.toByteArray();
+            byte[] byteArray = encode(object, className);
             if (zkData && byteArray.length > MAX_ZK_OBJECT_SIZE_IN_BYTES) {
                 _log.error(String.format("Serialization failure: Class %s %s Byte Array length is %d limit is %d", 
                         className, label, byteArray.length, MAX_ZK_OBJECT_SIZE_IN_BYTES));
@@ -55,16 +75,33 @@ public class GenericSerializer {
         }
     }
 
+    private static byte[] encode(Object object, String className) throws IOException {
+        if (_compactEncoding) {
+            try {
+                return _compactCodec.encode(object);
+            } catch (Exception ex) {
+                _log.warn("Compact encoding of class {} failed, using Java serialization: {}", className, ex.getMessage());
+            }
+        }
+        return JAVA_CODEC.encode(object);
+    }
+
     /**
-     * De-serializes an object from byte[] data
+     * De-serializes an object from byte[] data, written with either encoding.
      * @param data-- object data as byte[]
      * @return Object
      */
     static public Object deserialize(byte[] data) {
+        if (_compactCodec.accepts(data)) {
+            // data starting with the codec magic is never a Java serialization stream
+            try {
+                return _compactCodec.decode(data);
+            } catch (Exception ex) {
+                throw CoordinatorException.fatals.failedToDeserialize(ex);
+            }
+        }
         try {
-            ObjectInputStream stream = new ObjectInputStream(new ByteArrayInputStream(data));
-            Object object = stream.readObject();
-            return object;
+            return JAVA_CODEC.decode(data);
         } catch (Exception ex) {
             throw CoordinatorException.fatals.failedToDeserialize(ex);
         }
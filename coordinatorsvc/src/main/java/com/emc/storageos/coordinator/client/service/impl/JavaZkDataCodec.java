@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.coordinator.client.service.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+/**
+ * Plain Java serialization, the format of all node data written before CompactZkDataCodec
+ */
+public class JavaZkDataCodec implements ZkDataCodec {
+    private static final byte STREAM_MAGIC_0 = (byte) 0xAC;
+    private static final byte STREAM_MAGIC_1 = (byte) 0xED;
+
+    @Override
+    public boolean accepts(byte[] data) {
+        return data != null && data.length >= 2 && data[0] == STREAM_MAGIC_0 && data[1] == STREAM_MAGIC_1;
+    }
+
+    @Override
+    public byte[] encode(Object object) throws IOException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        ObjectOutputStream ostream = new ObjectOutputStream(stream);
+        ostream.writeObject(object);
+        ostream.close();
+        return stream.toByteArray();
+    }
+
+    @Override
+    public Object decode(byte[] data) throws IOException, ClassNotFoundException {
+        ObjectInputStream stream = new ObjectInputStream(new ByteArrayInputStream(data));
+        return stream.readObject();
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.coordinator.client.service.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.curator.framework.recipes.cache.TreeCache;
+import org.apache.curator.framework.recipes.cache.TreeCacheEvent;
+import org.apache.curator.framework.recipes.cache.TreeCacheListener;
+import org.apache.curator.framework.state.ConnectionState;
+import org.apache.curator.framework.state.ConnectionStateListener;
+import org.apache.curator.utils.CloseableUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.emc.storageos.coordinator.client.service.ServiceChangeListener;
+import com.emc.storageos.coordinator.client.service.ServiceChangeListener.ChangeType;
+
+/**
+ * Watch-driven local copy of the service beacons under /sites/<siteId>/service.
+ * A TreeCache is started for the service path of a site the first time its services
+ * are looked up. Once it is initialized and while the ZK connection is up, service
+ * lookups are answered from memory; otherwise, and whenever the cache has no entry,
+ * the caller reads ZK as before.
+ */
+public class ServiceRegistryCache implements ConnectionStateListener {
+    private static final Logger log = LoggerFactory.getLogger(ServiceRegistryCache.class);
+    // <servicePath>/<name>/<version>/<id>
+    private static final int SERVICE_DEPTH = 3;
+
+    private final CuratorFramework _zkClient;
+    private final ExecutorService _listenerWorker;
+    private final ConcurrentMap<String, SiteServices> _sites = new ConcurrentHashMap<String, SiteServices>();
+    private final CopyOnWriteArraySet<ServiceChangeListener> _listeners = new CopyOnWriteArraySet<ServiceChangeListener>();
+    private final AtomicLong _avoidedReads = new AtomicLong();
+    private final AtomicLong _zkReads = new AtomicLong();
+    private volatile boolean _closed = false;
+    private volatile boolean _connected = true;
+
+    /**
+     * The cached services of a site
+     */
+    private class SiteServices implements TreeCacheListener {
+        private final String _siteId;
+        private final String _servicePath;
+        private final TreeCache _cache;
+        private volatile boolean _initialized = false;
+
+        SiteServices(String siteId, String servicePath) {
+            _siteId = siteId;
+            _servicePath = servicePath;
+            _cache = TreeCache.newBuilder(_zkClient, servicePath).setCacheData(true).setMaxDepth(SERVICE_DEPTH).build();
+            _cache.getListenable().addListener(this);
+        }
+
+        boolean isUsable() {
+            return _initialized;
+        }
+
+        @Override
+        public void childEvent(CuratorFramework client, TreeCacheEvent event) throws Exception {
+            switch (event.getType()) {
+                case INITIALIZED:
+                    log.info("Service registry cache of {} initialized", _servicePath);
+                    _initialized = true;
+                    break;
+                case NODE_ADDED:
+                    notifyListeners(event.getData(), ChangeType.ADDED);
+                    break;
+                case NODE_UPDATED:
+                    notifyListeners(event.getData(), ChangeType.UPDATED);
+                    break;
+                case NODE_REMOVED:
+                    notifyListeners(event.getData(), ChangeType.REMOVED);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void notifyListeners(ChildData data, final ChangeType type) {
+            // Nodes found while the cache is built are not changes.
+            if (!_initialized || data == null || _listeners.isEmpty()) {
+                return;
+            }
+            String relativePath = data.getPath().substring(_servicePath.length());
+            final String[] parts = relativePath.startsWith("/") ? relativePath.substring(1).split("/") : relativePath.split("/");
+            if (parts.length != SERVICE_DEPTH) {
+                return;
+            }
+            _listenerWorker.submit(new Runnable() {
+                @Override
+                public void run() {
+                    for (ServiceChangeListener listener : _listeners) {
+                        try {
+                            listener.serviceChanged(_siteId, parts[0], parts[1], parts[2], type);
+                        } catch (Exception e) {
+                            log.warn("Service change listener threw", e);
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    public ServiceRegistryCache(CuratorFramework zkClient, ExecutorService listenerWorker) {
+        _zkClient = zkClient;
+        _listenerWorker = listenerWorker;
+        _zkClient.getConnectionStateListenable().addListener(this);
+    }
+
+    /**
+     * Stops serving lookups from memory while the ZK connection is down, as changes
+     * may be missed; the TreeCaches refresh themselves after reconnecting.
+     */
+    @Override
+    public void stateChanged(CuratorFramework client, ConnectionState newState) {
+        switch (newState) {
+            case SUSPENDED:
+            case LOST:
+                _connected = false;
+                log.info("Service registry cache not used while ZK connection is {}", newState);
+                break;
+            case CONNECTED:
+            case RECONNECTED:
+                _connected = true;
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Returns the cached services of a site, starting its cache on first use.
+     *
+     * @return SiteServices, or null if they can't be served from memory yet
+     */
+    private SiteServices getSiteServices(String siteId, String servicePath) {
+        if (_closed) {
+            return null;
+        }
+        SiteServices site = _sites.get(servicePath);
+        if (site == null) {
+            SiteServices newSite = new SiteServices(siteId, servicePath);
+            site = _sites.putIfAbsent(servicePath, newSite);
+            if (site == null) {
+                site = newSite;
+                try {
+                    newSite._cache.start();
+                    log.info("Started service registry cache of {}", servicePath);
+                } catch (Exception e) {
+                    log.warn("Unable to start service registry cache of " + servicePath, e);
+                    _sites.remove(servicePath, newSite);
+                    CloseableUtils.closeQuietly(newSite._cache);
+                    return null;
+                }
+            }
+        }
+        return (site.isUsable() && _connected) ? site : null;
+    }
+
+    /**
+     * Returns the children of <servicePath>/<serviceRoot> from memory.
+     *
+     * @param siteId
+     * @param servicePath
+     * @param serviceRoot
+     * @return child node names, or null if the caller must read ZK
+     */
+    public List<String> getChildren(String siteId, String servicePath, String serviceRoot) {
+        SiteServices site = getSiteServices(siteId, servicePath);
+        Map<String, ChildData> children = (site != null) ? site._cache.getCurrentChildren(servicePath + "/" + serviceRoot) : null;
+        // A service which just registered may not be in the cache yet;
+        // read ZK rather than report that there is none.
+        if (children == null || children.isEmpty()) {
+            _zkReads.incrementAndGet();
+            return null;
+        }
+        _avoidedReads.incrementAndGet();
+        return new ArrayList<String>(children.keySet());
+    }
+
+    /**
+     * Returns the data of <servicePath>/<serviceRoot>/<id> from memory.
+     *
+     * @param siteId
+     * @param servicePath
+     * @param serviceRoot
+     * @param id
+     * @return node data, or null if the caller must read ZK
+     */
+    public byte[] getData(String siteId, String servicePath, String serviceRoot, String id) {
+        SiteServices site = getSiteServices(siteId, servicePath);
+        ChildData data = (site != null) ? site._cache.getCurrentData(servicePath + "/" + serviceRoot + "/" + id) : null;
+        if (data == null || data.getData() == null) {
+            _zkReads.incrementAndGet();
+            return null;
+        }
+        _avoidedReads.incrementAndGet();
+        return data.getData();
+    }
+
+    public void addListener(ServiceChangeListener listener) {
+        _listeners.add(listener);
+    }
+
+    public void removeListener(ServiceChangeListener listener) {
+        _listeners.remove(listener);
+    }
+
+    /**
+     * @return number of ZK reads answered from memory
+     */
+    public long getAvoidedReadCount() {
+        return _avoidedReads.get();
+    }
+
+    /**
+     * @return number of lookups which had to read ZK
+     */
+    public long getZkReadCount() {
+        return _zkReads.get();
+    }
+
+    public void close() {
+        _closed = true;
+        _zkClient.getConnectionStateListenable().removeListener(this);
+        for (SiteServices site : _sites.values()) {
+            CloseableUtils.closeQuietly(site._cache);
+        }
+        _sites.clear();
+    }
+}
@@ -5,9 +5,22 @@
 
 package com.emc.storageos.coordinator.client.service.impl;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
 import org.apache.zookeeper.data.Stat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,8 +28,13 @@ import org.slf4j.LoggerFactory;
 import com.emc.storageos.coordinator.client.service.DistributedDataManager;
 import com.emc.storageos.coordinator.common.impl.ZkConnection;
 import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.BackgroundCallback;
+import org.apache.curator.framework.api.CuratorEvent;
 import org.apache.curator.framework.api.CuratorListener;
+import org.apache.curator.framework.api.transaction.CuratorTransaction;
+import org.apache.curator.framework.api.transaction.CuratorTransactionFinal;
 import org.apache.curator.framework.state.ConnectionStateListener;
+import org.apache.curator.utils.ZKPaths;
 
 /**
  * DistributedDataManager implementation which allows unrestricted access to the
@@ -26,6 +44,13 @@ import org.apache.curator.framework.state.ConnectionStateListener;
  * By using it, that processing takes responsibility for limiting the consumption of
  * ZK resources in order to prevent an OOM condition.
  * 
+ * The multi-node putData writes all the nodes in a single multi-op transaction, so
+ * either all of them or none are written; a request larger than a transaction may
+ * be is rejected before anything is sent. The multi-node getData uses pipelined
+ * asynchronous reads. To avoid an existence check before each write, the paths of
+ * nodes known to exist are remembered; a transaction which fails because that
+ * knowledge was stale is retried once after checking all the nodes again.
+ * 
  */
 public class WorkflowDataManagerImpl implements DistributedDataManager {
     private static final Logger _log = LoggerFactory.getLogger(DistributedDataManagerImpl.class);
@@ -33,6 +58,22 @@ public class WorkflowDataManagerImpl implements DistributedDataManager {
     private CuratorListener _listener;
     private ConnectionStateListener _connectionStateListener;
 
+    // zookeeper limits a request (including a multi-op transaction) to about 1MB
+    private static final int MAX_TRANSACTION_BYTES = 512 * 1024;
+    private static final int MAX_TRANSACTION_OPS = 1000;
+    private static final int MAX_KNOWN_NODES = 20000;
+    private static final long ASYNC_TIMEOUT_SECS = 60;
+
+    private final Map<String, Boolean> _knownNodes = Collections.synchronizedMap(
+            new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    return size() > MAX_KNOWN_NODES;
+                }
+            });
+    private final AtomicLong _requestCount = new AtomicLong();
+    private final AtomicLong _roundTripCount = new AtomicLong();
+
     public WorkflowDataManagerImpl(ZkConnection conn) {
         _zkClient = conn.curator();
         _log.info("Unlimited Manager constructed by {}", getCaller());
@@ -40,6 +81,7 @@ public class WorkflowDataManagerImpl implements DistributedDataManager {
 
     @Override
     public Stat checkExists(String path) {
+        countRequests(1);
         try {
             Stat stat = _zkClient.checkExists().forPath(path);
             return stat;
@@ -52,9 +94,11 @@ public class WorkflowDataManagerImpl implements DistributedDataManager {
     public void createNode(String path, boolean watch) throws Exception {
         Stat stat = checkExists(path);
         if (stat == null) {
+            countRequests(1);
             _zkClient.create().creatingParentsIfNeeded().withMode(CreateMode.PERSISTENT).forPath(path);
         }
         if (_listener != null && watch) {
+            countRequests(1);
             stat = _zkClient.checkExists().watched().forPath(path);
         }
     }
@@ -65,10 +109,13 @@ public class WorkflowDataManagerImpl implements DistributedDataManager {
         if (stat != null) {
             List<String> children = getChildren(path);
             for (String child : children) {
+                countRequests(1);
                 _zkClient.delete().guaranteed().forPath(path + "/" + child);
             }
+            countRequests(1);
             _zkClient.delete().guaranteed().forPath(path);
         }
+        forgetNodes(path);
     }
 
     @Override
@@ -76,8 +123,10 @@ public class WorkflowDataManagerImpl implements DistributedDataManager {
         if (recursive) {
             Stat stat = checkExists(path);
             if (stat != null) {
+                countRequests(1);
                 _zkClient.delete().deletingChildrenIfNeeded().forPath(path);
             }
+            forgetNodes(path);
         } else {
             removeNode(path);
         }
@@ -87,11 +136,13 @@ public class WorkflowDataManagerImpl implements DistributedDataManager {
     public void putData(String path, Object object) throws Exception {
         Stat stat = checkExists(path);
         byte[] data = GenericSerializer.serialize(object, path, true);
+        countRequests(1);
         if (stat == null) {
             _zkClient.create().creatingParentsIfNeeded().withMode(CreateMode.PERSISTENT).forPath(path, data);
         } else {
             _zkClient.setData().forPath(path, data);
         }
+        _knownNodes.put(path, Boolean.TRUE);
     }
 
     @Override
@@ -101,6 +152,7 @@ public class WorkflowDataManagerImpl implements DistributedDataManager {
             return null;
         }
         byte[] bytes = null;
+        countRequests(1);
         if (watch) {
             bytes = _zkClient.getData().watched().forPath(path);
         } else {
@@ -113,6 +165,211 @@ public class WorkflowDataManagerImpl implements DistributedDataManager {
         return obj;
     }
 
+    @Override
+    public void putData(Map<String, Object> dataByPath) throws Exception {
+        if (dataByPath.isEmpty()) {
+            return;
+        }
+        // serialize everything first; callers may change the objects once we return
+        Map<String, byte[]> dataMap = new LinkedHashMap<String, byte[]>();
+        int bytes = 0;
+        for (Map.Entry<String, Object> entry : dataByPath.entrySet()) {
+            byte[] data = GenericSerializer.serialize(entry.getValue(), entry.getKey(), true);
+            dataMap.put(entry.getKey(), data);
+            bytes += data.length;
+        }
+        // missing parents add operations, so the op count is checked again in commit
+        if (bytes > MAX_TRANSACTION_BYTES || dataMap.size() > MAX_TRANSACTION_OPS) {
+            throw new IllegalArgumentException(String.format(
+                    "Write of %d nodes, %d bytes exceeds the transaction limit of %d nodes, %d bytes",
+                    dataMap.size(), bytes, MAX_TRANSACTION_OPS, MAX_TRANSACTION_BYTES));
+        }
+        try {
+            commit(dataMap, false);
+        } catch (KeeperException.NoNodeException | KeeperException.NodeExistsException ex) {
+            // a remembered node was removed, or a node was created by someone else
+            _log.info("Retrying write of {} nodes after {}", dataMap.size(), ex.code());
+            commit(dataMap, true);
+        }
+    }
+
+    @Override
+    public Map<String, Object> getData(List<String> paths) throws Exception {
+        Map<String, CuratorEvent> events = inBackground(paths, false);
+        Map<String, Object> result = new LinkedHashMap<String, Object>();
+        for (String path : paths) {
+            CuratorEvent event = events.get(path);
+            Object obj = null;
+            if (event.getResultCode() != KeeperException.Code.NONODE.intValue()) {
+                checkResult(event, path);
+                _knownNodes.put(path, Boolean.TRUE);
+                byte[] bytes = event.getData();
+                if (bytes != null && bytes.length > 0) {
+                    obj = GenericSerializer.deserialize(bytes);
+                }
+            }
+            result.put(path, obj);
+        }
+        return result;
+    }
+
+    /**
+     * @return number of zookeeper requests sent; a multi-op transaction counts as one request
+     */
+    public long getRequestCount() {
+        return _requestCount.get();
+    }
+
+    /**
+     * @return number of times a caller waited for zookeeper; a batch of pipelined
+     *         requests counts as one round trip
+     */
+    public long getRoundTripCount() {
+        return _roundTripCount.get();
+    }
+
+    private void countRequests(int requests) {
+        _requestCount.addAndGet(requests);
+        _roundTripCount.incrementAndGet();
+    }
+
+    /**
+     * Writes the nodes in one transaction. Nodes and parent nodes which don't exist
+     * are created first, parents before children.
+     */
+    private void commit(Map<String, byte[]> dataMap, boolean refresh) throws Exception {
+        if (refresh) {
+            for (String path : dataMap.keySet()) {
+                forgetNodes(path);
+            }
+        }
+        Set<String> missing = findMissingNodes(dataMap.keySet());
+        int ops = missing.size();
+        for (String path : dataMap.keySet()) {
+            if (!missing.contains(path)) {
+                ops++;
+            }
+        }
+        if (ops > MAX_TRANSACTION_OPS) {
+            throw new IllegalArgumentException(String.format(
+                    "Write of %d nodes needs %d operations, more than the transaction limit of %d",
+                    dataMap.size(), ops, MAX_TRANSACTION_OPS));
+        }
+
+        CuratorTransaction tx = _zkClient.inTransaction();
+        CuratorTransactionFinal txFinal = null;
+        for (String path : missing) {
+            byte[] data = dataMap.get(path);
+            txFinal = tx.create().withMode(CreateMode.PERSISTENT).forPath(path, (data != null) ? data : new byte[0]).and();
+            tx = txFinal;
+        }
+        for (Map.Entry<String, byte[]> entry : dataMap.entrySet()) {
+            if (!missing.contains(entry.getKey())) {
+                txFinal = tx.setData().forPath(entry.getKey(), entry.getValue()).and();
+                tx = txFinal;
+            }
+        }
+        countRequests(1);
+        txFinal.commit();
+        for (String path : missing) {
+            _knownNodes.put(path, Boolean.TRUE);
+        }
+        for (String path : dataMap.keySet()) {
+            _knownNodes.put(path, Boolean.TRUE);
+        }
+        _log.debug("Committed transaction of {} operations", ops);
+    }
+
+    /**
+     * Checks, with pipelined requests, which of the given nodes and their parents
+     * are not known to exist and don't exist.
+     * 
+     * @return missing nodes, parents before children
+     */
+    private Set<String> findMissingNodes(Collection<String> paths) throws Exception {
+        Set<String> unknown = new LinkedHashSet<String>();
+        for (String path : paths) {
+            String parent = ZKPaths.getPathAndNode(path).getPath();
+            List<String> ancestors = new ArrayList<String>();
+            while (parent != null && !parent.equals("/") && !_knownNodes.containsKey(parent)) {
+                ancestors.add(0, parent);
+                parent = ZKPaths.getPathAndNode(parent).getPath();
+            }
+            unknown.addAll(ancestors);
+            if (!_knownNodes.containsKey(path)) {
+                unknown.add(path);
+            }
+        }
+
+        Set<String> missing = new LinkedHashSet<String>();
+        if (unknown.isEmpty()) {
+            return missing;
+        }
+        Map<String, CuratorEvent> events = inBackground(unknown, true);
+        for (String path : unknown) {
+            CuratorEvent event = events.get(path);
+            if (event.getResultCode() == KeeperException.Code.NONODE.intValue()) {
+                missing.add(path);
+            } else {
+                checkResult(event, path);
+                _knownNodes.put(path, Boolean.TRUE);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Sends a checkExists or getData request for each path without waiting for the
+     * responses in between, then waits for all of them.
+     * 
+     * @return response event by path
+     */
+    private Map<String, CuratorEvent> inBackground(Collection<String> paths, boolean exists) throws Exception {
+        final Map<String, CuratorEvent> events = new ConcurrentHashMap<String, CuratorEvent>();
+        final CountDownLatch latch = new CountDownLatch(paths.size());
+        for (final String path : paths) {
+            BackgroundCallback callback = new BackgroundCallback() {
+                @Override
+                public void processResult(CuratorFramework client, CuratorEvent event) {
+                    events.put(path, event);
+                    latch.countDown();
+                }
+            };
+            if (exists) {
+                _zkClient.checkExists().inBackground(callback).forPath(path);
+            } else {
+                _zkClient.getData().inBackground(callback).forPath(path);
+            }
+        }
+        countRequests(paths.size());
+        if (!latch.await(ASYNC_TIMEOUT_SECS, TimeUnit.SECONDS)) {
+            throw KeeperException.create(KeeperException.Code.OPERATIONTIMEOUT);
+        }
+        return events;
+    }
+
+    private void checkResult(CuratorEvent event, String path) throws KeeperException {
+        if (event.getResultCode() != KeeperException.Code.OK.intValue()) {
+            throw KeeperException.create(KeeperException.Code.get(event.getResultCode()), path);
+        }
+    }
+
+    /**
+     * Forgets that the node and its descendants exist
+     */
+    private void forgetNodes(String path) {
+        String prefix = path + "/";
+        synchronized (_knownNodes) {
+            Iterator<String> it = _knownNodes.keySet().iterator();
+            while (it.hasNext()) {
+                String known = it.next();
+                if (known.equals(path) || known.startsWith(prefix)) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
     @Override
     public void setListener(CuratorListener listener) throws Exception {
         if (_listener != null) {
@@ -137,6 +394,7 @@ public class WorkflowDataManagerImpl implements DistributedDataManager {
 
     @Override
     public List<String> getChildren(String path) throws Exception {
+        countRequests(1);
         List<String> children = _zkClient.getChildren().forPath(path);
         return children;
     }
@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.coordinator.client.service.impl;
+
+import java.io.IOException;
+
+/**
+ * Encoding of objects stored as zookeeper node data (see GenericSerializer)
+ */
+public interface ZkDataCodec {
+
+    /**
+     * @param data node data
+     * @return true if the data was written by this codec
+     */
+    boolean accepts(byte[] data);
+
+    /**
+     * @param object object to encode, may be null
+     * @return encoded data
+     */
+    byte[] encode(Object object) throws IOException;
+
+    /**
+     * @param data data written by encode
+     * @return decoded object
+     */
+    Object decode(byte[] data) throws IOException, ClassNotFoundException;
+}
@@ -113,6 +113,94 @@ public class DistributedQueueTest extends CoordinatorTestBase {
         Thread.sleep(1000 * 60);
     }
 
+    /**
+     * Tests that the batch mode delivers every item once, and compares its
+     * ZK operations per item and enqueue to start latency with the default mode
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testDistributedQueueBatchMode() throws Exception {
+        final int itemCount = 2000;
+        String[] statistics = new String[2];
+        int[] batchSizes = { 1, 20 };
+        for (int i = 0; i < batchSizes.length; i++) {
+            CoordinatorClientImpl client = (CoordinatorClientImpl) connectClient();
+            client.setQueueBatchSize(batchSizes[i]);
+            CountDownLatch latch = new CountDownLatch(itemCount);
+            final Set<Integer> consumed = Collections.synchronizedSet(new HashSet<Integer>());
+            final AtomicInteger duplicates = new AtomicInteger(0);
+            IntegerConsumer consumer = new IntegerConsumer() {
+                @Override
+                public void consumeItem(Integer message, DistributedQueueItemProcessedCallback cb) throws Exception {
+                    if (!consumed.add(message)) {
+                        duplicates.incrementAndGet();
+                    }
+                    super.consumeItem(message, cb);
+                }
+            };
+            consumer.setLatch(latch);
+            DistributedQueueImpl<Integer> queue = (DistributedQueueImpl<Integer>) client.getQueue(
+                    QUEUE_NAME_3 + "_" + batchSizes[i], consumer, new IntegerSerializer(), 25);
+            for (int index = 0; index < 4; index++) {
+                startPut(queue, index * itemCount / 4, (index + 1) * itemCount / 4);
+            }
+            Assert.assertTrue(latch.await(600, TimeUnit.SECONDS));
+            Assert.assertEquals(itemCount, consumed.size());
+            Assert.assertEquals(0, duplicates.get());
+            Assert.assertEquals(itemCount, queue.getStartedItemCount());
+            statistics[i] = queue.getStatistics();
+            queue.stop(1000 * 60);
+        }
+        _logger.info("Default mode: {}", statistics[0]);
+        _logger.info("Batch mode: {}", statistics[1]);
+    }
+
+    /**
+     * Tests that a batch is not started beyond what the consumer can take
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testBatchModeStopsWhenConsumerIsBusy() throws Exception {
+        final int itemCount = 10;
+        final int threads = 2;
+        CoordinatorClientImpl client = (CoordinatorClientImpl) connectClient();
+        client.setQueueBatchSize(20);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch latch = new CountDownLatch(itemCount);
+        final Set<Integer> consumed = Collections.synchronizedSet(new HashSet<Integer>());
+        IntegerConsumer consumer = new IntegerConsumer() {
+            @Override
+            public void consumeItem(Integer message, DistributedQueueItemProcessedCallback cb) throws Exception {
+                consumed.add(message);
+                release.await();
+                super.consumeItem(message, cb);
+            }
+        };
+        consumer.setLatch(latch);
+        DistributedQueueImpl<Integer> queue = (DistributedQueueImpl<Integer>) client.getQueue(
+                QUEUE_NAME_3 + "_busy", consumer, new IntegerSerializer(), threads);
+        for (int index = 0; index < itemCount; index++) {
+            queue.put(index);
+        }
+
+        long deadline = System.currentTimeMillis() + 10 * 1000;
+        while (queue.getStartedItemCount() < threads && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        // give the dispatcher time to start more than it should
+        Thread.sleep(2000);
+        Assert.assertEquals(threads, queue.getStartedItemCount());
+        Assert.assertTrue(consumer.isBusy(QUEUE_NAME_3 + "_busy"));
+
+        release.countDown();
+        Assert.assertTrue(latch.await(60, TimeUnit.SECONDS));
+        Assert.assertEquals(itemCount, consumed.size());
+        Assert.assertEquals(itemCount, queue.getStartedItemCount());
+        queue.stop(1000 * 60);
+    }
+
     @Test
     public void testQueueMax() throws Exception {
         final int maxCount = 100;
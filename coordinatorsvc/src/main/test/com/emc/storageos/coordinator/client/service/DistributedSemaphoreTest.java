@@ -12,6 +12,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Random;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -26,6 +27,7 @@ public class DistributedSemaphoreTest extends CoordinatorTestBase {
     private ExecutorService _workers1 = Executors.newFixedThreadPool(POOLSIZE);
     private static final String SEMAPHORE_NAME_TEST2 = "sampleSemClientTest2";
     private ExecutorService _workers2 = Executors.newFixedThreadPool(POOLSIZE);
+    private static final String SEMAPHORE_NAME_TEST3 = "sampleSemClientTest3";
 
     /**
      * Executes multiple workers using the semaphore (but acquiring with infinite wait).
@@ -130,4 +132,35 @@ public class DistributedSemaphoreTest extends CoordinatorTestBase {
         Assert.assertTrue(_workers2.awaitTermination(60, TimeUnit.SECONDS));
         _logger.info("*** DistributedSemaphoreFiniteWaitTest end");
     }
+
+    /**
+     * A client failing a non-blocking acquire is notified through the ZK watch
+     * when another client returns its lease.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testTryAcquireLeaseListener() throws Exception {
+        final DistributedSemaphore holderSem = connectClient().getSemaphore(SEMAPHORE_NAME_TEST3, 1);
+        final DistributedSemaphore waiterSem = connectClient().getSemaphore(SEMAPHORE_NAME_TEST3, 1);
+        Lease lease = holderSem.tryAcquireLease();
+        Assert.assertNotNull(lease);
+        Assert.assertNull(waiterSem.tryAcquireLease());
+
+        final CountDownLatch available = new CountDownLatch(1);
+        Runnable listener = new Runnable() {
+            @Override
+            public void run() {
+                available.countDown();
+            }
+        };
+        waiterSem.addLeaseAvailableListener(listener);
+        holderSem.returnLease(lease);
+        Assert.assertTrue(available.await(30, TimeUnit.SECONDS));
+        waiterSem.removeLeaseAvailableListener(listener);
+
+        lease = waiterSem.tryAcquireLease();
+        Assert.assertNotNull(lease);
+        waiterSem.returnLease(lease);
+    }
 }
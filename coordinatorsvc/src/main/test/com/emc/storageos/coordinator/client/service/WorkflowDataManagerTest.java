@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+
+package com.emc.storageos.coordinator.client.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import junit.framework.Assert;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.emc.storageos.coordinator.client.service.impl.CoordinatorClientImpl;
+import com.emc.storageos.coordinator.client.service.impl.WorkflowDataManagerImpl;
+
+/**
+ * Compares the zookeeper requests needed to persist and load a large workflow
+ * node by node and with the multi-node putData/getData.
+ */
+public class WorkflowDataManagerTest extends CoordinatorTestBase {
+    private static final int STEPS = 200;
+    private static final int STEP_SIZE = 1024;
+
+    private CoordinatorClientImpl client;
+    private WorkflowDataManagerImpl dataManager;
+
+    @Before
+    public void setUp() throws Exception {
+        client = (CoordinatorClientImpl) connectClient();
+        client.start();
+        dataManager = (WorkflowDataManagerImpl) client.getWorkflowDataManager();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        dataManager.removeNode("/workflowtest", true);
+        dataManager.close();
+        client.stop();
+    }
+
+    @Test
+    public void testWorkflowRequests() throws Exception {
+        String singlePath = "/workflowtest/workflows/single";
+        String batchedPath = "/workflowtest/workflows/batched";
+        List<String> stepIds = new ArrayList<String>();
+        for (int i = 0; i < STEPS; i++) {
+            stepIds.add(UUID.randomUUID().toString());
+        }
+
+        // node by node, as WorkflowService.persistWorkflowStep does without batching
+        long requests = dataManager.getRequestCount();
+        long roundTrips = dataManager.getRoundTripCount();
+        dataManager.putData(singlePath, "workflow");
+        for (String stepId : stepIds) {
+            if (dataManager.checkExists(singlePath) == null) {
+                dataManager.createNode(singlePath, false);
+            }
+            dataManager.putData(singlePath + "/" + stepId, createStep(stepId));
+            dataManager.checkExists(singlePath + "/" + stepId);
+            dataManager.putData("/workflowtest/step2workflow/single-" + stepId, singlePath);
+        }
+        long singleWriteRequests = dataManager.getRequestCount() - requests;
+        long singleWriteRoundTrips = dataManager.getRoundTripCount() - roundTrips;
+
+        requests = dataManager.getRequestCount();
+        roundTrips = dataManager.getRoundTripCount();
+        for (String child : dataManager.getChildren(singlePath)) {
+            dataManager.getData(singlePath + "/" + child, false);
+        }
+        long singleReadRequests = dataManager.getRequestCount() - requests;
+        long singleReadRoundTrips = dataManager.getRoundTripCount() - roundTrips;
+
+        // batched
+        requests = dataManager.getRequestCount();
+        roundTrips = dataManager.getRoundTripCount();
+        Map<String, Object> nodes = new LinkedHashMap<String, Object>();
+        nodes.put(batchedPath, "workflow");
+        for (String stepId : stepIds) {
+            nodes.put(batchedPath + "/" + stepId, createStep(stepId));
+            nodes.put("/workflowtest/step2workflow/batched-" + stepId, batchedPath);
+        }
+        dataManager.putData(nodes);
+        long batchedWriteRequests = dataManager.getRequestCount() - requests;
+        long batchedWriteRoundTrips = dataManager.getRoundTripCount() - roundTrips;
+
+        requests = dataManager.getRequestCount();
+        roundTrips = dataManager.getRoundTripCount();
+        List<String> batchedChildren = new ArrayList<String>();
+        for (String child : dataManager.getChildren(batchedPath)) {
+            batchedChildren.add(batchedPath + "/" + child);
+        }
+        Map<String, Object> loaded = dataManager.getData(batchedChildren);
+        long batchedReadRequests = dataManager.getRequestCount() - requests;
+        long batchedReadRoundTrips = dataManager.getRoundTripCount() - roundTrips;
+
+        Assert.assertEquals(STEPS, loaded.size());
+        for (String stepId : stepIds) {
+            Assert.assertEquals(createStep(stepId), loaded.get(batchedPath + "/" + stepId));
+        }
+        Assert.assertEquals(batchedPath, dataManager.getData("/workflowtest/step2workflow/batched-" + stepIds.get(0), false));
+
+        // an update of known nodes needs no existence checks
+        requests = dataManager.getRequestCount();
+        nodes.remove(batchedPath);
+        dataManager.putData(nodes);
+        long batchedUpdateRequests = dataManager.getRequestCount() - requests;
+
+        Assert.assertTrue(singleWriteRequests >= 5 * STEPS);
+        Assert.assertTrue(singleReadRequests >= STEPS);
+        Assert.assertTrue(singleReadRoundTrips >= STEPS);
+        // pipelined existence checks of the 3 parents and the new nodes, then one transaction
+        Assert.assertEquals(2, batchedWriteRoundTrips);
+        Assert.assertEquals(3 + 1 + 2 * STEPS + 1, batchedWriteRequests);
+        // getChildren, then the pipelined reads
+        Assert.assertEquals(2, batchedReadRoundTrips);
+        Assert.assertEquals(1 + STEPS, batchedReadRequests);
+        // an update of known nodes is a single transaction
+        Assert.assertEquals(1, batchedUpdateRequests);
+    }
+
+    @Test
+    public void testTooLargeWriteIsRejected() throws Exception {
+        String path = "/workflowtest/workflows/large";
+        Map<String, Object> nodes = new LinkedHashMap<String, Object>();
+        nodes.put(path, "workflow");
+        for (int i = 0; i < 1000; i++) {
+            String stepId = UUID.randomUUID().toString();
+            nodes.put(path + "/" + stepId, createStep(stepId));
+        }
+        long requests = dataManager.getRequestCount();
+        try {
+            dataManager.putData(nodes);
+            Assert.fail("the write should have been rejected");
+        } catch (IllegalArgumentException e) {
+            // rejected before anything was sent
+        }
+        Assert.assertEquals(requests, dataManager.getRequestCount());
+        Assert.assertNull(dataManager.checkExists(path));
+    }
+
+    private String createStep(String stepId) {
+        StringBuilder step = new StringBuilder(stepId);
+        while (step.length() < STEP_SIZE) {
+            step.append(stepId);
+        }
+        return step.toString();
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.coordinator.client.service.impl;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.emc.storageos.coordinator.exceptions.CoordinatorException;
+
+public class CompactZkDataCodecTest {
+    private final CompactZkDataCodec codec = new CompactZkDataCodec();
+
+    @After
+    public void teardown() {
+        GenericSerializer.setCompactEncoding(false);
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        map.put("string", "value");
+        map.put("int", -42);
+        map.put("long", Long.MAX_VALUE);
+        map.put("bool", true);
+        map.put("double", 1.5d);
+        map.put("uri", URI.create("urn:storageos:Volume:1234:vdc1"));
+        map.put("enum", TimeUnit.SECONDS);
+        map.put("date", new Date(12345L));
+        map.put("bytes", new byte[] { 1, 2, 3 });
+        map.put("args", new Object[] { "a", 1, null });
+        map.put("list", new ArrayList<String>(Arrays.asList("x", "y", "x")));
+        map.put("set", new HashSet<Integer>(Arrays.asList(1, 2, 3)));
+        TreeMap<String, String> tree = new TreeMap<String, String>();
+        tree.put("b", "2");
+        tree.put("a", "1");
+        map.put("tree", tree);
+        map.put("null", null);
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> decoded = (Map<String, Object>) codec.decode(codec.encode(map));
+        Assert.assertEquals(LinkedHashMap.class, decoded.getClass());
+        Assert.assertEquals(new ArrayList<String>(map.keySet()), new ArrayList<String>(decoded.keySet()));
+        for (String key : Arrays.asList("string", "int", "long", "bool", "double", "uri", "enum", "date", "list", "set", "tree")) {
+            Assert.assertEquals(key, map.get(key), decoded.get(key));
+        }
+        Assert.assertArrayEquals((byte[]) map.get("bytes"), (byte[]) decoded.get("bytes"));
+        Assert.assertArrayEquals((Object[]) map.get("args"), (Object[]) decoded.get("args"));
+        Assert.assertTrue(decoded.containsKey("null"));
+        Assert.assertNull(decoded.get("null"));
+    }
+
+    @Test
+    public void testSharedReferences() throws Exception {
+        List<String> shared = new ArrayList<String>();
+        shared.add("a");
+        JavaOnly javaOnly = new JavaOnly("b");
+        Object[] graph = new Object[] { shared, shared, javaOnly, javaOnly };
+
+        Object[] decoded = (Object[]) codec.decode(codec.encode(graph));
+        Assert.assertSame(decoded[0], decoded[1]);
+        Assert.assertSame(decoded[2], decoded[3]);
+        Assert.assertEquals("b", ((JavaOnly) decoded[2]).name);
+    }
+
+    @Test
+    public void testTypeAdapter() throws Exception {
+        CompactZkDataCodec.registerAdapter(new PointAdapter());
+        Point p = new Point(3, 4);
+        List<Point> points = Arrays.asList(p, p, new Point(5, 6));
+
+        @SuppressWarnings("unchecked")
+        List<Point> decoded = (List<Point>) codec.decode(codec.encode(points));
+        Assert.assertEquals(3, decoded.size());
+        Assert.assertSame(decoded.get(0), decoded.get(1));
+        Assert.assertEquals(4, decoded.get(0).y);
+        Assert.assertEquals(5, decoded.get(2).x);
+    }
+
+    @Test
+    public void testCompression() throws Exception {
+        List<String> list = new ArrayList<String>();
+        for (int i = 0; i < 200; i++) {
+            list.add("urn:storageos:Volume:" + i + ":vdc1");
+        }
+        byte[] compressed = codec.encode(list);
+        byte[] plain = new CompactZkDataCodec(-1).encode(list);
+        Assert.assertTrue(compressed.length < plain.length);
+        Assert.assertEquals(list, codec.decode(compressed));
+        Assert.assertEquals(list, codec.decode(plain));
+    }
+
+    @Test
+    public void testGenericSerializerReadsBothFormats() throws Exception {
+        HashMap<String, Object> map = new HashMap<String, Object>();
+        map.put("method", "createVolumes");
+        map.put("timestamp", 1L);
+
+        byte[] javaData = GenericSerializer.serialize(map, "test", true);
+        Assert.assertFalse(codec.accepts(javaData));
+        GenericSerializer.setCompactEncoding(true);
+        byte[] compactData = GenericSerializer.serialize(map, "test", true);
+        Assert.assertTrue(codec.accepts(compactData));
+        Assert.assertTrue(compactData.length < javaData.length);
+
+        Assert.assertEquals(map, GenericSerializer.deserialize(javaData));
+        Assert.assertEquals(map, GenericSerializer.deserialize(compactData));
+    }
+
+    @Test
+    public void testGenericSerializerFallsBackToJava() throws Exception {
+        CompactZkDataCodec.registerAdapter(new FaultyAdapter());
+        GenericSerializer.setCompactEncoding(true);
+
+        // the adapter fails to write, the object is Java serialized
+        Faulty faulty = new Faulty(false);
+        byte[] data = GenericSerializer.serialize(faulty, "test", true);
+        Assert.assertFalse(codec.accepts(data));
+        Assert.assertFalse(((Faulty) GenericSerializer.deserialize(data)).failRead);
+
+        // the adapter fails to read, the failure is reported as for any undecodable data
+        data = GenericSerializer.serialize(new Faulty(true), "test", true);
+        Assert.assertTrue(codec.accepts(data));
+        try {
+            GenericSerializer.deserialize(data);
+            Assert.fail("decoding should have failed");
+        } catch (CoordinatorException e) {
+            Assert.assertTrue(e.getCause() instanceof ClassCastException);
+        }
+    }
+
+    private static class JavaOnly implements Serializable {
+        private final String name;
+
+        JavaOnly(String name) {
+            this.name = name;
+        }
+    }
+
+    private static class Point {
+        private int x;
+        private int y;
+
+        Point(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    private static class Faulty implements Serializable {
+        private final boolean failRead;
+
+        Faulty(boolean failRead) {
+            this.failRead = failRead;
+        }
+    }
+
+    /**
+     * Fails with runtime exceptions, as adapters of classes changed by an upgrade may
+     */
+    public static class FaultyAdapter implements CompactZkDataCodec.TypeAdapter<Faulty> {
+        @Override
+        public Class<Faulty> getType() {
+            return Faulty.class;
+        }
+
+        @Override
+        public void write(Faulty value, CompactZkDataCodec.ValueWriter out) throws IOException {
+            if (!value.failRead) {
+                throw new IllegalStateException("can't write");
+            }
+        }
+
+        @Override
+        public Faulty read(CompactZkDataCodec.ValueReader in) throws IOException {
+            throw new ClassCastException("can't read");
+        }
+    }
+
+    public static class PointAdapter implements CompactZkDataCodec.TypeAdapter<Point> {
+        @Override
+        public Class<Point> getType() {
+            return Point.class;
+        }
+
+        @Override
+        public void write(Point value, CompactZkDataCodec.ValueWriter out) throws IOException {
+            out.writeField("x", value.x);
+            out.writeField("y", value.y);
+        }
+
+        @Override
+        public Point read(CompactZkDataCodec.ValueReader in) throws IOException {
+            Point p = new Point(0, 0);
+            String field;
+            while ((field = in.nextField()) != null) {
+                Object value = in.readValue();
+                if ("x".equals(field)) {
+                    p.x = (Integer) value;
+                } else if ("y".equals(field)) {
+                    p.y = (Integer) value;
+                }
+            }
+            return p;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.coordinator.client.service.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.state.ConnectionState;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.emc.storageos.coordinator.client.service.CoordinatorTestBase;
+import com.emc.storageos.coordinator.client.service.ServiceChangeListener;
+import com.emc.storageos.coordinator.common.impl.ZkConnection;
+
+/**
+ * Checks that the service registry cache follows beacons being added and removed,
+ * and that lookups go to ZK while the connection is down.
+ */
+public class ServiceRegistryCacheTest extends CoordinatorTestBase {
+    private static final String SITE = "site1";
+    private static final String ROOT = "dummysvc/1";
+    private static final long WAIT_MILLIS = 10000;
+
+    private final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+    private String servicePath;
+    private ZkConnection conn;
+    private CuratorFramework zkClient;
+    private ExecutorService listenerWorker;
+    private ServiceRegistryCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        servicePath = "/servicecachetest-" + UUID.randomUUID() + "/service";
+        conn = createConnection(10 * 1000);
+        zkClient = conn.curator();
+        listenerWorker = Executors.newSingleThreadExecutor();
+        cache = new ServiceRegistryCache(zkClient, listenerWorker);
+        cache.addListener(new ServiceChangeListener() {
+            @Override
+            public void serviceChanged(String siteId, String name, String version, String id, ChangeType type) {
+                events.add(type + " " + name + "/" + version + "/" + id);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        cache.close();
+        listenerWorker.shutdownNow();
+        zkClient.delete().deletingChildrenIfNeeded().forPath(servicePath.substring(0, servicePath.lastIndexOf('/')));
+        conn.disconnect();
+    }
+
+    @Test
+    public void testServicesAddedAndRemoved() throws Exception {
+        registerService("svc1");
+        waitForChildren("svc1");
+        long avoided = cache.getAvoidedReadCount();
+        Assert.assertArrayEquals("svc1".getBytes(), cache.getData(SITE, servicePath, ROOT, "svc1"));
+        Assert.assertEquals(avoided + 1, cache.getAvoidedReadCount());
+
+        registerService("svc2");
+        waitForChildren("svc1", "svc2");
+        Assert.assertArrayEquals("svc2".getBytes(), cache.getData(SITE, servicePath, ROOT, "svc2"));
+
+        zkClient.delete().forPath(servicePath + "/" + ROOT + "/svc1");
+        waitForChildren("svc2");
+        Assert.assertNull(cache.getData(SITE, servicePath, ROOT, "svc1"));
+
+        waitForEvents(2);
+        Assert.assertEquals(Arrays.asList("ADDED dummysvc/1/svc2", "REMOVED dummysvc/1/svc1"), events);
+    }
+
+    @Test
+    public void testZkIsReadWhileDisconnected() throws Exception {
+        registerService("svc1");
+        waitForChildren("svc1");
+
+        cache.stateChanged(zkClient, ConnectionState.SUSPENDED);
+        long zkReads = cache.getZkReadCount();
+        Assert.assertNull(cache.getChildren(SITE, servicePath, ROOT));
+        Assert.assertNull(cache.getData(SITE, servicePath, ROOT, "svc1"));
+        Assert.assertEquals(zkReads + 2, cache.getZkReadCount());
+
+        cache.stateChanged(zkClient, ConnectionState.RECONNECTED);
+        Assert.assertEquals(Arrays.asList("svc1"), cache.getChildren(SITE, servicePath, ROOT));
+    }
+
+    private void registerService(String id) throws Exception {
+        zkClient.create().creatingParentsIfNeeded().forPath(servicePath + "/" + ROOT + "/" + id, id.getBytes());
+    }
+
+    /**
+     * Waits until the cache serves exactly the given services
+     */
+    private void waitForChildren(String... ids) throws Exception {
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+        List<String> children = null;
+        while (System.currentTimeMillis() < deadline) {
+            children = cache.getChildren(SITE, servicePath, ROOT);
+            if (children != null && new HashSet<String>(children).equals(new HashSet<String>(Arrays.asList(ids)))) {
+                return;
+            }
+            Thread.sleep(50);
+        }
+        Assert.fail("Cached services " + children + " instead of " + Arrays.asList(ids));
+    }
+
+    private void waitForEvents(int count) throws Exception {
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+        while (events.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+    }
+}
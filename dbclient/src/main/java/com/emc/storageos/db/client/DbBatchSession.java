@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+
+package com.emc.storageos.db.client;
+
+import java.util.Collection;
+
+import com.emc.storageos.db.client.model.DataObject;
+import com.emc.storageos.db.exceptions.DatabaseException;
+
+/**
+ * Write-behind session collecting object writes made through it, so that many
+ * objects are written with a few large mutation batches instead of one batch per call.
+ *
+ * Writes are only sent to the database on flush(), on close(), or when the number of
+ * pending objects reaches the session limit. Repeated writes of the same object instance
+ * are written once, with all changes made to it until the flush. Index cleanup is the
+ * same as for the corresponding DbClient calls.
+ *
+ * A session is not thread safe; it is meant to be used by one thread for one unit of work,
+ * typically in a try-with-resources block:
+ *
+ * <pre>
+ * try (DbBatchSession session = dbClient.openBatchSession()) {
+ *     for (StoragePool pool : pools) {
+ *         ...
+ *         session.updateObject(pool);
+ *     }
+ * }
+ * </pre>
+ */
+public interface DbBatchSession extends AutoCloseable {
+
+    /**
+     * Same as {@link DbClient#createObject(DataObject)}, deferred until flush
+     */
+    <T extends DataObject> void createObject(T object);
+
+    /**
+     * Same as {@link DbClient#createObject(Collection)}, deferred until flush
+     */
+    <T extends DataObject> void createObject(Collection<T> objects);
+
+    /**
+     * Same as {@link DbClient#updateObject(DataObject)}, deferred until flush
+     */
+    <T extends DataObject> void updateObject(T object);
+
+    /**
+     * Same as {@link DbClient#updateObject(Collection)}, deferred until flush
+     */
+    <T extends DataObject> void updateObject(Collection<T> objects);
+
+    /**
+     * Same as {@link DbClient#markForDeletion(DataObject)}, deferred until flush
+     */
+    void markForDeletion(DataObject object);
+
+    /**
+     * Same as {@link DbClient#markForDeletion(Collection)}, deferred until flush
+     */
+    void markForDeletion(Collection<? extends DataObject> objects);
+
+    /**
+     * @return number of objects waiting to be written
+     */
+    int getPendingCount();
+
+    /**
+     * Writes all pending objects, in the order they were first written to the session.
+     * If a write fails, the objects not written yet stay pending for the next flush.
+     *
+     * @throws DatabaseException
+     */
+    void flush();
+
+    /**
+     * Flushes pending objects and closes the session; a closed session can't be used anymore
+     *
+     * @throws DatabaseException
+     */
+    @Override
+    void close();
+}
@@ -126,6 +126,24 @@ public interface DbClient {
     <T extends DataObject> Iterator<T> queryIterativeObjects(final Class<T> clazz,
             Collection<URI> ids, final boolean activeOnly);
 
+    /**
+     * Same as {@link DbClient#queryIterativeObjects(Class, Collection, boolean)}, with explicit
+     * batching. Up to prefetchDepth batches of batchSize objects are queried concurrently ahead
+     * of the caller, so at most batchSize * prefetchDepth objects are held in memory.
+     * A prefetching iterator is {@link java.io.Closeable}; callers which stop iterating early
+     * should close it to cancel the batches queried ahead.
+     * 
+     * @param clazz object type
+     * @param ids object ids
+     * @param activeOnly
+     * @param batchSize number of objects queried at once
+     * @param prefetchDepth number of batches queried ahead of the caller; 1 means no prefetch
+     * @return deserialized objects as an Iterator, in batch order
+     * @throws DatabaseException
+     */
+    <T extends DataObject> Iterator<T> queryIterativeObjects(final Class<T> clazz,
+            Collection<URI> ids, final boolean activeOnly, int batchSize, int prefetchDepth);
+
     /**
      * Queries for a particular field on objects with the given URIs
      * 
@@ -156,6 +174,21 @@ public interface DbClient {
      */
     <T extends DataObject> Iterator<T> queryIterativeObjectField(Class<T> clazz, String fieldName, Collection<URI> ids);
 
+    /**
+     * Same as {@link DbClient#queryIterativeObjectField(Class, String, Collection)}, with explicit
+     * batching and prefetch, see {@link DbClient#queryIterativeObjects(Class, Collection, boolean, int, int)}.
+     * 
+     * @param clazz object type
+     * @param fieldName field name to get value of
+     * @param ids object uris
+     * @param batchSize number of objects queried at once
+     * @param prefetchDepth number of batches queried ahead of the caller; 1 means no prefetch
+     * @return deserialized objects as an Iterator, in batch order
+     * @throws DatabaseException
+     */
+    <T extends DataObject> Iterator<T> queryIterativeObjectField(Class<T> clazz, String fieldName, Collection<URI> ids,
+            int batchSize, int prefetchDepth);
+
     /**
      * Aggregate fields for the column by using the provided Aggregator.
      * This funciton is similar to queryObjectField but it supplies the field values into Aggregator
@@ -572,6 +605,23 @@ public interface DbClient {
      */
     void removeObject(DataObject... object);
 
+    /**
+     * Opens a write-behind session which collects object writes and sends them with
+     * a few size bounded mutation batches, see {@link DbBatchSession}.
+     *
+     * @return new session; must be closed by the caller
+     */
+    DbBatchSession openBatchSession();
+
+    /**
+     * Same as {@link DbClient#openBatchSession()} with explicit limits.
+     *
+     * @param batchSize max number of objects written per mutation batch
+     * @param maxPending number of pending objects which triggers a flush
+     * @return new session; must be closed by the caller
+     */
+    DbBatchSession openBatchSession(int batchSize, int maxPending);
+
     /**
      * Inserts time series data of given type. Time series implementation
      * implements TimeSeries<T> interface. EventTimeSeries is an example of such
@@ -620,6 +670,22 @@ public interface DbClient {
     <T extends TimeSeriesSerializer.DataPoint> String insertTimeSeries(
             Class<? extends TimeSeries> tsType, DateTime time, T data);
 
+    /**
+     * Inserts a data point of time series identified by its timestamp and a key, such as a
+     * summary of other data for a period. Inserting a data point with the same timestamp and
+     * key again replaces it, so that derived data points can be written again.
+     * 
+     * @param tsType time series implementation class (such as StatHourlyRollupTimeSeries,
+     *            for example)
+     * @param time timestamp
+     * @param key key of the data point, unique for the timestamp
+     * @param data time series data point to insert
+     * @return bucket / row ID where the data point was stored
+     * @throws DatabaseException TODO
+     */
+    <T extends TimeSeriesSerializer.DataPoint> String insertTimeSeries(
+            Class<? extends TimeSeries> tsType, DateTime time, String key, T data);
+
     /**
      * Queries time series data for given time bucket. For example, if time
      * series class specifies HOURLY bucket and timeBucket argument is 2012-4-16
@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+
+package com.emc.storageos.db.client.impl;
+
+import java.net.URI;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.emc.storageos.db.client.DbClient;
+import com.emc.storageos.db.client.constraint.Constraint;
+import com.emc.storageos.db.client.constraint.QueryResultList;
+import com.emc.storageos.db.client.model.DataObject;
+import com.emc.storageos.db.exceptions.DatabaseException;
+import com.emc.storageos.services.util.NamedThreadPoolExecutor;
+
+/**
+ * Asynchronous facade over DbClient. Every call is run on a worker pool and returns a
+ * CompletableFuture, so callers such as the device controllers can issue independent
+ * lookups concurrently and join them later.
+ *
+ * Back-pressure: at most maxConcurrent calls run at once, which should not exceed what the
+ * Astyanax connection pool can serve without blocking. Another maxQueued calls may wait in
+ * the work queue; beyond that the submitting thread blocks until a call completes, instead
+ * of piling up work the connection pool would reject anyway.
+ *
+ * Results and exceptions are exactly those of the corresponding DbClient call; a
+ * DatabaseException is delivered as the cause of the future's ExecutionException.
+ */
+public class AsyncDbClient {
+    private static final Logger _log = LoggerFactory.getLogger(AsyncDbClient.class);
+    private static final String POOL_NAME = "AsyncDbClient";
+    private static final long SHUTDOWN_WAIT_SECS = 30;
+    private static final int DEFAULT_MAX_CONCURRENT = 64;
+    private static final int DEFAULT_MAX_QUEUED = 256;
+
+    private final DbClient _dbClient;
+    private final NamedThreadPoolExecutor _executor;
+    private final Semaphore _permits;
+
+    /**
+     * Creates the facade with the default bounds, 64 running calls as the default
+     * size of the connection pool, and 256 queued calls
+     *
+     * @param dbClient started db client
+     */
+    public AsyncDbClient(DbClient dbClient) {
+        this(dbClient, DEFAULT_MAX_CONCURRENT, DEFAULT_MAX_QUEUED);
+    }
+
+    /**
+     * @param dbClient started db client
+     * @param maxConcurrent max number of calls run at once
+     * @param maxQueued max number of calls waiting for a worker before callers block
+     */
+    public AsyncDbClient(DbClient dbClient, int maxConcurrent, int maxQueued) {
+        if (dbClient == null || maxConcurrent <= 0 || maxQueued < 0) {
+            throw new IllegalArgumentException();
+        }
+        _dbClient = dbClient;
+        _executor = new NamedThreadPoolExecutor(POOL_NAME, maxConcurrent);
+        _permits = new Semaphore(maxConcurrent + maxQueued);
+        _log.info("Async db client started with {} workers and {} queued calls", maxConcurrent, maxQueued);
+    }
+
+    public DbClient getDbClient() {
+        return _dbClient;
+    }
+
+    /**
+     * @return number of calls submitted but not yet completed
+     */
+    public int getPendingCount() {
+        return _executor.getActiveCount() + _executor.getQueue().size();
+    }
+
+    public void shutdown() {
+        _executor.shutdown();
+        try {
+            if (!_executor.awaitTermination(SHUTDOWN_WAIT_SECS, TimeUnit.SECONDS)) {
+                _log.warn("Async db client calls still pending after {}s", SHUTDOWN_WAIT_SECS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public <T extends DataObject> CompletableFuture<T> queryObject(final Class<T> clazz, final URI id) {
+        return submit(new Supplier<T>() {
+            @Override
+            public T get() {
+                return _dbClient.queryObject(clazz, id);
+            }
+        });
+    }
+
+    public <T extends DataObject> CompletableFuture<List<T>> queryObject(final Class<T> clazz, final Collection<URI> ids) {
+        return queryObject(clazz, ids, false);
+    }
+
+    public <T extends DataObject> CompletableFuture<List<T>> queryObject(final Class<T> clazz, final Collection<URI> ids,
+            final boolean activeOnly) {
+        return submit(new Supplier<List<T>>() {
+            @Override
+            public List<T> get() {
+                return _dbClient.queryObject(clazz, ids, activeOnly);
+            }
+        });
+    }
+
+    public <T extends DataObject> CompletableFuture<Collection<T>> queryObjectFields(final Class<T> clazz,
+            final Collection<String> fieldNames, final Collection<URI> ids) {
+        return submit(new Supplier<Collection<T>>() {
+            @Override
+            public Collection<T> get() {
+                return _dbClient.queryObjectFields(clazz, fieldNames, ids);
+            }
+        });
+    }
+
+    public <T extends DataObject> CompletableFuture<List<URI>> queryByType(final Class<T> clazz, final boolean activeOnly) {
+        return submit(new Supplier<List<URI>>() {
+            @Override
+            public List<URI> get() {
+                return _dbClient.queryByType(clazz, activeOnly);
+            }
+        });
+    }
+
+    public CompletableFuture<List<URI>> queryByConstraint(final Constraint constraint) {
+        return submit(new Supplier<List<URI>>() {
+            @Override
+            public List<URI> get() {
+                return _dbClient.queryByConstraint(constraint);
+            }
+        });
+    }
+
+    /**
+     * Fills the given result list in a worker thread; the list must not be read
+     * before the returned future completes
+     */
+    public <T, R extends QueryResultList<T>> CompletableFuture<R> queryByConstraint(final Constraint constraint, final R result) {
+        return submit(new Supplier<R>() {
+            @Override
+            public R get() {
+                _dbClient.queryByConstraint(constraint, result);
+                return result;
+            }
+        });
+    }
+
+    public <T extends DataObject> CompletableFuture<Void> createObject(final T object) {
+        return submit(new Supplier<Void>() {
+            @Override
+            public Void get() {
+                _dbClient.createObject(object);
+                return null;
+            }
+        });
+    }
+
+    public <T extends DataObject> CompletableFuture<Void> createObject(final Collection<T> objects) {
+        return submit(new Supplier<Void>() {
+            @Override
+            public Void get() {
+                _dbClient.createObject(objects);
+                return null;
+            }
+        });
+    }
+
+    public <T extends DataObject> CompletableFuture<Void> updateObject(final T object) {
+        return submit(new Supplier<Void>() {
+            @Override
+            public Void get() {
+                _dbClient.updateObject(object);
+                return null;
+            }
+        });
+    }
+
+    public <T extends DataObject> CompletableFuture<Void> updateObject(final Collection<T> objects) {
+        return submit(new Supplier<Void>() {
+            @Override
+            public Void get() {
+                _dbClient.updateObject(objects);
+                return null;
+            }
+        });
+    }
+
+    public CompletableFuture<Void> markForDeletion(final Collection<? extends DataObject> objects) {
+        return submit(new Supplier<Void>() {
+            @Override
+            public Void get() {
+                _dbClient.markForDeletion(objects);
+                return null;
+            }
+        });
+    }
+
+    public CompletableFuture<Void> removeObject(final DataObject... objects) {
+        return submit(new Supplier<Void>() {
+            @Override
+            public Void get() {
+                _dbClient.removeObject(objects);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Runs the call on the worker pool, blocking the caller while all permits are taken
+     */
+    private <R> CompletableFuture<R> submit(final Supplier<R> call) {
+        try {
+            _permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            CompletableFuture<R> failed = new CompletableFuture<R>();
+            failed.completeExceptionally(DatabaseException.fatals.queryFailed(e));
+            return failed;
+        }
+
+        Supplier<R> releasing = new Supplier<R>() {
+            @Override
+            public R get() {
+                try {
+                    return call.get();
+                } finally {
+                    _permits.release();
+                }
+            }
+        };
+        try {
+            return CompletableFuture.supplyAsync(releasing, _executor);
+        } catch (RuntimeException e) {
+            // rejected because the pool is shut down
+            _permits.release();
+            throw e;
+        }
+    }
+}
@@ -15,10 +15,20 @@ import java.util.List;
 abstract class BulkDataObjIterator<T1, T2> implements Iterator<T2> {
     private static final int DEFAULT_BATCH_SIZE = 100;
     protected Iterator<T1> _resourceIt;
-    protected List<T1> nextBatch = new ArrayList<T1>(DEFAULT_BATCH_SIZE);
+    protected final int _batchSize;
+    protected List<T1> nextBatch;
 
     public BulkDataObjIterator(Iterator<T1> resources) {
+        this(resources, DEFAULT_BATCH_SIZE);
+    }
+
+    public BulkDataObjIterator(Iterator<T1> resources, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException();
+        }
         _resourceIt = resources;
+        _batchSize = batchSize;
+        nextBatch = new ArrayList<T1>(batchSize);
     }
 
     protected abstract void run();
@@ -26,7 +36,7 @@ abstract class BulkDataObjIterator<T1, T2> implements Iterator<T2> {
     protected List<T1> getNextBatch() {
         nextBatch.clear();
 
-        for (int i = 0; (i < DEFAULT_BATCH_SIZE) && (_resourceIt.hasNext()); i++) {
+        for (int i = 0; (i < _batchSize) && (_resourceIt.hasNext()); i++) {
             nextBatch.add(_resourceIt.next());
         }
         return nextBatch;
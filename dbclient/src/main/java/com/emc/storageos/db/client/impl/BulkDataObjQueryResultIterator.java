@@ -21,6 +21,11 @@ public abstract class BulkDataObjQueryResultIterator<T> extends BulkDataObjItera
         run();
     }
 
+    public BulkDataObjQueryResultIterator(Iterator<URI> resources, int batchSize) {
+        super(resources, batchSize);
+        run();
+    }
+
     @Override
     public boolean hasNext() {
         if (currentIt != null && currentIt.hasNext()) {
@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+
+package com.emc.storageos.db.client.impl;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.emc.storageos.db.client.DbBatchSession;
+import com.emc.storageos.db.client.model.DataObject;
+
+/**
+ * DbBatchSession implementation on top of DbClientImpl.
+ *
+ * Pending writes are kept in rounds. A row appears at most once per round, and a later
+ * write of a different instance of an already pending row goes to a later round, so that
+ * two versions of a row never share one mutation batch (they would get the same column
+ * timestamp). On flush each round is written in order, cut into mutation batches of at most
+ * batchSize consecutive objects of the same model class through DbClientImpl.internalPersistObject,
+ * which also performs the usual index cleanup. Objects are written in the order they were
+ * first written to the session, and only leave the session once their batch is written.
+ */
+public class DbBatchSessionImpl implements DbBatchSession {
+    private static final Logger _log = LoggerFactory.getLogger(DbBatchSessionImpl.class);
+
+    private final DbClientImpl _dbClient;
+    private final int _batchSize;
+    private final int _maxPending;
+
+    private final List<Round> _rounds = new ArrayList<Round>();
+    private final Map<URI, Round> _lastRound = new HashMap<URI, Round>();
+    private int _pendingCount = 0;
+    private int _dedupCount = 0;
+    private boolean _closed = false;
+
+    /**
+     * @param dbClient db client used for the writes
+     * @param batchSize max number of objects per mutation batch
+     * @param maxPending number of pending objects which triggers a flush
+     */
+    public DbBatchSessionImpl(DbClientImpl dbClient, int batchSize, int maxPending) {
+        if (dbClient == null || batchSize <= 0 || maxPending <= 0) {
+            throw new IllegalArgumentException();
+        }
+        _dbClient = dbClient;
+        _batchSize = batchSize;
+        _maxPending = maxPending;
+    }
+
+    @Override
+    public <T extends DataObject> void createObject(T object) {
+        prepareForCreate(object);
+        add(object, false);
+    }
+
+    @Override
+    public <T extends DataObject> void createObject(Collection<T> objects) {
+        for (T object : objects) {
+            createObject(object);
+        }
+    }
+
+    @Override
+    public <T extends DataObject> void updateObject(T object) {
+        add(object, true);
+    }
+
+    @Override
+    public <T extends DataObject> void updateObject(Collection<T> objects) {
+        for (T object : objects) {
+            add(object, true);
+        }
+    }
+
+    @Override
+    public void markForDeletion(DataObject object) {
+        object.setInactive(true);
+        add(object, true);
+    }
+
+    @Override
+    public void markForDeletion(Collection<? extends DataObject> objects) {
+        for (DataObject object : objects) {
+            markForDeletion(object);
+        }
+    }
+
+    @Override
+    public int getPendingCount() {
+        return _pendingCount;
+    }
+
+    /**
+     * Writes the pending objects. If a batch fails, the objects of the batches written
+     * before it are no longer pending, and the others are kept for the next flush.
+     */
+    @Override
+    public void flush() {
+        checkOpen();
+        if (_pendingCount == 0) {
+            return;
+        }
+
+        int pendingCount = _pendingCount;
+        int batches = 0;
+        while (!_rounds.isEmpty()) {
+            batches += writeRound(_rounds.get(0));
+            _rounds.remove(0);
+        }
+        _log.debug("Flushed {} objects ({} repeated writes merged) in {} batches",
+                new Object[] { pendingCount, _dedupCount, batches });
+        _dedupCount = 0;
+    }
+
+    @Override
+    public void close() {
+        if (_closed) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            _closed = true;
+        }
+    }
+
+    private void prepareForCreate(DataObject object) {
+        // same as DbClientImpl.createObject
+        object.setCreationTime(Calendar.getInstance());
+        if (!object.getInactive()) {
+            object.setInactive(false);
+        }
+    }
+
+    private void add(DataObject object, boolean updateIndex) {
+        checkOpen();
+        if (object.getId() == null || TypeMap.getDoType(object.getClass()) == null) {
+            throw new IllegalArgumentException();
+        }
+
+        URI id = object.getId();
+        Round last = _lastRound.get(id);
+        if (last != null) {
+            PendingWrite pending = last.writes.get(id);
+            if (pending.object == object) {
+                // the instance is serialized at flush time, with all changes made until then
+                pending.updateIndex |= updateIndex;
+                _dedupCount++;
+                return;
+            }
+        }
+
+        int round = (last == null) ? Math.max(0, _rounds.size() - 1) : indexOf(last) + 1;
+        while (_rounds.size() <= round) {
+            _rounds.add(new Round());
+        }
+        Round target = _rounds.get(round);
+        target.writes.put(id, new PendingWrite(object, updateIndex));
+        _lastRound.put(id, target);
+        _pendingCount++;
+
+        if (_pendingCount >= _maxPending) {
+            flush();
+        }
+    }
+
+    private int indexOf(Round round) {
+        for (int i = 0; i < _rounds.size(); i++) {
+            if (_rounds.get(i) == round) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("unknown round");
+    }
+
+    /**
+     * Writes the objects of a round in their order, each batch holding consecutive objects
+     * of the same class and index cleanup
+     *
+     * @return number of mutation batches written
+     */
+    private int writeRound(Round round) {
+        int batches = 0;
+        List<PendingWrite> batch = new ArrayList<PendingWrite>(_batchSize);
+        for (PendingWrite write : new ArrayList<PendingWrite>(round.writes.values())) {
+            if (!batch.isEmpty() && (batch.size() == _batchSize || !batch.get(0).isSameBatch(write))) {
+                writeBatch(round, batch);
+                batches++;
+                batch.clear();
+            }
+            batch.add(write);
+        }
+        if (!batch.isEmpty()) {
+            writeBatch(round, batch);
+            batches++;
+        }
+        return batches;
+    }
+
+    private void writeBatch(Round round, List<PendingWrite> batch) {
+        List<DataObject> objects = new ArrayList<DataObject>(batch.size());
+        for (PendingWrite write : batch) {
+            objects.add(write.object);
+        }
+        _dbClient.internalPersistObject(batch.get(0).object.getClass(), objects, batch.get(0).updateIndex);
+
+        // written, no longer pending
+        for (PendingWrite write : batch) {
+            URI id = write.object.getId();
+            round.writes.remove(id);
+            if (_lastRound.get(id) == round) {
+                _lastRound.remove(id);
+            }
+            _pendingCount--;
+        }
+    }
+
+    private void checkOpen() {
+        if (_closed) {
+            throw new IllegalStateException("batch session is closed");
+        }
+    }
+
+    private static class Round {
+        private final Map<URI, PendingWrite> writes = new LinkedHashMap<URI, PendingWrite>();
+    }
+
+    private static class PendingWrite {
+        private final DataObject object;
+        private boolean updateIndex;
+
+        PendingWrite(DataObject object, boolean updateIndex) {
+            this.object = object;
+            this.updateIndex = updateIndex;
+        }
+
+        boolean isSameBatch(PendingWrite other) {
+            return object.getClass() == other.object.getClass() && updateIndex == other.updateIndex;
+        }
+    }
+}
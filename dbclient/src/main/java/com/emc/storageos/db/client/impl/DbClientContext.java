@@ -84,6 +84,7 @@ public class DbClientContext {
 
     private int maxConnections = DEFAULT_MAX_CONNECTIONS;
     private int maxConnectionsPerHost = DEFAULT_MAX_CONNECTIONS_PER_HOST;
+    private int maxBlockedThreads = DEFAULT_MAX_BLOCKED_THREADS;
     private int svcListPoolIntervalSec = DEFAULT_SVCLIST_POLL_INTERVAL_SEC;
     private long monitorIntervalSecs = DEFAULT_CONNECTION_POOL_MONITOR_INTERVAL;
     private RetryPolicy retryPolicy = new QueryRetryPolicy(MAX_QUERY_RETRY, QUERY_RETRY_SLEEP_SECONDS);
@@ -183,6 +184,10 @@ public class DbClientContext {
         this.maxConnectionsPerHost = maxConnectionsPerHost;
     }
 
+    public void setMaxBlockedThreads(int maxBlockedThreads) {
+        this.maxBlockedThreads = maxBlockedThreads;
+    }
+
     public void setSvcListPoolIntervalSec(int svcListPoolIntervalSec) {
         this.svcListPoolIntervalSec = svcListPoolIntervalSec;
     }
@@ -252,7 +257,7 @@ public class DbClientContext {
 
         ConnectionPoolConfigurationImpl cfg = new ConnectionPoolConfigurationImpl(DEFAULT_CN_POOL_NANE).setMaxConns(maxConnections)
                 .setMaxConnsPerHost(maxConnectionsPerHost).setConnectTimeout(DEFAULT_CONN_TIMEOUT)
-                .setMaxBlockedThreadsPerHost(DEFAULT_MAX_BLOCKED_THREADS).setPartitioner(murmur3partitioner);
+                .setMaxBlockedThreadsPerHost(maxBlockedThreads).setPartitioner(murmur3partitioner);
 
         log.info("The client to node is encrypted={}", isClientToNodeEncrypted);
         if (isClientToNodeEncrypted) {
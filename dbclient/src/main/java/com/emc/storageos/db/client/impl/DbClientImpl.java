@@ -13,8 +13,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -25,6 +27,8 @@ import java.util.UUID;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang.StringUtils;
 import org.joda.time.DateTime;
@@ -37,6 +41,7 @@ import com.emc.storageos.coordinator.client.model.DbVersionInfo;
 import com.emc.storageos.coordinator.client.service.CoordinatorClient;
 import com.emc.storageos.coordinator.client.service.DrUtil;
 import com.emc.storageos.db.client.DbAggregatorItf;
+import com.emc.storageos.db.client.DbBatchSession;
 import com.emc.storageos.db.client.DbClient;
 import com.emc.storageos.db.client.TimeSeriesMetadata;
 import com.emc.storageos.db.client.TimeSeriesQueryResult;
@@ -78,6 +83,7 @@ import com.emc.storageos.db.common.VdcUtil;
 import com.emc.storageos.db.exceptions.DatabaseException;
 import com.emc.storageos.db.exceptions.FatalDatabaseException;
 import com.emc.storageos.model.ResourceOperationTypeEnum;
+import com.emc.storageos.services.util.NamedThreadPoolExecutor;
 import com.emc.storageos.svcs.errorhandling.model.ServiceCoded;
 import com.google.common.base.Joiner;
 import com.google.common.base.Objects;
@@ -119,6 +125,9 @@ public class DbClientImpl implements DbClient {
     private static final int DEFAULT_TS_PAGE_SIZE = 100;
     private static final int DEFAULT_BATCH_SIZE = 1000;
     protected static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int DEFAULT_PREFETCH_THREADS = 16;
+    private static final int DEFAULT_PREFETCH_DEPTH = 1;
+    private static final long PREFETCH_THREAD_KEEPALIVE_SECS = 60;
 
     static private final List<Class<? extends DataObject>> excludeClasses = Arrays.asList(Token.class,
             StorageOSUserDAO.class, VirtualDataCenter.class, PropertyListDataObject.class, PasswordHistory.class,
@@ -139,6 +148,12 @@ public class DbClientImpl implements DbClient {
 
     protected IndexCleaner _indexCleaner;
 
+    protected DbObjectCache _objectCache;
+
+    private int _prefetchThreads = DEFAULT_PREFETCH_THREADS;
+    private int _defaultPrefetchDepth = DEFAULT_PREFETCH_DEPTH;
+    private ExecutorService _prefetchExecutor;
+
     protected EncryptionProvider _encryptionProvider;
     protected EncryptionProvider _geoEncryptionProvider;
 
@@ -241,6 +256,49 @@ public class DbClientImpl implements DbClient {
         this.drUtil = drUtil;
     }
 
+    /**
+     * Sets the optional read-through cache of object rows used by queryObject
+     *
+     * @param objectCache
+     */
+    public void setObjectCache(DbObjectCache objectCache) {
+        _objectCache = objectCache;
+    }
+
+    public DbObjectCache getObjectCache() {
+        return _objectCache;
+    }
+
+    /**
+     * Sets the number of threads shared by all prefetching iterators of this client
+     *
+     * @param prefetchThreads
+     */
+    public void setPrefetchThreads(int prefetchThreads) {
+        _prefetchThreads = prefetchThreads;
+    }
+
+    /**
+     * Sets the number of batches the queryIterative* methods query ahead of the caller
+     * when no explicit prefetch depth is given; 1 disables prefetching
+     *
+     * @param prefetchDepth
+     */
+    public void setDefaultPrefetchDepth(int prefetchDepth) {
+        _defaultPrefetchDepth = prefetchDepth;
+    }
+
+    private synchronized ExecutorService getPrefetchExecutor() {
+        if (_prefetchExecutor == null) {
+            NamedThreadPoolExecutor executor = new NamedThreadPoolExecutor("DbClientPrefetch", _prefetchThreads, _prefetchThreads,
+                    PREFETCH_THREAD_KEEPALIVE_SECS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+            // let idle threads go so that tools using the client can exit without calling stop()
+            executor.allowCoreThreadTimeOut(true);
+            _prefetchExecutor = executor;
+        }
+        return _prefetchExecutor;
+    }
+
     @Override
     public synchronized void start() {
         if (initDone) {
@@ -266,6 +324,10 @@ public class DbClientImpl implements DbClient {
 
         _indexCleaner = new IndexCleaner();
 
+        if (_objectCache != null) {
+            _objectCache.start(_coordinator);
+        }
+
         initDone = true;
     }
 
@@ -381,6 +443,15 @@ public class DbClientImpl implements DbClient {
             geoContext = null;
         }
 
+        if (_objectCache != null) {
+            _objectCache.stop();
+        }
+
+        if (_prefetchExecutor != null) {
+            _prefetchExecutor.shutdownNow();
+            _prefetchExecutor = null;
+        }
+
         _log.info("stop coordinator");
         _coordinator.stop();
         initDone = false;
@@ -436,7 +507,46 @@ public class DbClientImpl implements DbClient {
         }
 
         Keyspace ks = getKeyspace(clazz);
-        Rows<String, CompositeColumnName> rows = queryRowsWithAllColumns(ks, ids, doType.getCF());
+        boolean cached = _objectCache != null && _objectCache.isCached(clazz);
+        long cacheGeneration = cached ? _objectCache.getGeneration(clazz) : 0;
+        List<Row<String, CompositeColumnName>> rows = new ArrayList<Row<String, CompositeColumnName>>();
+        Map<URI, Row<String, CompositeColumnName>> cachedRows = null;
+        Collection<URI> idsToQuery = ids;
+        if (cached) {
+            cachedRows = new HashMap<URI, Row<String, CompositeColumnName>>();
+            idsToQuery = new ArrayList<URI>();
+            for (URI id : ids) {
+                Row<String, CompositeColumnName> row = _objectCache.get(clazz, id);
+                if (row != null) {
+                    cachedRows.put(id, row);
+                } else {
+                    idsToQuery.add(id);
+                }
+            }
+        }
+        List<Row<String, CompositeColumnName>> queriedRows = new ArrayList<Row<String, CompositeColumnName>>();
+        if (!idsToQuery.isEmpty()) {
+            for (Row<String, CompositeColumnName> row : queryRowsWithAllColumns(ks, idsToQuery, doType.getCF())) {
+                queriedRows.add(row);
+            }
+        }
+        if (cached) {
+            // return the objects of a cached class in the order of the ids, whichever of them were cached
+            Map<URI, Row<String, CompositeColumnName>> rowsById = new HashMap<URI, Row<String, CompositeColumnName>>(cachedRows);
+            for (Row<String, CompositeColumnName> row : queriedRows) {
+                if (row != null) {
+                    rowsById.put(URI.create(row.getKey()), row);
+                }
+            }
+            for (URI id : ids) {
+                Row<String, CompositeColumnName> row = rowsById.remove(id);
+                if (row != null) {
+                    rows.add(row);
+                }
+            }
+        } else {
+            rows.addAll(queriedRows);
+        }
         List<T> objects = new ArrayList<T>(rows.size());
         IndexCleanupList cleanList = new IndexCleanupList();
 
@@ -447,7 +557,15 @@ public class DbClientImpl implements DbClient {
                 continue;
             }
 
-            T object = doType.deserialize(clazz, row, cleanList, new LazyLoader(this));
+            T object;
+            if (cachedRows != null && cachedRows.get(URI.create(row.getKey())) == row) {
+                // cached rows are shared with the other readers of the object
+                synchronized (row) {
+                    object = doType.deserialize(clazz, row, cleanList, new LazyLoader(this));
+                }
+            } else {
+                object = doType.deserialize(clazz, row, cleanList, new LazyLoader(this));
+            }
 
             // filter base on activeOnly
             if (activeOnly) {
@@ -463,6 +581,13 @@ public class DbClientImpl implements DbClient {
             RowMutator mutator = new RowMutator(ks, retryFailedWriteWithLocalQuorum);
             SoftReference<IndexCleanupList> indexCleanUpRef = new SoftReference<IndexCleanupList>(cleanList);
             _indexCleaner.cleanIndexAsync(mutator, doType, indexCleanUpRef);
+        } else if (cached) {
+            // rows that still need index cleanup are about to change, so only clean rows are cached
+            for (Row<String, CompositeColumnName> row : queriedRows) {
+                if (row != null && row.getColumns().size() != 0) {
+                    _objectCache.put(clazz, row, cacheGeneration);
+                }
+            }
         }
         return objects;
     }
@@ -476,6 +601,12 @@ public class DbClientImpl implements DbClient {
     @Override
     public <T extends DataObject> Iterator<T> queryIterativeObjects(final Class<T> clazz,
             Collection<URI> ids, final boolean activeOnly) {
+        return queryIterativeObjects(clazz, ids, activeOnly, DEFAULT_PAGE_SIZE, _defaultPrefetchDepth);
+    }
+
+    @Override
+    public <T extends DataObject> Iterator<T> queryIterativeObjects(final Class<T> clazz,
+            Collection<URI> ids, final boolean activeOnly, int batchSize, int prefetchDepth) {
         DataObjectType doType = TypeMap.getDoType(clazz);
         if (doType == null || ids == null) {
             throw new IllegalArgumentException();
@@ -484,7 +615,15 @@ public class DbClientImpl implements DbClient {
             // nothing to do, just an empty list
             return new ArrayList<T>().iterator();
         }
-        BulkDataObjQueryResultIterator<T> bulkQueryIterator = new BulkDataObjQueryResultIterator<T>(ids.iterator()) {
+        if (prefetchDepth > 1) {
+            return new PrefetchingDataObjIterator<T>(ids.iterator(), batchSize, prefetchDepth, getPrefetchExecutor()) {
+                @Override
+                protected List<T> fetch(List<URI> batch) {
+                    return queryObject(clazz, batch, activeOnly);
+                }
+            };
+        }
+        BulkDataObjQueryResultIterator<T> bulkQueryIterator = new BulkDataObjQueryResultIterator<T>(ids.iterator(), batchSize) {
 
             @Override
             protected void run() {
@@ -508,6 +647,12 @@ public class DbClientImpl implements DbClient {
     @Override
     public <T extends DataObject> Iterator<T> queryIterativeObjectField(final Class<T> clazz,
             final String fieldName, Collection<URI> ids) {
+        return queryIterativeObjectField(clazz, fieldName, ids, DEFAULT_PAGE_SIZE, _defaultPrefetchDepth);
+    }
+
+    @Override
+    public <T extends DataObject> Iterator<T> queryIterativeObjectField(final Class<T> clazz,
+            final String fieldName, Collection<URI> ids, int batchSize, int prefetchDepth) {
 
         DataObjectType doType = TypeMap.getDoType(clazz);
         if (doType == null || ids == null) {
@@ -518,7 +663,16 @@ public class DbClientImpl implements DbClient {
             return new ArrayList<T>().iterator();
         }
 
-        BulkDataObjQueryResultIterator<T> bulkQueryIterator = new BulkDataObjQueryResultIterator<T>(ids.iterator()) {
+        if (prefetchDepth > 1) {
+            return new PrefetchingDataObjIterator<T>(ids.iterator(), batchSize, prefetchDepth, getPrefetchExecutor()) {
+                @Override
+                protected List<T> fetch(List<URI> batch) {
+                    return queryObjectField(clazz, fieldName, batch);
+                }
+            };
+        }
+
+        BulkDataObjQueryResultIterator<T> bulkQueryIterator = new BulkDataObjQueryResultIterator<T>(ids.iterator(), batchSize) {
             @Override
             protected void run() {
                 currentIt = null;
@@ -1122,7 +1276,7 @@ public class DbClientImpl implements DbClient {
             return;
         }
         Map<Class<? extends T>, List<T>> typeObjMap = new HashMap<Class<? extends T>, List<T>>();
-        for (T obj : dataobjects) {
+        for (T obj : distinctInstances(dataobjects)) {
             List<T> objTypeList = typeObjMap.get(obj.getClass());
             if (objTypeList == null) {
                 objTypeList = new ArrayList<T>();
@@ -1140,6 +1294,21 @@ public class DbClientImpl implements DbClient {
         }
     }
 
+    /**
+     * Drops the repeated instances of the objects of one write call, an instance
+     * written more than once in a mutation batch being serialized once
+     */
+    private static <T> Collection<T> distinctInstances(Collection<T> objects) {
+        Set<T> seen = Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+        List<T> distinct = new ArrayList<T>(objects.size());
+        for (T object : objects) {
+            if (seen.add(object)) {
+                distinct.add(object);
+            }
+        }
+        return distinct.size() == objects.size() ? objects : distinct;
+    }
+
     protected <T extends DataObject> void internalPersistObject(Class<? extends T> clazz, Collection<T> dataobjects, boolean updateIndex) {
         if (dataobjects == null || dataobjects.isEmpty()) {
             return;
@@ -1183,6 +1352,7 @@ public class DbClientImpl implements DbClient {
             }
         }
         mutator.execute();
+        invalidateCachedObjects(dataobjects);
 
         return objectsToCleanup;
     }
@@ -1251,7 +1421,7 @@ public class DbClientImpl implements DbClient {
             return;
         }
 
-        BulkDataObjPersistIterator<T> bulkPersistIterator = new BulkDataObjPersistIterator<T>(dataobjects.iterator()) {
+        BulkDataObjPersistIterator<T> bulkPersistIterator = new BulkDataObjPersistIterator<T>(distinctInstances(dataobjects).iterator()) {
 
             @Override
             protected void run() {
@@ -1363,6 +1533,16 @@ public class DbClientImpl implements DbClient {
         }
     }
 
+    @Override
+    public DbBatchSession openBatchSession() {
+        return openBatchSession(DEFAULT_PAGE_SIZE, DEFAULT_BATCH_SIZE);
+    }
+
+    @Override
+    public DbBatchSession openBatchSession(int batchSize, int maxPending) {
+        return new DbBatchSessionImpl(this, batchSize, maxPending);
+    }
+
     public void removeObject(Class<? extends DataObject> clazz, DataObject... object) {
 
         List<DataObject> allObjects = Arrays.asList(object);
@@ -1393,6 +1573,36 @@ public class DbClientImpl implements DbClient {
             RowMutator mutator = new RowMutator(ks, retryFailedWriteWithLocalQuorum);
             _indexCleaner.removeColumnAndIndex(mutator, doType, removedList);
         }
+        invalidateCachedObjects(allObjects);
+    }
+
+    /**
+     * Drops written objects from the object cache, locally and on the other nodes,
+     * and reports the writes of tracked classes
+     *
+     * @param dataobjects objects just written to the db
+     */
+    protected <T extends DataObject> void invalidateCachedObjects(Collection<T> dataobjects) {
+        if (_objectCache == null || !_objectCache.hasTrackedClasses()) {
+            return;
+        }
+        Map<Class<? extends DataObject>, List<URI>> typeIdMap = new HashMap<Class<? extends DataObject>, List<URI>>();
+        for (T object : dataobjects) {
+            // the class of a deserialized object may be the instrumented subclass of the model class
+            Class<? extends DataObject> clazz = TypeMap.getDoType(object.getClass()).getDataObjectClass();
+            if (!_objectCache.isTracked(clazz)) {
+                continue;
+            }
+            List<URI> ids = typeIdMap.get(clazz);
+            if (ids == null) {
+                ids = new ArrayList<URI>();
+                typeIdMap.put(clazz, ids);
+            }
+            ids.add(object.getId());
+        }
+        for (Entry<Class<? extends DataObject>, List<URI>> entry : typeIdMap.entrySet()) {
+            _objectCache.invalidate(entry.getKey(), entry.getValue());
+        }
     }
 
     @Override
@@ -1448,6 +1658,29 @@ public class DbClientImpl implements DbClient {
         }
     }
 
+    @Override
+    public <T extends TimeSeriesSerializer.DataPoint> String insertTimeSeries(
+            Class<? extends TimeSeries> tsType, DateTime time, String key, T data) {
+        if (time == null || (time.getZone() != DateTimeZone.UTC)) {
+            throw new IllegalArgumentException("Invalid timezone");
+        }
+
+        try {
+            TimeSeriesType<T> type = TypeMap.getTimeSeriesType(tsType);
+            String rowId = type.getRowId(time, key);
+            // time series are always in the local keyspace
+            ColumnMutation mutation = getLocalKeyspace().prepareColumnMutation(type.getCf(),
+                    rowId,
+                    type.getColumnName(time, key));
+            // the data point is derived, writing it again replaces it
+            mutation.setConsistencyLevel(ConsistencyLevel.CL_ONE);
+            mutation.putValue(type.getSerializer().serialize(data), type.getTtl()).execute();
+            return rowId;
+        } catch (ConnectionException e) {
+            throw DatabaseException.retryables.connectionFailed(e);
+        }
+    }
+
     @Override
     public <T extends TimeSeriesSerializer.DataPoint>
             void queryTimeSeries(Class<? extends TimeSeries> tsType,
@@ -0,0 +1,578 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+
+package com.emc.storageos.db.client.impl;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.emc.storageos.coordinator.client.model.CoordinatorClassInfo;
+import com.emc.storageos.coordinator.client.model.CoordinatorSerializable;
+import com.emc.storageos.coordinator.client.service.CoordinatorClient;
+import com.emc.storageos.coordinator.client.service.NodeListener;
+import com.emc.storageos.coordinator.common.impl.ZkPath;
+import com.emc.storageos.db.client.model.DataObject;
+import com.emc.storageos.db.client.model.GeoVisibleResource;
+import com.emc.storageos.db.client.util.KeyspaceUtil;
+import com.netflix.astyanax.model.Row;
+
+/**
+ * Size bounded, read-through cache of object rows used by DbClientImpl.queryObject.
+ *
+ * The cache holds the raw Cassandra rows rather than deserialized DataObjects, so every
+ * caller still gets its own fresh instance with change tracking, and nothing a caller
+ * does to a returned object can leak back into the cache.
+ *
+ * Only model classes listed in the cache configuration are cached, each with its own
+ * TTL and LRU bound. Entries are invalidated on every local write made through DbClientImpl.
+ * Writes are also published to the other nodes, before the write returns, through a per-class
+ * runtime state node in the coordinator; nodes watching that znode drop all cached rows of the
+ * class when it changes. The TTL bounds staleness for rows written by other nodes if a
+ * notification is missed.
+ *
+ * The coordinator only reaches the nodes of the local VDC, so geo replicated classes, whose
+ * objects may be written in other VDCs, are never cached.
+ *
+ * Caches of data derived from objects can ask for the writes of a class to be tracked, see
+ * trackChanges(); tracked classes are reported to the change listeners like cached ones but
+ * their rows are not cached, so they may be geo replicated, and they are tracked whether or
+ * not the row cache is enabled.
+ *
+ * Cached rows are shared by all the readers of an object, and must only be read while holding
+ * the row's lock.
+ */
+public class DbObjectCache {
+    private static final Logger _log = LoggerFactory.getLogger(DbObjectCache.class);
+
+    public static final String INVALIDATION_STATE_KEY = "dbobjectcache";
+    private static final String MODEL_PACKAGE = DataObject.class.getPackage().getName();
+    private static final int DEFAULT_MAX_ENTRIES = 2000;
+    private static final int DEFAULT_TTL_IN_SECS = 60;
+
+    private boolean _enabled = false;
+    private int _defaultMaxEntries = DEFAULT_MAX_ENTRIES;
+    private int _defaultTtlInSecs = DEFAULT_TTL_IN_SECS;
+    private Map<String, Integer> _ttlInSecs = new HashMap<String, Integer>();
+    private Map<String, Integer> _maxEntries = new HashMap<String, Integer>();
+
+    private final ConcurrentMap<Class<? extends DataObject>, Region> _regions =
+            new ConcurrentHashMap<Class<? extends DataObject>, Region>();
+
+    private final AtomicLong _hits = new AtomicLong();
+    private final AtomicLong _misses = new AtomicLong();
+    private final AtomicLong _evictions = new AtomicLong();
+    private final AtomicLong _expirations = new AtomicLong();
+    private final AtomicLong _invalidations = new AtomicLong();
+    private final AtomicLong _remoteInvalidations = new AtomicLong();
+
+    private CoordinatorClient _coordinator;
+    private final List<InvalidationListener> _listeners = new ArrayList<InvalidationListener>();
+    private final List<ChangeListener> _changeListeners = new CopyOnWriteArrayList<ChangeListener>();
+    private final Set<Class<? extends DataObject>> _trackedClasses = new CopyOnWriteArraySet<Class<? extends DataObject>>();
+
+    /**
+     * Notified when objects of a cached or tracked class are written on this node, or on some
+     * other node, for caches of data derived from those objects
+     */
+    public interface ChangeListener {
+        /**
+         * @param clazz model class whose objects changed
+         * @param ids ids of the changed objects, or null if any object of the class may have changed
+         */
+        void objectsChanged(Class<? extends DataObject> clazz, Collection<URI> ids);
+    }
+
+    /**
+     * Enables or disables the cache; a disabled cache never holds any row
+     *
+     * @param enabled
+     */
+    public void setEnabled(boolean enabled) {
+        _enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return _enabled;
+    }
+
+    public void setDefaultMaxEntries(int maxEntries) {
+        _defaultMaxEntries = maxEntries;
+    }
+
+    public void setDefaultTtlInSecs(int ttlInSecs) {
+        _defaultTtlInSecs = ttlInSecs;
+    }
+
+    /**
+     * Sets the model classes to cache along with their TTL in seconds.
+     * Class names without a package are resolved against the db model package.
+     *
+     * @param ttlInSecs model class name to TTL map
+     */
+    public void setCachedClasses(Map<String, Integer> ttlInSecs) {
+        _ttlInSecs = ttlInSecs;
+    }
+
+    /**
+     * Overrides the default LRU bound for some of the cached classes
+     *
+     * @param maxEntries model class name to max number of cached rows
+     */
+    public void setMaxEntries(Map<String, Integer> maxEntries) {
+        _maxEntries = maxEntries;
+    }
+
+    /**
+     * Builds the per-class regions if enabled and, if a coordinator is given, starts listening
+     * for invalidations of the cached and tracked classes published by other nodes.
+     *
+     * @param coordinator coordinator client; may be null for a node local cache
+     */
+    public synchronized void start(CoordinatorClient coordinator) {
+        _coordinator = coordinator;
+        if (_enabled) {
+            buildRegions();
+        } else {
+            _log.info("DB object cache is disabled");
+        }
+
+        if (_coordinator == null) {
+            return;
+        }
+
+        for (Class<? extends DataObject> clazz : _regions.keySet()) {
+            if (!listen(clazz)) {
+                // without cross-node invalidation rows may be stale up to the TTL, so don't cache the class
+                _regions.remove(clazz);
+            }
+        }
+        for (Class<? extends DataObject> clazz : _trackedClasses) {
+            if (!_regions.containsKey(clazz) && !listen(clazz)) {
+                _trackedClasses.remove(clazz);
+            }
+        }
+    }
+
+    private void buildRegions() {
+        for (Map.Entry<String, Integer> entry : _ttlInSecs.entrySet()) {
+            Class<? extends DataObject> clazz = resolveClass(entry.getKey());
+            if (clazz == null) {
+                continue;
+            }
+            if (isGeoReplicated(clazz)) {
+                _log.warn("{} objects are replicated to other VDCs, whose writes are not seen here, don't cache them",
+                        clazz.getSimpleName());
+                continue;
+            }
+            Integer max = _maxEntries.get(entry.getKey());
+            if (max == null) {
+                max = _defaultMaxEntries;
+            }
+            int ttl = (entry.getValue() != null) ? entry.getValue() : _defaultTtlInSecs;
+            _regions.put(clazz, new Region(max, ttl * 1000L));
+            _log.info("Caching {} rows, max entries {}, ttl {}s", clazz.getSimpleName(), max, ttl);
+        }
+    }
+
+    private boolean listen(Class<? extends DataObject> clazz) {
+        InvalidationListener listener = new InvalidationListener(clazz);
+        try {
+            _coordinator.addNodeListener(listener);
+            _listeners.add(listener);
+            return true;
+        } catch (Exception e) {
+            _log.error(String.format("Failed to listen for %s invalidations", clazz.getSimpleName()), e);
+            return false;
+        }
+    }
+
+    public synchronized void stop() {
+        for (InvalidationListener listener : _listeners) {
+            _coordinator.removeNodeListener(listener);
+        }
+        _listeners.clear();
+        _regions.clear();
+        _trackedClasses.clear();
+        _log.info("DB object cache stopped: {}", this);
+    }
+
+    /**
+     * Reports the writes of a class to the change listeners, on this node and, once the
+     * cache is started with a coordinator, on the other nodes, without caching its rows.
+     *
+     * @param clazz model class
+     * @return false if the writes made on other nodes cannot be tracked
+     */
+    public synchronized boolean trackChanges(Class<? extends DataObject> clazz) {
+        if (_regions.containsKey(clazz) || _trackedClasses.contains(clazz)) {
+            return true;
+        }
+        if (_coordinator != null && !listen(clazz)) {
+            return false;
+        }
+        _trackedClasses.add(clazz);
+        _log.info("Tracking changes of {}", clazz.getSimpleName());
+        return true;
+    }
+
+    /**
+     * @return true if the writes of some class must be reported through invalidate()
+     */
+    public boolean hasTrackedClasses() {
+        return !_regions.isEmpty() || !_trackedClasses.isEmpty();
+    }
+
+    /**
+     * @param clazz model class
+     * @return true if the writes of the given class must be reported through invalidate()
+     */
+    public boolean isTracked(Class<? extends DataObject> clazz) {
+        return isCached(clazz) || _trackedClasses.contains(clazz);
+    }
+
+    /**
+     * @param clazz model class
+     * @return true if the rows of the given class are cached
+     */
+    public boolean isCached(Class<? extends DataObject> clazz) {
+        return _enabled && _regions.containsKey(clazz);
+    }
+
+    /**
+     * Returns the invalidation generation of the class. It must be read before
+     * the row is queried from the db, and passed back in put(), so that a row read
+     * concurrently with a write is never cached.
+     *
+     * @param clazz model class
+     * @return current generation
+     */
+    public long getGeneration(Class<? extends DataObject> clazz) {
+        Region region = _regions.get(clazz);
+        return region == null ? 0 : region.getGeneration();
+    }
+
+    /**
+     * @param clazz model class
+     * @param id object id
+     * @return the cached row, or null if it is not cached or has expired
+     */
+    public Row<String, CompositeColumnName> get(Class<? extends DataObject> clazz, URI id) {
+        Region region = _regions.get(clazz);
+        if (region == null) {
+            return null;
+        }
+        Row<String, CompositeColumnName> row = region.get(id);
+        if (row == null) {
+            _misses.incrementAndGet();
+        } else {
+            _hits.incrementAndGet();
+        }
+        return row;
+    }
+
+    /**
+     * Caches a row read from the db
+     *
+     * @param clazz model class
+     * @param row row with all columns
+     * @param generation generation read before the row was queried
+     */
+    public void put(Class<? extends DataObject> clazz, Row<String, CompositeColumnName> row, long generation) {
+        Region region = _regions.get(clazz);
+        if (region != null) {
+            region.put(URI.create(row.getKey()), row, generation);
+        }
+    }
+
+    /**
+     * Drops the given objects from the local cache and tells the other nodes to do the same.
+     * Called after the objects are written, and returns once the other nodes can see the change.
+     *
+     * @param clazz model class
+     * @param ids ids of the written objects
+     */
+    public void invalidate(Class<? extends DataObject> clazz, Collection<URI> ids) {
+        Region region = _regions.get(clazz);
+        if (region != null) {
+            region.remove(ids);
+            _invalidations.addAndGet(ids.size());
+        } else if (!_trackedClasses.contains(clazz)) {
+            return;
+        }
+        notifyChangeListeners(clazz, ids);
+        publishInvalidation(clazz);
+    }
+
+    /**
+     * Drops all cached rows of the given class on this node only
+     *
+     * @param clazz model class
+     */
+    public void invalidateAll(Class<? extends DataObject> clazz) {
+        Region region = _regions.get(clazz);
+        if (region != null) {
+            region.clear();
+            notifyChangeListeners(clazz, null);
+        } else if (_trackedClasses.contains(clazz)) {
+            notifyChangeListeners(clazz, null);
+        }
+    }
+
+    /**
+     * Adds a listener told about changes of the cached and tracked classes, see isTracked().
+     *
+     * @param listener
+     */
+    public void addChangeListener(ChangeListener listener) {
+        _changeListeners.add(listener);
+    }
+
+    public void removeChangeListener(ChangeListener listener) {
+        _changeListeners.remove(listener);
+    }
+
+    private void notifyChangeListeners(Class<? extends DataObject> clazz, Collection<URI> ids) {
+        for (ChangeListener listener : _changeListeners) {
+            try {
+                listener.objectsChanged(clazz, ids);
+            } catch (Exception e) {
+                _log.warn("Change listener of {} failed: {}", clazz.getSimpleName(), e.getMessage());
+            }
+        }
+    }
+
+    public long getHitCount() {
+        return _hits.get();
+    }
+
+    public long getMissCount() {
+        return _misses.get();
+    }
+
+    public long getEvictionCount() {
+        return _evictions.get();
+    }
+
+    public long getExpirationCount() {
+        return _expirations.get();
+    }
+
+    public long getInvalidationCount() {
+        return _invalidations.get();
+    }
+
+    public long getRemoteInvalidationCount() {
+        return _remoteInvalidations.get();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Region region : _regions.values()) {
+            size += region.size();
+        }
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("size=%d hits=%d misses=%d evictions=%d expirations=%d invalidations=%d remoteInvalidations=%d",
+                size(), getHitCount(), getMissCount(), getEvictionCount(), getExpirationCount(),
+                getInvalidationCount(), getRemoteInvalidationCount());
+    }
+
+    private void publishInvalidation(Class<? extends DataObject> clazz) {
+        if (_coordinator == null) {
+            return;
+        }
+        try {
+            _coordinator.persistRuntimeState(getStateKey(clazz), new InvalidationMarker(System.currentTimeMillis()));
+        } catch (Exception e) {
+            // the other nodes drop their rows on reconnect, or when the TTL expires
+            _log.warn("Failed to publish cache invalidation of {}: {}", clazz.getSimpleName(), e.getMessage());
+        }
+    }
+
+    private static boolean isGeoReplicated(Class<? extends DataObject> clazz) {
+        return KeyspaceUtil.isGlobal(clazz) || GeoVisibleResource.class.isAssignableFrom(clazz);
+    }
+
+    private static String getStateKey(Class<? extends DataObject> clazz) {
+        return String.format("%s/%s", INVALIDATION_STATE_KEY, clazz.getSimpleName());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Class<? extends DataObject> resolveClass(String name) {
+        String className = name.contains(".") ? name : MODEL_PACKAGE + "." + name;
+        try {
+            Class<?> clazz = Class.forName(className);
+            if (DataObject.class.isAssignableFrom(clazz)) {
+                return (Class<? extends DataObject>) clazz;
+            }
+            _log.error("{} is not a data object class, ignore it", className);
+        } catch (ClassNotFoundException e) {
+            _log.error("Unknown cached class {}, ignore it", className);
+        }
+        return null;
+    }
+
+    /**
+     * LRU map of the rows of one model class
+     */
+    private class Region {
+        private final long _ttlInMillis;
+        private final LinkedHashMap<URI, CachedRow> _rows;
+        private long _generation = 0;
+
+        Region(final int maxEntries, long ttlInMillis) {
+            _ttlInMillis = ttlInMillis;
+            _rows = new LinkedHashMap<URI, CachedRow>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<URI, CachedRow> eldest) {
+                    if (size() > maxEntries) {
+                        _evictions.incrementAndGet();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        synchronized long getGeneration() {
+            return _generation;
+        }
+
+        synchronized Row<String, CompositeColumnName> get(URI id) {
+            CachedRow cached = _rows.get(id);
+            if (cached == null) {
+                return null;
+            }
+            if (cached.expireTime < System.currentTimeMillis()) {
+                _rows.remove(id);
+                _expirations.incrementAndGet();
+                return null;
+            }
+            return cached.row;
+        }
+
+        synchronized void put(URI id, Row<String, CompositeColumnName> row, long generation) {
+            if (generation != _generation) {
+                // the class was written while the row was being read
+                return;
+            }
+            _rows.put(id, new CachedRow(row, System.currentTimeMillis() + _ttlInMillis));
+        }
+
+        synchronized void remove(Collection<URI> ids) {
+            _generation++;
+            for (URI id : ids) {
+                _rows.remove(id);
+            }
+        }
+
+        synchronized void clear() {
+            _generation++;
+            _rows.clear();
+        }
+
+        synchronized int size() {
+            return _rows.size();
+        }
+    }
+
+    private static class CachedRow {
+        private final Row<String, CompositeColumnName> row;
+        private final long expireTime;
+
+        CachedRow(Row<String, CompositeColumnName> row, long expireTime) {
+            this.row = row;
+            this.expireTime = expireTime;
+        }
+    }
+
+    /**
+     * Watches the invalidation znode of one cached class
+     */
+    private class InvalidationListener implements NodeListener {
+        private final Class<? extends DataObject> _clazz;
+        private final String _path;
+
+        InvalidationListener(Class<? extends DataObject> clazz) {
+            _clazz = clazz;
+            _path = String.format("%s/%s", ZkPath.STATE, getStateKey(clazz));
+        }
+
+        @Override
+        public String getPath() {
+            return _path;
+        }
+
+        @Override
+        public void nodeChanged() {
+            _log.debug("{} rows changed on some node, drop cached rows", _clazz.getSimpleName());
+            _remoteInvalidations.incrementAndGet();
+            invalidateAll(_clazz);
+        }
+
+        @Override
+        public void connectionStateChanged(State state) {
+            // notifications may have been missed while disconnected
+            _log.info("Connection state changed to {}, drop cached {} rows", state, _clazz.getSimpleName());
+            invalidateAll(_clazz);
+        }
+    }
+
+    /**
+     * Content of the per-class invalidation znode; only its change matters to the listeners
+     */
+    public static class InvalidationMarker implements CoordinatorSerializable {
+        private static final String CONFIG_KIND = "dbobjectcache";
+        private static final String CONFIG_ID = "global";
+
+        private long _timestamp;
+
+        public InvalidationMarker() {
+        }
+
+        public InvalidationMarker(long timestamp) {
+            _timestamp = timestamp;
+        }
+
+        public long getTimestamp() {
+            return _timestamp;
+        }
+
+        @Override
+        public String encodeAsString() {
+            return String.valueOf(_timestamp);
+        }
+
+        @Override
+        public InvalidationMarker decodeFromString(String infoStr) {
+            if (infoStr == null || infoStr.isEmpty()) {
+                return new InvalidationMarker();
+            }
+            return new InvalidationMarker(Long.parseLong(infoStr));
+        }
+
+        @Override
+        public CoordinatorClassInfo getCoordinatorClassInfo() {
+            return new CoordinatorClassInfo(CONFIG_ID, CONFIG_KIND, null);
+        }
+    }
+}
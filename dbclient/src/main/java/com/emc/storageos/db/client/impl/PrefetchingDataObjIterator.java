@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+
+package com.emc.storageos.db.client.impl;
+
+import java.io.Closeable;
+import java.lang.ref.WeakReference;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.emc.storageos.db.exceptions.DatabaseException;
+
+/**
+ * Data object query iterator which keeps several batch queries in flight.
+ *
+ * Ids are cut into batches of batchSize, and up to prefetchDepth batches are queried
+ * concurrently on the given executor, so the row slices are spread over the Cassandra
+ * hosts instead of being fetched one after another on the calling thread. Results are
+ * returned in batch order. At most prefetchDepth batches are held in memory at a time;
+ * a new batch is only submitted when the caller starts consuming a completed one.
+ *
+ * Callers which stop iterating early should close the iterator, which cancels the batches
+ * not started yet. The queued batches only hold a weak reference to the iterator, so the
+ * batches of an iterator abandoned without being closed are skipped once it is collected.
+ */
+public abstract class PrefetchingDataObjIterator<T> implements Iterator<T>, Closeable {
+    private final Iterator<URI> _resourceIt;
+    private final int _batchSize;
+    private final int _prefetchDepth;
+    private final ExecutorService _executor;
+    private final Deque<Future<List<T>>> _inFlight;
+    private Iterator<T> _currentIt;
+    private boolean _closed;
+
+    /**
+     * @param resources ids to query
+     * @param batchSize number of ids per query
+     * @param prefetchDepth max number of batch queries in flight
+     * @param executor executor running the batch queries
+     */
+    public PrefetchingDataObjIterator(Iterator<URI> resources, int batchSize, int prefetchDepth, ExecutorService executor) {
+        if (batchSize <= 0 || prefetchDepth <= 0 || executor == null) {
+            throw new IllegalArgumentException();
+        }
+        _resourceIt = resources;
+        _batchSize = batchSize;
+        _prefetchDepth = prefetchDepth;
+        _executor = executor;
+        _inFlight = new ArrayDeque<Future<List<T>>>(prefetchDepth);
+        fill();
+    }
+
+    /**
+     * Queries one batch of objects; called from the executor threads
+     *
+     * @param ids batch of ids
+     * @return objects found
+     */
+    protected abstract List<T> fetch(List<URI> ids);
+
+    @Override
+    public boolean hasNext() {
+        if (_closed) {
+            return false;
+        }
+        while (_currentIt == null || !_currentIt.hasNext()) {
+            if (_inFlight.isEmpty()) {
+                return false;
+            }
+            _currentIt = take().iterator();
+            fill();
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return _currentIt.next();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Stops the iteration, cancelling the batch queries not started yet
+     */
+    @Override
+    public void close() {
+        _closed = true;
+        _currentIt = null;
+        cancelAll();
+    }
+
+    private void fill() {
+        while (_inFlight.size() < _prefetchDepth && _resourceIt.hasNext()) {
+            final List<URI> batch = new ArrayList<URI>(_batchSize);
+            for (int i = 0; i < _batchSize && _resourceIt.hasNext(); i++) {
+                batch.add(_resourceIt.next());
+            }
+            _inFlight.add(_executor.submit(new FetchTask<T>(this, batch)));
+        }
+    }
+
+    private List<T> take() {
+        Future<List<T>> future = _inFlight.poll();
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            cancelAll();
+            Thread.currentThread().interrupt();
+            throw DatabaseException.fatals.queryFailed(e);
+        } catch (ExecutionException e) {
+            cancelAll();
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw DatabaseException.fatals.queryFailed(e);
+        }
+    }
+
+    private void cancelAll() {
+        for (Future<List<T>> future : _inFlight) {
+            future.cancel(false);
+        }
+        _inFlight.clear();
+    }
+
+    /**
+     * Batch query which does not keep the iterator reachable while it is queued
+     */
+    private static class FetchTask<T> implements Callable<List<T>> {
+        private final WeakReference<PrefetchingDataObjIterator<T>> _iterator;
+        private final List<URI> _ids;
+
+        FetchTask(PrefetchingDataObjIterator<T> iterator, List<URI> ids) {
+            _iterator = new WeakReference<PrefetchingDataObjIterator<T>>(iterator);
+            _ids = ids;
+        }
+
+        @Override
+        public List<T> call() {
+            PrefetchingDataObjIterator<T> iterator = _iterator.get();
+            if (iterator == null) {
+                // abandoned by the caller
+                return new ArrayList<T>();
+            }
+            return iterator.fetch(_ids);
+        }
+    }
+}
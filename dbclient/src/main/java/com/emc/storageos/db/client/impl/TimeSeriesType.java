@@ -21,6 +21,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.annotation.Annotation;
+import java.nio.charset.Charset;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -29,6 +30,7 @@ import java.util.concurrent.atomic.AtomicLong;
  */
 public class TimeSeriesType<T extends TimeSeriesSerializer.DataPoint> implements TimeSeriesMetadata {
     private static final Logger _logger = LoggerFactory.getLogger(TimeSeriesType.class);
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
 
     private Class<? extends TimeSeries> _type;
     private int _shardCount = 1;
@@ -124,6 +126,35 @@ public class TimeSeriesType<T extends TimeSeriesSerializer.DataPoint> implements
         return rowId.toString();
     }
 
+    /**
+     * Returns the row Id of a data point identified by its time and key, the shard
+     * following from the key so that the point is written to the same row again.
+     * 
+     * @param time time of the data point
+     * @param key key of the data point, unique for the time
+     * @return row id
+     */
+    public String getRowId(DateTime time, String key) {
+        StringBuilder rowId = new StringBuilder(_prefixFormatter.print(time));
+        rowId.append((key.hashCode() & Integer.MAX_VALUE) % _shardCount);
+        return rowId.toString();
+    }
+
+    /**
+     * Returns the column name of a data point identified by its time and key. The time
+     * stamp of the name is just after the millisecond of the time, so that the column is
+     * within the ranges queried for the time; the rest of the name is derived from the key.
+     * 
+     * @param time time of the data point
+     * @param key key of the data point, unique for the time
+     * @return column name
+     */
+    public UUID getColumnName(DateTime time, String key) {
+        long hash = UUID.nameUUIDFromBytes(key.getBytes(UTF_8)).getLeastSignificantBits();
+        // IETF variant
+        return createTimeUUID(time.getMillis(), 1, (hash & 0x3fffffffffffffffL) | 0x8000000000000000L);
+    }
+
     /**
      * Returns rows to query for given time bucket
      * 
@@ -296,9 +327,21 @@ public class TimeSeriesType<T extends TimeSeriesSerializer.DataPoint> implements
      * @return
      */
     private UUID createMaxTimeUUID(long maxTime) {
+        return createTimeUUID(maxTime, 9999, 0xffffffffffffffffL);
+    }
+
+    /**
+     * Create time UUID for given millisecond and 100ns interval within it.
+     * 
+     * @param millis
+     * @param ticks 100ns intervals after millis, 0 to 9999
+     * @param clockSeqAndNode least significant bits
+     * @return
+     */
+    private UUID createTimeUUID(long millis, int ticks, long clockSeqAndNode) {
         long time;
         // UTC time
-        long timeToUse = (maxTime * 10000) + 0x01b21dd213814000L + 9999;
+        long timeToUse = (millis * 10000) + 0x01b21dd213814000L + ticks;
         // time low
         time = timeToUse << 32;
         // time mid
@@ -306,6 +349,6 @@ public class TimeSeriesType<T extends TimeSeriesSerializer.DataPoint> implements
         // time hi and version
         time |= 0x1000 | ((timeToUse >> 48) & 0x0FFF); // version 1
 
-        return new UUID(time, 0xffffffffffffffffL);
+        return new UUID(time, clockSeqAndNode);
     }
 }
@@ -6,6 +6,7 @@
 package com.emc.storageos.db.client.model;
 
 import com.emc.storageos.db.client.TimeSeriesMetadata;
+import com.emc.storageos.db.exceptions.DatabaseException;
 
 /**
  * CF definition for auditlog time series data
@@ -23,19 +24,70 @@ public class AuditLogTimeSeries implements TimeSeries<AuditLog> {
     }
 
     /**
-     * AuditLog serializer implementation
+     * AuditLog serializer implementation. AuditLogs are written with the compact TimeSeriesCodec
+     * once compact encoding is turned on, the field numbers following their serialization indices,
+     * and with the GenericSerializer until then; both are read.
      */
     public static class AuditLogSerializer implements TimeSeriesSerializer<AuditLog> {
         private GenericSerializer _genericSerializer = new GenericSerializer();
 
         @Override
         public byte[] serialize(AuditLog data) {
-            return _genericSerializer.toByteArray(AuditLog.class, data);
+            if (!TimeSeriesCodec.isCompactEncoding()) {
+                return _genericSerializer.toByteArray(AuditLog.class, data);
+            }
+            TimeSeriesCodec.Writer out = TimeSeriesCodec.getWriter();
+            out.writeLong(0, data.getTimeInMillis());
+            out.writeString(1, data.getProductId());
+            out.writeURI(2, data.getTenantId());
+            out.writeURI(3, data.getUserId());
+            out.writeString(4, data.getServiceType());
+            out.writeString(5, data.getAuditType());
+            out.writeString(6, data.getDescription());
+            out.writeString(7, data.getOperationalStatus());
+            out.writeString(8, data.getAuditlogId());
+            return out.toByteArray();
         }
 
         @Override
         public AuditLog deserialize(byte[] data) {
-            return _genericSerializer.fromByteArray(AuditLog.class, data);
+            if (!TimeSeriesCodec.isEncoded(data)) {
+                return _genericSerializer.fromByteArray(AuditLog.class, data);
+            }
+            try {
+                TimeSeriesCodec.Reader in = new TimeSeriesCodec.Reader(data);
+                AuditLog auditlog = new AuditLog();
+                if (in.has(0)) {
+                    auditlog.setTimeInMillis(in.readLong());
+                }
+                if (in.has(1)) {
+                    auditlog.setProductId(in.readString());
+                }
+                if (in.has(2)) {
+                    auditlog.setTenantId(in.readURI());
+                }
+                if (in.has(3)) {
+                    auditlog.setUserId(in.readURI());
+                }
+                if (in.has(4)) {
+                    auditlog.setServiceType(in.readString());
+                }
+                if (in.has(5)) {
+                    auditlog.setAuditType(in.readString());
+                }
+                if (in.has(6)) {
+                    auditlog.setDescription(in.readString());
+                }
+                if (in.has(7)) {
+                    auditlog.setOperationalStatus(in.readString());
+                }
+                if (in.has(8)) {
+                    auditlog.setAuditlogId(in.readString());
+                }
+                return auditlog;
+            } catch (IllegalArgumentException e) {
+                throw DatabaseException.fatals.deserializationFailed(AuditLog.class, e);
+            }
         }
     }
 }
@@ -6,6 +6,7 @@
 package com.emc.storageos.db.client.model;
 
 import com.emc.storageos.db.client.TimeSeriesMetadata;
+import com.emc.storageos.db.exceptions.DatabaseException;
 
 /**
  * CF definition for event time series data
@@ -23,19 +24,106 @@ public class EventTimeSeries implements TimeSeries<Event> {
     }
 
     /**
-     * Event serializer implementation
+     * Event serializer implementation. Events are written with the compact TimeSeriesCodec once
+     * compact encoding is turned on, the field numbers following their serialization indices,
+     * and with the GenericSerializer until then; both are read.
      */
     public static class EventSerializer implements TimeSeriesSerializer<Event> {
         private GenericSerializer _genericSerializer = new GenericSerializer();
 
         @Override
         public byte[] serialize(Event data) {
-            return _genericSerializer.toByteArray(Event.class, data);
+            if (!TimeSeriesCodec.isCompactEncoding()) {
+                return _genericSerializer.toByteArray(Event.class, data);
+            }
+            TimeSeriesCodec.Writer out = TimeSeriesCodec.getWriter();
+            out.writeLong(0, data.getTimeInMillis());
+            out.writeURI(1, data.getTenantId());
+            out.writeString(2, data.getAlertType());
+            out.writeURI(3, data.getVirtualPool());
+            out.writeString(4, data.getDescription());
+            out.writeString(5, data.getEventId());
+            out.writeString(6, data.getNativeGuid());
+            out.writeString(7, data.getEventType());
+            out.writeString(8, data.getExtensions());
+            out.writeURI(9, data.getProjectId());
+            out.writeURI(10, data.getResourceId());
+            out.writeString(11, data.getService());
+            out.writeString(12, data.getSeverity());
+            out.writeURI(13, data.getUserId());
+            out.writeString(14, data.getRecordType());
+            out.writeString(15, data.getOperationalStatusCodes());
+            out.writeString(16, data.getOperationalStatusDescriptions());
+            out.writeString(17, data.getEventSource());
+            return out.toByteArray();
         }
 
         @Override
         public Event deserialize(byte[] data) {
-            return _genericSerializer.fromByteArray(Event.class, data);
+            if (!TimeSeriesCodec.isEncoded(data)) {
+                return _genericSerializer.fromByteArray(Event.class, data);
+            }
+            try {
+                TimeSeriesCodec.Reader in = new TimeSeriesCodec.Reader(data);
+                Event event = new Event();
+                if (in.has(0)) {
+                    event.setTimeInMillis(in.readLong());
+                }
+                if (in.has(1)) {
+                    event.setTenantId(in.readURI());
+                }
+                if (in.has(2)) {
+                    event.setAlertType(in.readString());
+                }
+                if (in.has(3)) {
+                    event.setVirtualPool(in.readURI());
+                }
+                if (in.has(4)) {
+                    event.setDescription(in.readString());
+                }
+                if (in.has(5)) {
+                    event.setEventId(in.readString());
+                }
+                if (in.has(6)) {
+                    event.setNativeGuid(in.readString());
+                }
+                if (in.has(7)) {
+                    event.setEventType(in.readString());
+                }
+                if (in.has(8)) {
+                    event.setExtensions(in.readString());
+                }
+                if (in.has(9)) {
+                    event.setProjectId(in.readURI());
+                }
+                if (in.has(10)) {
+                    event.setResourceId(in.readURI());
+                }
+                if (in.has(11)) {
+                    event.setService(in.readString());
+                }
+                if (in.has(12)) {
+                    event.setSeverity(in.readString());
+                }
+                if (in.has(13)) {
+                    event.setUserId(in.readURI());
+                }
+                if (in.has(14)) {
+                    event.setRecordType(in.readString());
+                }
+                if (in.has(15)) {
+                    event.setOperationalStatusCodes(in.readString());
+                }
+                if (in.has(16)) {
+                    event.setOperationalStatusDescriptions(in.readString());
+                }
+                if (in.has(17)) {
+                    event.setEventSource(in.readString());
+                }
+                return event;
+            } catch (IllegalArgumentException e) {
+                throw DatabaseException.fatals.deserializationFailed(Event.class, e);
+            }
         }
     }
 }
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.db.client.model;
+
+import java.net.URI;
+
+/**
+ * Compact performance metrics of a StoragePort or StorageHADomain: the state of the last
+ * sample, the busy averages and their rollups, encoded in a single column so that
+ * ingesting a sample does not rewrite and reindex the port or adapter itself.
+ * The row is deactivated with its element when the element is purged, and then
+ * removed by the garbage collector.
+ */
+@Cf("PortMetricsData")
+public class PortMetricsData extends DataObject {
+    /** The StoragePort or StorageHADomain these metrics are for. */
+    private URI element;
+    /** Encoded metrics. */
+    private byte[] data;
+
+    @RelationIndex(cf = "RelationIndex", type = DataObject.class, types = { StoragePort.class, StorageHADomain.class })
+    @Name("element")
+    public URI getElement() {
+        return element;
+    }
+
+    public void setElement(URI element) {
+        this.element = element;
+        setChanged("element");
+    }
+
+    @Name("data")
+    public byte[] getData() {
+        return data;
+    }
+
+    public void setData(byte[] data) {
+        this.data = data;
+        setChanged("data");
+    }
+}
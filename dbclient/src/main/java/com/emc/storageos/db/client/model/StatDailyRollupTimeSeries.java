@@ -0,0 +1,25 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.db.client.model;
+
+import com.emc.storageos.db.client.TimeSeriesMetadata;
+
+/**
+ * CF definition for the daily rollups of the stats. Rollups are written with
+ * DbClient#insertTimeSeries(Class, DateTime, String, DataPoint), at the start of their day.
+ */
+@Cf("StatDailyRollups")
+@CompactionOptimized
+@Shards(10)
+@BucketGranularity(TimeSeriesMetadata.TimeBucket.MONTH)
+@Ttl(60 * 60 * 24 * 731 /* 2 years */)
+public class StatDailyRollupTimeSeries implements TimeSeries<StatRollup> {
+    private StatRollupSerializer _serializer = new StatRollupSerializer();
+
+    @Override
+    public StatRollupSerializer getSerializer() {
+        return _serializer;
+    }
+}
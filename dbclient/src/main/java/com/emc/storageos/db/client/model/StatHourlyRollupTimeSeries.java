@@ -0,0 +1,25 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.db.client.model;
+
+import com.emc.storageos.db.client.TimeSeriesMetadata;
+
+/**
+ * CF definition for the hourly rollups of the stats. Rollups are written with
+ * DbClient#insertTimeSeries(Class, DateTime, String, DataPoint), at the start of their hour.
+ */
+@Cf("StatHourlyRollups")
+@CompactionOptimized
+@Shards(10)
+@BucketGranularity(TimeSeriesMetadata.TimeBucket.DAY)
+@Ttl(60 * 60 * 24 * 90 /* 90 days */)
+public class StatHourlyRollupTimeSeries implements TimeSeries<StatRollup> {
+    private StatRollupSerializer _serializer = new StatRollupSerializer();
+
+    @Override
+    public StatRollupSerializer getSerializer() {
+        return _serializer;
+    }
+}
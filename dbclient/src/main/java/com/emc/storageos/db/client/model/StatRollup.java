@@ -0,0 +1,322 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.db.client.model;
+
+import java.io.Serializable;
+import java.net.URI;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.codehaus.jackson.annotate.JsonProperty;
+
+/**
+ * Summary of the stats of a resource, or of all the resources of a project or tenant, over
+ * an hour or a day.
+ *
+ * Capacities are the sums of the last values reported by each resource in the period.
+ * IO and bandwidth counters are the sums of the increases of the counters of each resource
+ * in the period, a counter going back counting from zero.
+ */
+@XmlAccessorType(XmlAccessType.PUBLIC_MEMBER)
+@XmlRootElement(name = "stat_rollup")
+public class StatRollup extends TimeSeriesSerializer.DataPoint implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * What the stats are summed over
+     */
+    public static enum Scope {
+        resource, project, tenant
+    }
+
+    private String _granularity;
+    private String _scope;
+    private URI _scopeId;
+    private String _serviceType;
+    private URI _project;
+    private URI _tenant;
+    private long _resourceCount;
+    private long _sampleCount;
+    private long _provisionedCapacity;
+    private long _allocatedCapacity;
+    private long _snapshotCapacity;
+    private long _snapshotCount;
+    private long _objCount;
+    private long _userSize;
+    private long _totalIOs;
+    private long _readIOs;
+    private long _writeIOs;
+    private long _readHitIOs;
+    private long _writeHitIOs;
+    private long _kbytesTransferred;
+    private long _bandwidthIn;
+    private long _bandwidthOut;
+
+    /**
+     * Returns the key identifying a rollup among the rollups of the same period
+     */
+    public static String key(String scope, URI scopeId, String serviceType) {
+        return String.format("%s:%s:%s", scope, scopeId, serviceType);
+    }
+
+    /**
+     * Returns the start of the period
+     */
+    @Override
+    @XmlElement(name = "time_bucket")
+    @JsonProperty("time_bucket")
+    public long getTimeInMillis() {
+        return super.getTimeInMillis();
+    }
+
+    @Override
+    public void setTimeInMillis(long timeInMillis) {
+        super.setTimeInMillis(timeInMillis);
+    }
+
+    /**
+     * Returns the length of the period, HOUR or DAY
+     */
+    @XmlElement(name = "granularity")
+    @JsonProperty("granularity")
+    public String getGranularity() {
+        return _granularity;
+    }
+
+    public void setGranularity(String granularity) {
+        _granularity = granularity;
+    }
+
+    /**
+     * Returns the scope, one of the {@link Scope} names
+     */
+    @XmlElement(name = "scope")
+    @JsonProperty("scope")
+    public String getScope() {
+        return _scope;
+    }
+
+    public void setScope(String scope) {
+        _scope = scope;
+    }
+
+    /**
+     * Returns the URN of the resource, project or tenant
+     */
+    @XmlElement(name = "scope_id")
+    @JsonProperty("scope_id")
+    public URI getScopeId() {
+        return _scopeId;
+    }
+
+    public void setScopeId(URI scopeId) {
+        _scopeId = scopeId;
+    }
+
+    @XmlElement(name = "service_type")
+    @JsonProperty("service_type")
+    public String getServiceType() {
+        return _serviceType;
+    }
+
+    public void setServiceType(String serviceType) {
+        _serviceType = serviceType;
+    }
+
+    /**
+     * Returns the project of the resource, null for the other scopes
+     */
+    @XmlElement(name = "project")
+    @JsonProperty("project")
+    public URI getProject() {
+        return _project;
+    }
+
+    public void setProject(URI project) {
+        _project = project;
+    }
+
+    /**
+     * Returns the tenant of the resource or project, null for the tenant scope
+     */
+    @XmlElement(name = "tenant")
+    @JsonProperty("tenant")
+    public URI getTenant() {
+        return _tenant;
+    }
+
+    public void setTenant(URI tenant) {
+        _tenant = tenant;
+    }
+
+    /**
+     * Returns the number of resources which reported stats in the period
+     */
+    @XmlElement(name = "resource_count")
+    @JsonProperty("resource_count")
+    public long getResourceCount() {
+        return _resourceCount;
+    }
+
+    public void setResourceCount(long resourceCount) {
+        _resourceCount = resourceCount;
+    }
+
+    /**
+     * Returns the number of stats summarized
+     */
+    @XmlElement(name = "sample_count")
+    @JsonProperty("sample_count")
+    public long getSampleCount() {
+        return _sampleCount;
+    }
+
+    public void setSampleCount(long sampleCount) {
+        _sampleCount = sampleCount;
+    }
+
+    @XmlElement(name = "provisioned_capacity")
+    @JsonProperty("provisioned_capacity")
+    public long getProvisionedCapacity() {
+        return _provisionedCapacity;
+    }
+
+    public void setProvisionedCapacity(long provisionedCapacity) {
+        _provisionedCapacity = provisionedCapacity;
+    }
+
+    @XmlElement(name = "allocated_capacity")
+    @JsonProperty("allocated_capacity")
+    public long getAllocatedCapacity() {
+        return _allocatedCapacity;
+    }
+
+    public void setAllocatedCapacity(long allocatedCapacity) {
+        _allocatedCapacity = allocatedCapacity;
+    }
+
+    @XmlElement(name = "snapshot_capacity")
+    @JsonProperty("snapshot_capacity")
+    public long getSnapshotCapacity() {
+        return _snapshotCapacity;
+    }
+
+    public void setSnapshotCapacity(long snapshotCapacity) {
+        _snapshotCapacity = snapshotCapacity;
+    }
+
+    @XmlElement(name = "snapshot_count")
+    @JsonProperty("snapshot_count")
+    public long getSnapshotCount() {
+        return _snapshotCount;
+    }
+
+    public void setSnapshotCount(long snapshotCount) {
+        _snapshotCount = snapshotCount;
+    }
+
+    @XmlElement(name = "obj_count")
+    @JsonProperty("obj_count")
+    public long getObjCount() {
+        return _objCount;
+    }
+
+    public void setObjCount(long objCount) {
+        _objCount = objCount;
+    }
+
+    @XmlElement(name = "user_size")
+    @JsonProperty("user_size")
+    public long getUserSize() {
+        return _userSize;
+    }
+
+    public void setUserSize(long userSize) {
+        _userSize = userSize;
+    }
+
+    @XmlElement(name = "total_ios")
+    @JsonProperty("total_ios")
+    public long getTotalIOs() {
+        return _totalIOs;
+    }
+
+    public void setTotalIOs(long totalIOs) {
+        _totalIOs = totalIOs;
+    }
+
+    @XmlElement(name = "read_ios")
+    @JsonProperty("read_ios")
+    public long getReadIOs() {
+        return _readIOs;
+    }
+
+    public void setReadIOs(long readIOs) {
+        _readIOs = readIOs;
+    }
+
+    @XmlElement(name = "write_ios")
+    @JsonProperty("write_ios")
+    public long getWriteIOs() {
+        return _writeIOs;
+    }
+
+    public void setWriteIOs(long writeIOs) {
+        _writeIOs = writeIOs;
+    }
+
+    @XmlElement(name = "read_hit_ios")
+    @JsonProperty("read_hit_ios")
+    public long getReadHitIOs() {
+        return _readHitIOs;
+    }
+
+    public void setReadHitIOs(long readHitIOs) {
+        _readHitIOs = readHitIOs;
+    }
+
+    @XmlElement(name = "write_hit_ios")
+    @JsonProperty("write_hit_ios")
+    public long getWriteHitIOs() {
+        return _writeHitIOs;
+    }
+
+    public void setWriteHitIOs(long writeHitIOs) {
+        _writeHitIOs = writeHitIOs;
+    }
+
+    @XmlElement(name = "kbytes_transferred")
+    @JsonProperty("kbytes_transferred")
+    public long getKbytesTransferred() {
+        return _kbytesTransferred;
+    }
+
+    public void setKbytesTransferred(long kbytesTransferred) {
+        _kbytesTransferred = kbytesTransferred;
+    }
+
+    @XmlElement(name = "bandwidth_in")
+    @JsonProperty("bandwidth_in")
+    public long getBandwidthIn() {
+        return _bandwidthIn;
+    }
+
+    public void setBandwidthIn(long bandwidthIn) {
+        _bandwidthIn = bandwidthIn;
+    }
+
+    @XmlElement(name = "bandwidth_out")
+    @JsonProperty("bandwidth_out")
+    public long getBandwidthOut() {
+        return _bandwidthOut;
+    }
+
+    public void setBandwidthOut(long bandwidthOut) {
+        _bandwidthOut = bandwidthOut;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.db.client.model;
+
+import com.emc.storageos.db.exceptions.DatabaseException;
+
+/**
+ * Stat rollup serializer, shared by the hourly and daily rollup time series.
+ * Rollups are always written with the compact TimeSeriesCodec, whatever the compact encoding
+ * of stats: no release before it reads rollups.
+ */
+public class StatRollupSerializer implements TimeSeriesSerializer<StatRollup> {
+    @Override
+    public byte[] serialize(StatRollup data) {
+        TimeSeriesCodec.Writer out = TimeSeriesCodec.getWriter();
+        out.writeLong(0, data.getTimeInMillis());
+        out.writeString(1, data.getGranularity());
+        out.writeString(2, data.getScope());
+        out.writeURI(3, data.getScopeId());
+        out.writeString(4, data.getServiceType());
+        out.writeURI(5, data.getProject());
+        out.writeURI(6, data.getTenant());
+        out.writeLong(7, data.getResourceCount());
+        out.writeLong(8, data.getSampleCount());
+        out.writeLong(9, data.getProvisionedCapacity());
+        out.writeLong(10, data.getAllocatedCapacity());
+        out.writeLong(11, data.getSnapshotCapacity());
+        out.writeLong(12, data.getSnapshotCount());
+        out.writeLong(13, data.getObjCount());
+        out.writeLong(14, data.getUserSize());
+        out.writeLong(15, data.getTotalIOs());
+        out.writeLong(16, data.getReadIOs());
+        out.writeLong(17, data.getWriteIOs());
+        out.writeLong(18, data.getReadHitIOs());
+        out.writeLong(19, data.getWriteHitIOs());
+        out.writeLong(20, data.getKbytesTransferred());
+        out.writeLong(21, data.getBandwidthIn());
+        out.writeLong(22, data.getBandwidthOut());
+        return out.toByteArray();
+    }
+
+    @Override
+    public StatRollup deserialize(byte[] data) {
+        try {
+            TimeSeriesCodec.Reader in = new TimeSeriesCodec.Reader(data);
+            StatRollup rollup = new StatRollup();
+            if (in.has(0)) {
+                rollup.setTimeInMillis(in.readLong());
+            }
+            if (in.has(1)) {
+                rollup.setGranularity(in.readString());
+            }
+            if (in.has(2)) {
+                rollup.setScope(in.readString());
+            }
+            if (in.has(3)) {
+                rollup.setScopeId(in.readURI());
+            }
+            if (in.has(4)) {
+                rollup.setServiceType(in.readString());
+            }
+            if (in.has(5)) {
+                rollup.setProject(in.readURI());
+            }
+            if (in.has(6)) {
+                rollup.setTenant(in.readURI());
+            }
+            if (in.has(7)) {
+                rollup.setResourceCount(in.readLong());
+            }
+            if (in.has(8)) {
+                rollup.setSampleCount(in.readLong());
+            }
+            if (in.has(9)) {
+                rollup.setProvisionedCapacity(in.readLong());
+            }
+            if (in.has(10)) {
+                rollup.setAllocatedCapacity(in.readLong());
+            }
+            if (in.has(11)) {
+                rollup.setSnapshotCapacity(in.readLong());
+            }
+            if (in.has(12)) {
+                rollup.setSnapshotCount(in.readLong());
+            }
+            if (in.has(13)) {
+                rollup.setObjCount(in.readLong());
+            }
+            if (in.has(14)) {
+                rollup.setUserSize(in.readLong());
+            }
+            if (in.has(15)) {
+                rollup.setTotalIOs(in.readLong());
+            }
+            if (in.has(16)) {
+                rollup.setReadIOs(in.readLong());
+            }
+            if (in.has(17)) {
+                rollup.setWriteIOs(in.readLong());
+            }
+            if (in.has(18)) {
+                rollup.setReadHitIOs(in.readLong());
+            }
+            if (in.has(19)) {
+                rollup.setWriteHitIOs(in.readLong());
+            }
+            if (in.has(20)) {
+                rollup.setKbytesTransferred(in.readLong());
+            }
+            if (in.has(21)) {
+                rollup.setBandwidthIn(in.readLong());
+            }
+            if (in.has(22)) {
+                rollup.setBandwidthOut(in.readLong());
+            }
+            return rollup;
+        } catch (IllegalArgumentException e) {
+            throw DatabaseException.fatals.deserializationFailed(StatRollup.class, e);
+        }
+    }
+}
@@ -35,36 +35,162 @@ public class StatTimeSeries implements TimeSeries<Stat> {
     }
 
     /**
-     * Stat serializer implementation ;Default Serialization is not efficient (version problems),
-     * but till we finalize Serializer Implementation, this code remains.
-     * For demo purpose, will use Default Serialization
-     * To-Do: use Protocol Buffers
+     * Stat serializer implementation. Stats are written with the compact TimeSeriesCodec once
+     * compact encoding is turned on, with Java serialization until then; both are read.
      */
     public static class StatSerializer implements TimeSeriesSerializer<Stat> {
         @Override
         public byte[] serialize(Stat data) {
-            byte[] Objbytes = null;
-            ByteArrayOutputStream bos = new ByteArrayOutputStream();
-            ObjectOutput out = null;
+            if (!TimeSeriesCodec.isCompactEncoding()) {
+                return serializeLegacy(data);
+            }
             try {
-                out = new ObjectOutputStream(bos);
-                out.writeObject(data);
-                Objbytes = bos.toByteArray();
+                TimeSeriesCodec.Writer out = TimeSeriesCodec.getWriter();
+                out.writeLong(0, data.getTimeInMillis());
+                // usually the same as or close to the measured time
+                out.writeLong(1, data.getTimeCollected() - data.getTimeInMillis());
+                out.writeURI(2, data.getResourceId());
+                out.writeString(3, data.getNativeGuid());
+                out.writeString(4, data.getServiceType());
+                out.writeURI(5, data.getVirtualPool());
+                out.writeURI(6, data.getProject());
+                out.writeURI(7, data.getTenant());
+                out.writeURI(8, data.getUser());
+                out.writeLong(9, data.getProvisionedCapacity());
+                out.writeLong(10, data.getAllocatedCapacity());
+                out.writeLong(11, data.getSnapshotCapacity());
+                if (data.getSnapshotCount() != null) {
+                    out.writeLong(12, data.getSnapshotCount());
+                }
+                out.writeLong(13, data.getBandwidthIn());
+                out.writeLong(14, data.getBandwidthOut());
+                out.writeLong(15, data.getTotalIOs());
+                out.writeLong(16, data.getReadIOs());
+                out.writeLong(17, data.getWriteIOs());
+                out.writeLong(18, data.getKbytesTransferred());
+                out.writeLong(19, data.getIdleTimeCounter());
+                out.writeLong(20, data.getIoTimeCounter());
+                out.writeLong(21, data.getQueueLength());
+                out.writeLong(22, data.getReadHitIOs());
+                out.writeLong(23, data.getWriteHitIOs());
+                out.writeLong(24, data.getObjCount());
+                out.writeLong(25, data.getUserSize());
+                out.writeLong(26, data.getRealSize());
+                out.writeLong(27, data.getUmdSize());
+                out.writeLong(28, data.getSmdSize());
+                return out.toByteArray();
             } catch (Exception e) {
                 _logger.error("Serializing Object to byte Array Exception  :" + e);
-            } finally {
-                try {
-                    out.close();
-                    bos.close();
-                } catch (IOException e) {
-                    _logger.error("Error while closing Streams " + e);
-                }
+                return null;
             }
-            return Objbytes;
         }
 
         @Override
         public Stat deserialize(byte[] data) {
+            if (!TimeSeriesCodec.isEncoded(data)) {
+                return deserializeLegacy(data);
+            }
+            try {
+                TimeSeriesCodec.Reader in = new TimeSeriesCodec.Reader(data);
+                Stat stat = new Stat();
+                if (in.has(0)) {
+                    stat.setTimeInMillis(in.readLong());
+                }
+                if (in.has(1)) {
+                    stat.setTimeCollected(stat.getTimeInMillis() + in.readLong());
+                }
+                if (in.has(2)) {
+                    stat.setResourceId(in.readURI());
+                }
+                if (in.has(3)) {
+                    stat.setNativeGuid(in.readString());
+                }
+                if (in.has(4)) {
+                    stat.setServiceType(in.readString());
+                }
+                if (in.has(5)) {
+                    stat.setVirtualPool(in.readURI());
+                }
+                if (in.has(6)) {
+                    stat.setProject(in.readURI());
+                }
+                if (in.has(7)) {
+                    stat.setTenant(in.readURI());
+                }
+                if (in.has(8)) {
+                    stat.setUser(in.readURI());
+                }
+                if (in.has(9)) {
+                    stat.setProvisionedCapacity(in.readLong());
+                }
+                if (in.has(10)) {
+                    stat.setAllocatedCapacity(in.readLong());
+                }
+                if (in.has(11)) {
+                    stat.setSnapshotCapacity(in.readLong());
+                }
+                if (in.has(12)) {
+                    stat.setSnapshotCount((int) in.readLong());
+                }
+                if (in.has(13)) {
+                    stat.setBandwidthIn(in.readLong());
+                }
+                if (in.has(14)) {
+                    stat.setBandwidthOut(in.readLong());
+                }
+                if (in.has(15)) {
+                    stat.setTotalIOs(in.readLong());
+                }
+                if (in.has(16)) {
+                    stat.setReadIOs(in.readLong());
+                }
+                if (in.has(17)) {
+                    stat.setWriteIOs(in.readLong());
+                }
+                if (in.has(18)) {
+                    stat.setKbytesTransferred(in.readLong());
+                }
+                if (in.has(19)) {
+                    stat.setIdleTimeCounter(in.readLong());
+                }
+                if (in.has(20)) {
+                    stat.setIoTimeCounter(in.readLong());
+                }
+                if (in.has(21)) {
+                    stat.setQueueLength(in.readLong());
+                }
+                if (in.has(22)) {
+                    stat.setReadHitIOs(in.readLong());
+                }
+                if (in.has(23)) {
+                    stat.setWriteHitIOs(in.readLong());
+                }
+                if (in.has(24)) {
+                    stat.setObjCount(in.readLong());
+                }
+                if (in.has(25)) {
+                    stat.setUserSize(in.readLong());
+                }
+                if (in.has(26)) {
+                    stat.setRealSize(in.readLong());
+                }
+                if (in.has(27)) {
+                    stat.setUmdSize(in.readLong());
+                }
+                if (in.has(28)) {
+                    stat.setSmdSize(in.readLong());
+                }
+                return stat;
+            } catch (Exception e) {
+                _logger.error("DeSerializing Object to byte Array Exception  :" + e);
+                return null;
+            }
+        }
+
+        /**
+         * Reads a stat written with Java serialization
+         */
+        Stat deserializeLegacy(byte[] data) {
             Object statsObj = null;
             ByteArrayInputStream bis = null;
             ObjectInput in = null;
@@ -76,7 +202,9 @@ public class StatTimeSeries implements TimeSeries<Stat> {
                 _logger.error("DeSerializing Object to byte Array Exception  :" + e1);
             } finally {
                 try {
-                    in.close();
+                    if (in != null) {
+                        in.close();
+                    }
                     bis.close();
                 } catch (IOException e1) {
                     _logger.error("Error while closing Streams " + e1);
@@ -84,5 +212,31 @@ public class StatTimeSeries implements TimeSeries<Stat> {
             }
             return (Stat) statsObj;
         }
+
+        /**
+         * Writes a stat with Java serialization, readable by the releases before the compact encoding
+         */
+        byte[] serializeLegacy(Stat data) {
+            byte[] Objbytes = null;
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            ObjectOutput out = null;
+            try {
+                out = new ObjectOutputStream(bos);
+                out.writeObject(data);
+                Objbytes = bos.toByteArray();
+            } catch (Exception e) {
+                _logger.error("Serializing Object to byte Array Exception  :" + e);
+            } finally {
+                try {
+                    if (out != null) {
+                        out.close();
+                    }
+                    bos.close();
+                } catch (IOException e) {
+                    _logger.error("Error while closing Streams " + e);
+                }
+            }
+            return Objbytes;
+        }
     }
 }
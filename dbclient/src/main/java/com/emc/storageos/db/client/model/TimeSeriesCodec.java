@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.db.client.model;
+
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Compact binary encoding of time series data points.
+ *
+ * Layout: a magic byte (distinct from the 0xAC first byte of Java serialization and from
+ * the field indices written first by GenericSerializer), a format version byte, a 4 byte
+ * bitmap of the fields present, then the value of each present field in field order:
+ * <ul>
+ * <li>longs as zigzag variable length integers</li>
+ * <li>strings as their UTF-8 length followed by the bytes</li>
+ * <li>URIs as strings, with the common "urn:storageos:" prefix left out</li>
+ * </ul>
+ * Fields are only ever added after the existing ones, so a reader skips the fields it does
+ * not know. The format version changes only when existing fields change.
+ *
+ * Writers are reused by the thread which gets them, so that encoding a data point allocates
+ * only the resulting array.
+ */
+public class TimeSeriesCodec {
+    static final byte MAGIC = (byte) 0xD5;
+    static final byte FORMAT_VERSION = 1;
+    public static final int MAX_FIELDS = 32;
+
+    private static final int HEADER_SIZE = 6;
+    private static final int INITIAL_BUFFER_SIZE = 512;
+    private static final String URN_PREFIX = "urn:storageos:";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static volatile boolean _compactEncoding = false;
+
+    private static final ThreadLocal<Writer> _writers = new ThreadLocal<Writer>() {
+        @Override
+        protected Writer initialValue() {
+            return new Writer();
+        }
+    };
+
+    private TimeSeriesCodec() {
+    }
+
+    /**
+     * @param compactEncoding if true, stats, events and audit logs are written with this codec
+     */
+    public static void setCompactEncoding(boolean compactEncoding) {
+        _compactEncoding = compactEncoding;
+    }
+
+    public static boolean isCompactEncoding() {
+        return _compactEncoding;
+    }
+
+    /**
+     * Returns true if the data was written by this codec, false if it is a legacy row
+     */
+    public static boolean isEncoded(byte[] data) {
+        return data != null && data.length >= HEADER_SIZE && data[0] == MAGIC;
+    }
+
+    /**
+     * Returns the writer of this thread, ready to write a new data point
+     */
+    public static Writer getWriter() {
+        Writer writer = _writers.get();
+        writer.reset();
+        return writer;
+    }
+
+    /**
+     * Writes the fields of a data point. The fields must be written in increasing field order,
+     * absent fields are skipped.
+     */
+    public static class Writer {
+        private byte[] _buffer = new byte[INITIAL_BUFFER_SIZE];
+        private int _position;
+        private int _fields;
+        private int _lastField = -1;
+
+        private void reset() {
+            _buffer[0] = MAGIC;
+            _buffer[1] = FORMAT_VERSION;
+            _position = HEADER_SIZE;
+            _fields = 0;
+            _lastField = -1;
+        }
+
+        public void writeLong(int field, long value) {
+            setField(field);
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        public void writeLong(int field, Long value) {
+            if (value != null) {
+                writeLong(field, value.longValue());
+            }
+        }
+
+        public void writeString(int field, String value) {
+            if (value != null) {
+                setField(field);
+                writeChars(value, -1);
+            }
+        }
+
+        public void writeURI(int field, URI value) {
+            if (value != null) {
+                setField(field);
+                String uri = value.toString();
+                // the lowest bit of the length tells whether the prefix was left out
+                if (uri.startsWith(URN_PREFIX)) {
+                    writeChars(uri, URN_PREFIX.length());
+                } else {
+                    writeChars(uri, -1);
+                }
+            }
+        }
+
+        /**
+         * Returns the encoded data point
+         */
+        public byte[] toByteArray() {
+            _buffer[2] = (byte) (_fields >>> 24);
+            _buffer[3] = (byte) (_fields >>> 16);
+            _buffer[4] = (byte) (_fields >>> 8);
+            _buffer[5] = (byte) _fields;
+            return Arrays.copyOf(_buffer, _position);
+        }
+
+        private void setField(int field) {
+            if (field <= _lastField || field >= MAX_FIELDS) {
+                throw new IllegalArgumentException("Field " + field + " out of order or range, after field " + _lastField);
+            }
+            _lastField = field;
+            _fields |= 1 << field;
+        }
+
+        /**
+         * Writes the characters of the string from the offset, ASCII strings without
+         * encoding them first. A negative offset writes the whole string, without prefix.
+         */
+        private void writeChars(String value, int offset) {
+            int start = Math.max(offset, 0);
+            int length = value.length() - start;
+            int prefixFlag = offset < 0 ? 0 : 1;
+            boolean ascii = true;
+            for (int i = start; i < value.length() && ascii; i++) {
+                ascii = value.charAt(i) < 0x80;
+            }
+            if (ascii) {
+                writeVarLong(((long) length << 1) | prefixFlag);
+                ensureCapacity(length);
+                for (int i = start; i < value.length(); i++) {
+                    _buffer[_position++] = (byte) value.charAt(i);
+                }
+            } else {
+                byte[] bytes = value.substring(start).getBytes(UTF_8);
+                writeVarLong(((long) bytes.length << 1) | prefixFlag);
+                ensureCapacity(bytes.length);
+                System.arraycopy(bytes, 0, _buffer, _position, bytes.length);
+                _position += bytes.length;
+            }
+        }
+
+        private void writeVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                _buffer[_position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            _buffer[_position++] = (byte) value;
+        }
+
+        private void ensureCapacity(int length) {
+            if (_position + length > _buffer.length) {
+                _buffer = Arrays.copyOf(_buffer, Math.max(_buffer.length * 2, _position + length));
+            }
+        }
+    }
+
+    /**
+     * Reads the fields of a data point, in the order they were written. Each present field
+     * has to be read before the next one.
+     */
+    public static class Reader {
+        private final byte[] _data;
+        private final int _fields;
+        private int _position = HEADER_SIZE;
+
+        public Reader(byte[] data) {
+            if (!isEncoded(data)) {
+                throw new IllegalArgumentException("Not a time series data point");
+            }
+            if (data[1] > FORMAT_VERSION || data[1] < 1) {
+                throw new IllegalArgumentException("Unsupported time series format version " + data[1]);
+            }
+            _data = data;
+            _fields = (data[2] & 0xFF) << 24 | (data[3] & 0xFF) << 16 | (data[4] & 0xFF) << 8 | (data[5] & 0xFF);
+        }
+
+        public boolean has(int field) {
+            return (_fields & (1 << field)) != 0;
+        }
+
+        public long readLong() {
+            long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        public String readString() {
+            long header = readVarLong();
+            return readChars((int) (header >>> 1), null);
+        }
+
+        public URI readURI() {
+            long header = readVarLong();
+            return URI.create(readChars((int) (header >>> 1), (header & 1) != 0 ? URN_PREFIX : null));
+        }
+
+        private String readChars(int length, String prefix) {
+            if (length < 0 || _position + length > _data.length) {
+                throw new IllegalArgumentException("Truncated time series data point");
+            }
+            String value = new String(_data, _position, length, UTF_8);
+            _position += length;
+            return prefix == null ? value : prefix.concat(value);
+        }
+
+        private long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (_position >= _data.length) {
+                    throw new IllegalArgumentException("Truncated time series data point");
+                }
+                byte b = _data[_position++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed variable length integer");
+        }
+    }
+}
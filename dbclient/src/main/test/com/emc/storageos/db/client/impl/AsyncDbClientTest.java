@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.db.client.impl;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.emc.storageos.db.client.DbClient;
+import com.emc.storageos.db.client.model.Volume;
+import com.emc.storageos.db.exceptions.DatabaseException;
+
+public class AsyncDbClientTest {
+    private static final URI VOLUME = URI.create("urn:storageos:Volume:1:vdc1");
+
+    private AsyncDbClient asyncDbClient;
+
+    @After
+    public void teardown() {
+        if (asyncDbClient != null) {
+            asyncDbClient.shutdown();
+        }
+    }
+
+    @Test
+    public void testResultAndException() throws Exception {
+        Volume volume = new Volume();
+        volume.setId(VOLUME);
+        DatabaseException error = DatabaseException.fatals.queryFailed(new Exception());
+        DbClient dbClient = EasyMock.createMock(DbClient.class);
+        EasyMock.expect(dbClient.queryObject(Volume.class, VOLUME)).andReturn(volume);
+        EasyMock.expect(dbClient.queryByType(Volume.class, true)).andThrow(error);
+        EasyMock.replay(dbClient);
+
+        asyncDbClient = new AsyncDbClient(dbClient, 2, 2);
+        Assert.assertSame(volume, asyncDbClient.queryObject(Volume.class, VOLUME).get());
+        try {
+            asyncDbClient.queryByType(Volume.class, true).get();
+            Assert.fail("the query should have failed");
+        } catch (ExecutionException e) {
+            Assert.assertSame(error, e.getCause());
+        }
+        EasyMock.verify(dbClient);
+    }
+
+    @Test
+    public void testBoundedConcurrencyAndQueue() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        DbClient dbClient = EasyMock.createMock(DbClient.class);
+        EasyMock.expect(dbClient.queryByType(Volume.class, true)).andAnswer(new IAnswer<List<URI>>() {
+            @Override
+            public List<URI> answer() throws Throwable {
+                int count = running.incrementAndGet();
+                synchronized (maxRunning) {
+                    maxRunning.set(Math.max(maxRunning.get(), count));
+                }
+                release.await();
+                running.decrementAndGet();
+                return Collections.singletonList(VOLUME);
+            }
+        }).times(4);
+        EasyMock.replay(dbClient);
+
+        // 2 calls running and 1 queued are accepted without blocking
+        asyncDbClient = new AsyncDbClient(dbClient, 2, 1);
+        final List<CompletableFuture<List<URI>>> futures = new ArrayList<CompletableFuture<List<URI>>>();
+        for (int i = 0; i < 3; i++) {
+            futures.add(asyncDbClient.queryByType(Volume.class, true));
+        }
+
+        // the 4th caller blocks until a call completes
+        final CountDownLatch submitted = new CountDownLatch(1);
+        Thread caller = new Thread() {
+            @Override
+            public void run() {
+                futures.add(asyncDbClient.queryByType(Volume.class, true));
+                submitted.countDown();
+            }
+        };
+        caller.start();
+        Assert.assertFalse(submitted.await(200, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(3, asyncDbClient.getPendingCount());
+
+        release.countDown();
+        Assert.assertTrue(submitted.await(10, TimeUnit.SECONDS));
+        caller.join();
+        for (CompletableFuture<List<URI>> future : futures) {
+            Assert.assertEquals(Collections.singletonList(VOLUME), future.get(10, TimeUnit.SECONDS));
+        }
+        Assert.assertEquals(2, maxRunning.get());
+        EasyMock.verify(dbClient);
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.db.client.impl;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.emc.storageos.db.client.DbBatchSession;
+import com.emc.storageos.db.client.URIUtil;
+import com.emc.storageos.db.client.model.DataObject;
+import com.emc.storageos.db.client.model.StoragePool;
+import com.emc.storageos.db.client.model.Volume;
+import com.emc.storageos.db.exceptions.DatabaseException;
+
+public class DbBatchSessionImplTest {
+    private RecordingDbClient dbClient;
+
+    @Before
+    public void setup() {
+        dbClient = new RecordingDbClient();
+    }
+
+    @Test
+    public void testRepeatedWritesOfInstanceAreMerged() {
+        Volume volume = createVolume();
+        DbBatchSession session = new DbBatchSessionImpl(dbClient, 10, 100);
+        session.createObject(volume);
+        volume.setLabel("renamed");
+        session.updateObject(volume);
+        session.updateObject(volume);
+        Assert.assertEquals(1, session.getPendingCount());
+        session.close();
+
+        Assert.assertEquals(1, dbClient.batches.size());
+        Assert.assertEquals(Arrays.asList(volume), dbClient.batches.get(0));
+        // created and updated: the indexes are cleaned up
+        Assert.assertTrue(dbClient.updateIndex.get(0));
+    }
+
+    @Test
+    public void testInstancesOfSameRowInSeparateBatches() {
+        Volume volume = createVolume();
+        Volume copy = new Volume();
+        copy.setId(volume.getId());
+        DbBatchSession session = new DbBatchSessionImpl(dbClient, 10, 100);
+        session.updateObject(volume);
+        session.updateObject(copy);
+        session.close();
+
+        Assert.assertEquals(2, dbClient.batches.size());
+        Assert.assertSame(volume, dbClient.batches.get(0).get(0));
+        Assert.assertSame(copy, dbClient.batches.get(1).get(0));
+    }
+
+    @Test
+    public void testFirstWriteOrder() {
+        Volume volume1 = createVolume();
+        StoragePool pool = new StoragePool();
+        pool.setId(URIUtil.createId(StoragePool.class));
+        Volume volume2 = createVolume();
+        Volume volume3 = createVolume();
+        DbBatchSession session = new DbBatchSessionImpl(dbClient, 2, 100);
+        session.updateObject(volume1);
+        session.createObject(pool);
+        session.updateObject(volume2);
+        session.updateObject(volume3);
+        session.updateObject(volume1);
+        session.close();
+
+        List<DataObject> written = new ArrayList<DataObject>();
+        for (List<DataObject> batch : dbClient.batches) {
+            written.addAll(batch);
+        }
+        Assert.assertEquals(Arrays.<DataObject> asList(volume1, pool, volume2, volume3), written);
+        Assert.assertEquals(3, dbClient.batches.size());
+        Assert.assertFalse(dbClient.updateIndex.get(1));
+    }
+
+    @Test
+    public void testBatchSizeAndAutomaticFlush() {
+        DbBatchSession session = new DbBatchSessionImpl(dbClient, 2, 5);
+        for (int i = 0; i < 5; i++) {
+            session.updateObject(createVolume());
+        }
+        // the 5th write flushed the session in batches of 2
+        Assert.assertEquals(0, session.getPendingCount());
+        Assert.assertEquals(3, dbClient.batches.size());
+        session.close();
+        Assert.assertEquals(3, dbClient.batches.size());
+    }
+
+    @Test
+    public void testFailedBatchStaysPending() {
+        Volume volume1 = createVolume();
+        Volume volume2 = createVolume();
+        Volume volume3 = createVolume();
+        DbBatchSession session = new DbBatchSessionImpl(dbClient, 1, 100);
+        session.updateObject(volume1);
+        session.updateObject(volume2);
+        session.updateObject(volume3);
+
+        dbClient.failOn = volume2.getId();
+        try {
+            session.flush();
+            Assert.fail("flush should have failed");
+        } catch (DatabaseException e) {
+            // volume1 was written, the others are still pending
+            Assert.assertEquals(2, session.getPendingCount());
+        }
+
+        dbClient.failOn = null;
+        session.close();
+        Assert.assertEquals(0, session.getPendingCount());
+        Assert.assertEquals(Arrays.asList(volume1), dbClient.batches.get(0));
+        Assert.assertEquals(Arrays.asList(volume2), dbClient.batches.get(1));
+        Assert.assertEquals(Arrays.asList(volume3), dbClient.batches.get(2));
+        Assert.assertEquals(3, dbClient.batches.size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testClosedSession() {
+        DbBatchSession session = new DbBatchSessionImpl(dbClient, 10, 100);
+        session.close();
+        session.updateObject(createVolume());
+    }
+
+    private static Volume createVolume() {
+        Volume volume = new Volume();
+        volume.setId(URIUtil.createId(Volume.class));
+        return volume;
+    }
+
+    /**
+     * Records the mutation batches instead of writing them
+     */
+    private static class RecordingDbClient extends DbClientImpl {
+        private final List<List<DataObject>> batches = new ArrayList<List<DataObject>>();
+        private final List<Boolean> updateIndex = new ArrayList<Boolean>();
+        private URI failOn;
+
+        @Override
+        protected <T extends DataObject> void internalPersistObject(Class<? extends T> clazz, Collection<T> dataobjects,
+                boolean updateIndex) {
+            for (T object : dataobjects) {
+                if (object.getId().equals(failOn)) {
+                    throw DatabaseException.retryables.connectionFailed();
+                }
+            }
+            batches.add(new ArrayList<DataObject>(dataobjects));
+            this.updateIndex.add(updateIndex);
+        }
+    }
+}
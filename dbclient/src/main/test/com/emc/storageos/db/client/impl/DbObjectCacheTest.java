@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.db.client.impl;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.emc.storageos.db.client.model.DataObject;
+import com.emc.storageos.db.client.model.StoragePool;
+import com.emc.storageos.db.client.model.StorageSystem;
+import com.emc.storageos.db.client.model.TenantOrg;
+import com.emc.storageos.db.client.model.VirtualPool;
+import com.emc.storageos.db.client.model.Volume;
+import com.netflix.astyanax.model.ColumnList;
+import com.netflix.astyanax.model.Row;
+
+public class DbObjectCacheTest {
+    private DbObjectCache cache;
+
+    @Before
+    public void setup() {
+        Map<String, Integer> ttls = new HashMap<String, Integer>();
+        ttls.put("StorageSystem", 60);
+        ttls.put("StoragePool", 0);
+        ttls.put("VirtualPool", 60);
+        ttls.put("TenantOrg", 60);
+        Map<String, Integer> maxEntries = new HashMap<String, Integer>();
+        maxEntries.put("StorageSystem", 2);
+
+        cache = new DbObjectCache();
+        cache.setEnabled(true);
+        cache.setCachedClasses(ttls);
+        cache.setMaxEntries(maxEntries);
+        cache.start(null);
+    }
+
+    @Test
+    public void testHitAndMiss() {
+        Assert.assertTrue(cache.isCached(StorageSystem.class));
+        Assert.assertFalse(cache.isCached(Volume.class));
+
+        URI id = URI.create("urn:storageos:StorageSystem:1:");
+        Assert.assertNull(cache.get(StorageSystem.class, id));
+        cache.put(StorageSystem.class, new TestRow(id), cache.getGeneration(StorageSystem.class));
+        Assert.assertNotNull(cache.get(StorageSystem.class, id));
+
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testDisabledByDefault() {
+        DbObjectCache defaultCache = new DbObjectCache();
+        defaultCache.setCachedClasses(Collections.singletonMap("StorageSystem", 60));
+        defaultCache.start(null);
+        Assert.assertFalse(defaultCache.isCached(StorageSystem.class));
+    }
+
+    @Test
+    public void testGeoClassesAreNotCached() {
+        // written in other VDCs without any invalidation reaching this one
+        Assert.assertFalse(cache.isCached(VirtualPool.class));
+        Assert.assertFalse(cache.isCached(TenantOrg.class));
+    }
+
+    @Test
+    public void testTrackedClassIsReportedButNotCached() {
+        final List<URI> changed = new ArrayList<URI>();
+        cache.addChangeListener(new DbObjectCache.ChangeListener() {
+            @Override
+            public void objectsChanged(Class<? extends DataObject> clazz, Collection<URI> ids) {
+                if (TenantOrg.class.equals(clazz)) {
+                    changed.addAll(ids);
+                }
+            }
+        });
+        URI id = URI.create("urn:storageos:TenantOrg:1:global");
+        cache.invalidate(TenantOrg.class, Arrays.asList(id));
+        Assert.assertTrue(changed.isEmpty());
+
+        Assert.assertTrue(cache.trackChanges(TenantOrg.class));
+        Assert.assertTrue(cache.isTracked(TenantOrg.class));
+        Assert.assertFalse(cache.isCached(TenantOrg.class));
+        cache.invalidate(TenantOrg.class, Arrays.asList(id));
+        Assert.assertEquals(Arrays.asList(id), changed);
+    }
+
+    @Test
+    public void testLruEviction() {
+        long generation = cache.getGeneration(StorageSystem.class);
+        URI id1 = URI.create("urn:storageos:StorageSystem:1:");
+        URI id2 = URI.create("urn:storageos:StorageSystem:2:");
+        URI id3 = URI.create("urn:storageos:StorageSystem:3:");
+        cache.put(StorageSystem.class, new TestRow(id1), generation);
+        cache.put(StorageSystem.class, new TestRow(id2), generation);
+        // touch id1 so id2 becomes the eldest
+        cache.get(StorageSystem.class, id1);
+        cache.put(StorageSystem.class, new TestRow(id3), generation);
+
+        Assert.assertEquals(1, cache.getEvictionCount());
+        Assert.assertNotNull(cache.get(StorageSystem.class, id1));
+        Assert.assertNull(cache.get(StorageSystem.class, id2));
+        Assert.assertNotNull(cache.get(StorageSystem.class, id3));
+    }
+
+    @Test
+    public void testExpiration() throws Exception {
+        URI id = URI.create("urn:storageos:StoragePool:1:");
+        cache.put(StoragePool.class, new TestRow(id), cache.getGeneration(StoragePool.class));
+        Thread.sleep(5);
+        Assert.assertNull(cache.get(StoragePool.class, id));
+        Assert.assertEquals(1, cache.getExpirationCount());
+    }
+
+    @Test
+    public void testInvalidation() {
+        URI id = URI.create("urn:storageos:StorageSystem:1:");
+        cache.put(StorageSystem.class, new TestRow(id), cache.getGeneration(StorageSystem.class));
+        cache.invalidate(StorageSystem.class, Arrays.asList(id));
+        Assert.assertNull(cache.get(StorageSystem.class, id));
+        Assert.assertEquals(1, cache.getInvalidationCount());
+    }
+
+    @Test
+    public void testStaleReadIsNotCached() {
+        URI id = URI.create("urn:storageos:StorageSystem:1:");
+        long generation = cache.getGeneration(StorageSystem.class);
+        // a write lands while the row is being read from the db
+        cache.invalidate(StorageSystem.class, Arrays.asList(id));
+        cache.put(StorageSystem.class, new TestRow(id), generation);
+        Assert.assertNull(cache.get(StorageSystem.class, id));
+    }
+
+    private static class TestRow implements Row<String, CompositeColumnName> {
+        private final String key;
+
+        TestRow(URI id) {
+            key = id.toString();
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public ByteBuffer getRawKey() {
+            return null;
+        }
+
+        @Override
+        public ColumnList<CompositeColumnName> getColumns() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.db.client.impl;
+
+import java.lang.ref.WeakReference;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PrefetchingDataObjIteratorTest {
+    private ExecutorService executor;
+
+    @Before
+    public void setup() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void teardown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testOrderAndBatching() {
+        List<URI> ids = new ArrayList<URI>();
+        for (int i = 0; i < 1050; i++) {
+            ids.add(URI.create("urn:storageos:Volume:" + i + ":"));
+        }
+
+        final AtomicInteger batches = new AtomicInteger();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        PrefetchingDataObjIterator<String> it = new PrefetchingDataObjIterator<String>(ids.iterator(), 100, 3, executor) {
+            @Override
+            protected List<String> fetch(List<URI> batch) {
+                int current = inFlight.incrementAndGet();
+                synchronized (maxInFlight) {
+                    maxInFlight.set(Math.max(maxInFlight.get(), current));
+                }
+                batches.incrementAndGet();
+                Assert.assertTrue(batch.size() <= 100);
+                List<String> result = new ArrayList<String>();
+                for (URI id : batch) {
+                    result.add(id.toString());
+                }
+                inFlight.decrementAndGet();
+                return result;
+            }
+        };
+
+        int count = 0;
+        while (it.hasNext()) {
+            Assert.assertEquals(ids.get(count).toString(), it.next());
+            count++;
+        }
+        Assert.assertEquals(ids.size(), count);
+        Assert.assertEquals(11, batches.get());
+        Assert.assertTrue(maxInFlight.get() <= 3);
+    }
+
+    @Test
+    public void testEmptyBatchesAreSkipped() {
+        List<URI> ids = new ArrayList<URI>();
+        for (int i = 0; i < 30; i++) {
+            ids.add(URI.create("urn:storageos:Volume:" + i + ":"));
+        }
+        PrefetchingDataObjIterator<String> it = new PrefetchingDataObjIterator<String>(ids.iterator(), 10, 2, executor) {
+            @Override
+            protected List<String> fetch(List<URI> batch) {
+                List<String> result = new ArrayList<String>();
+                // only the last batch has live objects
+                if (batch.get(0).toString().contains(":20:")) {
+                    result.add(batch.get(0).toString());
+                }
+                return result;
+            }
+        };
+        Assert.assertTrue(it.hasNext());
+        Assert.assertEquals("urn:storageos:Volume:20:", it.next());
+        Assert.assertFalse(it.hasNext());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFetchFailureIsRethrown() {
+        List<URI> ids = new ArrayList<URI>();
+        ids.add(URI.create("urn:storageos:Volume:1:"));
+        PrefetchingDataObjIterator<String> it = new PrefetchingDataObjIterator<String>(ids.iterator(), 10, 2, executor) {
+            @Override
+            protected List<String> fetch(List<URI> batch) {
+                throw new IllegalStateException();
+            }
+        };
+        it.hasNext();
+    }
+
+    @Test
+    public void testCloseCancelsQueuedBatches() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger fetched = new AtomicInteger();
+        ExecutorService single = Executors.newSingleThreadExecutor();
+        try {
+            PrefetchingDataObjIterator<String> it = new PrefetchingDataObjIterator<String>(
+                    createIds(30).iterator(), 10, 3, single) {
+                @Override
+                protected List<String> fetch(List<URI> batch) {
+                    fetched.incrementAndGet();
+                    started.countDown();
+                    await(release);
+                    return new ArrayList<String>();
+                }
+            };
+            Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+            it.close();
+            release.countDown();
+            Assert.assertFalse(it.hasNext());
+            drain(single);
+            // the first batch was running, the other two never start
+            Assert.assertEquals(1, fetched.get());
+        } finally {
+            single.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testAbandonedIteratorBatchesAreSkipped() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger fetched = new AtomicInteger();
+        ExecutorService single = Executors.newSingleThreadExecutor();
+        try {
+            // keep the executor busy so that the batches stay queued
+            single.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    await(release);
+                    return null;
+                }
+            });
+            WeakReference<PrefetchingDataObjIterator<String>> it = abandon(single, fetched);
+            for (int i = 0; i < 50 && it.get() != null; i++) {
+                System.gc();
+                Thread.sleep(10);
+            }
+            Assert.assertNull(it.get());
+            release.countDown();
+            drain(single);
+            Assert.assertEquals(0, fetched.get());
+        } finally {
+            single.shutdownNow();
+        }
+    }
+
+    private static WeakReference<PrefetchingDataObjIterator<String>> abandon(ExecutorService executor,
+            final AtomicInteger fetched) {
+        PrefetchingDataObjIterator<String> it = new PrefetchingDataObjIterator<String>(createIds(30).iterator(), 10, 3, executor) {
+            @Override
+            protected List<String> fetch(List<URI> batch) {
+                fetched.incrementAndGet();
+                return new ArrayList<String>();
+            }
+        };
+        return new WeakReference<PrefetchingDataObjIterator<String>>(it);
+    }
+
+    private static List<URI> createIds(int count) {
+        List<URI> ids = new ArrayList<URI>();
+        for (int i = 0; i < count; i++) {
+            ids.add(URI.create("urn:storageos:Volume:" + i + ":"));
+        }
+        return ids;
+    }
+
+    private static void drain(ExecutorService executor) throws Exception {
+        executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                return null;
+            }
+        }).get(10, TimeUnit.SECONDS);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
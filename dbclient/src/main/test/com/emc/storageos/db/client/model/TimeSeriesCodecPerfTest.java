@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.db.client.model;
+
+import org.junit.Test;
+
+/**
+ * Prints the bytes per point and the encode/decode throughput of the compact and the legacy
+ * serializers of stats, events and audit logs. Excluded from the unit tests, run by the
+ * PerformanceTest task.
+ */
+public class TimeSeriesCodecPerfTest {
+    private static final int ITERATIONS = 100000;
+
+    private final StatTimeSeries.StatSerializer statSerializer = new StatTimeSeries.StatSerializer();
+    private final GenericSerializer genericSerializer = new GenericSerializer();
+
+    @Test
+    public void testPerformance() {
+        TimeSeriesCodec.setCompactEncoding(true);
+        try {
+            Stat stat = TimeSeriesCodecTest.createStat();
+            Event event = TimeSeriesCodecTest.createEvent();
+            AuditLog auditLog = TimeSeriesCodecTest.createAuditLog();
+
+            benchmark("Stat, Java serialization", new TimeSeriesSerializer<Stat>() {
+                @Override
+                public byte[] serialize(Stat data) {
+                    return statSerializer.serializeLegacy(data);
+                }
+
+                @Override
+                public Stat deserialize(byte[] data) {
+                    return statSerializer.deserialize(data);
+                }
+            }, stat, ITERATIONS / 10);
+            benchmark("Stat, compact", statSerializer, stat, ITERATIONS);
+            benchmark("Event, GenericSerializer", new GenericTimeSeriesSerializer<Event>(Event.class), event, ITERATIONS);
+            benchmark("Event, compact", new EventTimeSeries.EventSerializer(), event, ITERATIONS);
+            benchmark("AuditLog, GenericSerializer", new GenericTimeSeriesSerializer<AuditLog>(AuditLog.class), auditLog,
+                    ITERATIONS);
+            benchmark("AuditLog, compact", new AuditLogTimeSeries.AuditLogSerializer(), auditLog, ITERATIONS);
+        } finally {
+            TimeSeriesCodec.setCompactEncoding(false);
+        }
+    }
+
+    /**
+     * Times encoding and decoding the data point after a warm up, and prints the results
+     */
+    private <T extends TimeSeriesSerializer.DataPoint> void benchmark(String name, TimeSeriesSerializer<T> serializer,
+            T point, int iterations) {
+        byte[] data = serializer.serialize(point);
+        for (int i = 0; i < iterations / 10; i++) {
+            serializer.deserialize(serializer.serialize(point));
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            data = serializer.serialize(point);
+        }
+        long encodeNanos = Math.max(1, (System.nanoTime() - start) / iterations);
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            serializer.deserialize(data);
+        }
+        long decodeNanos = Math.max(1, (System.nanoTime() - start) / iterations);
+        System.out.println(String.format("%s: %d bytes per point, encode %d ns (%d points/s), decode %d ns (%d points/s)",
+                name, data.length, encodeNanos, 1000000000L / encodeNanos, decodeNanos, 1000000000L / decodeNanos));
+    }
+
+    /**
+     * Writes data points with the GenericSerializer, as the event and audit log serializers did
+     */
+    private class GenericTimeSeriesSerializer<T extends TimeSeriesSerializer.DataPoint> implements TimeSeriesSerializer<T> {
+        private final Class<T> _clazz;
+
+        GenericTimeSeriesSerializer(Class<T> clazz) {
+            _clazz = clazz;
+        }
+
+        @Override
+        public byte[] serialize(T data) {
+            return genericSerializer.toByteArray(_clazz, data);
+        }
+
+        @Override
+        public T deserialize(byte[] data) {
+            return genericSerializer.fromByteArray(_clazz, data);
+        }
+    }
+}
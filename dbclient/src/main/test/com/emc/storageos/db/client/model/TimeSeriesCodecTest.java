@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.db.client.model;
+
+import java.net.URI;
+import java.util.UUID;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the compact encoding of stats, events and audit logs, reading legacy rows, and
+ * writing them while compact encoding is off
+ */
+public class TimeSeriesCodecTest {
+    private final StatTimeSeries.StatSerializer statSerializer = new StatTimeSeries.StatSerializer();
+    private final EventTimeSeries.EventSerializer eventSerializer = new EventTimeSeries.EventSerializer();
+    private final AuditLogTimeSeries.AuditLogSerializer auditLogSerializer = new AuditLogTimeSeries.AuditLogSerializer();
+    private final GenericSerializer genericSerializer = new GenericSerializer();
+
+    @Before
+    public void setUp() {
+        TimeSeriesCodec.setCompactEncoding(true);
+    }
+
+    @After
+    public void tearDown() {
+        TimeSeriesCodec.setCompactEncoding(false);
+    }
+
+    @Test
+    public void testStat() {
+        Stat stat = createStat();
+        Stat decoded = statSerializer.deserialize(statSerializer.serialize(stat));
+        assertStatEquals(stat, decoded);
+        Assert.assertNull(decoded.getSnapshotCapacity());
+        Assert.assertNull(decoded.getVirtualPool());
+
+        // rows written with Java serialization
+        assertStatEquals(stat, statSerializer.deserialize(statSerializer.serializeLegacy(stat)));
+
+        // all fields
+        stat.setSnapshotCapacity(0);
+        stat.setSnapshotCount(Integer.MAX_VALUE);
+        stat.setVirtualPool(URI.create("http://vpool/été"));
+        stat.setTimeCollected(stat.getTimeInMillis() - 12345);
+        decoded = statSerializer.deserialize(statSerializer.serialize(stat));
+        assertStatEquals(stat, decoded);
+        Assert.assertEquals(stat.getSnapshotCount(), decoded.getSnapshotCount());
+        Assert.assertEquals(stat.getVirtualPool(), decoded.getVirtualPool());
+    }
+
+    @Test
+    public void testEventAndAuditLog() {
+        Event event = createEvent();
+        Event decodedEvent = eventSerializer.deserialize(eventSerializer.serialize(event));
+        assertEventEquals(event, decodedEvent);
+        assertEventEquals(event, eventSerializer.deserialize(genericSerializer.toByteArray(Event.class, event)));
+
+        AuditLog auditLog = createAuditLog();
+        AuditLog decodedLog = auditLogSerializer.deserialize(auditLogSerializer.serialize(auditLog));
+        assertAuditLogEquals(auditLog, decodedLog);
+        assertAuditLogEquals(auditLog, auditLogSerializer.deserialize(genericSerializer.toByteArray(AuditLog.class, auditLog)));
+    }
+
+    @Test
+    public void testFormat() {
+        TimeSeriesCodec.Writer out = TimeSeriesCodec.getWriter();
+        out.writeLong(0, -1L);
+        out.writeString(2, "");
+        out.writeURI(5, URI.create("urn:storageos:Volume:1:vdc1"));
+        out.writeLong(31, Long.MIN_VALUE);
+        byte[] data = out.toByteArray();
+        Assert.assertTrue(TimeSeriesCodec.isEncoded(data));
+
+        TimeSeriesCodec.Reader in = new TimeSeriesCodec.Reader(data);
+        Assert.assertTrue(in.has(0));
+        Assert.assertFalse(in.has(1));
+        Assert.assertEquals(-1L, in.readLong());
+        Assert.assertEquals("", in.readString());
+        Assert.assertEquals(URI.create("urn:storageos:Volume:1:vdc1"), in.readURI());
+        Assert.assertEquals(Long.MIN_VALUE, in.readLong());
+
+        try {
+            TimeSeriesCodec.getWriter().writeLong(32, 1L);
+            Assert.fail("field out of range");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        // a newer format version
+        data[1] = TimeSeriesCodec.FORMAT_VERSION + 1;
+        try {
+            new TimeSeriesCodec.Reader(data);
+            Assert.fail("newer version read");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        Assert.assertNull(statSerializer.deserialize(data));
+    }
+
+    @Test
+    public void testCompactEncodingOff() {
+        TimeSeriesCodec.setCompactEncoding(false);
+        Stat stat = createStat();
+        byte[] data = statSerializer.serialize(stat);
+        Assert.assertFalse(TimeSeriesCodec.isEncoded(data));
+        Assert.assertArrayEquals(statSerializer.serializeLegacy(stat), data);
+        assertStatEquals(stat, statSerializer.deserialize(data));
+
+        Event event = createEvent();
+        data = eventSerializer.serialize(event);
+        Assert.assertArrayEquals(genericSerializer.toByteArray(Event.class, event), data);
+        assertEventEquals(event, eventSerializer.deserialize(data));
+
+        AuditLog auditLog = createAuditLog();
+        data = auditLogSerializer.serialize(auditLog);
+        Assert.assertArrayEquals(genericSerializer.toByteArray(AuditLog.class, auditLog), data);
+        assertAuditLogEquals(auditLog, auditLogSerializer.deserialize(data));
+    }
+
+    @Test
+    public void testCompactRowsAreSmaller() {
+        Stat stat = createStat();
+        Assert.assertTrue(statSerializer.serialize(stat).length * 4 < statSerializer.serializeLegacy(stat).length);
+        Event event = createEvent();
+        Assert.assertTrue(eventSerializer.serialize(event).length < genericSerializer.toByteArray(Event.class, event).length);
+        AuditLog auditLog = createAuditLog();
+        Assert.assertTrue(auditLogSerializer.serialize(auditLog).length
+                < genericSerializer.toByteArray(AuditLog.class, auditLog).length);
+    }
+
+    static Stat createStat() {
+        Stat stat = new Stat();
+        long now = System.currentTimeMillis();
+        stat.setTimeInMillis(now);
+        stat.setTimeCollected(now);
+        stat.setResourceId(URI.create("urn:storageos:Volume:" + UUID.randomUUID() + ":vdc1"));
+        stat.setNativeGuid("SYMMETRIX+000195701234+VOLUME+01A2B");
+        stat.setServiceType("block");
+        stat.setProject(URI.create("urn:storageos:Project:" + UUID.randomUUID() + ":global"));
+        stat.setTenant(URI.create("urn:storageos:TenantOrg:" + UUID.randomUUID() + ":global"));
+        stat.setUser(URI.create("root"));
+        stat.setProvisionedCapacity(107374182400L);
+        stat.setAllocatedCapacity(53687091200L);
+        stat.setTotalIOs(123456789L);
+        stat.setReadIOs(100000000L);
+        stat.setWriteIOs(23456789L);
+        stat.setKbytesTransferred(987654321L);
+        stat.setIdleTimeCounter(4567L);
+        stat.setIoTimeCounter(8910L);
+        stat.setQueueLength(3L);
+        stat.setReadHitIOs(90000000L);
+        stat.setWriteHitIOs(20000000L);
+        return stat;
+    }
+
+    static Event createEvent() {
+        Event event = new Event();
+        event.setTimeInMillis(System.currentTimeMillis());
+        event.setEventId(UUID.randomUUID().toString());
+        event.setTenantId(URI.create("urn:storageos:TenantOrg:" + UUID.randomUUID() + ":global"));
+        event.setProjectId(URI.create("urn:storageos:Project:" + UUID.randomUUID() + ":global"));
+        event.setResourceId(URI.create("urn:storageos:Volume:" + UUID.randomUUID() + ":vdc1"));
+        event.setUserId(URI.create("root"));
+        event.setService("block");
+        event.setEventType("VolumeCreated");
+        event.setDescription("Volume created");
+        event.setExtensions("");
+        event.setNativeGuid("SYMMETRIX+000195701234+VOLUME+01A2B");
+        event.setRecordType("Event");
+        event.setEventSource("ViPR");
+        event.setSeverity("INFO");
+        return event;
+    }
+
+    static AuditLog createAuditLog() {
+        AuditLog auditLog = new AuditLog();
+        auditLog.setTimeInMillis(System.currentTimeMillis());
+        auditLog.setAuditlogId(UUID.randomUUID().toString());
+        auditLog.setProductId("vipr");
+        auditLog.setTenantId(URI.create("urn:storageos:TenantOrg:" + UUID.randomUUID() + ":global"));
+        auditLog.setUserId(URI.create("root"));
+        auditLog.setServiceType("block");
+        auditLog.setAuditType("CREATE_VOLUME");
+        auditLog.setDescription("Volume vol1 created in project p1");
+        auditLog.setOperationalStatus("SUCCESS");
+        return auditLog;
+    }
+
+    private void assertStatEquals(Stat expected, Stat actual) {
+        Assert.assertEquals(expected.getTimeInMillis(), actual.getTimeInMillis());
+        Assert.assertEquals(expected.getTimeCollected(), actual.getTimeCollected());
+        Assert.assertEquals(expected.getResourceId(), actual.getResourceId());
+        Assert.assertEquals(expected.getNativeGuid(), actual.getNativeGuid());
+        Assert.assertEquals(expected.getServiceType(), actual.getServiceType());
+        Assert.assertEquals(expected.getProject(), actual.getProject());
+        Assert.assertEquals(expected.getTenant(), actual.getTenant());
+        Assert.assertEquals(expected.getUser(), actual.getUser());
+        Assert.assertEquals(expected.getProvisionedCapacity(), actual.getProvisionedCapacity());
+        Assert.assertEquals(expected.getAllocatedCapacity(), actual.getAllocatedCapacity());
+        Assert.assertEquals(expected.getSnapshotCapacity(), actual.getSnapshotCapacity());
+        Assert.assertEquals(expected.getTotalIOs(), actual.getTotalIOs());
+        Assert.assertEquals(expected.getReadIOs(), actual.getReadIOs());
+        Assert.assertEquals(expected.getWriteHitIOs(), actual.getWriteHitIOs());
+        Assert.assertEquals(expected.getQueueLength(), actual.getQueueLength());
+        Assert.assertEquals(expected.getObjCount(), actual.getObjCount());
+    }
+
+    private void assertEventEquals(Event expected, Event actual) {
+        Assert.assertEquals(expected.getEventId(), actual.getEventId());
+        Assert.assertEquals(expected.getTenantId(), actual.getTenantId());
+        Assert.assertEquals(expected.getProjectId(), actual.getProjectId());
+        Assert.assertEquals(expected.getResourceId(), actual.getResourceId());
+        Assert.assertEquals(expected.getUserId(), actual.getUserId());
+        Assert.assertEquals(expected.getEventType(), actual.getEventType());
+        Assert.assertEquals(expected.getDescription(), actual.getDescription());
+        Assert.assertEquals(expected.getExtensions(), actual.getExtensions());
+        Assert.assertEquals(expected.getSeverity(), actual.getSeverity());
+        Assert.assertEquals(expected.getAlertType(), actual.getAlertType());
+    }
+
+    private void assertAuditLogEquals(AuditLog expected, AuditLog actual) {
+        Assert.assertEquals(expected.getTimeInMillis(), actual.getTimeInMillis());
+        Assert.assertEquals(expected.getAuditlogId(), actual.getAuditlogId());
+        Assert.assertEquals(expected.getProductId(), actual.getProductId());
+        Assert.assertEquals(expected.getTenantId(), actual.getTenantId());
+        Assert.assertEquals(expected.getUserId(), actual.getUserId());
+        Assert.assertEquals(expected.getAuditType(), actual.getAuditType());
+        Assert.assertEquals(expected.getDescription(), actual.getDescription());
+        Assert.assertEquals(expected.getOperationalStatus(), actual.getOperationalStatus());
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.db.server;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.emc.storageos.coordinator.client.model.CoordinatorSerializable;
+import com.emc.storageos.coordinator.client.service.NodeListener;
+import com.emc.storageos.coordinator.exceptions.CoordinatorException;
+import com.emc.storageos.db.client.URIUtil;
+import com.emc.storageos.db.client.impl.DbObjectCache;
+import com.emc.storageos.db.client.model.DataObject;
+import com.emc.storageos.db.client.model.StoragePool;
+import com.emc.storageos.db.client.model.VirtualPool;
+import com.emc.storageos.db.client.upgrade.InternalDbClient;
+import com.emc.storageos.db.server.util.StubCoordinatorClientImpl;
+
+/**
+ * Reads and writes of cached classes through DbClientImpl with the object cache enabled
+ */
+public class CachedQueryObjectTest extends DbsvcTestBase {
+    private InternalDbClient dbClient;
+    private DbObjectCache cache;
+    private ListeningCoordinator coordinator;
+
+    @Before
+    public void setupTest() {
+        Map<String, Integer> cachedClasses = new HashMap<String, Integer>();
+        cachedClasses.put("StoragePool", 60);
+        cachedClasses.put("VirtualPool", 60);
+        cache = new DbObjectCache();
+        cache.setEnabled(true);
+        cache.setCachedClasses(cachedClasses);
+
+        coordinator = new ListeningCoordinator();
+        dbClient = getDbClientBase(new InternalDbClient());
+        dbClient.setCoordinatorClient(coordinator);
+        dbClient.setObjectCache(cache);
+        dbClient.start();
+    }
+
+    @After
+    public void teardown() {
+        dbClient.stop();
+    }
+
+    @Test
+    public void testReadFromCache() {
+        StoragePool pool = createPool("pool");
+        StoragePool first = dbClient.queryObject(StoragePool.class, pool.getId());
+        StoragePool second = dbClient.queryObject(StoragePool.class, pool.getId());
+
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals("pool", second.getLabel());
+        // changes to a returned object stay out of the cache
+        second.setLabel("changed");
+        Assert.assertEquals("pool", dbClient.queryObject(StoragePool.class, pool.getId()).getLabel());
+    }
+
+    @Test
+    public void testWriteInvalidatesOtherNodesBeforeReturning() throws Exception {
+        StoragePool pool = createPool("pool");
+        dbClient.queryObject(StoragePool.class, pool.getId());
+        int published = coordinator.published.get();
+
+        pool.setLabel("renamed");
+        dbClient.updateObject(pool);
+
+        Assert.assertEquals(published + 1, coordinator.published.get());
+        Assert.assertEquals("renamed", dbClient.queryObject(StoragePool.class, pool.getId()).getLabel());
+
+        // a write on another node
+        coordinator.fireNodeChanged();
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testObjectsInOrderOfIds() {
+        StoragePool pool1 = createPool("pool1");
+        StoragePool pool2 = createPool("pool2");
+        StoragePool pool3 = createPool("pool3");
+        List<URI> ids = Arrays.asList(pool3.getId(), pool1.getId(), pool2.getId());
+
+        // pool1 cached, then all of them
+        dbClient.queryObject(StoragePool.class, pool1.getId());
+        Assert.assertEquals(ids, idsOf(dbClient.queryObject(StoragePool.class, ids)));
+        Assert.assertEquals(ids, idsOf(dbClient.queryObject(StoragePool.class, ids)));
+        Assert.assertEquals(4, cache.getHitCount());
+    }
+
+    @Test
+    public void testGeoClassIsNotCached() {
+        Assert.assertFalse(cache.isCached(VirtualPool.class));
+
+        VirtualPool vpool = new VirtualPool();
+        vpool.setId(URIUtil.createId(VirtualPool.class));
+        vpool.setLabel("vpool");
+        dbClient.createObject(vpool);
+        dbClient.queryObject(VirtualPool.class, vpool.getId());
+        dbClient.queryObject(VirtualPool.class, vpool.getId());
+
+        Assert.assertEquals(0, cache.getHitCount());
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testConcurrentReadsOfCachedRow() throws Exception {
+        final StoragePool pool = createPool("pool");
+        pool.setFreeCapacity(100L);
+        dbClient.updateObject(pool);
+        dbClient.queryObject(StoragePool.class, pool.getId());
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        for (int j = 0; j < 200; j++) {
+                            StoragePool read = dbClient.queryObject(StoragePool.class, pool.getId());
+                            if (!"pool".equals(read.getLabel()) || read.getFreeCapacity() != 100L) {
+                                return false;
+                            }
+                        }
+                        return true;
+                    }
+                }));
+            }
+            for (Future<Boolean> future : futures) {
+                Assert.assertTrue(future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(8 * 200, cache.getHitCount());
+    }
+
+    private StoragePool createPool(String label) {
+        StoragePool pool = new StoragePool();
+        pool.setId(URIUtil.createId(StoragePool.class));
+        pool.setLabel(label);
+        dbClient.createObject(pool);
+        return pool;
+    }
+
+    private static List<URI> idsOf(List<? extends DataObject> objects) {
+        List<URI> ids = new ArrayList<URI>();
+        for (DataObject object : objects) {
+            ids.add(object.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * Stub coordinator which keeps the cache invalidation listeners and counts the published invalidations
+     */
+    private static class ListeningCoordinator extends StubCoordinatorClientImpl {
+        private final List<NodeListener> listeners = new ArrayList<NodeListener>();
+        private final AtomicInteger published = new AtomicInteger();
+
+        ListeningCoordinator() {
+            super(URI.create("thrift://localhost:9160"));
+        }
+
+        @Override
+        public void addNodeListener(NodeListener listener) {
+            listeners.add(listener);
+        }
+
+        @Override
+        public void removeNodeListener(NodeListener listener) {
+            listeners.remove(listener);
+        }
+
+        @Override
+        public <T extends CoordinatorSerializable> void persistRuntimeState(String key, T state) throws CoordinatorException {
+            if (key.startsWith(DbObjectCache.INVALIDATION_STATE_KEY)) {
+                published.incrementAndGet();
+            }
+        }
+
+        void fireNodeChanged() throws Exception {
+            for (NodeListener listener : listeners) {
+                listener.nodeChanged();
+            }
+        }
+    }
+}
@@ -9,6 +9,7 @@ import com.emc.storageos.plugins.AccessProfile;
 import com.emc.storageos.plugins.BaseCollectionException;
 import com.emc.storageos.plugins.common.commandgenerator.Command;
 import com.emc.storageos.plugins.common.commandgenerator.CommandGenerator;
+import com.emc.storageos.plugins.common.domainmodel.Argument;
 import com.emc.storageos.plugins.common.domainmodel.Namespace;
 import com.emc.storageos.plugins.common.domainmodel.Operation;
 import com.emc.storageos.plugins.metering.smis.SMIPluginException;
@@ -21,10 +22,22 @@ import javax.cim.CIMProperty;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 /**
  * SMIExecutor- responsible for executing SMICommands
@@ -56,6 +69,21 @@ public abstract class Executor {
      * keyMap.
      */
     protected Map<String, Object> _keyMap;
+    /**
+     * Run the operations declaring their keyMap inputs and outputs, and their commands,
+     * concurrently.
+     */
+    private boolean _parallel = false;
+    /**
+     * Maximum number of commands run at the same time against a provider, shared by all
+     * the executors running in parallel.
+     */
+    private int _maxConnectionsPerProvider = 4;
+    private static final ConcurrentMap<String, Semaphore> _providerConnections = new ConcurrentHashMap<String, Semaphore>();
+    /**
+     * Timings of the operations of the last namespace executed.
+     */
+    private volatile List<OperationTiming> _operationTimings = Collections.emptyList();
 
     public void setUtil(Util _util) {
         this._util = _util;
@@ -81,6 +109,26 @@ public abstract class Executor {
         return _generator;
     }
 
+    public void setParallel(boolean parallel) {
+        _parallel = parallel;
+    }
+
+    public boolean isParallel() {
+        return _parallel;
+    }
+
+    public void setMaxConnectionsPerProvider(int maxConnectionsPerProvider) {
+        _maxConnectionsPerProvider = maxConnectionsPerProvider;
+    }
+
+    public int getMaxConnectionsPerProvider() {
+        return _maxConnectionsPerProvider;
+    }
+
+    public List<OperationTiming> getOperationTimings() {
+        return _operationTimings;
+    }
+
     public Executor() {
         execService = Executors.newFixedThreadPool(10);
     }
@@ -102,12 +150,311 @@ public abstract class Executor {
      */
     public void execute(Namespace ns) throws BaseCollectionException {
         assert ns != null;
-        for (Object operationobj : ns.getOperations()) {
-            Operation operation = (Operation) operationobj;
-            executeOperation(operation);
+        List<OperationTiming> timings = new ArrayList<OperationTiming>();
+        long start = System.currentTimeMillis();
+        try {
+            if (_parallel) {
+                executeInParallel(ns.getOperations(), timings);
+            } else {
+                for (Object operationobj : ns.getOperations()) {
+                    Operation operation = (Operation) operationobj;
+                    OperationTiming timing = new OperationTiming(operation);
+                    timings.add(timing);
+                    executeOperation(operation, timing);
+                }
+            }
+        } finally {
+            _operationTimings = timings;
+            logTimings(timings, System.currentTimeMillis() - start);
         }
     }
 
+    /**
+     * Executes the operations as a dependency graph. An operation starts once the earlier
+     * operations it depends on completed, its commands run on the executor service under the
+     * connection cap of the provider. Operations which do not declare their outputs depend on
+     * all the earlier operations, and all later operations depend on them, so they still run
+     * in the declared order. Once an operation failed, or the thread was interrupted, no other
+     * operation starts, and the failure is thrown once the running commands completed.
+     * 
+     * @param operations operations of the namespace, in declared order
+     * @param timings timings of the operations, added to as they start
+     * @throws BaseCollectionException
+     */
+    private void executeInParallel(List<Object> operations, List<OperationTiming> timings)
+            throws BaseCollectionException {
+        int count = operations.size();
+        List<List<Integer>> dependencies = new ArrayList<List<Integer>>();
+        for (int i = 0; i < count; i++) {
+            List<Integer> dependsOn = new ArrayList<Integer>();
+            for (int j = 0; j < i; j++) {
+                if (dependsOn((Operation) operations.get(i), (Operation) operations.get(j))) {
+                    dependsOn.add(j);
+                }
+            }
+            dependencies.add(dependsOn);
+        }
+        String providerKey = getProviderKey();
+        CompletionService<OperationRun> completionService = new ExecutorCompletionService<OperationRun>(execService);
+        Map<Future<OperationRun>, OperationRun> running = new HashMap<Future<OperationRun>, OperationRun>();
+        boolean[] started = new boolean[count];
+        boolean[] completed = new boolean[count];
+        boolean interrupted = false;
+        BaseCollectionException failure = null;
+        while (true) {
+            // start every operation whose dependencies completed, in declared order
+            boolean progress = true;
+            while (failure == null && !interrupted && progress) {
+                progress = false;
+                for (int i = 0; i < count && failure == null; i++) {
+                    if (started[i] || !isCompleted(dependencies.get(i), completed)) {
+                        continue;
+                    }
+                    started[i] = true;
+                    Operation operation = (Operation) operations.get(i);
+                    OperationRun run = new OperationRun(i, operation, new OperationTiming(operation), providerKey);
+                    timings.add(run._timing);
+                    try {
+                        if (startOperation(run, completionService, running) == 0) {
+                            completeOperation(run);
+                            completed[i] = true;
+                            progress = true;
+                        }
+                    } catch (BaseCollectionException e) {
+                        failure = e;
+                    }
+                }
+            }
+            if (running.isEmpty()) {
+                break;
+            }
+            Future<OperationRun> future = null;
+            try {
+                future = completionService.take();
+            } catch (InterruptedException e) {
+                // fail the running operations, and keep waiting for their commands to complete
+                _LOGGER.warn("Interrupted while executing operations, waiting for {} tasks", running.size());
+                interrupted = true;
+                for (OperationRun run : running.values()) {
+                    run.setFailure(e);
+                }
+                continue;
+            }
+            OperationRun run = running.remove(future);
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                // the task completed, get does not wait
+                interrupted = true;
+                run.setFailure(e);
+            } catch (ExecutionException e) {
+                run.setFailure(e);
+            }
+            if (--run._pendingTasks > 0) {
+                continue;
+            }
+            if (failure != null) {
+                run._timing.end();
+                continue;
+            }
+            try {
+                completeOperation(run);
+                completed[run._index] = true;
+            } catch (BaseCollectionException e) {
+                failure = e;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private boolean isCompleted(List<Integer> operations, boolean[] completed) {
+        for (Integer operation : operations) {
+            if (!completed[operation]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Generates the commands of the operation and submits them.
+     * 
+     * @param running the tasks submitted, added to
+     * @return the number of tasks submitted
+     * @throws BaseCollectionException when the commands could not be generated
+     */
+    private int startOperation(final OperationRun run, CompletionService<OperationRun> completionService,
+            Map<Future<OperationRun>, OperationRun> running) throws BaseCollectionException {
+        final Operation operation = run._operation;
+        if (!isSupportedOperation(operation)) {
+            _LOGGER.info("Filtered the operation {} as per instructions", operation.getMessage());
+            return 0;
+        }
+        _LOGGER.info(null == operation.getMessage() ? "START Executing operation"
+                : "START :" + operation.getMessage());
+        List<Command> commandObjects = null;
+        try {
+            commandObjects = _generator.returnCommandObjects(operation, _keyMap);
+        } catch (final Exception e) {
+            _LOGGER.error("Operation Execution failed : ", e);
+            customizeException(e, operation);
+            return 0;
+        }
+        run._timing._commandCount = commandObjects.size();
+        // the commands of operations not declaring their outputs may depend on each other
+        List<List<Command>> tasks = new ArrayList<List<Command>>();
+        if (operation.getOutputs() == null) {
+            if (!commandObjects.isEmpty()) {
+                tasks.add(commandObjects);
+            }
+        } else {
+            for (Command commandObj : commandObjects) {
+                tasks.add(Collections.singletonList(commandObj));
+            }
+        }
+        run._pendingTasks = tasks.size();
+        for (final List<Command> task : tasks) {
+            running.put(completionService.submit(new Callable<OperationRun>() {
+                @Override
+                public OperationRun call() {
+                    for (Command commandObj : task) {
+                        if (!executeCommand(run, commandObj)) {
+                            break;
+                        }
+                    }
+                    return run;
+                }
+            }), run);
+        }
+        return tasks.size();
+    }
+
+    /**
+     * Executes a command of the operation under the connection cap of the provider.
+     * 
+     * @return false if the command failed the operation
+     */
+    private boolean executeCommand(OperationRun run, Command commandObj) {
+        Semaphore connections = getProviderConnections(run._providerKey);
+        try {
+            connections.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            run.setFailure(e);
+            return false;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            executeCommand(run._operation, commandObj);
+            return true;
+        } catch (Exception e) {
+            run.setFailure(e);
+            return false;
+        } finally {
+            connections.release();
+            run._timing.addCommandTime(System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Called once all the commands of the operation ran, in the thread executing the namespace.
+     */
+    private void completeOperation(OperationRun run) throws BaseCollectionException {
+        run._timing.end();
+        if (run._failure != null) {
+            _LOGGER.error("Operation Execution failed : ", run._failure);
+            customizeException(run._failure, run._operation);
+        }
+        _LOGGER.debug(null == run._operation.getMessage() ? "END Executing operation" : "END :"
+                + run._operation.getMessage());
+    }
+
+    /**
+     * Returns true if the later operation has to wait for the earlier one: if any of them
+     * does not declare its outputs, or if one writes a keyMap entry the other reads or writes.
+     */
+    static boolean dependsOn(Operation later, Operation earlier) {
+        if (later.getOutputs() == null || earlier.getOutputs() == null) {
+            return true;
+        }
+        Set<String> laterWrites = getWrites(later);
+        Set<String> earlierWrites = getWrites(earlier);
+        return !Collections.disjoint(earlierWrites, getReads(later))
+                || !Collections.disjoint(laterWrites, getReads(earlier))
+                || !Collections.disjoint(laterWrites, earlierWrites);
+    }
+
+    private static Set<String> getReads(Operation operation) {
+        Set<String> reads = new HashSet<String>();
+        if (operation.getInputs() != null) {
+            reads.addAll(operation.getInputs());
+        }
+        if (operation.getExecutionCycles() != null) {
+            reads.add(operation.getExecutionCycles());
+        }
+        // arguments are looked up in the keyMap by their value or name depending on the
+        // method creating them, consider all of them read
+        if (operation.getArguments() != null) {
+            for (Object argobj : operation.getArguments()) {
+                Argument arg = (Argument) argobj;
+                if (arg.getValue() instanceof String) {
+                    reads.add((String) arg.getValue());
+                }
+                if (arg.getName() != null) {
+                    reads.add(arg.getName());
+                }
+            }
+        }
+        return reads;
+    }
+
+    private static Set<String> getWrites(Operation operation) {
+        Set<String> writes = new HashSet<String>(operation.getOutputs());
+        if (operation.getResult() != null && !operation.getResult().isEmpty()) {
+            writes.add(operation.getResult());
+        }
+        return writes;
+    }
+
+    /**
+     * Returns the key of the provider the commands are run against, used to cap the
+     * connections to it across executors.
+     */
+    protected String getProviderKey() {
+        Object profile = null == _keyMap ? null : _keyMap.get(Constants.ACCESSPROFILE);
+        if (profile instanceof AccessProfile) {
+            return ((AccessProfile) profile).getIpAddress() + ":" + ((AccessProfile) profile).getPortNumber();
+        }
+        return String.valueOf(System.identityHashCode(this));
+    }
+
+    private Semaphore getProviderConnections(String providerKey) {
+        Semaphore connections = _providerConnections.get(providerKey);
+        if (connections == null) {
+            _providerConnections.putIfAbsent(providerKey, new Semaphore(Math.max(1, _maxConnectionsPerProvider), true));
+            connections = _providerConnections.get(providerKey);
+        }
+        return connections;
+    }
+
+    private void logTimings(List<OperationTiming> timings, long elapsed) {
+        if (timings.isEmpty()) {
+            return;
+        }
+        StringBuilder logMessage = new StringBuilder();
+        logMessage.append("Executed ").append(timings.size()).append(" operations in ").append(elapsed)
+                .append(" ms").append(_parallel ? " in parallel" : "");
+        for (OperationTiming timing : timings) {
+            logMessage.append(NEWLINE).append(TAB).append(timing);
+        }
+        _LOGGER.info(logMessage.toString());
+    }
+
     /**
      * Move the result to Processor. Processor can be of type CIMProcessor,
      * DirectorMetrics Apply different types of Decorators above the processed
@@ -125,19 +472,19 @@ public abstract class Executor {
             throws BaseCollectionException {
         Processor _processor = null;
         // processor is being shared across multiple Threads in case of parallel
-        // processing.
-        // But still, processResult is not synchronized intentionally, as I want
-        // multiple Threads to complete its job without waiting.
-        // Things which get shared across threads is only the ConcurrentMap,
-        // hence haven't made it synchronized.
+        // processing, and keeps the prerequisite objects and its own state in
+        // fields. Results of the same processor are hence processed one at a time,
+        // while the commands of other processors complete without waiting.
         _processor = operation.getProcessor();
         if (null != _processor) {
             List<Object> argsList = new ArrayList<Object>();
             argsList.add(Util.normalizedReadArgs(_keyMap, commandObj.retreiveArguments()));
             argsList.add(commandObj.getCommandIndex());
 
-            _processor.setPrerequisiteObjects(argsList);
-            _processor.processResult(operation, result, _keyMap);
+            synchronized (_processor) {
+                _processor.setPrerequisiteObjects(argsList);
+                _processor.processResult(operation, result, _keyMap);
+            }
         } else {
             _LOGGER.debug("No Processors found to execute. ");
         }
@@ -161,7 +508,7 @@ public abstract class Executor {
      * @param operation
      * @throws BaseCollectionException
      */
-    private void executeOperation(Operation operation) throws BaseCollectionException {
+    private void executeOperation(Operation operation, OperationTiming timing) throws BaseCollectionException {
         try {
             if (!isSupportedOperation(operation)) {
                 _LOGGER.info("Filtered the operation {} as per instructions", operation.getMessage());
@@ -170,34 +517,54 @@ public abstract class Executor {
             _LOGGER.info(null == operation.getMessage() ? "START Executing operation"
                     : "START :" + operation.getMessage());
             _commandObjects = _generator.returnCommandObjects(operation, _keyMap);
+            timing._commandCount = _commandObjects.size();
             // only sequential processing allowed. also avoiding too many calls to the Provider at
             // the same time.
             for (Command commandObj : _commandObjects) {
-                printArgs(commandObj);
-                Object resultObj = null;
+                long start = System.currentTimeMillis();
                 try {
-                    resultObj = commandObj.execute();
-                    processResult(operation, resultObj, commandObj);
-                } catch (Exception e) {
-                    _LOGGER.error("Execution failed for :", e);
-                    // We do not want 'Provider/Firmware Not Supported Error' to get suppressed. check and throw again.
-                    if (e instanceof SMIPluginException) {
-                        int errorCode = ((SMIPluginException) e).getErrorCode();
-                        if (errorCode == SMIPluginException.ERRORCODE_PROVIDER_NOT_SUPPORTED ||
-                                errorCode == SMIPluginException.ERRORCODE_FIRMWARE_NOT_SUPPORTED ||
-                                errorCode == SMIPluginException.ERRORCODE_OPERATIONFAILED) {
-                            throw e;
-                        }
-                    }
+                    executeCommand(operation, commandObj);
+                } finally {
+                    timing.addCommandTime(System.currentTimeMillis() - start);
                 }
             }
         } catch (final Exception e) {
             _LOGGER.error("Operation Execution failed : ", e);
             customizeException(e, operation);
+        } finally {
+            timing.end();
         }
         _LOGGER.debug(null == operation.getMessage() ? "END Executing operation" : "END :" + operation.getMessage());
     }
 
+    /**
+     * Executes the command and processes its result. Failures are logged, except those which
+     * have to fail the operation.
+     * 
+     * @param operation
+     * @param commandObj
+     * @throws Exception when the provider or firmware is not supported, or the operation failed
+     */
+    private void executeCommand(Operation operation, Command commandObj) throws Exception {
+        printArgs(commandObj);
+        Object resultObj = null;
+        try {
+            resultObj = commandObj.execute();
+            processResult(operation, resultObj, commandObj);
+        } catch (Exception e) {
+            _LOGGER.error("Execution failed for :", e);
+            // We do not want 'Provider/Firmware Not Supported Error' to get suppressed. check and throw again.
+            if (e instanceof SMIPluginException) {
+                int errorCode = ((SMIPluginException) e).getErrorCode();
+                if (errorCode == SMIPluginException.ERRORCODE_PROVIDER_NOT_SUPPORTED ||
+                        errorCode == SMIPluginException.ERRORCODE_FIRMWARE_NOT_SUPPORTED ||
+                        errorCode == SMIPluginException.ERRORCODE_OPERATIONFAILED) {
+                    throw e;
+                }
+            }
+        }
+    }
+
     /**
      * Method to print arguments for debug purpose
      * 
@@ -281,4 +648,74 @@ public abstract class Executor {
         return true;
     }
 
+    /**
+     * Time spent executing an operation: from its start to the completion of its last command,
+     * and in its commands, which is more than the elapsed time when they run concurrently.
+     */
+    public static class OperationTiming {
+        private final String _name;
+        private final long _startTime = System.currentTimeMillis();
+        private volatile long _elapsed;
+        private volatile int _commandCount;
+        private long _commandTime;
+
+        OperationTiming(Operation operation) {
+            _name = null != operation.getMessage() ? operation.getMessage()
+                    : operation.getMethod() + " " + operation.getResult();
+        }
+
+        void end() {
+            _elapsed = System.currentTimeMillis() - _startTime;
+        }
+
+        synchronized void addCommandTime(long time) {
+            _commandTime += time;
+        }
+
+        public String getName() {
+            return _name;
+        }
+
+        public long getElapsed() {
+            return _elapsed;
+        }
+
+        public int getCommandCount() {
+            return _commandCount;
+        }
+
+        public synchronized long getCommandTime() {
+            return _commandTime;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d ms, %d commands taking %d ms : %s", _elapsed, _commandCount, getCommandTime(), _name);
+        }
+    }
+
+    /**
+     * An operation being executed in parallel, with the number of its tasks still running
+     */
+    private static class OperationRun {
+        private final int _index;
+        private final Operation _operation;
+        private final OperationTiming _timing;
+        private final String _providerKey;
+        private int _pendingTasks;
+        private volatile Exception _failure;
+
+        OperationRun(int index, Operation operation, OperationTiming timing, String providerKey) {
+            _index = index;
+            _operation = operation;
+            _timing = timing;
+            _providerKey = providerKey;
+        }
+
+        synchronized void setFailure(Exception failure) {
+            if (_failure == null) {
+                _failure = failure;
+            }
+        }
+    }
 }
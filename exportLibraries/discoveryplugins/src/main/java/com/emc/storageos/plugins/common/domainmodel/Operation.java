@@ -23,6 +23,12 @@ public class Operation {
     private Object _instance;
 
     private String _type;
+    /**
+     * keyMap entries read and written by the operation, other than its references and result.
+     * Only operations declaring their outputs are run concurrently by a parallel executor.
+     */
+    private List<String> _inputs;
+    private List<String> _outputs;
 
     public void setArguments(List<Object> _arguments) {
         this._arguments = _arguments;
@@ -124,4 +130,32 @@ public class Operation {
     public void setSupportedVersion(String supportedVersion) {
         this.supportedVersion = supportedVersion;
     }
+
+    public void setInputs(List<String> inputs) {
+        _inputs = inputs;
+    }
+
+    /**
+     * keyMap entries read by the processor of the operation, besides the references in its
+     * arguments and its execution cycles.
+     * 
+     * @return the keys read, null if not declared
+     */
+    public List<String> getInputs() {
+        return _inputs;
+    }
+
+    public void setOutputs(List<String> outputs) {
+        _outputs = outputs;
+    }
+
+    /**
+     * keyMap entries written by the processor of the operation, besides its result.
+     * An empty list declares an operation writing only its result.
+     * 
+     * @return the keys written, null if not declared
+     */
+    public List<String> getOutputs() {
+        return _outputs;
+    }
 }
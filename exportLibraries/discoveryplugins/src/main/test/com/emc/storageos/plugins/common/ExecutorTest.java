@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.plugins.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.emc.storageos.plugins.BaseCollectionException;
+import com.emc.storageos.plugins.common.commandgenerator.Command;
+import com.emc.storageos.plugins.common.commandgenerator.CommandGenerator;
+import com.emc.storageos.plugins.common.domainmodel.Namespace;
+import com.emc.storageos.plugins.common.domainmodel.Operation;
+import com.emc.storageos.plugins.metering.smis.SMIPluginException;
+
+/**
+ * Checks the order, connection cap and failures of operations executed in parallel,
+ * with commands recording when they start and end.
+ */
+public class ExecutorTest {
+    private static final long COMMAND_MILLIS = 20;
+
+    private final Map<Operation, List<Command>> commands = new HashMap<Operation, List<Command>>();
+    private final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+    private final AtomicInteger runningCommands = new AtomicInteger();
+    private final AtomicInteger maxRunningCommands = new AtomicInteger();
+    private TestExecutor executor;
+
+    @Before
+    public void setUp() {
+        executor = new TestExecutor();
+        executor.setKeyMap(new HashMap<String, Object>());
+        executor.setGenerator(new CommandGenerator() {
+            @Override
+            public List<Command> returnCommandObjects(Operation operation, Map<String, Object> keyMap) {
+                return commands.get(operation);
+            }
+        });
+        executor.setParallel(true);
+        executor.setMaxConnectionsPerProvider(2);
+    }
+
+    @After
+    public void tearDown() {
+        executor.getExecService().shutdownNow();
+    }
+
+    @Test
+    public void testDependentOperationsRunInOrder() throws Exception {
+        Operation ports = operation("ports", 2, null, Arrays.asList("discoveredPorts"));
+        Operation endPoints = operation("endPoints", 2, Arrays.asList("ports"), Arrays.asList("discoveredPorts"));
+        Operation processors = operation("processors", 1, null, Collections.<String> emptyList());
+        executor.setMaxConnectionsPerProvider(4);
+        executor.execute(namespace(ports, endPoints, processors));
+
+        Assert.assertTrue(Executor.dependsOn(endPoints, ports));
+        Assert.assertFalse(Executor.dependsOn(processors, ports));
+        Assert.assertEquals(10, events.size());
+        // the end points start once both port commands ended, the processors do not wait
+        Assert.assertTrue(events.lastIndexOf("end ports") < events.indexOf("start endPoints"));
+        Assert.assertTrue(events.indexOf("start processors") < events.indexOf("end ports"));
+        Assert.assertEquals(3, executor.getOperationTimings().size());
+        Assert.assertEquals(2, executor.getOperationTimings().get(0).getCommandCount());
+    }
+
+    @Test
+    public void testUndeclaredOperationRunsAlone() throws Exception {
+        Operation first = operation("first", 1, null, Collections.<String> emptyList());
+        Operation undeclared = operation("undeclared", 2, null, null);
+        Operation last = operation("last", 1, null, Collections.<String> emptyList());
+        executor.execute(namespace(first, undeclared, last));
+
+        Assert.assertEquals(Arrays.asList("start first", "end first", "start undeclared", "end undeclared",
+                "start undeclared", "end undeclared", "start last", "end last"), events);
+    }
+
+    @Test
+    public void testConnectionsToProviderCapped() throws Exception {
+        Operation ports = operation("ports", 8, null, Collections.<String> emptyList());
+        Operation processors = operation("processors", 8, null, Collections.<String> emptyList());
+        executor.execute(namespace(ports, processors));
+
+        Assert.assertEquals(32, events.size());
+        Assert.assertEquals(2, maxRunningCommands.get());
+    }
+
+    @Test
+    public void testFailedCommandFailsNamespace() throws Exception {
+        Operation ports = operation("ports", 3, null, Arrays.asList("discoveredPorts"));
+        commands.get(ports).set(0, new TestCommand("ports") {
+            @Override
+            protected void run() throws Exception {
+                throw new SMIPluginException("provider failed", SMIPluginException.ERRORCODE_OPERATIONFAILED);
+            }
+        });
+        Operation endPoints = operation("endPoints", 1, Arrays.asList("ports"), Collections.<String> emptyList());
+        assertFails(namespace(ports, endPoints), "provider failed");
+
+        // the other port commands completed, the end points did not start
+        Assert.assertEquals(0, runningCommands.get());
+        Assert.assertEquals(Collections.frequency(events, "start ports"), Collections.frequency(events, "end ports"));
+        Assert.assertFalse(events.contains("start endPoints"));
+    }
+
+    @Test
+    public void testErrorInCommandFailsNamespace() throws Exception {
+        Operation ports = operation("ports", 3, null, Collections.<String> emptyList());
+        commands.get(ports).set(0, new TestCommand("ports") {
+            @Override
+            protected void run() {
+                throw new LinkageError("missing class");
+            }
+        });
+        assertFails(namespace(ports), "missing class");
+        Assert.assertEquals(0, runningCommands.get());
+    }
+
+    @Test
+    public void testInterruptWaitsForCommands() throws Exception {
+        final Thread caller = Thread.currentThread();
+        Operation ports = operation("ports", 2, null, Collections.<String> emptyList());
+        commands.get(ports).set(0, new TestCommand("ports") {
+            @Override
+            protected void run() throws Exception {
+                caller.interrupt();
+                super.run();
+            }
+        });
+        Operation processors = operation("processors", 1, Arrays.asList("ports"), Collections.<String> emptyList());
+        try {
+            executor.execute(namespace(ports, processors));
+            Assert.fail("Interrupted execution did not fail");
+        } catch (BaseCollectionException e) {
+            Assert.assertTrue(Thread.interrupted());
+        }
+        Assert.assertEquals(0, runningCommands.get());
+        Assert.assertEquals(4, events.size());
+        Assert.assertFalse(events.contains("start processors"));
+    }
+
+    private void assertFails(Namespace ns, String message) {
+        try {
+            executor.execute(ns);
+            Assert.fail("Execution did not fail");
+        } catch (BaseCollectionException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains(message));
+        }
+    }
+
+    private Operation operation(String name, int commandCount, List<String> inputs, List<String> outputs) {
+        Operation operation = new Operation();
+        operation.setResult(name);
+        operation.setMessage(name);
+        operation.setInputs(inputs);
+        operation.setOutputs(outputs);
+        List<Command> operationCommands = new ArrayList<Command>();
+        for (int i = 0; i < commandCount; i++) {
+            operationCommands.add(new TestCommand(name));
+        }
+        commands.put(operation, operationCommands);
+        return operation;
+    }
+
+    private static Namespace namespace(Operation... operations) {
+        Namespace ns = new Namespace();
+        ns.setOperations(new ArrayList<Object>(Arrays.asList((Object[]) operations)));
+        return ns;
+    }
+
+    /**
+     * Command recording its start and end, and the number of commands running at the same time
+     */
+    private class TestCommand implements Command {
+        private final String name;
+
+        TestCommand(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Object execute() {
+            events.add("start " + name);
+            int running = runningCommands.incrementAndGet();
+            int max = maxRunningCommands.get();
+            while (running > max && !maxRunningCommands.compareAndSet(max, running)) {
+                max = maxRunningCommands.get();
+            }
+            try {
+                run();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            } finally {
+                runningCommands.decrementAndGet();
+                events.add("end " + name);
+            }
+            return null;
+        }
+
+        protected void run() throws Exception {
+            long end = System.currentTimeMillis() + COMMAND_MILLIS;
+            // sleeps through interrupts, as provider calls do
+            while (System.currentTimeMillis() < end) {
+                try {
+                    Thread.sleep(end - System.currentTimeMillis());
+                } catch (InterruptedException e) {
+                    continue;
+                }
+            }
+        }
+
+        @Override
+        public Object[] retreiveArguments() {
+            return new Object[0];
+        }
+
+        @Override
+        public int getCommandIndex() {
+            return 0;
+        }
+    }
+
+    private static class TestExecutor extends Executor {
+        @Override
+        protected void customizeException(Exception e, Operation operation) throws BaseCollectionException {
+            throw new SMIPluginException(e.getMessage());
+        }
+    }
+}
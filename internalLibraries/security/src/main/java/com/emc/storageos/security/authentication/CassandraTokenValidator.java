@@ -66,6 +66,12 @@ public class CassandraTokenValidator implements TokenValidator {
     @Autowired
     protected GeoClientCacheManager geoClientCacheMgt;
 
+    // validated local tokens, created on first use if enabled
+    private boolean _tokenCacheEnabled = false;
+    private int _tokenCacheMaxEntries = 10000;
+    private int _tokenCacheMaxAgeInSecs = 60;
+    private volatile ValidatedTokenCache _tokenCache;
+
     /**
      * Setter for coordinator client. Needed for testing. Otherwise
      * gets autowired.
@@ -92,6 +98,127 @@ public class CassandraTokenValidator implements TokenValidator {
         interVDCTokenCacheHelper = helper;
     }
 
+    public void setTokenCacheEnabled(boolean enabled) {
+        _tokenCacheEnabled = enabled;
+    }
+
+    public void setTokenCacheMaxEntries(int maxEntries) {
+        _tokenCacheMaxEntries = maxEntries;
+    }
+
+    public void setTokenCacheMaxAgeInSecs(int maxAgeInSecs) {
+        _tokenCacheMaxAgeInSecs = maxAgeInSecs;
+    }
+
+    /**
+     * Returns the cache of validated tokens, starting it on first use
+     * 
+     * @return the cache, or null if tokens are not cached
+     */
+    protected ValidatedTokenCache getTokenCache() {
+        if (!_tokenCacheEnabled || _coordinator == null || _maxLifeValuesHolder == null) {
+            return null;
+        }
+        ValidatedTokenCache cache = _tokenCache;
+        if (cache == null) {
+            synchronized (this) {
+                cache = _tokenCache;
+                if (cache == null) {
+                    cache = new ValidatedTokenCache(_tokenCacheMaxEntries, _tokenCacheMaxAgeInSecs);
+                    if (!cache.start(_coordinator)) {
+                        _tokenCacheEnabled = false;
+                        return null;
+                    }
+                    _tokenCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Drops a deleted token from the cache of this node, and of the other nodes if asked to
+     * 
+     * @param tokenId
+     * @param notifyOtherNodes
+     */
+    protected void revokeCachedToken(URI tokenId, boolean notifyOtherNodes) {
+        ValidatedTokenCache cache = getTokenCache();
+        if (cache != null) {
+            cache.revoke(tokenId, notifyOtherNodes);
+        }
+    }
+
+    /**
+     * Drops a token from the cache of this node, e.g. after it was logged out through authsvc.
+     * 
+     * @param rawToken
+     */
+    public void revokeCachedToken(String rawToken) {
+        ValidatedTokenCache cache = _tokenCache;
+        if (cache == null || rawToken == null) {
+            return;
+        }
+        try {
+            cache.revoke(_tokenEncoder.decode(rawToken).getTokenId(), false);
+        } catch (Exception e) {
+            _log.debug("Could not decode token to revoke: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Drops all tokens of a user from the cache of this node, and of the other nodes if asked to
+     * 
+     * @param userName
+     * @param notifyOtherNodes
+     */
+    protected void revokeCachedTokensOfUser(String userName, boolean notifyOtherNodes) {
+        ValidatedTokenCache cache = getTokenCache();
+        if (cache != null && userName != null) {
+            cache.revokeUser(userName, notifyOtherNodes);
+        }
+    }
+
+    /**
+     * Drops all tokens of a user from the cache of this node, e.g. after the user was logged out through authsvc.
+     * 
+     * @param userName
+     */
+    public void revokeCachedTokensOfUser(String userName) {
+        ValidatedTokenCache cache = _tokenCache;
+        if (cache != null && userName != null) {
+            cache.revokeUser(userName, false);
+        }
+    }
+
+    /**
+     * Returns the time in ms until which a valid token may be used without looking at the db again:
+     * until it expires, is idle for too long, or its last access time is due to be updated.
+     * 
+     * @param token
+     * @return time in ms, 0 if the token must not be cached
+     */
+    protected long getUsableUntil(BaseToken token) {
+        if (token instanceof Token) {
+            Token tokenObj = (Token) token;
+            if (tokenObj.getExpirationTime() == null || tokenObj.getLastAccessTime() == null) {
+                return 0;
+            }
+            long lastAccessUpdate = tokenObj.getLastAccessTime() + _maxLifeValuesHolder.getTokenIdleTimeGraceInMins();
+            long idleExpiry = tokenObj.getLastAccessTime() + _maxLifeValuesHolder.getMaxTokenIdleTimeInMins()
+                    + _maxLifeValuesHolder.getTokenIdleTimeGraceInMins();
+            return Math.min(tokenObj.getExpirationTime(), Math.min(lastAccessUpdate, idleExpiry)) * MIN_TO_MSECS;
+        } else if (token instanceof ProxyToken) {
+            Long lastValidatedTime = ((ProxyToken) token).getLastValidatedTime();
+            if (lastValidatedTime == null) {
+                return 0;
+            }
+            // the user is checked again once the validation expires
+            return (lastValidatedTime + _maxLifeValuesHolder.getMaxTokenLifeTimeInMins()) * MIN_TO_MSECS;
+        }
+        return 0;
+    }
+
     /**
      * get current time in minutes
      * 
@@ -260,7 +387,21 @@ public class CassandraTokenValidator implements TokenValidator {
             return getForeignToken(tw, tokenIn);
         }
 
-        return resolveUser(fetchTokenLocal(tw));
+        ValidatedTokenCache cache = getTokenCache();
+        if (cache == null) {
+            return resolveUser(fetchTokenLocal(tw));
+        }
+        ValidatedTokenCache.CachedToken cached = cache.get(tw.getTokenId());
+        if (cached != null) {
+            return cached.getUser();
+        }
+        long generation = cache.getGeneration();
+        BaseToken token = fetchTokenLocal(tw);
+        StorageOSUserDAO user = resolveUser(token);
+        if (user != null && !user.getInactive()) {
+            cache.put(token, user, getUsableUntil(token), generation);
+        }
+        return user;
     }
 
     /**
@@ -324,7 +465,8 @@ public class CassandraTokenValidator implements TokenValidator {
                             "" + tokenObj.getExpirationTime() });
         }
         // we are here because token is either expired or inactive,
-        // remove the token and return false
+        // remove the token and return false. Other nodes stop using an expired token by themselves.
+        revokeCachedToken(tokenObj.getId(), tokenObj.getInactive());
         try {
             deleteTokenInternal(tokenObj);
         } catch (DatabaseException ex) {
@@ -35,6 +35,10 @@ public class InternalLogoutClient {
     @Autowired
     protected TokenEncoder tokenEncoder;
 
+    // drops the logged out tokens from the local cache without waiting for the revocation notification
+    @Autowired(required = false)
+    private CassandraTokenValidator tokenValidator;
+
     /**
      * Basic internal api call to authsvc to logout a user.
      * 
@@ -103,6 +107,7 @@ public class InternalLogoutClient {
 
         String endpoint = null;
         int attempts = 0;
+        final String loggedOutUser = username;
 
         if (StringUtils.isNotBlank(username)) {
             try {
@@ -134,6 +139,14 @@ public class InternalLogoutClient {
 
                     if (status == ClientResponse.Status.OK.getStatusCode()) {
                         log.info("User logged out successfully.  User will have to re-login.");
+                        if (tokenValidator != null) {
+                            // authsvc deleted all tokens of the user if one was given, else the token
+                            if (StringUtils.isBlank(loggedOutUser)) {
+                                tokenValidator.revokeCachedToken(rawToken);
+                            } else {
+                                tokenValidator.revokeCachedTokensOfUser(loggedOutUser);
+                            }
+                        }
                         return true;
                     } else if (status == ClientResponse.Status.UNAUTHORIZED.getStatusCode() &&
                             !notify) {
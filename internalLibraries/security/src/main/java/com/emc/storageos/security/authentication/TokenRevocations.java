@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+
+package com.emc.storageos.security.authentication;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.emc.storageos.coordinator.client.model.CoordinatorClassInfo;
+import com.emc.storageos.coordinator.client.model.CoordinatorSerializable;
+
+/**
+ * Recent token revocations published to the other nodes caching validated tokens.
+ * Each revocation names a token or a user whose tokens were revoked. Revocations older
+ * than the max age of the caches are pruned, since no cache holds those tokens anymore.
+ * If more than MAX_REVOCATIONS are recent, the oldest are dropped and the list is marked
+ * truncated, so that readers drop all their cached tokens instead.
+ */
+public class TokenRevocations implements CoordinatorSerializable {
+    private static final String CONFIG_KIND = "tokenrevocations";
+    private static final String CONFIG_ID = "global";
+    private static final String TRUNCATED = "truncated";
+    private static final String TOKEN = "t";
+    private static final String USER = "u";
+
+    public static final int MAX_REVOCATIONS = 5000;
+
+    /**
+     * A revoked token or user
+     */
+    public static class Revocation {
+        private final long _time;
+        private final URI _tokenId;
+        private final String _userName;
+
+        private Revocation(long time, URI tokenId, String userName) {
+            _time = time;
+            _tokenId = tokenId;
+            _userName = userName;
+        }
+
+        public long getTime() {
+            return _time;
+        }
+
+        /**
+         * @return the revoked token, null if the tokens of a user were revoked
+         */
+        public URI getTokenId() {
+            return _tokenId;
+        }
+
+        /**
+         * @return the user whose tokens were revoked, null if a single token was revoked
+         */
+        public String getUserName() {
+            return _userName;
+        }
+    }
+
+    private final List<Revocation> _revocations = new ArrayList<Revocation>();
+    private boolean _truncated;
+
+    public TokenRevocations() {
+    }
+
+    public List<Revocation> getRevocations() {
+        return Collections.unmodifiableList(_revocations);
+    }
+
+    public boolean isTruncated() {
+        return _truncated;
+    }
+
+    public void addToken(URI tokenId, long time) {
+        _revocations.add(new Revocation(time, tokenId, null));
+    }
+
+    public void addUser(String userName, long time) {
+        _revocations.add(new Revocation(time, null, userName));
+    }
+
+    /**
+     * Removes the revocations made before the given time, then the oldest ones above MAX_REVOCATIONS
+     *
+     * @param minTime
+     */
+    public void prune(long minTime) {
+        List<Revocation> recent = new ArrayList<Revocation>();
+        for (Revocation revocation : _revocations) {
+            if (revocation.getTime() >= minTime) {
+                recent.add(revocation);
+            }
+        }
+        // the revocations dropped when truncating were older than any pruned now
+        _truncated = _truncated && recent.size() == _revocations.size();
+        if (recent.size() > MAX_REVOCATIONS) {
+            recent = recent.subList(recent.size() - MAX_REVOCATIONS, recent.size());
+            _truncated = true;
+        }
+        _revocations.clear();
+        _revocations.addAll(recent);
+    }
+
+    @Override
+    public String encodeAsString() {
+        StringBuilder builder = new StringBuilder();
+        if (_truncated) {
+            builder.append(TRUNCATED).append('\n');
+        }
+        for (Revocation revocation : _revocations) {
+            builder.append(revocation.getTime()).append(' ');
+            if (revocation.getTokenId() != null) {
+                builder.append(TOKEN).append(' ').append(revocation.getTokenId());
+            } else {
+                builder.append(USER).append(' ').append(revocation.getUserName());
+            }
+            builder.append('\n');
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public TokenRevocations decodeFromString(String infoStr) {
+        TokenRevocations decoded = new TokenRevocations();
+        if (infoStr == null || infoStr.isEmpty()) {
+            return decoded;
+        }
+        for (String line : infoStr.split("\n")) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (line.equals(TRUNCATED)) {
+                decoded._truncated = true;
+                continue;
+            }
+            String[] fields = line.split(" ", 3);
+            if (fields.length != 3) {
+                throw new IllegalArgumentException("Invalid token revocation: " + line);
+            }
+            long time = Long.parseLong(fields[0]);
+            if (fields[1].equals(TOKEN)) {
+                decoded.addToken(URI.create(fields[2]), time);
+            } else if (fields[1].equals(USER)) {
+                decoded.addUser(fields[2], time);
+            } else {
+                throw new IllegalArgumentException("Invalid token revocation: " + line);
+            }
+        }
+        return decoded;
+    }
+
+    @Override
+    public CoordinatorClassInfo getCoordinatorClassInfo() {
+        return new CoordinatorClassInfo(CONFIG_ID, CONFIG_KIND, null);
+    }
+}
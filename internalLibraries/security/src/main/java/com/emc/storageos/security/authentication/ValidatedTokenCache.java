@@ -0,0 +1,355 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+
+package com.emc.storageos.security.authentication;
+
+import java.net.URI;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.curator.framework.recipes.locks.InterProcessLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.emc.storageos.coordinator.client.service.CoordinatorClient;
+import com.emc.storageos.coordinator.client.service.NodeListener;
+import com.emc.storageos.coordinator.common.impl.ZkPath;
+import com.emc.storageos.db.client.model.BaseToken;
+import com.emc.storageos.db.client.model.StorageOSUserDAO;
+
+/**
+ * Size bounded cache of validated local tokens and the users they resolve to, keyed by token id.
+ *
+ * The caller computes how long an entry may be used from the token expiry and idle timeouts;
+ * the cache additionally bounds it by a max age, so that changes of the user record made on
+ * other nodes are picked up. Revoked tokens, or all tokens of a user, are dropped locally and
+ * the revocation is added to the recent revocations kept in a runtime state node in the
+ * coordinator; every node watching that znode drops the tokens listed there when it changes.
+ * All nodes are expected to use the same max age.
+ */
+public class ValidatedTokenCache {
+    private static final Logger _log = LoggerFactory.getLogger(ValidatedTokenCache.class);
+
+    public static final String REVOCATION_STATE_KEY = "tokencache/revocation";
+    private static final String REVOCATION_LOCK = "tokencache-revocation";
+    private static final int REVOCATION_LOCK_WAIT_SECS = 10;
+    private static final int DEFAULT_MAX_ENTRIES = 10000;
+    private static final int DEFAULT_MAX_AGE_IN_SECS = 60;
+
+    private final int _maxEntries;
+    private final long _maxAgeInMillis;
+    private final LinkedHashMap<URI, CachedToken> _tokens;
+    private long _generation = 0;
+
+    private CoordinatorClient _coordinator;
+    private RevocationListener _listener;
+
+    private final AtomicLong _hits = new AtomicLong();
+    private final AtomicLong _misses = new AtomicLong();
+    private final AtomicLong _revocations = new AtomicLong();
+
+    /**
+     * A validated token and its user
+     */
+    public static class CachedToken {
+        private final BaseToken _token;
+        private final StorageOSUserDAO _user;
+        private final long _expireTime;
+
+        CachedToken(BaseToken token, StorageOSUserDAO user, long expireTime) {
+            _token = token;
+            _user = user;
+            _expireTime = expireTime;
+        }
+
+        public BaseToken getToken() {
+            return _token;
+        }
+
+        public StorageOSUserDAO getUser() {
+            return _user;
+        }
+    }
+
+    public ValidatedTokenCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_AGE_IN_SECS);
+    }
+
+    public ValidatedTokenCache(final int maxEntries, int maxAgeInSecs) {
+        _maxEntries = maxEntries;
+        _maxAgeInMillis = maxAgeInSecs * 1000L;
+        _tokens = new LinkedHashMap<URI, CachedToken>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<URI, CachedToken> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Starts listening for revocations published by other nodes.
+     *
+     * @param coordinator
+     * @return false if the listener could not be added, in which case nothing must be cached
+     */
+    public synchronized boolean start(CoordinatorClient coordinator) {
+        _coordinator = coordinator;
+        _listener = new RevocationListener();
+        try {
+            _coordinator.addNodeListener(_listener);
+        } catch (Exception e) {
+            _log.error("Failed to listen for token revocations, tokens will not be cached", e);
+            _listener = null;
+            return false;
+        }
+        _log.info("Caching up to {} validated tokens for up to {}s", _maxEntries, _maxAgeInMillis / 1000);
+        return true;
+    }
+
+    public synchronized void stop() {
+        if (_listener != null) {
+            _coordinator.removeNodeListener(_listener);
+            _listener = null;
+        }
+        _tokens.clear();
+        _log.info("Validated token cache stopped: {}", this);
+    }
+
+    /**
+     * @return the generation to pass to put() for a token read from the db from now on
+     */
+    public synchronized long getGeneration() {
+        return _generation;
+    }
+
+    /**
+     * @param tokenId
+     * @return the cached token and user, or null if not cached or no longer usable
+     */
+    public synchronized CachedToken get(URI tokenId) {
+        CachedToken cached = _tokens.get(tokenId);
+        if (cached != null && cached._expireTime <= System.currentTimeMillis()) {
+            _tokens.remove(tokenId);
+            cached = null;
+        }
+        if (cached == null) {
+            _misses.incrementAndGet();
+        } else {
+            _hits.incrementAndGet();
+        }
+        return cached;
+    }
+
+    /**
+     * Caches a validated token.
+     *
+     * @param token
+     * @param user user record of the token
+     * @param usableUntil time in ms after which the token has to be checked against the db again
+     * @param generation generation returned by getGeneration() before the token was read
+     */
+    public synchronized void put(BaseToken token, StorageOSUserDAO user, long usableUntil, long generation) {
+        if (generation != _generation || _listener == null) {
+            // a token was revoked while this one was being read
+            return;
+        }
+        long expireTime = Math.min(usableUntil, System.currentTimeMillis() + _maxAgeInMillis);
+        if (expireTime > System.currentTimeMillis()) {
+            _tokens.put(token.getId(), new CachedToken(token, user, expireTime));
+        }
+    }
+
+    /**
+     * Drops a token which was deleted or logged out
+     *
+     * @param tokenId
+     * @param notifyOtherNodes if true, the other nodes drop the token too
+     */
+    public void revoke(URI tokenId, boolean notifyOtherNodes) {
+        synchronized (this) {
+            _generation++;
+            _tokens.remove(tokenId);
+        }
+        if (notifyOtherNodes) {
+            publishRevocation(tokenId, null);
+        }
+    }
+
+    /**
+     * Drops all tokens of a user, e.g. when the user logged out of all sessions
+     *
+     * @param userName name of the user, compared ignoring case
+     * @param notifyOtherNodes if true, the other nodes drop the tokens of the user too
+     */
+    public void revokeUser(String userName, boolean notifyOtherNodes) {
+        Set<String> userNames = new HashSet<String>();
+        userNames.add(userName.toLowerCase());
+        synchronized (this) {
+            _generation++;
+            removeTokensOfUsers(userNames);
+        }
+        if (notifyOtherNodes) {
+            publishRevocation(null, userName);
+        }
+    }
+
+    /**
+     * Drops all cached tokens of this node
+     */
+    public synchronized void clear() {
+        _generation++;
+        _tokens.clear();
+    }
+
+    private void removeTokensOfUsers(Set<String> userNames) {
+        Iterator<CachedToken> it = _tokens.values().iterator();
+        while (it.hasNext()) {
+            String userName = it.next().getUser().getUserName();
+            if (userName != null && userNames.contains(userName.toLowerCase())) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Adds a revocation to the recent ones in the coordinator; done synchronously, so that
+     * the token is not accepted anymore on other nodes once the logout returns. The list is
+     * updated under a lock so that concurrent revocations of other nodes are not lost.
+     * Revocations made more than twice the max age ago are pruned, which leaves room for
+     * clock differences between the nodes.
+     *
+     * @param tokenId revoked token, or null
+     * @param userName user whose tokens were revoked, or null
+     */
+    private void publishRevocation(URI tokenId, String userName) {
+        CoordinatorClient coordinator;
+        synchronized (this) {
+            coordinator = _coordinator;
+        }
+        if (coordinator == null) {
+            return;
+        }
+        InterProcessLock lock = null;
+        boolean locked = false;
+        try {
+            lock = coordinator.getLock(REVOCATION_LOCK);
+            locked = lock.acquire(REVOCATION_LOCK_WAIT_SECS, TimeUnit.SECONDS);
+            if (!locked) {
+                // the other nodes still drop the token when their entries reach the max age
+                _log.warn("Timed out waiting for the token revocation lock, revocation not published");
+                return;
+            }
+            TokenRevocations revocations = coordinator.queryRuntimeState(REVOCATION_STATE_KEY, TokenRevocations.class);
+            if (revocations == null) {
+                revocations = new TokenRevocations();
+            }
+            long now = System.currentTimeMillis();
+            revocations.prune(now - 2 * _maxAgeInMillis);
+            if (tokenId != null) {
+                revocations.addToken(tokenId, now);
+            } else {
+                revocations.addUser(userName, now);
+            }
+            coordinator.persistRuntimeState(REVOCATION_STATE_KEY, revocations);
+        } catch (Exception e) {
+            _log.warn("Failed to publish token revocation: {}", e.getMessage());
+        } finally {
+            if (locked) {
+                try {
+                    lock.release();
+                } catch (Exception e) {
+                    _log.warn("Failed to release the token revocation lock", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops the cached tokens revoked on any node, or all tokens if the revocations cannot be read
+     */
+    private void applyRevocations() {
+        TokenRevocations revocations;
+        try {
+            revocations = _coordinator.queryRuntimeState(REVOCATION_STATE_KEY, TokenRevocations.class);
+        } catch (Exception e) {
+            _log.warn("Failed to read token revocations, drop cached tokens: {}", e.getMessage());
+            clear();
+            return;
+        }
+        if (revocations == null) {
+            return;
+        }
+        if (revocations.isTruncated()) {
+            _log.info("Too many recent token revocations, drop cached tokens");
+            clear();
+            return;
+        }
+        Set<String> userNames = new HashSet<String>();
+        synchronized (this) {
+            _generation++;
+            for (TokenRevocations.Revocation revocation : revocations.getRevocations()) {
+                if (revocation.getTokenId() != null) {
+                    _tokens.remove(revocation.getTokenId());
+                } else {
+                    userNames.add(revocation.getUserName().toLowerCase());
+                }
+            }
+            if (!userNames.isEmpty()) {
+                removeTokensOfUsers(userNames);
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return _tokens.size();
+    }
+
+    public long getHitCount() {
+        return _hits.get();
+    }
+
+    public long getMissCount() {
+        return _misses.get();
+    }
+
+    public long getRevocationCount() {
+        return _revocations.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("size=%d hits=%d misses=%d remoteRevocations=%d", size(), getHitCount(), getMissCount(),
+                getRevocationCount());
+    }
+
+    /**
+     * Watches the revocation znode
+     */
+    private class RevocationListener implements NodeListener {
+        @Override
+        public String getPath() {
+            return String.format("%s/%s", ZkPath.STATE, REVOCATION_STATE_KEY);
+        }
+
+        @Override
+        public void nodeChanged() {
+            _log.debug("A token was revoked on some node, drop revoked tokens");
+            _revocations.incrementAndGet();
+            applyRevocations();
+        }
+
+        @Override
+        public void connectionStateChanged(State state) {
+            // revocations may have been missed while disconnected
+            _log.info("Connection state changed to {}, drop cached tokens", state);
+            clear();
+        }
+    }
+}
@@ -86,6 +86,7 @@ public class BasePermissionsHelper {
     private static final String ROOT = "root";
     private DbClient _dbClient = null;
     private boolean _usingCache = true;
+    private UserPermissionsCache _permissionsCache;
     private Map<CoordinatorClient.LicenseType, Boolean> licensedCache = new HashMap<CoordinatorClient.LicenseType, Boolean>();
 
     @Autowired(required = false)
@@ -527,6 +528,19 @@ public class BasePermissionsHelper {
         _usingCache = usingCache;
     }
 
+    /**
+     * Sets the cache of computed user permissions shared across requests
+     *
+     * @param permissionsCache
+     */
+    public void setPermissionsCache(UserPermissionsCache permissionsCache) {
+        _permissionsCache = permissionsCache;
+    }
+
+    private boolean isPermissionsCacheActive() {
+        return _usingCache && _permissionsCache != null && _permissionsCache.isActive();
+    }
+
     /**
      * Find the tenant for a user based on the attribute (key=value) string
      * 
@@ -538,6 +552,17 @@ public class BasePermissionsHelper {
             _log.warn("user mapping is empty");
             return null;
         }
+        boolean cached = isPermissionsCacheActive();
+        String mappingKey = null;
+        long generation = 0;
+        if (cached) {
+            mappingKey = userMapping.toString();
+            URI tenantId = _permissionsCache.getMappingTenant(mappingKey);
+            if (tenantId != null) {
+                return tenantId;
+            }
+            generation = _permissionsCache.getGeneration();
+        }
         try {
             final List<URI> tenantIds = new ArrayList<URI>();
             QueryResultList<URI> results = new QueryResultList<URI>() {
@@ -577,6 +602,9 @@ public class BasePermissionsHelper {
                 _log.warn("Tenant lookup returned {} tenants for mapping: {}", userMapping.toString());
                 return null;
             } else {
+                if (cached) {
+                    _permissionsCache.putMappingTenant(mappingKey, tenantIds.get(0), generation);
+                }
                 return tenantIds.get(0);
             }
         } catch (DatabaseException ex) {
@@ -816,6 +844,17 @@ public class BasePermissionsHelper {
         if (tenantId == null) {
             return Collections.emptySet();
         }
+        boolean cached = isPermissionsCacheActive();
+        String userKey = null;
+        long generation = 0;
+        if (cached) {
+            userKey = UserPermissionsCache.getUserKey(user);
+            Set<String> cachedRoles = _permissionsCache.getTenantRoles(userKey, tenantId);
+            if (cachedRoles != null) {
+                return cachedRoles;
+            }
+            generation = _permissionsCache.getGeneration();
+        }
         Set<String> tenantRoles = new HashSet<String>();
         TenantOrg tenant = getObjectById(tenantId, TenantOrg.class);
         if (tenant == null) {
@@ -837,6 +876,9 @@ public class BasePermissionsHelper {
         if (!tenantId.equals(userTenantId) &&
                 !TenantOrg.isRootTenant(userTenant) &&
                 !tenant.getParentTenant().getURI().equals(userTenantId)) {
+            if (cached) {
+                _permissionsCache.putTenantRoles(userKey, tenantId, Collections.<String> emptySet(), generation);
+            }
             return Collections.emptySet();
         }
 
@@ -871,7 +913,11 @@ public class BasePermissionsHelper {
         // Now based on userGroup role assignments.
         updateUserTenantRolesBasedOnUserGroup(user, tenant, tenantRoles);
 
-        return Collections.unmodifiableSet(tenantRoles);
+        Set<String> result = Collections.unmodifiableSet(tenantRoles);
+        if (cached) {
+            _permissionsCache.putTenantRoles(userKey, tenantId, result, generation);
+        }
+        return result;
     }
 
     /**
@@ -886,6 +932,17 @@ public class BasePermissionsHelper {
         if (projectId == null) {
             return Collections.emptySet();
         }
+        boolean cached = isPermissionsCacheActive();
+        String userKey = null;
+        long generation = 0;
+        if (cached) {
+            userKey = UserPermissionsCache.getUserKey(user);
+            Set<String> cachedAcls = _permissionsCache.getProjectAcls(userKey, projectId);
+            if (cachedAcls != null) {
+                return cachedAcls;
+            }
+            generation = _permissionsCache.getProjectGeneration();
+        }
         Set<String> projectACLs = new HashSet<String>();
         Project project = getObjectById(projectId, Project.class);
         if (project == null) {
@@ -927,7 +984,11 @@ public class BasePermissionsHelper {
         // Now based on userGroup acl assignments.
         updateUserProjectAclBasedOnUserGroup(user, project, projectACLs);
 
-        return Collections.unmodifiableSet(projectACLs);
+        Set<String> result = Collections.unmodifiableSet(projectACLs);
+        if (cached) {
+            _permissionsCache.putProjectAcls(userKey, projectId, result, generation);
+        }
+        return result;
     }
 
     /**
@@ -1373,6 +1434,17 @@ public class BasePermissionsHelper {
     }
 
     public Map<String, Collection<String>> getSubtenantRolesForUser(StorageOSUser user) {
+        boolean cached = isPermissionsCacheActive();
+        String userKey = null;
+        long generation = 0;
+        if (cached) {
+            userKey = UserPermissionsCache.getUserKey(user);
+            Map<String, Collection<String>> cachedRoles = _permissionsCache.getSubtenantRoles(userKey);
+            if (cachedRoles != null) {
+                return cachedRoles;
+            }
+            generation = _permissionsCache.getGeneration();
+        }
         Map<String, Collection<String>> subTenantRoles = new HashMap<String, Collection<String>>();
         URI userHomeTenant = URI.create(user.getTenantId());
 
@@ -1386,6 +1458,10 @@ public class BasePermissionsHelper {
             }
         }
 
+        if (cached) {
+            subTenantRoles = Collections.unmodifiableMap(subTenantRoles);
+            _permissionsCache.putSubtenantRoles(userKey, subTenantRoles, generation);
+        }
         return subTenantRoles;
     }
 
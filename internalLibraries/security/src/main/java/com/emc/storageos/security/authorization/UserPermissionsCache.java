@@ -0,0 +1,376 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+
+package com.emc.storageos.security.authorization;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.emc.storageos.db.client.impl.DbObjectCache;
+import com.emc.storageos.db.client.model.DataObject;
+import com.emc.storageos.db.client.model.Project;
+import com.emc.storageos.db.client.model.TenantOrg;
+import com.emc.storageos.db.client.model.UserGroup;
+import com.emc.storageos.db.client.model.VirtualDataCenter;
+import com.emc.storageos.db.common.VdcUtil;
+import com.emc.storageos.security.authentication.StorageOSUser;
+
+/**
+ * Per-user cache of the tenant roles, subtenant roles and project ACLs computed by
+ * BasePermissionsHelper, and of the tenants found for user mappings. Unlike QueriedObjectCache
+ * it outlives the request. Disabled unless configured.
+ *
+ * It asks the DbObjectCache to track the writes of TenantOrg, Project and UserGroup, without
+ * caching their rows, and is told about them on this node before the write returns, and on
+ * the other nodes of the VDC: a Project change drops the cached project ACLs, a TenantOrg
+ * (role assignments, user mappings) or UserGroup change drops everything. Those classes are
+ * replicated to the other VDCs, whose writes are not seen here, so nothing is cached while
+ * this VDC is connected to others; that is checked again whenever a VirtualDataCenter is
+ * written, and after the max age. Entries are also bounded by the max age.
+ */
+public class UserPermissionsCache implements DbObjectCache.ChangeListener {
+    private static final Logger _log = LoggerFactory.getLogger(UserPermissionsCache.class);
+
+    private static final int DEFAULT_MAX_USERS = 1000;
+    private static final int DEFAULT_MAX_PROJECTS_PER_USER = 10000;
+    private static final int DEFAULT_MAX_AGE_IN_SECS = 60;
+    private static final int MAX_MAPPINGS = 1000;
+    private static final List<Class<? extends DataObject>> TRACKED_CLASSES = Collections.unmodifiableList(
+            Arrays.<Class<? extends DataObject>> asList(TenantOrg.class, Project.class, UserGroup.class,
+                    VirtualDataCenter.class));
+
+    private boolean _enabled = false;
+    private int _maxUsers = DEFAULT_MAX_USERS;
+    private int _maxProjectsPerUser = DEFAULT_MAX_PROJECTS_PER_USER;
+    private long _maxAgeInMillis = DEFAULT_MAX_AGE_IN_SECS * 1000L;
+    private DbObjectCache _objectCache;
+    private volatile boolean _listening = false;
+    private volatile boolean _active = false;
+    private volatile long _nextVdcCheckTime = 0;
+
+    private LinkedHashMap<String, UserEntry> _users;
+    private final LinkedHashMap<String, URI> _mappingTenants = new LinkedHashMap<String, URI>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, URI> eldest) {
+            return size() > MAX_MAPPINGS;
+        }
+    };
+    private long _generation = 0;
+    private long _projectGeneration = 0;
+
+    private final AtomicLong _hits = new AtomicLong();
+    private final AtomicLong _misses = new AtomicLong();
+    private final AtomicLong _invalidations = new AtomicLong();
+
+    /**
+     * The cached permissions of a user
+     */
+    private class UserEntry {
+        private final long _expireTime = System.currentTimeMillis() + _maxAgeInMillis;
+        private final Map<URI, Set<String>> _tenantRoles = new LinkedHashMap<URI, Set<String>>();
+        private final Map<URI, Set<String>> _projectAcls = new LinkedHashMap<URI, Set<String>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<URI, Set<String>> eldest) {
+                return size() > _maxProjectsPerUser;
+            }
+        };
+        private Map<String, Collection<String>> _subtenantRoles;
+    }
+
+    public void setEnabled(boolean enabled) {
+        _enabled = enabled;
+    }
+
+    public void setMaxUsers(int maxUsers) {
+        _maxUsers = maxUsers;
+    }
+
+    public void setMaxProjectsPerUser(int maxProjectsPerUser) {
+        _maxProjectsPerUser = maxProjectsPerUser;
+    }
+
+    public void setMaxAgeInSecs(int maxAgeInSecs) {
+        _maxAgeInMillis = maxAgeInSecs * 1000L;
+    }
+
+    public void setObjectCache(DbObjectCache objectCache) {
+        _objectCache = objectCache;
+    }
+
+    /**
+     * Starts tracking changes of the objects the permissions derive from. Tracking of a class
+     * may fail when the db client starts, so whether the changes are tracked is checked on use.
+     */
+    public synchronized void init() {
+        _users = new LinkedHashMap<String, UserEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, UserEntry> eldest) {
+                return size() > _maxUsers;
+            }
+        };
+        if (!_enabled) {
+            _log.info("User permissions cache is disabled");
+            return;
+        }
+        if (_objectCache == null) {
+            _log.warn("No object cache to track TenantOrg, Project and UserGroup changes, user permissions will not be cached");
+            return;
+        }
+        _objectCache.addChangeListener(this);
+        for (Class<? extends DataObject> clazz : TRACKED_CLASSES) {
+            if (!_objectCache.trackChanges(clazz)) {
+                _log.warn("Changes of {} are not tracked, user permissions will not be cached", clazz.getSimpleName());
+                _objectCache.removeChangeListener(this);
+                return;
+            }
+        }
+        _listening = true;
+        _log.info("Caching permissions of up to {} users for up to {}s", _maxUsers, _maxAgeInMillis / 1000);
+    }
+
+    public synchronized void destroy() {
+        if (_listening) {
+            _objectCache.removeChangeListener(this);
+            _listening = false;
+        }
+        clear();
+        _log.info("User permissions cache stopped: {}", this);
+    }
+
+    /**
+     * @return true if permissions are cached, i.e. the object cache tracks the changes
+     *         of TenantOrg, Project and UserGroup, and this VDC is not connected to others
+     */
+    public boolean isActive() {
+        if (!_listening) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        if (now >= _nextVdcCheckTime) {
+            synchronized (this) {
+                if (now >= _nextVdcCheckTime) {
+                    boolean active = isSingleVdc();
+                    for (Class<? extends DataObject> clazz : TRACKED_CLASSES) {
+                        active = active && _objectCache.isTracked(clazz);
+                    }
+                    if (active != _active) {
+                        // changes may have been missed while they were not tracked
+                        clear();
+                        _active = active;
+                        _log.info("User permissions are {}", active ? "cached" : "no longer cached");
+                    }
+                    _nextVdcCheckTime = now + _maxAgeInMillis;
+                }
+            }
+        }
+        return _active;
+    }
+
+    /**
+     * @return true if no other VDC is connected to this one
+     */
+    protected boolean isSingleVdc() {
+        try {
+            return VdcUtil.isLocalVdcSingleSite();
+        } catch (Exception e) {
+            _log.warn("Failed to check for other VDCs, don't cache user permissions: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public void objectsChanged(Class<? extends DataObject> clazz, Collection<URI> ids) {
+        if (Project.class.equals(clazz)) {
+            clearProjectAcls();
+        } else if (TenantOrg.class.equals(clazz) || UserGroup.class.equals(clazz)) {
+            clear();
+        } else if (VirtualDataCenter.class.equals(clazz)) {
+            synchronized (this) {
+                clear();
+                _active = false;
+                _nextVdcCheckTime = 0;
+            }
+        }
+    }
+
+    /**
+     * Drops all cached permissions
+     */
+    public synchronized void clear() {
+        _generation++;
+        _projectGeneration++;
+        _invalidations.incrementAndGet();
+        if (_users != null) {
+            _users.clear();
+        }
+        _mappingTenants.clear();
+    }
+
+    private synchronized void clearProjectAcls() {
+        _projectGeneration++;
+        _invalidations.incrementAndGet();
+        for (UserEntry entry : _users.values()) {
+            entry._projectAcls.clear();
+        }
+    }
+
+    /**
+     * @return the generation to pass to the put methods for permissions computed from now on
+     */
+    public synchronized long getGeneration() {
+        return _generation;
+    }
+
+    /**
+     * @return the generation to pass to putProjectAcls() for ACLs computed from now on
+     */
+    public synchronized long getProjectGeneration() {
+        return _projectGeneration;
+    }
+
+    /**
+     * Returns the key of the cached permissions of a user. Permissions derive from the
+     * name, tenant, groups and attributes of the user, so all of them are part of the key.
+     *
+     * @param user
+     * @return key
+     */
+    public static String getUserKey(StorageOSUser user) {
+        StringBuilder key = new StringBuilder();
+        key.append(user.getName()).append('|').append(user.getTenantId()).append('|');
+        appendSorted(key, user.getGroups());
+        key.append('|');
+        appendSorted(key, user.getAttributes());
+        return key.toString();
+    }
+
+    private static void appendSorted(StringBuilder key, Set<String> values) {
+        if (values == null || values.isEmpty()) {
+            return;
+        }
+        List<String> sorted = new ArrayList<String>(values);
+        Collections.sort(sorted);
+        for (String value : sorted) {
+            key.append(value).append(',');
+        }
+    }
+
+    /**
+     * Returns the entry of a user, dropping it if it is too old
+     */
+    private UserEntry getEntry(String userKey, boolean create) {
+        UserEntry entry = _users.get(userKey);
+        if (entry != null && entry._expireTime <= System.currentTimeMillis()) {
+            _users.remove(userKey);
+            entry = null;
+        }
+        if (entry == null && create) {
+            entry = new UserEntry();
+            _users.put(userKey, entry);
+        }
+        return entry;
+    }
+
+    private <T> T countLookup(T value) {
+        if (value == null) {
+            _misses.incrementAndGet();
+        } else {
+            _hits.incrementAndGet();
+        }
+        return value;
+    }
+
+    public synchronized Set<String> getTenantRoles(String userKey, URI tenantId) {
+        if (!_active) {
+            return null;
+        }
+        UserEntry entry = getEntry(userKey, false);
+        return countLookup((entry != null) ? entry._tenantRoles.get(tenantId) : null);
+    }
+
+    public synchronized void putTenantRoles(String userKey, URI tenantId, Set<String> roles, long generation) {
+        if (_active && generation == _generation) {
+            getEntry(userKey, true)._tenantRoles.put(tenantId, roles);
+        }
+    }
+
+    public synchronized Set<String> getProjectAcls(String userKey, URI projectId) {
+        if (!_active) {
+            return null;
+        }
+        UserEntry entry = getEntry(userKey, false);
+        return countLookup((entry != null) ? entry._projectAcls.get(projectId) : null);
+    }
+
+    public synchronized void putProjectAcls(String userKey, URI projectId, Set<String> acls, long generation) {
+        if (_active && generation == _projectGeneration) {
+            getEntry(userKey, true)._projectAcls.put(projectId, acls);
+        }
+    }
+
+    public synchronized Map<String, Collection<String>> getSubtenantRoles(String userKey) {
+        if (!_active) {
+            return null;
+        }
+        UserEntry entry = getEntry(userKey, false);
+        return countLookup((entry != null) ? entry._subtenantRoles : null);
+    }
+
+    public synchronized void putSubtenantRoles(String userKey, Map<String, Collection<String>> roles, long generation) {
+        if (_active && generation == _generation) {
+            getEntry(userKey, true)._subtenantRoles = roles;
+        }
+    }
+
+    /**
+     * @param userMapping string form of a user mapping
+     * @return the cached tenant of the mapping, or null
+     */
+    public synchronized URI getMappingTenant(String userMapping) {
+        if (!_active) {
+            return null;
+        }
+        return countLookup(_mappingTenants.get(userMapping));
+    }
+
+    public synchronized void putMappingTenant(String userMapping, URI tenantId, long generation) {
+        if (_active && generation == _generation) {
+            _mappingTenants.put(userMapping, tenantId);
+        }
+    }
+
+    public synchronized int size() {
+        return (_users != null) ? _users.size() : 0;
+    }
+
+    public long getHitCount() {
+        return _hits.get();
+    }
+
+    public long getMissCount() {
+        return _misses.get();
+    }
+
+    public long getInvalidationCount() {
+        return _invalidations.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("users=%d hits=%d misses=%d invalidations=%d", size(), getHitCount(), getMissCount(),
+                getInvalidationCount());
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.security.authentication;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.curator.framework.recipes.locks.InterProcessLock;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.emc.storageos.coordinator.client.model.CoordinatorSerializable;
+import com.emc.storageos.coordinator.client.service.CoordinatorClient;
+import com.emc.storageos.coordinator.client.service.NodeListener;
+import com.emc.storageos.db.client.model.StorageOSUserDAO;
+import com.emc.storageos.db.client.model.Token;
+
+/**
+ * Checks expiry and revocation of cached tokens on two nodes sharing a coordinator
+ * which notifies the revocation listeners as soon as the runtime state is written.
+ */
+public class ValidatedTokenCacheTest {
+    private static final long HOUR = 3600 * 1000L;
+
+    private final List<NodeListener> listeners = new CopyOnWriteArrayList<NodeListener>();
+    private String revocationState;
+    private CoordinatorClient coordinator;
+    private ValidatedTokenCache node1;
+    private ValidatedTokenCache node2;
+    private Token tokenA;
+    private Token tokenB;
+    private Token tokenC;
+
+    @Before
+    public void setUp() {
+        coordinator = createCoordinator();
+        node1 = new ValidatedTokenCache(100, 60);
+        node2 = new ValidatedTokenCache(100, 60);
+        Assert.assertTrue(node1.start(coordinator));
+        Assert.assertTrue(node2.start(coordinator));
+        tokenA = createToken(1);
+        tokenB = createToken(2);
+        tokenC = createToken(3);
+        StorageOSUserDAO user1 = createUser("user1@domain.com");
+        StorageOSUserDAO user2 = createUser("user2@domain.com");
+        for (ValidatedTokenCache cache : new ValidatedTokenCache[] { node1, node2 }) {
+            long generation = cache.getGeneration();
+            long usableUntil = System.currentTimeMillis() + HOUR;
+            cache.put(tokenA, user1, usableUntil, generation);
+            cache.put(tokenB, user1, usableUntil, generation);
+            cache.put(tokenC, user2, usableUntil, generation);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        node1.stop();
+        node2.stop();
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        StorageOSUserDAO user = createUser("user3@domain.com");
+        Token token = createToken(4);
+        node1.put(token, user, System.currentTimeMillis() + 200, node1.getGeneration());
+        Assert.assertSame(user, node1.get(token.getId()).getUser());
+        Thread.sleep(300);
+        Assert.assertNull(node1.get(token.getId()));
+
+        // no longer usable when read
+        node1.put(token, user, System.currentTimeMillis() - 1, node1.getGeneration());
+        Assert.assertNull(node1.get(token.getId()));
+
+        // bounded by the max age
+        ValidatedTokenCache cache = new ValidatedTokenCache(100, 1);
+        Assert.assertTrue(cache.start(coordinator));
+        cache.put(token, user, System.currentTimeMillis() + HOUR, cache.getGeneration());
+        Assert.assertNotNull(cache.get(token.getId()));
+        Thread.sleep(1100);
+        Assert.assertNull(cache.get(token.getId()));
+        cache.stop();
+    }
+
+    @Test
+    public void testRevocationDuringReadIsNotCached() {
+        Token token = createToken(4);
+        long generation = node1.getGeneration();
+        node1.revoke(tokenA.getId(), false);
+        node1.put(token, createUser("user3@domain.com"), System.currentTimeMillis() + HOUR, generation);
+        Assert.assertNull(node1.get(token.getId()));
+    }
+
+    @Test
+    public void testRevokedTokenIsDroppedOnAllNodes() {
+        node1.revoke(tokenA.getId(), true);
+        for (ValidatedTokenCache cache : new ValidatedTokenCache[] { node1, node2 }) {
+            Assert.assertNull(cache.get(tokenA.getId()));
+            Assert.assertNotNull(cache.get(tokenB.getId()));
+            Assert.assertNotNull(cache.get(tokenC.getId()));
+        }
+        Assert.assertEquals(1, readRevocations().getRevocations().size());
+    }
+
+    @Test
+    public void testLogoutOfUserDropsItsTokensOnAllNodes() {
+        node1.revokeUser("USER1@domain.com", true);
+        Assert.assertNull(node1.get(tokenA.getId()));
+        Assert.assertNull(node1.get(tokenB.getId()));
+        Assert.assertNotNull(node1.get(tokenC.getId()));
+        Assert.assertNull(node2.get(tokenA.getId()));
+        Assert.assertNull(node2.get(tokenB.getId()));
+
+        // a later revocation does not lose the earlier one
+        node2.revoke(tokenC.getId(), true);
+        Assert.assertNull(node1.get(tokenC.getId()));
+        TokenRevocations revocations = readRevocations();
+        Assert.assertEquals(2, revocations.getRevocations().size());
+        Assert.assertEquals("USER1@domain.com", revocations.getRevocations().get(0).getUserName());
+        Assert.assertEquals(tokenC.getId(), revocations.getRevocations().get(1).getTokenId());
+    }
+
+    @Test
+    public void testTruncatedRevocationsDropAllTokens() {
+        TokenRevocations revocations = new TokenRevocations();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i <= TokenRevocations.MAX_REVOCATIONS; i++) {
+            revocations.addToken(createToken(10 + i).getId(), now);
+        }
+        revocations.prune(now - HOUR);
+        Assert.assertTrue(revocations.isTruncated());
+        Assert.assertEquals(TokenRevocations.MAX_REVOCATIONS, revocations.getRevocations().size());
+
+        coordinator.persistRuntimeState(ValidatedTokenCache.REVOCATION_STATE_KEY, revocations);
+        Assert.assertEquals(0, node2.size());
+    }
+
+    private TokenRevocations readRevocations() {
+        return coordinator.queryRuntimeState(ValidatedTokenCache.REVOCATION_STATE_KEY, TokenRevocations.class);
+    }
+
+    private static Token createToken(int id) {
+        Token token = new Token();
+        token.setId(URI.create("urn:storageos:Token:" + id + ":vdc1"));
+        return token;
+    }
+
+    private static StorageOSUserDAO createUser(String userName) {
+        StorageOSUserDAO user = new StorageOSUserDAO();
+        user.setUserName(userName);
+        return user;
+    }
+
+    /**
+     * Coordinator keeping the revocation state and calling the node listeners when it is written
+     */
+    private CoordinatorClient createCoordinator() {
+        final InterProcessLock lock = (InterProcessLock) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { InterProcessLock.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        return method.getName().equals("acquire") && args != null ? Boolean.TRUE : null;
+                    }
+                });
+        return (CoordinatorClient) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { CoordinatorClient.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        String name = method.getName();
+                        if (name.equals("addNodeListener")) {
+                            listeners.add((NodeListener) args[0]);
+                        } else if (name.equals("removeNodeListener")) {
+                            listeners.remove(args[0]);
+                        } else if (name.equals("getLock")) {
+                            return lock;
+                        } else if (name.equals("persistRuntimeState")) {
+                            revocationState = ((CoordinatorSerializable) args[1]).encodeAsString();
+                            for (NodeListener listener : listeners) {
+                                listener.nodeChanged();
+                            }
+                        } else if (name.equals("queryRuntimeState")) {
+                            if (revocationState == null) {
+                                return null;
+                            }
+                            CoordinatorSerializable state = (CoordinatorSerializable) ((Class<?>) args[1]).newInstance();
+                            return state.decodeFromString(revocationState);
+                        } else {
+                            throw new UnsupportedOperationException(name);
+                        }
+                        return null;
+                    }
+                });
+    }
+}
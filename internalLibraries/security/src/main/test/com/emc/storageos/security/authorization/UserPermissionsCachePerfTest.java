@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.security.authorization;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.emc.storageos.db.client.DbClient;
+import com.emc.storageos.db.client.constraint.NamedElementQueryResultList;
+import com.emc.storageos.db.client.constraint.NamedElementQueryResultList.NamedElement;
+import com.emc.storageos.db.client.constraint.QueryResultList;
+import com.emc.storageos.db.client.impl.DbObjectCache;
+import com.emc.storageos.db.client.model.DataObject;
+import com.emc.storageos.db.client.model.NamedURI;
+import com.emc.storageos.db.client.model.Project;
+import com.emc.storageos.db.client.model.TenantOrg;
+import com.emc.storageos.security.authentication.StorageOSUser;
+
+/**
+ * Prints the authorization overhead per API request with 10k projects and a root tenant
+ * with many subtenants, with and without the UserPermissionsCache. The db client is an
+ * in-memory model which adds a fixed latency to every call. Excluded from the unit tests,
+ * run by the PerformanceTest task.
+ */
+public class UserPermissionsCachePerfTest {
+    private static final int PROJECTS = 10000;
+    private static final int SUBTENANTS = 200;
+    private static final int REQUESTS = 200;
+    private static final long DB_LATENCY_NANOS = 20000;
+    private static final String USER = "user@domain.com";
+    private static final String GROUP = "group1@domain.com";
+
+    private final Map<URI, DataObject> objects = new HashMap<URI, DataObject>();
+    private final List<NamedElement> subtenants = new ArrayList<NamedElement>();
+    private final List<URI> projects = new ArrayList<URI>();
+    private final AtomicLong dbCalls = new AtomicLong();
+
+    /**
+     * Authorizes requests which check a tenant role across all subtenants and the ACLs of a random project
+     */
+    @Test
+    public void testPerformance() {
+        TenantOrg rootTenant = createTenant("root", null);
+        for (int i = 0; i < SUBTENANTS; i++) {
+            TenantOrg subtenant = createTenant("sub" + i, rootTenant);
+            subtenants.add(NamedElement.createElement(subtenant.getId(), subtenant.getLabel()));
+            if (i == SUBTENANTS - 1) {
+                subtenant.addRole(new PermissionsKey(PermissionsKey.Type.GROUP, GROUP).toString(), Role.TENANT_ADMIN.toString());
+            }
+        }
+        for (int i = 0; i < PROJECTS; i++) {
+            Project project = new Project();
+            project.setId(URI.create("urn:storageos:Project:" + i + ":vdc1"));
+            project.setLabel("project" + i);
+            project.setTenantOrg(new NamedURI(rootTenant.getId(), rootTenant.getLabel()));
+            project.addAcl(new PermissionsKey(PermissionsKey.Type.GROUP, GROUP, rootTenant.getId().toString()).toString(),
+                    ACL.ALL.toString());
+            objects.put(project.getId(), project);
+            projects.add(project.getId());
+        }
+
+        DbObjectCache objectCache = new DbObjectCache();
+        objectCache.start(null);
+        UserPermissionsCache permissionsCache = new UserPermissionsCache() {
+            @Override
+            protected boolean isSingleVdc() {
+                return true;
+            }
+        };
+        permissionsCache.setEnabled(true);
+        permissionsCache.setObjectCache(objectCache);
+        permissionsCache.init();
+        BasePermissionsHelper helper = new BasePermissionsHelper(createDbClient());
+        StorageOSUser user = new StorageOSUser(USER, rootTenant.getId().toString());
+        user.addGroup(GROUP);
+
+        try {
+            for (boolean cached : new boolean[] { false, true }) {
+                helper.setPermissionsCache(cached ? permissionsCache : null);
+                Random random = new Random(1);
+                dbCalls.set(0);
+                long start = System.nanoTime();
+                for (int i = 0; i < REQUESTS; i++) {
+                    QueriedObjectCache.clearCache();
+                    Assert.assertTrue(helper.userHasGivenRoleInAnyTenant(user, Role.TENANT_ADMIN));
+                    Assert.assertTrue(helper.userHasGivenACL(user, projects.get(random.nextInt(PROJECTS)), ACL.ALL));
+                }
+                long micros = (System.nanoTime() - start) / 1000 / REQUESTS;
+                System.out.println(String.format("Authorization per request with %d projects and %d subtenants, %s: "
+                        + "%d db calls, %d us", PROJECTS, SUBTENANTS, cached ? "cached" : "not cached",
+                        dbCalls.get() / REQUESTS, micros));
+            }
+            System.out.println("User permissions cache: " + permissionsCache);
+        } finally {
+            permissionsCache.destroy();
+            objectCache.stop();
+            QueriedObjectCache.clearCache();
+        }
+    }
+
+    private TenantOrg createTenant(String name, TenantOrg parent) {
+        TenantOrg tenant = new TenantOrg();
+        tenant.setId(URI.create("urn:storageos:TenantOrg:" + name + ":global"));
+        tenant.setLabel(name);
+        tenant.setParentTenant(new NamedURI((parent != null) ? parent.getId() : URI.create(TenantOrg.NO_PARENT), name));
+        // role assignments which are not user groups still cost a user group lookup each
+        tenant.addRole(new PermissionsKey(PermissionsKey.Type.GROUP, "admins@domain.com").toString(), Role.TENANT_ADMIN.toString());
+        tenant.addRole(new PermissionsKey(PermissionsKey.Type.SID, "owner@domain.com").toString(), Role.PROJECT_ADMIN.toString());
+        objects.put(tenant.getId(), tenant);
+        return tenant;
+    }
+
+    /**
+     * Serves the model from memory after a fixed latency; subtenant queries return the
+     * subtenants of the root tenant, user group queries return nothing.
+     */
+    @SuppressWarnings("unchecked")
+    private DbClient createDbClient() {
+        return (DbClient) Proxy.newProxyInstance(DbClient.class.getClassLoader(), new Class<?>[] { DbClient.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (method.getDeclaringClass() == Object.class) {
+                            return method.invoke(this, args);
+                        }
+                        dbCalls.incrementAndGet();
+                        long deadline = System.nanoTime() + DB_LATENCY_NANOS;
+                        while (System.nanoTime() < deadline) {
+                            ;
+                        }
+                        String name = method.getName();
+                        if (name.equals("queryObject") && args.length == 2 && args[1] instanceof URI) {
+                            return objects.get(args[1]);
+                        } else if (name.equals("queryByConstraint") && args.length == 2) {
+                            if (args[1] instanceof NamedElementQueryResultList) {
+                                ((NamedElementQueryResultList) args[1]).setResult(subtenants.iterator());
+                            } else if (args[1] instanceof QueryResultList) {
+                                ((QueryResultList<URI>) args[1]).setResult(Collections.<URI> emptyList().iterator());
+                            }
+                            return null;
+                        } else if (name.equals("queryIterativeObjects")) {
+                            return Collections.emptyList().iterator();
+                        }
+                        throw new UnsupportedOperationException(name);
+                    }
+                });
+    }
+}
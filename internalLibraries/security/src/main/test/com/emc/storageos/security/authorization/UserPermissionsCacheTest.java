@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.security.authorization;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.emc.storageos.db.client.DbClient;
+import com.emc.storageos.db.client.constraint.NamedElementQueryResultList;
+import com.emc.storageos.db.client.constraint.NamedElementQueryResultList.NamedElement;
+import com.emc.storageos.db.client.constraint.QueryResultList;
+import com.emc.storageos.db.client.impl.DbObjectCache;
+import com.emc.storageos.db.client.model.DataObject;
+import com.emc.storageos.db.client.model.NamedURI;
+import com.emc.storageos.db.client.model.Project;
+import com.emc.storageos.db.client.model.TenantOrg;
+import com.emc.storageos.db.client.model.VirtualDataCenter;
+import com.emc.storageos.security.authentication.StorageOSUser;
+
+/**
+ * Checks that UserPermissionsCache serves the permissions of a user across requests only
+ * while the changes they derive from are tracked. The db client serves an in-memory model.
+ */
+public class UserPermissionsCacheTest {
+    private static final int PROJECTS = 10;
+    private static final int SUBTENANTS = 5;
+    private static final String USER = "user@domain.com";
+    private static final String GROUP = "group1@domain.com";
+
+    private final Map<URI, DataObject> objects = new HashMap<URI, DataObject>();
+    private final List<NamedElement> subtenants = new ArrayList<NamedElement>();
+    private final List<URI> projects = new ArrayList<URI>();
+    private final AtomicLong dbCalls = new AtomicLong();
+    private TenantOrg rootTenant;
+    private DbObjectCache objectCache;
+    private UserPermissionsCache permissionsCache;
+    private boolean singleVdc = true;
+    private BasePermissionsHelper helper;
+    private StorageOSUser user;
+
+    @Before
+    public void setUp() {
+        rootTenant = createTenant("root", null);
+        for (int i = 0; i < SUBTENANTS; i++) {
+            TenantOrg subtenant = createTenant("sub" + i, rootTenant);
+            subtenants.add(NamedElement.createElement(subtenant.getId(), subtenant.getLabel()));
+            if (i == SUBTENANTS - 1) {
+                subtenant.addRole(new PermissionsKey(PermissionsKey.Type.GROUP, GROUP).toString(), Role.TENANT_ADMIN.toString());
+            }
+        }
+        for (int i = 0; i < PROJECTS; i++) {
+            Project project = new Project();
+            project.setId(URI.create("urn:storageos:Project:" + i + ":vdc1"));
+            project.setLabel("project" + i);
+            project.setTenantOrg(new NamedURI(rootTenant.getId(), rootTenant.getLabel()));
+            project.addAcl(new PermissionsKey(PermissionsKey.Type.GROUP, GROUP, rootTenant.getId().toString()).toString(),
+                    ACL.ALL.toString());
+            objects.put(project.getId(), project);
+            projects.add(project.getId());
+        }
+
+        // the row cache stays disabled, changes are tracked anyway
+        objectCache = new DbObjectCache();
+        objectCache.start(null);
+
+        permissionsCache = new UserPermissionsCache() {
+            @Override
+            protected boolean isSingleVdc() {
+                return singleVdc;
+            }
+        };
+        permissionsCache.setEnabled(true);
+        permissionsCache.setObjectCache(objectCache);
+        permissionsCache.init();
+
+        helper = new BasePermissionsHelper(createDbClient());
+        user = new StorageOSUser(USER, rootTenant.getId().toString());
+        user.addGroup(GROUP);
+    }
+
+    @After
+    public void tearDown() {
+        permissionsCache.destroy();
+        objectCache.stop();
+        QueriedObjectCache.clearCache();
+    }
+
+    @Test
+    public void testInvalidation() {
+        helper.setPermissionsCache(permissionsCache);
+        URI projectId = projects.get(0);
+        Assert.assertTrue(helper.userHasGivenACL(user, projectId, ACL.ALL));
+        Assert.assertTrue(helper.userHasGivenRoleInAnyTenant(user, Role.TENANT_ADMIN));
+
+        // served from the cache, even once the request scoped cache is gone
+        QueriedObjectCache.clearCache();
+        long calls = dbCalls.get();
+        Assert.assertTrue(helper.userHasGivenACL(user, projectId, ACL.ALL));
+        Assert.assertTrue(helper.userHasGivenRoleInAnyTenant(user, Role.TENANT_ADMIN));
+        Assert.assertEquals(calls, dbCalls.get());
+
+        // a changed project ACL is seen once the project write is reported
+        Project project = (Project) objects.get(projectId);
+        project.removeAcl(new PermissionsKey(PermissionsKey.Type.GROUP, GROUP, rootTenant.getId().toString()).toString(),
+                ACL.ALL.toString());
+        QueriedObjectCache.clearCache();
+        Assert.assertTrue(helper.userHasGivenACL(user, projectId, ACL.ALL));
+        objectCache.invalidate(Project.class, Collections.singletonList(projectId));
+        Assert.assertFalse(helper.userHasGivenACL(user, projectId, ACL.ALL));
+        // tenant roles are kept on project changes
+        calls = dbCalls.get();
+        Assert.assertTrue(helper.userHasGivenRoleInAnyTenant(user, Role.TENANT_ADMIN));
+        Assert.assertEquals(calls, dbCalls.get());
+
+        // a changed role assignment is seen once the tenant write is reported
+        TenantOrg subtenant = (TenantOrg) objects.get(subtenants.get(SUBTENANTS - 1).getId());
+        subtenant.removeRole(new PermissionsKey(PermissionsKey.Type.GROUP, GROUP).toString(), Role.TENANT_ADMIN.toString());
+        QueriedObjectCache.clearCache();
+        objectCache.invalidate(TenantOrg.class, Collections.singletonList(subtenant.getId()));
+        Assert.assertFalse(helper.userHasGivenRoleInAnyTenant(user, Role.TENANT_ADMIN));
+
+        // other users don't share the cached permissions
+        StorageOSUser other = new StorageOSUser("other@domain.com", rootTenant.getId().toString());
+        Assert.assertFalse(helper.userHasGivenACL(other, projects.get(1), ACL.ALL));
+    }
+
+    @Test
+    public void testDisabledByDefault() {
+        UserPermissionsCache cache = new UserPermissionsCache();
+        cache.setObjectCache(objectCache);
+        cache.init();
+        Assert.assertFalse(cache.isActive());
+        cache.destroy();
+    }
+
+    @Test
+    public void testNotCachedWithOtherVdcs() {
+        singleVdc = false;
+        helper.setPermissionsCache(permissionsCache);
+        URI projectId = projects.get(0);
+        Assert.assertTrue(helper.userHasGivenACL(user, projectId, ACL.ALL));
+        QueriedObjectCache.clearCache();
+        long calls = dbCalls.get();
+        Assert.assertTrue(helper.userHasGivenACL(user, projectId, ACL.ALL));
+        Assert.assertTrue(dbCalls.get() > calls);
+        Assert.assertEquals(0, permissionsCache.size());
+
+        // a VDC write makes the cache check again
+        singleVdc = true;
+        Assert.assertFalse(permissionsCache.isActive());
+        URI vdcId = URI.create("urn:storageos:VirtualDataCenter:1:");
+        objectCache.invalidate(VirtualDataCenter.class, Collections.singletonList(vdcId));
+        Assert.assertTrue(permissionsCache.isActive());
+    }
+
+    private TenantOrg createTenant(String name, TenantOrg parent) {
+        TenantOrg tenant = new TenantOrg();
+        tenant.setId(URI.create("urn:storageos:TenantOrg:" + name + ":global"));
+        tenant.setLabel(name);
+        tenant.setParentTenant(new NamedURI((parent != null) ? parent.getId() : URI.create(TenantOrg.NO_PARENT), name));
+        // role assignments which are not user groups still cost a user group lookup each
+        tenant.addRole(new PermissionsKey(PermissionsKey.Type.GROUP, "admins@domain.com").toString(), Role.TENANT_ADMIN.toString());
+        tenant.addRole(new PermissionsKey(PermissionsKey.Type.SID, "owner@domain.com").toString(), Role.PROJECT_ADMIN.toString());
+        objects.put(tenant.getId(), tenant);
+        return tenant;
+    }
+
+    /**
+     * Serves the model from memory; subtenant queries return the subtenants of the
+     * root tenant, user group queries return nothing.
+     */
+    @SuppressWarnings("unchecked")
+    private DbClient createDbClient() {
+        return (DbClient) Proxy.newProxyInstance(DbClient.class.getClassLoader(), new Class<?>[] { DbClient.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (method.getDeclaringClass() == Object.class) {
+                            return method.invoke(this, args);
+                        }
+                        dbCalls.incrementAndGet();
+                        String name = method.getName();
+                        if (name.equals("queryObject") && args.length == 2 && args[1] instanceof URI) {
+                            return objects.get(args[1]);
+                        } else if (name.equals("queryByConstraint") && args.length == 2) {
+                            if (args[1] instanceof NamedElementQueryResultList) {
+                                ((NamedElementQueryResultList) args[1]).setResult(subtenants.iterator());
+                            } else if (args[1] instanceof QueryResultList) {
+                                ((QueryResultList<URI>) args[1]).setResult(Collections.<URI> emptyList().iterator());
+                            }
+                            return null;
+                        } else if (name.equals("queryIterativeObjects")) {
+                            return Collections.emptyList().iterator();
+                        }
+                        throw new UnsupportedOperationException(name);
+                    }
+                });
+    }
+}
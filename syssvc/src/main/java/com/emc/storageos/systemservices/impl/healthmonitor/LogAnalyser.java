@@ -83,10 +83,11 @@ public class LogAnalyser {
 
     public void analysisLogs() {
         // parse db and zk error logs and alert if match pre-defined errors/fatals
+        LogNetworkStreamMerger logRequestMgr = null;
         try {
             String serviceNameList = getServiceNameList();
             _log.info("Starting parse error logs for services : {}, and will alert if match pre-defined errors/fatals", serviceNameList);
-            LogNetworkStreamMerger logRequestMgr = getNodeErrorLogs();
+            logRequestMgr = getNodeErrorLogs();
             LogMessage msg = logRequestMgr.readNextMergedLogMessage();
             int finalCount = 0;
             if (msg != null) {
@@ -112,6 +113,10 @@ public class LogAnalyser {
         } catch (Exception e) {
             _log.error("Get exception when achieve logs with error msg: {}; stack trace is {}",
                     e.getMessage(), e.getStackTrace());
+        } finally {
+            if (logRequestMgr != null) {
+                logRequestMgr.close();
+            }
         }
 
     }
@@ -51,6 +51,8 @@ public class LogNetworkWriter {
             dos.flush();
         } catch (CompressorException e) {
             logger.error("Exception in write:", e);
+        } finally {
+            merger.close();
         }
     }
 }
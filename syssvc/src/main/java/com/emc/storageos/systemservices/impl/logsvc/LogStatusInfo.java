@@ -7,18 +7,22 @@ package com.emc.storageos.systemservices.impl.logsvc;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Status lines of a log request. Shared by the streams of a merger, which may be read
+ * by prefetching threads, so all access is synchronized.
+ */
 public class LogStatusInfo {
     // Logger reference.
     private static final Logger logger = LoggerFactory.getLogger(LogStatusInfo.class);
 
     private List<String> status = new LinkedList<>();
-    private static StringBuilder sb = new StringBuilder();
 
     public LogStatusInfo() {
     }
@@ -27,40 +31,51 @@ public class LogStatusInfo {
         this.status = list;
     }
 
-    public void appendInfo(String fileName, int lineNo) {
-        sb.setLength(0); // clear StringBuilder
-        sb.append("Failed to parse line ").append(lineNo).append(" of ").append(fileName);
-        status.add(sb.toString());
+    public synchronized void appendInfo(String fileName, int lineNo) {
+        status.add("Failed to parse line " + lineNo + " of " + fileName);
     }
 
     public void append(LogStatusInfo status) {
         if (status == null || isEmpty()) {
             return;
         }
-        this.status.addAll(status.getStatus());
+        List<String> lines = status.getStatus();
+        synchronized (this) {
+            this.status.addAll(lines);
+        }
     }
 
-    public void appendErrFileName(String fileName) {
-        sb.setLength(0); // clear StringBuffer
-        sb.append(fileName).append(" can not be found");
-        status.add(sb.toString());
+    public synchronized void appendErrFileName(String fileName) {
+        status.add(fileName + " can not be found");
     }
 
-    public void append(String line) {
+    public synchronized void append(String line) {
         this.status.add(line);
     }
 
-    public List<String> getStatus() {
-        return status;
+    /**
+     * @return a copy of the current status lines
+     */
+    public synchronized List<String> getStatus() {
+        return new ArrayList<>(status);
+    }
+
+    /**
+     * Returns the current status lines and clears them
+     */
+    public synchronized List<String> drain() {
+        List<String> lines = new ArrayList<>(status);
+        status.clear();
+        return lines;
     }
 
-    public void write(DataOutputStream dos) throws IOException {
+    public synchronized void write(DataOutputStream dos) throws IOException {
         logger.trace("write()");
         if (status.isEmpty()) {
             logger.info("status is empty");
             return;
         }
-        for (String s : getStatus()) {
+        for (String s : status) {
             int length = s.getBytes().length;
             dos.write(LogACKCode.ACK_STATUS);
             dos.writeInt(length);
@@ -78,7 +93,7 @@ public class LogStatusInfo {
     }
 
     @Override
-    public String toString() {
+    public synchronized String toString() {
         StringBuilder sb = new StringBuilder();
         if (status.size() == 1) {
             sb.append(status.get(0));
@@ -91,11 +106,11 @@ public class LogStatusInfo {
         return sb.toString();
     }
 
-    public void clear() {
+    public synchronized void clear() {
         status.clear();
     }
 
-    public boolean isEmpty() {
+    public synchronized boolean isEmpty() {
         return status.isEmpty();
     }
 }
@@ -20,6 +20,8 @@ public class LogSvcPropertiesLoader {
     // The delimiter for log file paths specified in the properties file.
     private static final String PATH_DELIM = ";";
 
+    private static final int DEFAULT_READ_AHEAD_BATCHES = 4;
+
     // A semicolon separated list of the log file paths supported by the log
     // service.
     private @Value("#{logsvcProperties['logsvc.logFilePaths']}")
@@ -28,6 +30,16 @@ public class LogSvcPropertiesLoader {
     @Value("#{logsvcProperties['logsvc.excludedLogFilePaths']}")
     String _excludedLogFilePaths;
 
+    // The directory of the time indexes of the log files; log files are not
+    // indexed if it is not set.
+    private @Value("#{logsvcProperties['logsvc.timeIndexDir']}")
+    String _timeIndexDir;
+
+    // The number of batches of log messages read ahead of the merge from each
+    // log file or node stream; the streams are read by the merging thread if 0.
+    private @Value("#{logsvcProperties['logsvc.readAheadBatches']}")
+    Integer _readAheadBatches;
+
     // The timeout in seconds when waiting for a node log collector to complete
     // log collection from a Bourne node in the cluster.
     private @Value("#{logsvcProperties['logsvc.nodeLogCollectionTimeout']}")
@@ -87,6 +99,27 @@ public class LogSvcPropertiesLoader {
         return excludedLogFilePathsList;
     }
 
+    /**
+     * Getter for the directory of the log file time indexes.
+     * 
+     * @return The directory, or null if log files are not indexed.
+     */
+    public String getTimeIndexDir() {
+        if (_timeIndexDir == null || _timeIndexDir.trim().isEmpty()) {
+            return null;
+        }
+        return _timeIndexDir.trim();
+    }
+
+    /**
+     * Getter for the number of batches read ahead from each log stream.
+     * 
+     * @return The number of batches, 0 if the streams are not read ahead.
+     */
+    public int getReadAheadBatches() {
+        return (_readAheadBatches != null) ? _readAheadBatches : DEFAULT_READ_AHEAD_BATCHES;
+    }
+
     /**
      * Getter for the node log collector time out.
      * 
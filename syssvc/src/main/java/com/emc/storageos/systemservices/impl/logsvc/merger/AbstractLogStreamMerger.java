@@ -4,11 +4,13 @@
  */
 package com.emc.storageos.systemservices.impl.logsvc.merger;
 
+import java.io.Closeable;
 import java.io.IOException;
-import java.util.*;
+import java.util.PriorityQueue;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.compress.compressors.CompressorException;
+import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -20,24 +22,45 @@ import com.emc.vipr.model.sys.logging.LogRequest;
 
 /**
  * This class is responsible to read one line from each logstream and sort them based on timestamp.
- * This is done on per host basis.
+ * This is done on per host basis. The heads of the streams are kept in a heap, so each message
+ * costs O(log n) comparisons for n streams.
  * 
  */
-public abstract class AbstractLogStreamMerger {
+public abstract class AbstractLogStreamMerger implements Closeable {
     protected LogStream[] logStreamList;
-    protected LogMessage[] logHeads;
     protected LogRequest request;
     protected LogStatusInfo status = new LogStatusInfo();
-    private Set<Integer> finishedList = new HashSet<>();
+    // the next message of each unfinished stream, oldest first
+    private PriorityQueue<StreamHead> heads;
 
     private boolean finished = false;
     private AtomicLong logCounter = new AtomicLong(0);
-    private int finishedCount = 0; // finished streams
     private long prevLogTime; // defaults to 0
 
     // Logger reference.
     private static final Logger logger = LoggerFactory.getLogger(AbstractLogStreamMerger.class);
 
+    /**
+     * The next message of a stream; ties between streams go to the lower stream index
+     */
+    private static class StreamHead implements Comparable<StreamHead> {
+        private final int index;
+        private final LogMessage message;
+
+        StreamHead(int index, LogMessage message) {
+            this.index = index;
+            this.message = message;
+        }
+
+        @Override
+        public int compareTo(StreamHead other) {
+            if (message.getTime() != other.message.getTime()) {
+                return (message.getTime() < other.message.getTime()) ? -1 : 1;
+            }
+            return Integer.compare(index, other.index);
+        }
+    }
+
     /**
      * This is the routine handles the request, sends back the response(outputstream)
      * 
@@ -45,47 +68,44 @@ public abstract class AbstractLogStreamMerger {
      * @throws org.apache.commons.compress.compressors.CompressorException
      */
     public LogMessage readNextMergedLogMessage() throws IOException, CompressorException {
-        LogMessage oldestResult = null;
-        LogMessage oldest = null;
-        int index = -1;
-        if (finishedCount == logStreamList.length) {
+        if (heads == null) {
+            heads = new PriorityQueue<>(Math.max(1, logStreamList.length));
+            for (int i = 0; i < logStreamList.length; i++) {
+                readHead(i);
+            }
+        }
+        StreamHead head = heads.poll();
+        if (head == null) {
             setFinished(true);
             return null;
         }
-        // poll the streams to get the oldest log message
-        for (int i = 0; i < logStreamList.length; i++) {
-            if (finishedList.contains(i)) {
-                continue;
-            }
-            if (logHeads[i] == null) {
-                logHeads[i] = logStreamList[i].readNextLogMessage();
-                if (logHeads[i] == null) { // finished
-                    addFinishedStream(i);
-                    finishedCount++;
-                    logger.debug("merger counter={}", logCounter);
-                    continue;
-                }
-            }
-            // logs[i] should not be null now
-            if (oldest == null || logHeads[i].getTime() < oldest.getTime()) {
-                oldest = logHeads[i];
-                index = i;
-            }
-        }
-        if (oldest != null) {
-            logHeads[index] = null;
-            logCounter.addAndGet(1);
-            if (LogUtil.permitCurrentLog(request.getMaxCount(), logCounter.get(),
-                    oldest.getTime(), prevLogTime)) {
-                oldestResult = oldest;
-            }
-            prevLogTime = oldest.getTime();
+        LogMessage oldest = head.message;
+        readHead(head.index);
+
+        LogMessage oldestResult = null;
+        logCounter.addAndGet(1);
+        if (LogUtil.permitCurrentLog(request.getMaxCount(), logCounter.get(),
+                oldest.getTime(), prevLogTime)) {
+            oldestResult = oldest;
         }
+        prevLogTime = oldest.getTime();
         return oldestResult;
     }
 
+    private void readHead(int i) {
+        LogMessage message = logStreamList[i].readNextLogMessage();
+        if (message == null) { // finished
+            addFinishedStream(i);
+            logger.debug("merger counter={}", logCounter);
+        } else {
+            heads.add(new StreamHead(i, message));
+        }
+    }
+
+    /**
+     * Called once the stream at index i has no more messages
+     */
     protected void addFinishedStream(int i) {
-        finishedList.add(i);
     }
 
     public LogRequest getRequest() {
@@ -115,4 +135,16 @@ public abstract class AbstractLogStreamMerger {
     public void clearStatus() {
         this.status.clear();
     }
+
+    /**
+     * Stops reading the streams, closing those which can be closed
+     */
+    @Override
+    public void close() {
+        for (LogStream stream : logStreamList) {
+            if (stream instanceof Closeable) {
+                IOUtils.closeQuietly((Closeable) stream);
+            }
+        }
+    }
 }
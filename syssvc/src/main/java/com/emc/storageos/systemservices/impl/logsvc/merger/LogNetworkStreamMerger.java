@@ -12,6 +12,11 @@ import java.net.SocketTimeoutException;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import javax.ws.rs.core.MediaType;
 
@@ -21,6 +26,7 @@ import org.apache.commons.io.output.CountingOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.emc.storageos.services.util.NamedThreadPoolExecutor;
 import com.emc.storageos.svcs.errorhandling.resources.APIException;
 import com.emc.storageos.systemservices.impl.client.SysClientFactory;
 import com.emc.storageos.systemservices.impl.logsvc.LogConstants;
@@ -29,15 +35,26 @@ import com.emc.storageos.systemservices.impl.logsvc.LogSvcPropertiesLoader;
 import com.emc.storageos.systemservices.impl.logsvc.marshaller.Marshaller;
 import com.emc.storageos.systemservices.impl.logsvc.marshaller.MarshallerFactory;
 import com.emc.storageos.systemservices.impl.logsvc.stream.LogNetworkReader;
+import com.emc.storageos.systemservices.impl.logsvc.stream.LogStream;
+import com.emc.storageos.systemservices.impl.logsvc.stream.PrefetchingLogStream;
 import com.emc.storageos.systemservices.impl.logsvc.util.LogUtil;
 import com.emc.storageos.systemservices.impl.resource.util.ClusterNodesUtil;
 import com.emc.storageos.systemservices.impl.resource.util.NodeInfo;
 import com.emc.vipr.model.sys.logging.LogRequest;
 
+/**
+ * Merges the log streams of the nodes. The nodes filter and merge their own logs; their
+ * streams are requested in parallel and decoded ahead of the merge in parallel, in bounded
+ * batches, so a slow output stream stops the reading from the nodes.
+ */
 public class LogNetworkStreamMerger extends AbstractLogStreamMerger {
     // Logger reference.
     private static final Logger logger = LoggerFactory.getLogger(LogNetworkStreamMerger.class);
 
+    private static final int PREFETCH_BATCH_SIZE = 256;
+    // shared by all requests, the tasks mostly wait for the nodes
+    private static final NamedThreadPoolExecutor nodeExecutor = createNodeExecutor();
+
     public long streamedBytes;
 
     private MediaType mediaType;
@@ -55,18 +72,32 @@ public class LogNetworkStreamMerger extends AbstractLogStreamMerger {
         this.request = req;
         this.mediaType = mediaType;
         this.propertiesLoader = propertiesLoader;
-        List<LogNetworkReader> readers = getLogNetworkStreams();
-        int size = readers.size();
-        logHeads = new LogMessage[size];
-        this.logStreamList = new LogNetworkReader[size];
-        int index = 0;
-        for (LogNetworkReader reader : readers) {
-            logStreamList[index] = reader;
-            logHeads[index] = null;
-            index++;
+        setStreams(getLogNetworkStreams());
+    }
+
+    private void setStreams(List<LogNetworkReader> readers) {
+        int readAheadBatches = propertiesLoader.getReadAheadBatches();
+        this.logStreamList = new LogStream[readers.size()];
+        for (int i = 0; i < readers.size(); i++) {
+            if (readAheadBatches > 0) {
+                PrefetchingLogStream stream = new PrefetchingLogStream(readers.get(i), nodeExecutor,
+                        PREFETCH_BATCH_SIZE, readAheadBatches);
+                stream.start();
+                logStreamList[i] = stream;
+            } else {
+                logStreamList[i] = readers.get(i);
+            }
         }
     }
 
+    private static NamedThreadPoolExecutor createNodeExecutor() {
+        int threads = 4 * Runtime.getRuntime().availableProcessors();
+        NamedThreadPoolExecutor executor = new NamedThreadPoolExecutor(LogNetworkStreamMerger.class.getSimpleName(),
+                threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     public void streamLogs(OutputStream outputStream) {
         logger.trace("Entering into LogNetworkStreamMerger.streamLogs()");
         CountingOutputStream cos = new CountingOutputStream(new BufferedOutputStream(
@@ -95,10 +126,9 @@ public class LogNetworkStreamMerger extends AbstractLogStreamMerger {
                     }
 
                     // current log batch has been accepted
-                    for (String st : status.getStatus()) {
+                    for (String st : status.drain()) {
                         marshaller.marshall(st, msg);     // use previous log message's timeStamp as status's timeStamp
                     }
-                    status.clear();
 
                     for (LogMessage logMessage : currentLogBatch) {
                         marshaller.marshall(logMessage);
@@ -113,6 +143,8 @@ public class LogNetworkStreamMerger extends AbstractLogStreamMerger {
             marshaller.flush();
         } catch (Exception e) {
             logger.error("Exception in streamLogs:", e);
+        } finally {
+            close();
         }
     }
 
@@ -143,7 +175,12 @@ public class LogNetworkStreamMerger extends AbstractLogStreamMerger {
         return null;
     }
 
-    private List<LogNetworkReader> getLogNetworkStreams() {
+    /**
+     * Requests the log streams of the nodes
+     * 
+     * @return the node streams, sharing the status of this merger
+     */
+    protected List<LogNetworkReader> getLogNetworkStreams() {
         List<NodeInfo> nodeInfo;
         List<LogNetworkReader> logNetworkStreams = new ArrayList<>();
         // Getting all nodes information
@@ -164,42 +201,86 @@ public class LogNetworkStreamMerger extends AbstractLogStreamMerger {
             logger.error("Cannot collect logs from unavailable nodes: {}", failedNodes.toString());
         }
 
+        // connect to all nodes at once, keeping the order of the nodes
+        List<Future<LogNetworkReader>> connections = new ArrayList<>();
         for (final NodeInfo node : nodeInfo) {
-            LogRequest req;
-            SysClientFactory.SysClient sysClient;
-            String baseNodeURL = String.format(SysClientFactory.BASE_URL_FORMAT,
-                    node.getIpAddress(), node.getPort());
-            logger.debug("getting stream from node: " + baseNodeURL);
-            logger.debug("connectTimeout=" + propertiesLoader.getNodeLogConnectionTimeout() * 1000);
-            logger.debug("readTimeout=" + propertiesLoader.getNodeLogCollectorTimeout() * 1000);
-            sysClient = SysClientFactory.getSysClient(URI.create(baseNodeURL),
-                    propertiesLoader.getNodeLogCollectorTimeout() * 1000,
-                    propertiesLoader.getNodeLogConnectionTimeout() * 1000);
-            logger.debug("sysclient=" + sysClient + " uri=" + URI.create(baseNodeURL));
+            connections.add(nodeExecutor.submit(new Callable<LogNetworkReader>() {
+                @Override
+                public LogNetworkReader call() {
+                    return getLogNetworkStream(node);
+                }
+            }));
+        }
+        RuntimeException failure = null;
+        for (Future<LogNetworkReader> connection : connections) {
             try {
-                req = request;
-                req.setNodeIds(new ArrayList<String>() {
-                    {
-                        add(node.getId());
-                    }
-                });
-                InputStream nodeResponseStream = sysClient.post(SysClientFactory
-                        .URI_NODE_LOGS, InputStream.class, req);
-                if (nodeResponseStream != null && nodeResponseStream.available() > 0) {
-                    LogNetworkReader reader = new LogNetworkReader(node.getId(),node.getName(),nodeResponseStream,status);
+                LogNetworkReader reader = connection.get();
+                if (reader != null) {
                     logNetworkStreams.add(reader);
                 }
-            } catch (Exception e) {
-                logger.error("Exception accessing node {}:", baseNodeURL, e);
-                //socketTimeoutException wrapped in ClientHandlerException
-                if (e.getCause() != null && e.getCause().getCause() instanceof SocketTimeoutException) {
-                    throw InternalServerErrorException.internalServerErrors.logCollectionTimeout();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    failure = (RuntimeException) e.getCause();
+                } else {
+                    logger.error("Exception connecting to node:", e.getCause());
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.error("Interrupted while connecting to the nodes");
+                break;
             }
         }
+        if (failure != null) {
+            for (LogNetworkReader reader : logNetworkStreams) {
+                reader.close();
+            }
+            throw failure;
+        }
         return logNetworkStreams;
     }
 
+    private LogNetworkReader getLogNetworkStream(NodeInfo node) {
+        SysClientFactory.SysClient sysClient;
+        String baseNodeURL = String.format(SysClientFactory.BASE_URL_FORMAT,
+                node.getIpAddress(), node.getPort());
+        logger.debug("getting stream from node: " + baseNodeURL);
+        logger.debug("connectTimeout=" + propertiesLoader.getNodeLogConnectionTimeout() * 1000);
+        logger.debug("readTimeout=" + propertiesLoader.getNodeLogCollectorTimeout() * 1000);
+        sysClient = SysClientFactory.getSysClient(URI.create(baseNodeURL),
+                propertiesLoader.getNodeLogCollectorTimeout() * 1000,
+                propertiesLoader.getNodeLogConnectionTimeout() * 1000);
+        logger.debug("sysclient=" + sysClient + " uri=" + URI.create(baseNodeURL));
+        try {
+            InputStream nodeResponseStream = sysClient.post(SysClientFactory
+                    .URI_NODE_LOGS, InputStream.class, getNodeRequest(node.getId()));
+            if (nodeResponseStream != null && nodeResponseStream.available() > 0) {
+                return new LogNetworkReader(node.getId(), node.getName(), nodeResponseStream, status);
+            }
+        } catch (Exception e) {
+            logger.error("Exception accessing node {}:", baseNodeURL, e);
+            //socketTimeoutException wrapped in ClientHandlerException
+            if (e.getCause() != null && e.getCause().getCause() instanceof SocketTimeoutException) {
+                throw InternalServerErrorException.internalServerErrors.logCollectionTimeout();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return a copy of the request for one node; the request itself is shared by the
+     *         connections to all nodes
+     */
+    private LogRequest getNodeRequest(String nodeId) {
+        List<String> nodeIds = new ArrayList<>();
+        nodeIds.add(nodeId);
+        LogRequest req = new LogRequest.Builder().startTime(request.getStartTime())
+                .endTime(request.getEndTime()).logLevel(request.getLogLevel())
+                .maxCont(request.getMaxCount()).maxBytes(request.getMaxBytes())
+                .nodeIds(nodeIds).baseNames(request.getBaseNames()).regex(request.getRegex()).build();
+        req.setDryRun(request.isDryRun());
+        return req;
+    }
+
     private List<NodeInfo> getClusterNodesWithIds(List<String> nodeIds) {
         List<NodeInfo> matchingNodes = new ArrayList<>();
         List<NodeInfo> nodeInfoList = ClusterNodesUtil.getClusterNodeInfo();
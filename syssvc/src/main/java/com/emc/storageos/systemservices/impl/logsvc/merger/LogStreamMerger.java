@@ -8,26 +8,36 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.emc.storageos.systemservices.impl.logsvc.LogMessage;
+import com.emc.storageos.services.util.NamedThreadPoolExecutor;
 import com.emc.storageos.systemservices.impl.logsvc.LogSvcPropertiesLoader;
 import com.emc.storageos.systemservices.impl.logsvc.stream.LogFileStream;
+import com.emc.storageos.systemservices.impl.logsvc.stream.LogStream;
+import com.emc.storageos.systemservices.impl.logsvc.stream.PrefetchingLogStream;
 import com.emc.storageos.systemservices.impl.logsvc.util.LogFileFinder;
 import com.emc.vipr.model.sys.logging.LogRequest;
 
 /**
  * This class is responsible to read one line from each logstream and sort them based on timestamp.
- * This is done on per host basis.
+ * This is done on per host basis. The log files of the services are read and parsed in parallel,
+ * each a few batches ahead of the merge.
  * 
  */
 public class LogStreamMerger extends AbstractLogStreamMerger {
     // Logger reference.
     private static final Logger logger = LoggerFactory.getLogger(LogStreamMerger.class);
 
+    private static final int PREFETCH_BATCH_SIZE = 128;
+    // shared by all requests; the read tasks never wait for the merge, so the pool only bounds the parallelism
+    private static final NamedThreadPoolExecutor prefetchExecutor = createPrefetchExecutor();
+
+    private LogFileStream[] fileStreams;
     private AtomicLong sizeCounter = new AtomicLong(0);
 
     /**
@@ -56,28 +66,36 @@ public class LogStreamMerger extends AbstractLogStreamMerger {
         }
 
         int size = groups.size();
-        logStreamList = new LogFileStream[size];
-        logHeads = new LogMessage[size];
+        int readAheadBatches = propertiesLoader.getReadAheadBatches();
+        fileStreams = new LogFileStream[size];
+        logStreamList = new LogStream[size];
 
         for (int i = 0; i < size; i++) {
             String service = groups.get(i);
-            logStreamList[i] = new LogFileStream(service, groupedLogFiles.get(service), req,
+            LogFileStream stream = new LogFileStream(service, groupedLogFiles.get(service), req,
                     status);
-            logHeads[i] = null;// so that read next will continue
+            stream.setTimeIndexDir(propertiesLoader.getTimeIndexDir());
+            fileStreams[i] = stream;
+            logStreamList[i] = (readAheadBatches > 0) ? new PrefetchingLogStream(stream, prefetchExecutor,
+                    PREFETCH_BATCH_SIZE, readAheadBatches) : stream;
         }
     }
 
+    private static NamedThreadPoolExecutor createPrefetchExecutor() {
+        int threads = Runtime.getRuntime().availableProcessors();
+        NamedThreadPoolExecutor executor = new NamedThreadPoolExecutor(LogStreamMerger.class.getSimpleName(),
+                threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     protected void addFinishedStream(int i) {
         super.addFinishedStream(i);
-        sizeCounter.addAndGet(((LogFileStream) logStreamList[i]).getTotalSizeCount());
+        sizeCounter.addAndGet(fileStreams[i].getTotalSizeCount());
     }
 
     public LogFileStream[] getStreamList() {
-        LogFileStream[] logFileStreams = new LogFileStream[logStreamList.length];
-        for (int i = 0; i < logStreamList.length; i++) {
-            logFileStreams[i] = (LogFileStream) logStreamList[i];
-        }
-        return logFileStreams;
+        return fileStreams.clone();
     }
 
     public long getFileSize() {
@@ -12,7 +12,13 @@ import com.emc.storageos.systemservices.impl.logsvc.util.LogUtil;
 import com.emc.vipr.model.sys.logging.LogRequest;
 
 public abstract class LogParser {
-    protected static Calendar logDate = Calendar.getInstance();
+    // parsers are shared by all readers, which may run concurrently
+    private static final ThreadLocal<Calendar> logDate = new ThreadLocal<Calendar>() {
+        @Override
+        protected Calendar initialValue() {
+            return Calendar.getInstance();
+        }
+    };
 
     public abstract LogMessage parseLine(String line, LogRequest info);
 
@@ -39,19 +45,17 @@ public abstract class LogParser {
     // return -1 --later than end time
     protected int inTimeRange(int year, int month, int days, int hours, int mins,
             int secs, int msecs, LogRequest request) {
-        logDate.set(year, (month - 1), days, hours, mins, secs);
-        logDate.set(Calendar.MILLISECOND, msecs);
-        return LogUtil.timeInRange(logDate.getTime(), request.getStartTime(),
-                request.getEndTime());
+        return LogUtil.timeInRange(new Date(getTime(year, month, days, hours, mins, secs, msecs)),
+                request.getStartTime(), request.getEndTime());
     }
 
     // Returns the number of milliseconds
     protected long getTime(int year, int month, int days, int hours, int mins,
             int secs, int msecs) {
-        logDate.set(year, (month - 1), days, hours, mins, secs);
-        logDate.set(Calendar.MILLISECOND, msecs);
-        Date date = logDate.getTime();
-        return date.getTime();
+        Calendar calendar = logDate.get();
+        calendar.set(year, (month - 1), days, hours, mins, secs);
+        calendar.set(Calendar.MILLISECOND, msecs);
+        return calendar.getTimeInMillis();
     }
 
     protected static int toNumber(String str) {
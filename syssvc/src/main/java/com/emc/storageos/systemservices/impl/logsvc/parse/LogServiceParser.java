@@ -4,7 +4,6 @@
  */
 package com.emc.storageos.systemservices.impl.logsvc.parse;
 
-import java.util.Calendar;
 import java.util.Date;
 
 import com.emc.storageos.management.jmx.logging.ViPRHeaderPatternLayout;
@@ -21,8 +20,6 @@ import com.emc.vipr.model.sys.logging.LogSeverity;
  * 
  */
 public class LogServiceParser extends LogParser {
-    private static Calendar logDate = Calendar.getInstance();
-
     // length of the time 2013-11-20 13:56:48,063 [
     private final int TIME_LENGTH = 25;
     // milliseconds since epoch, will remain 13 digits for another 2 hundred years
@@ -30,6 +30,8 @@ public class LogFileStream implements LogStream {
     private LogReader reader;
     private LogRequest request;
     private LogStatusInfo status;
+    // directory of the log file time indexes, none are used if null
+    private String timeIndexDir;
 
     // number of logs get from LogReader
     private AtomicLong logCounter = new AtomicLong(0);
@@ -95,7 +97,11 @@ public class LogFileStream implements LogStream {
             if (reader == null) {
                 String filePath = logPaths.get(fileCounter.get());
                 try {
-                    reader = new LogReader(filePath, request, status, basename);
+                    LogTimeIndex index = null;
+                    if (timeIndexDir != null && request.getStartTime() != null) {
+                        index = LogTimeIndex.open(filePath, timeIndexDir);
+                    }
+                    reader = new LogReader(filePath, request, status, basename, index);
                 } catch (Exception e) {
                     status.append(String.format("Failed to open log file %s", e.getMessage()));
                     logger.error("Failed to generate log reader for {}", e.getMessage());
@@ -145,6 +151,10 @@ public class LogFileStream implements LogStream {
         return request;
     }
 
+    public void setTimeIndexDir(String timeIndexDir) {
+        this.timeIndexDir = timeIndexDir;
+    }
+
     public void setRequest(LogRequest request) {
         this.request = request;
     }
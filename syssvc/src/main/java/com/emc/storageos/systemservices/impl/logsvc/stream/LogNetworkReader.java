@@ -4,10 +4,12 @@
  */
 package com.emc.storageos.systemservices.impl.logsvc.stream;
 
+import java.io.Closeable;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
+import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -16,7 +18,7 @@ import com.emc.storageos.systemservices.impl.logsvc.LogMessage;
 import com.emc.storageos.systemservices.impl.logsvc.LogStatusInfo;
 import com.emc.storageos.systemservices.impl.logsvc.util.LogUtil;
 
-public class LogNetworkReader implements LogStream {
+public class LogNetworkReader implements LogStream, Closeable {
     // Logger reference.
     private static final Logger logger = LoggerFactory.getLogger(LogNetworkReader.class);
 
@@ -26,6 +28,7 @@ public class LogNetworkReader implements LogStream {
     private String nodeId;
     private String nodeName;
     private int logMessageCount = 0;
+    private volatile boolean closed = false;
     
     public LogNetworkReader(String nodeId, String nodeName, InputStream inputStream, LogStatusInfo status) {
         this.nodeId = nodeId;
@@ -61,12 +64,25 @@ public class LogNetworkReader implements LogStream {
                 }
             }
         } catch (IOException e) {
+            if (closed) {
+                logger.debug("Stream of node {} closed", nodeId);
+                return null;
+            }
             // TODO: generate a dynamic error log message
             logger.error("IOException:", e);
             return null;
         }
     }
 
+    /**
+     * Closes the node's response stream, which also ends a read blocked on it
+     */
+    @Override
+    public void close() {
+        closed = true;
+        IOUtils.closeQuietly(dis);
+    }
+
     public String getNodeId() {
         return this.nodeId;
     }
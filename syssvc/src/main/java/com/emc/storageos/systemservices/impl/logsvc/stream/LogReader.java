@@ -5,8 +5,11 @@
 package com.emc.storageos.systemservices.impl.logsvc.stream;
 
 import java.io.BufferedReader;
+import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.regex.Pattern;
@@ -60,10 +63,34 @@ public class LogReader implements LogStream {
 
     public LogReader(String path, LogRequest req, LogStatusInfo status, String service) throws IOException,
             CompressorException {
-        if (LogUtil.logFileZipped(path)) {
-            reader = LogUtil.getBufferedReaderForBZ2File(path);
-        } else {
-            reader = new BufferedReader(new FileReader(path));
+        this(path, req, status, service, null);
+    }
+
+    /**
+     * Creates a reader which uses the time index of the file, if any, to skip the part
+     * of the file before the start time of the request.
+     * 
+     * @param index time index of the file, may be null
+     */
+    public LogReader(String path, LogRequest req, LogStatusInfo status, String service, LogTimeIndex index)
+            throws IOException, CompressorException {
+        long offset = 0;
+        boolean skipFile = false;
+        if (index != null && req.getStartTime() != null) {
+            Long endTime = (req.getEndTime() != null) ? req.getEndTime().getTime() : null;
+            if (index.isComplete() && !index.mayHaveMessagesIn(req.getStartTime().getTime(), endTime)) {
+                skipFile = true;
+            } else {
+                LogTimeIndex.Entry entry = index.seek(req.getStartTime().getTime());
+                if (entry != null) {
+                    offset = entry.getOffset();
+                    fileLineNumber = (int) entry.getLineNumber();
+                }
+            }
+            logger.debug("Start reading {} at offset {}{}", path, offset, skipFile ? ", skipped" : "");
+        }
+        if (!skipFile) {
+            reader = openReader(path, offset);
         }
         request = req;
         if (req.getRegex() != null) {
@@ -171,6 +198,35 @@ public class LogReader implements LogStream {
         return null;
     }
 
+    private static BufferedReader openReader(String path, long offset) throws IOException, CompressorException {
+        if (LogUtil.logFileZipped(path)) {
+            if (offset == 0) {
+                return LogUtil.getBufferedReaderForBZ2File(path);
+            }
+            InputStream input = LogUtil.getInputStreamForCompressedFile(path);
+            try {
+                LogUtil.skipFully(input, offset);
+            } catch (IOException e) {
+                input.close();
+                throw e;
+            }
+            return new BufferedReader(new InputStreamReader(input));
+        }
+        if (offset == 0) {
+            return new BufferedReader(new FileReader(path));
+        }
+        FileInputStream input = new FileInputStream(path);
+        input.getChannel().position(offset);
+        return new BufferedReader(new InputStreamReader(input));
+    }
+
+    /**
+     * @return the parsers tried on log files, in order
+     */
+    static List<LogParser> getParsers() {
+        return parserTable;
+    }
+
     private void incrementLogCount(LogMessage returnedLog) {
         if (!returnedLog.isHeader()) {
             logCount++;
@@ -0,0 +1,460 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.systemservices.impl.logsvc.stream;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import org.apache.commons.compress.compressors.CompressorException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.emc.storageos.systemservices.impl.logsvc.LogConstants;
+import com.emc.storageos.systemservices.impl.logsvc.LogMessage;
+import com.emc.storageos.systemservices.impl.logsvc.parse.LogParser;
+import com.emc.storageos.systemservices.impl.logsvc.util.LogUtil;
+import com.emc.vipr.model.sys.logging.LogRequest;
+
+/**
+ * Sidecar time index of a log file, which lets LogReader start reading close to the start
+ * time of a request instead of parsing the file from its first line.
+ *
+ * Every ENTRY_INTERVAL bytes the index records the byte offset and line number of the next
+ * log message, along with the latest time of all messages before it; a reader can start at
+ * the last entry whose messages before are all earlier than the requested start time.
+ * Offsets of compressed files are offsets in the decompressed content, so rotated archives
+ * are indexed by blocks of decompressed data.
+ *
+ * Indexes are kept in a directory of their own and named after the first FINGERPRINT_LENGTH
+ * bytes of the (decompressed) content. A live log file is indexed incrementally, from where
+ * the previous request stopped; when it is rotated its archive has the same content, so its
+ * index is completed from there rather than rebuilt.
+ */
+public class LogTimeIndex {
+    private static final Logger logger = LoggerFactory.getLogger(LogTimeIndex.class);
+
+    public static final String INDEX_SUFFIX = ".tidx";
+    // bytes of content identifying a log file; files shorter than that are not indexed
+    static final int FINGERPRINT_LENGTH = 4096;
+    // distance in (decompressed) bytes between index entries
+    static final long ENTRY_INTERVAL = 256 * 1024;
+
+    private static final int MAGIC = 0x4c544958;
+    private static final int VERSION = 1;
+    // indexes not used for that long belong to deleted log files
+    private static final long RETENTION_MS = 30L * 24 * 60 * 60 * 1000;
+    private static final long PRUNE_INTERVAL_MS = 60L * 60 * 1000;
+    private static final AtomicLong lastPruneTime = new AtomicLong();
+    private static final ConcurrentMap<String, Object> locks = new ConcurrentHashMap<>();
+
+    private final byte[] fingerprint;
+    private long indexedLength = 0;
+    private long lineCount = 0;
+    private int parserIndex = -1;
+    private long minTime = Long.MAX_VALUE;
+    private long maxTime = Long.MIN_VALUE;
+    private boolean complete = false;
+    private Entry tail;
+    private final List<Entry> entries = new ArrayList<>();
+
+    /**
+     * Position of a log message in the file
+     */
+    public static class Entry {
+        private final long offset;
+        private final long lineNumber;
+        private final long maxTimeBefore;
+
+        Entry(long offset, long lineNumber, long maxTimeBefore) {
+            this.offset = offset;
+            this.lineNumber = lineNumber;
+            this.maxTimeBefore = maxTimeBefore;
+        }
+
+        /**
+         * @return byte offset of the first line of the message
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * @return number of lines before the message
+         */
+        public long getLineNumber() {
+            return lineNumber;
+        }
+
+        /**
+         * @return the latest time of the messages before this one
+         */
+        public long getMaxTimeBefore() {
+            return maxTimeBefore;
+        }
+    }
+
+    private LogTimeIndex(byte[] fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Loads the index of a log file and brings it up to date with the content of the file,
+     * building it if there is none.
+     *
+     * @param path log file path
+     * @param indexDir directory of the index files
+     * @return the index, or null if the file can't or needn't be indexed
+     */
+    public static LogTimeIndex open(String path, String indexDir) {
+        boolean compressed = LogUtil.logFileZipped(path);
+        try {
+            byte[] fingerprint = readFingerprint(path, compressed);
+            if (fingerprint == null) {
+                return null;
+            }
+            File dir = new File(indexDir);
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                logger.warn("Unable to create log index directory {}", indexDir);
+                return null;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(fingerprint);
+            String name = String.format("%08x%s", crc.getValue(), INDEX_SUFFIX);
+            File indexFile = new File(dir, name);
+
+            locks.putIfAbsent(name, new Object());
+            LogTimeIndex index;
+            synchronized (locks.get(name)) {
+                index = load(indexFile, fingerprint);
+                if (index == null) {
+                    index = new LogTimeIndex(fingerprint);
+                }
+                if (index.complete) {
+                    // keep it from being pruned
+                    indexFile.setLastModified(System.currentTimeMillis());
+                } else {
+                    long start = System.currentTimeMillis();
+                    long before = index.indexedLength;
+                    if (!index.update(path, compressed)) {
+                        logger.info("Content of {} does not match its index, rebuilding it", path);
+                        index = new LogTimeIndex(fingerprint);
+                        before = 0;
+                        index.update(path, compressed);
+                    }
+                    index.save(indexFile);
+                    logger.debug("Indexed {} bytes of {} in {} ms", index.indexedLength - before, path,
+                            System.currentTimeMillis() - start);
+                }
+            }
+            prune(dir);
+            return index;
+        } catch (IOException | CompressorException e) {
+            logger.warn("Unable to index log file {}: {}", path, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Returns where to start reading for messages from the given time on.
+     *
+     * @param startTime
+     * @return the last indexed message whose preceding messages are all earlier than
+     *         startTime, or null if the file has to be read from its beginning
+     */
+    public Entry seek(long startTime) {
+        if (tail != null && tail.maxTimeBefore < startTime) {
+            return tail;
+        }
+        // entries are sorted by offset, and so by the latest time before them
+        int low = 0;
+        int high = entries.size() - 1;
+        Entry found = null;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            Entry entry = entries.get(mid);
+            if (entry.maxTimeBefore < startTime) {
+                found = entry;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Tells if the file may have messages in the given time range; only meaningful once
+     * the file is completely indexed.
+     *
+     * @param startTime may be null
+     * @param endTime may be null
+     * @return false if all indexed messages are outside of the range
+     */
+    public boolean mayHaveMessagesIn(Long startTime, Long endTime) {
+        if (minTime > maxTime) {
+            // no messages at all, let the reader report the lines it can't parse
+            return true;
+        }
+        return (startTime == null || maxTime >= startTime) && (endTime == null || minTime <= endTime);
+    }
+
+    /**
+     * @return true if the whole content of the file, a rotated archive, is indexed
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public long getIndexedLength() {
+        return indexedLength;
+    }
+
+    public int getEntryCount() {
+        return entries.size();
+    }
+
+    public long getMinTime() {
+        return minTime;
+    }
+
+    public long getMaxTime() {
+        return maxTime;
+    }
+
+    private static InputStream openStream(String path, boolean compressed) throws IOException, CompressorException {
+        return compressed ? LogUtil.getInputStreamForCompressedFile(path) : new FileInputStream(path);
+    }
+
+    private static byte[] readFingerprint(String path, boolean compressed) throws IOException, CompressorException {
+        byte[] fingerprint = new byte[FINGERPRINT_LENGTH];
+        try (InputStream input = openStream(path, compressed)) {
+            int read = 0;
+            while (read < FINGERPRINT_LENGTH) {
+                int n = input.read(fingerprint, read, FINGERPRINT_LENGTH - read);
+                if (n < 0) {
+                    // small enough to be read as a whole
+                    return null;
+                }
+                read += n;
+            }
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Indexes the content added since the last update.
+     *
+     * @return false if the file does not have the indexed content anymore
+     */
+    private boolean update(String path, boolean compressed) throws IOException, CompressorException {
+        if (!compressed && new File(path).length() < indexedLength) {
+            return false;
+        }
+        try (InputStream input = openStream(path, compressed)) {
+            try {
+                LogUtil.skipFully(input, indexedLength);
+            } catch (EOFException e) {
+                return false;
+            }
+            scan(input, compressed);
+        }
+        // archives don't change anymore
+        complete = compressed;
+        return true;
+    }
+
+    private void scan(InputStream input, boolean toEnd) throws IOException {
+        LogRequest request = new LogRequest.Builder().build();
+        List<LogParser> parsers = LogReader.getParsers();
+        byte[] buffer = new byte[LogConstants.BUFFER_SIZE];
+        byte[] line = new byte[1024];
+        int lineLength = 0;
+        long lineOffset = indexedLength;
+        int n;
+        while ((n = input.read(buffer)) >= 0) {
+            int from = 0;
+            for (int i = 0; i < n; i++) {
+                if (buffer[i] != '\n') {
+                    continue;
+                }
+                line = append(line, lineLength, buffer, from, i - from);
+                lineLength += i - from;
+                indexLine(line, lineLength, lineOffset, parsers, request);
+                lineOffset += lineLength + 1;
+                lineLength = 0;
+                from = i + 1;
+            }
+            line = append(line, lineLength, buffer, from, n - from);
+            lineLength += n - from;
+        }
+        if (toEnd && lineLength > 0) {
+            indexLine(line, lineLength, lineOffset, parsers, request);
+            lineOffset += lineLength;
+        }
+        // a last line which is still being written is indexed next time
+        indexedLength = lineOffset;
+    }
+
+    private static byte[] append(byte[] line, int lineLength, byte[] buffer, int from, int length) {
+        if (lineLength + length > line.length) {
+            line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + length));
+        }
+        System.arraycopy(buffer, from, line, lineLength, length);
+        return line;
+    }
+
+    private void indexLine(byte[] bytes, int length, long offset, List<LogParser> parsers, LogRequest request) {
+        long linesBefore = lineCount++;
+        if (length > 0 && bytes[length - 1] == '\r') {
+            length--;
+        }
+        // decoded as LogReader does
+        LogMessage message = parse(new String(bytes, 0, length), parsers, request);
+        if (message == null) {
+            return;
+        }
+        tail = new Entry(offset, linesBefore, maxTime);
+        if (entries.isEmpty() || offset - entries.get(entries.size() - 1).offset >= ENTRY_INTERVAL) {
+            entries.add(tail);
+        }
+        maxTime = Math.max(maxTime, message.getTime());
+        minTime = Math.min(minTime, message.getTime());
+    }
+
+    /**
+     * Parses the first line of a message, choosing the parser as LogReader does
+     *
+     * @return the message, or null for other lines
+     */
+    private LogMessage parse(String line, List<LogParser> parsers, LogRequest request) {
+        LogMessage message = null;
+        if (parserIndex >= 0) {
+            message = parsers.get(parserIndex).parseLine(line, request);
+        } else {
+            for (int i = 0; i < parsers.size(); i++) {
+                message = parsers.get(i).parseLine(line, request);
+                if (message != null && !message.isContinuation()) {
+                    parserIndex = i;
+                    break;
+                }
+            }
+        }
+        if (message == null || message.isContinuation() || message.isRejected() || message.isRejectedLast()) {
+            return null;
+        }
+        return message;
+    }
+
+    private static LogTimeIndex load(File indexFile, byte[] fingerprint) {
+        if (!indexFile.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            byte[] stored = new byte[in.readInt()];
+            in.readFully(stored);
+            if (!Arrays.equals(stored, fingerprint)) {
+                // another file with the same checksum, the index is rebuilt for this one
+                return null;
+            }
+            LogTimeIndex index = new LogTimeIndex(fingerprint);
+            index.indexedLength = in.readLong();
+            index.lineCount = in.readLong();
+            index.parserIndex = in.readInt();
+            index.minTime = in.readLong();
+            index.maxTime = in.readLong();
+            index.complete = in.readBoolean();
+            if (in.readBoolean()) {
+                index.tail = readEntry(in);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                index.entries.add(readEntry(in));
+            }
+            return index;
+        } catch (IOException e) {
+            logger.warn("Unable to read log index {}: {}", indexFile, e.getMessage());
+            return null;
+        }
+    }
+
+    private static Entry readEntry(DataInputStream in) throws IOException {
+        return new Entry(in.readLong(), in.readLong(), in.readLong());
+    }
+
+    private static void writeEntry(DataOutputStream out, Entry entry) throws IOException {
+        out.writeLong(entry.offset);
+        out.writeLong(entry.lineNumber);
+        out.writeLong(entry.maxTimeBefore);
+    }
+
+    /**
+     * Writes the index to a temporary file first, so that readers never see a partial index
+     */
+    private void save(File indexFile) throws IOException {
+        File tmpFile = new File(indexFile.getParentFile(), indexFile.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(fingerprint.length);
+            out.write(fingerprint);
+            out.writeLong(indexedLength);
+            out.writeLong(lineCount);
+            out.writeInt(parserIndex);
+            out.writeLong(minTime);
+            out.writeLong(maxTime);
+            out.writeBoolean(complete);
+            out.writeBoolean(tail != null);
+            if (tail != null) {
+                writeEntry(out, tail);
+            }
+            out.writeInt(entries.size());
+            for (Entry entry : entries) {
+                writeEntry(out, entry);
+            }
+        }
+        if (!tmpFile.renameTo(indexFile)) {
+            tmpFile.delete();
+            throw new IOException("Unable to rename " + tmpFile + " to " + indexFile);
+        }
+    }
+
+    /**
+     * Deletes the indexes which were not used for RETENTION_MS, at most once per PRUNE_INTERVAL_MS
+     */
+    private static void prune(File dir) {
+        long now = System.currentTimeMillis();
+        long last = lastPruneTime.get();
+        if (now - last < PRUNE_INTERVAL_MS || !lastPruneTime.compareAndSet(last, now)) {
+            return;
+        }
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.getName().endsWith(INDEX_SUFFIX) && file.lastModified() < now - RETENTION_MS && file.delete()) {
+                logger.info("Deleted unused log index {}", file);
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.systemservices.impl.logsvc.stream;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.emc.storageos.systemservices.impl.logsvc.LogMessage;
+
+/**
+ * Reads a log stream ahead on an executor, so that the streams of a merger are read,
+ * decoded and filtered concurrently while the merger consumes them.
+ *
+ * Messages are read in batches into a queue of at most maxBatches batches. The read task
+ * never blocks on the queue: it returns once the queue is full and is submitted again
+ * when the consumer takes a batch. So a slow consumer stops reading from the source,
+ * which pushes back on the socket or file behind it, and a bounded executor shared by
+ * many streams can not deadlock.
+ */
+public class PrefetchingLogStream implements LogStream, Closeable {
+    // Logger reference.
+    private static final Logger logger = LoggerFactory.getLogger(PrefetchingLogStream.class);
+
+    // marks the end of the source in the queue
+    private static final List<LogMessage> END = Collections.emptyList();
+
+    private final LogStream source;
+    private final Executor executor;
+    private final int batchSize;
+    private final int maxBatches;
+    private final BlockingQueue<List<LogMessage>> batches = new LinkedBlockingQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private volatile boolean sourceFinished = false;
+    private volatile boolean closed = false;
+
+    // the batch being consumed
+    private List<LogMessage> current;
+    private int position;
+    private boolean finished = false;
+
+    private final Runnable readTask = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                readAhead();
+            } finally {
+                scheduled.set(false);
+            }
+            // the consumer may have taken a batch after the queue was found full
+            if (batches.size() < maxBatches) {
+                schedule();
+            }
+        }
+    };
+
+    public PrefetchingLogStream(LogStream source, Executor executor, int batchSize, int maxBatches) {
+        this.source = source;
+        this.executor = executor;
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+    }
+
+    /**
+     * Starts reading the source ahead, it is otherwise started by the first read
+     */
+    public void start() {
+        schedule();
+    }
+
+    @Override
+    public LogMessage readNextLogMessage() {
+        if (current == null || position == current.size()) {
+            if (finished) {
+                return null;
+            }
+            current = takeBatch();
+            position = 0;
+            if (current == END) {
+                finished = true;
+                current = null;
+                return null;
+            }
+        }
+        return current.get(position++);
+    }
+
+    private List<LogMessage> takeBatch() {
+        schedule();
+        try {
+            List<LogMessage> batch = batches.take();
+            // there is room for another batch now
+            schedule();
+            return batch;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            return END;
+        }
+    }
+
+    private void schedule() {
+        if (sourceFinished || closed || !scheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(readTask);
+        } catch (RejectedExecutionException e) {
+            // read the next batch on the caller's thread instead
+            logger.warn("Log read ahead rejected, reading {} inline", source);
+            readTask.run();
+        }
+    }
+
+    private void readAhead() {
+        try {
+            while (!sourceFinished && !closed && batches.size() < maxBatches) {
+                List<LogMessage> batch = new ArrayList<>(batchSize);
+                LogMessage msg = null;
+                while (batch.size() < batchSize && (msg = source.readNextLogMessage()) != null) {
+                    batch.add(msg);
+                }
+                if (!batch.isEmpty()) {
+                    batches.add(batch);
+                }
+                if (msg == null) {
+                    finishSource();
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.error("Exception reading log stream ahead:", e);
+            finishSource();
+        }
+    }
+
+    private void finishSource() {
+        sourceFinished = true;
+        batches.add(END);
+    }
+
+    public LogStream getSource() {
+        return source;
+    }
+
+    /**
+     * Stops reading ahead and closes the source if it can be closed. A read in progress
+     * on a source which can not be closed completes in the background.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        batches.clear();
+        batches.add(END);
+        if (source instanceof Closeable) {
+            IOUtils.closeQuietly((Closeable) source);
+        }
+    }
+}
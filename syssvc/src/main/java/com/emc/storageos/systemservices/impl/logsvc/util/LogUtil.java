@@ -6,19 +6,21 @@ package com.emc.storageos.systemservices.impl.logsvc.util;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.compress.compressors.CompressorException;
 import org.apache.commons.compress.compressors.CompressorInputStream;
@@ -198,15 +200,51 @@ public class LogUtil {
      */
     public static BufferedReader getBufferedReaderForBZ2File(String fileIn)
             throws FileNotFoundException, CompressorException {
+        CompressorInputStream input = getInputStreamForCompressedFile(fileIn);
+
+        BufferedReader br = new BufferedReader(new InputStreamReader(input));
+
+        return br;
+    }
+
+    /**
+     * Opens a stream of the decompressed content of a zip(bz2/xz/gzip) file.
+     * 
+     * @param fileIn
+     * @return
+     * @throws FileNotFoundException
+     * @throws CompressorException
+     */
+    public static CompressorInputStream getInputStreamForCompressedFile(String fileIn)
+            throws FileNotFoundException, CompressorException {
         CompressorStreamFactory factory = new CompressorStreamFactory();
 
         FileInputStream fin = new FileInputStream(fileIn);
         BufferedInputStream bis = new BufferedInputStream(fin);
-        CompressorInputStream input = factory.createCompressorInputStream(bis);
-
-        BufferedReader br = new BufferedReader(new InputStreamReader(input));
+        return factory.createCompressorInputStream(bis);
+    }
 
-        return br;
+    /**
+     * Skips exactly the given number of bytes of a stream; for compressed streams
+     * this decompresses the skipped bytes.
+     * 
+     * @param input
+     * @param bytes
+     * @throws IOException if the stream ends before
+     */
+    public static void skipFully(InputStream input, long bytes) throws IOException {
+        long remaining = bytes;
+        while (remaining > 0) {
+            long skipped = input.skip(remaining);
+            if (skipped <= 0) {
+                // some streams don't skip before they have read
+                if (input.read() < 0) {
+                    throw new EOFException("Stream ended " + remaining + " bytes before offset " + bytes);
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
     }
 
     /**
@@ -233,7 +271,7 @@ public class LogUtil {
         return new String(bytes);
     }
 
-    private static Map<String, byte[]> nodeIdByteMap = new HashMap<>();
+    private static Map<String, byte[]> nodeIdByteMap = new ConcurrentHashMap<>();
 
     public static byte[] nodeIdToBytes(String nodeId) {
         byte[] bytes = nodeIdByteMap.get(nodeId);
@@ -244,7 +282,7 @@ public class LogUtil {
         return bytes;
     }
 
-    private static Map<String, byte[]> nodeNameByteMap = new HashMap<>();
+    private static Map<String, byte[]> nodeNameByteMap = new ConcurrentHashMap<>();
 
     public static byte[] nodeNameToBytes(String nodeName) {
         byte[] bytes = nodeNameByteMap.get(nodeName);
@@ -256,7 +294,7 @@ public class LogUtil {
         return bytes;
     }
 
-    private static Map<String, byte[]> serviceByteMap = new HashMap<>();
+    private static Map<String, byte[]> serviceByteMap = new ConcurrentHashMap<>();
 
     public static byte[] serviceToBytes(String service) {
         byte[] bytes = serviceByteMap.get(service);
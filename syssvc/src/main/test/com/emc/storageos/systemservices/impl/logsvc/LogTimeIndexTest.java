@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.systemservices.impl.logsvc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.emc.storageos.systemservices.impl.logsvc.stream.LogReader;
+import com.emc.storageos.systemservices.impl.logsvc.stream.LogTimeIndex;
+import com.emc.vipr.model.sys.logging.LogRequest;
+
+public class LogTimeIndexTest {
+    private static final long BASE_TIME = 1389863277000L;
+    private static final int MESSAGES = 20000;
+
+    private File logDir;
+    private File indexDir;
+    private File logFile;
+    private int written = 0;
+
+    @Before
+    public void setUp() throws Exception {
+        logDir = new File(FileUtils.getTempDirectory(), LogTimeIndexTest.class.getSimpleName());
+        indexDir = new File(logDir, ".timeindex");
+        logDir.mkdirs();
+        logFile = new File(logDir, "testsvc.log");
+        appendMessages(logFile, MESSAGES);
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(logDir);
+    }
+
+    @Test
+    public void testSeekMatchesFullRead() throws Exception {
+        LogTimeIndex index = LogTimeIndex.open(logFile.getPath(), indexDir.getPath());
+        assertNotNull(index);
+        assertFalse(index.isComplete());
+        assertTrue(index.getEntryCount() > 1);
+
+        LogRequest request = window(15000, 15100);
+        LogTimeIndex.Entry entry = index.seek(request.getStartTime().getTime());
+        assertTrue(entry.getOffset() > 0);
+        List<String> expected = read(request, null);
+        assertEquals(101, expected.size());
+        assertEquals(expected, read(request, index));
+
+        // a window before the first message reads from the beginning
+        assertEquals(0, index.seek(BASE_TIME - 1000).getOffset());
+        assertEquals(read(window(-10, 5), null), read(window(-10, 5), index));
+    }
+
+    @Test
+    public void testIncrementalUpdate() throws Exception {
+        LogTimeIndex index = LogTimeIndex.open(logFile.getPath(), indexDir.getPath());
+        long indexedLength = index.getIndexedLength();
+        assertEquals(logFile.length(), indexedLength);
+
+        appendMessages(logFile, 5000);
+        index = LogTimeIndex.open(logFile.getPath(), indexDir.getPath());
+        assertEquals(logFile.length(), index.getIndexedLength());
+        assertTrue(index.seek(BASE_TIME + 24000 * 1000L).getOffset() >= indexedLength);
+        LogRequest request = window(MESSAGES + 10, MESSAGES + 20);
+        assertEquals(read(request, null), read(request, index));
+    }
+
+    @Test
+    public void testRotatedArchive() throws Exception {
+        LogTimeIndex index = LogTimeIndex.open(logFile.getPath(), indexDir.getPath());
+        int entries = index.getEntryCount();
+
+        // rotation compresses the live file; its index is completed rather than rebuilt
+        File archive = new File(logDir, "testsvc.log.20140116-170757.bz2");
+        try (InputStream in = new FileInputStream(logFile);
+                OutputStream out = new BZip2CompressorOutputStream(new FileOutputStream(archive))) {
+            IOUtils.copy(in, out);
+        }
+        LogTimeIndex archiveIndex = LogTimeIndex.open(archive.getPath(), indexDir.getPath());
+        assertTrue(archiveIndex.isComplete());
+        assertEquals(entries, archiveIndex.getEntryCount());
+        assertEquals(1, indexDir.list().length);
+
+        LogRequest request = window(12345, 12400);
+        assertEquals(read(archive, request, null), read(archive, request, archiveIndex));
+
+        // an archive outside of the window is not read at all
+        assertTrue(archiveIndex.mayHaveMessagesIn(BASE_TIME, null));
+        assertFalse(archiveIndex.mayHaveMessagesIn(BASE_TIME + MESSAGES * 1000L, null));
+        assertTrue(read(archive, window(MESSAGES + 10, MESSAGES + 20), archiveIndex).isEmpty());
+    }
+
+    private LogRequest window(int first, int last) {
+        return new LogRequest.Builder().startTime(new Date(BASE_TIME + first * 1000L))
+                .endTime(new Date(BASE_TIME + last * 1000L)).build();
+    }
+
+    private List<String> read(LogRequest request, LogTimeIndex index) throws Exception {
+        return read(logFile, request, index);
+    }
+
+    private List<String> read(File file, LogRequest request, LogTimeIndex index) throws Exception {
+        LogReader reader = new LogReader(file.getPath(), request, new LogStatusInfo(), "testsvc", index);
+        List<String> messages = new ArrayList<>();
+        LogMessage message;
+        while ((message = reader.readNextLogMessage()) != null) {
+            messages.add(message.getTime() + new String(message.getLogContent()));
+        }
+        return messages;
+    }
+
+    /**
+     * Appends messages one second apart, every tenth spanning several lines
+     */
+    private void appendMessages(File file, int count) throws Exception {
+        SimpleDateFormat format = new SimpleDateFormat(LogConstants.DATE_FORMAT);
+        try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8"))) {
+            for (int i = 0; i < count; i++, written++) {
+                out.write(format.format(new Date(BASE_TIME + written * 1000L)));
+                out.write(" [pool-10-thread-1]  INFO  TestService.java (line 42) message " + written);
+                if (written % 10 == 0) {
+                    out.write("\nsecond line of message " + written + "\n\tat com.emc.Test.run(Test.java:1)");
+                }
+                out.write("\n");
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2017 EMC Corporation
+ * All Rights Reserved
+ */
+package com.emc.storageos.systemservices.impl.logsvc.performance;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.math.BigInteger;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import javax.ws.rs.core.MediaType;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.emc.storageos.systemservices.impl.logsvc.LogConstants;
+import com.emc.storageos.systemservices.impl.logsvc.LogNetworkWriter;
+import com.emc.storageos.systemservices.impl.logsvc.LogStatusInfo;
+import com.emc.storageos.systemservices.impl.logsvc.LogSvcPropertiesLoader;
+import com.emc.storageos.systemservices.impl.logsvc.merger.LogNetworkStreamMerger;
+import com.emc.storageos.systemservices.impl.logsvc.stream.LogNetworkReader;
+import com.emc.vipr.model.sys.logging.LogRequest;
+import com.emc.vipr.model.sys.logging.LogSeverity;
+
+/**
+ * Compares merging the logs of a 5 node cluster with and without reading the log files
+ * and node streams ahead. Each node is stood in for by a LogNetworkWriter streaming a
+ * week of generated logs through a pipe.
+ */
+public class LogNetworkStreamMergerPerfTest {
+    private static final Logger log = LoggerFactory.getLogger(LogNetworkStreamMergerPerfTest.class);
+
+    private static final int NODES = 5;
+    private static final List<String> SERVICES = Arrays.asList("apisvc", "controllersvc", "coordinatorsvc", "syssvc");
+    private static final long START_TIME = 1389830400000L;
+    private static final long DURATION = 7 * 24 * 3600 * 1000L;
+    // mean time between the messages of a service
+    private static final int INTERVAL = 60 * 1000;
+    private static final int PIPE_SIZE = 64 * 1024;
+
+    private static File logDir;
+
+    @BeforeClass
+    public static void setup() throws Exception {
+        logDir = new File(FileUtils.getTempDirectory(), LogNetworkStreamMergerPerfTest.class.getSimpleName());
+        SimpleDateFormat format = new SimpleDateFormat(LogConstants.DATE_FORMAT);
+        for (int node = 0; node < NODES; node++) {
+            File nodeDir = new File(logDir, "vipr" + (node + 1));
+            nodeDir.mkdirs();
+            for (String service : SERVICES) {
+                writeLog(new File(nodeDir, service + ".log"), new Random(node * 100 + service.hashCode()), format);
+            }
+        }
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        FileUtils.deleteQuietly(logDir);
+    }
+
+    private static void writeLog(File file, Random random, SimpleDateFormat format) throws Exception {
+        try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"))) {
+            int i = 0;
+            for (long time = START_TIME; time < START_TIME + DURATION; time += random.nextInt(2 * INTERVAL), i++) {
+                out.write(format.format(new Date(time)));
+                if (i % 50 == 0) {
+                    out.write(" [pool-10-thread-1] ERROR TestService.java (line 42) request " + i + " timed out\n");
+                } else {
+                    out.write(" [pool-10-thread-1]  INFO  TestService.java (line 42) message " + i + "\n");
+                    if (i % 10 == 0) {
+                        out.write("second line of message " + i + "\n\tat com.emc.Test.run(Test.java:1)\n");
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPerformance() throws Exception {
+        LogRequest week = new LogRequest.Builder().startTime(new Date(START_TIME))
+                .endTime(new Date(START_TIME + DURATION)).build();
+        LogRequest errors = new LogRequest.Builder().startTime(new Date(START_TIME + DURATION - 2 * 24 * 3600 * 1000L))
+                .endTime(new Date(START_TIME + DURATION)).logLevel(LogSeverity.ERROR.ordinal())
+                .regex(".*timed out.*").build();
+        for (LogRequest request : new LogRequest[] { week, errors }) {
+            String serial = merge(request, 0);
+            String parallel = merge(request, 4);
+            Assert.assertEquals("read ahead changed the merged logs", serial, parallel);
+        }
+    }
+
+    /**
+     * Merges the logs of all nodes
+     *
+     * @return digest of the merged logs
+     */
+    private String merge(final LogRequest request, final int readAheadBatches) throws Exception {
+        // warm up the file cache and JIT
+        if (readAheadBatches == 0) {
+            createMerger(request, readAheadBatches).streamLogs(new NullOutputStream());
+        }
+        MessageDigest digest = MessageDigest.getInstance("MD5");
+        CountingOutputStream out = new CountingOutputStream(new DigestOutputStream(new NullOutputStream(), digest));
+        long start = System.nanoTime();
+        createMerger(request, readAheadBatches).streamLogs(out);
+        long millis = (System.nanoTime() - start) / 1000000;
+        Assert.assertTrue(out.getByteCount() > 0);
+
+        String result = String.format("%d nodes, %s, read ahead %d batches: %d bytes in %d ms", NODES,
+                (request.getRegex() == null) ? "a week of logs" : "errors matching " + request.getRegex(),
+                readAheadBatches, out.getByteCount(), millis);
+        log.info(result);
+        System.out.println(result);
+        return new BigInteger(1, digest.digest()).toString(16);
+    }
+
+    private LogNetworkStreamMerger createMerger(final LogRequest request, final int readAheadBatches) {
+        return new LogNetworkStreamMerger(request, MediaType.TEXT_PLAIN_TYPE, createPropertiesLoader(null, readAheadBatches)) {
+            @Override
+            protected List<LogNetworkReader> getLogNetworkStreams() {
+                List<LogNetworkReader> readers = new ArrayList<>();
+                for (int node = 0; node < NODES; node++) {
+                    readers.add(startNode("vipr" + (node + 1), request, readAheadBatches, getStatus()));
+                }
+                return readers;
+            }
+        };
+    }
+
+    /**
+     * Starts streaming the logs of a stand-in node
+     */
+    private LogNetworkReader startNode(String nodeId, LogRequest request, int readAheadBatches,
+            LogStatusInfo status) {
+        final LogNetworkWriter writer = new LogNetworkWriter(request,
+                createPropertiesLoader(new File(logDir, nodeId), readAheadBatches));
+        try {
+            final PipedOutputStream out = new PipedOutputStream();
+            PipedInputStream in = new PipedInputStream(out, PIPE_SIZE);
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        writer.write(out);
+                    } catch (Exception e) {
+                        log.error("Failed to stream node logs", e);
+                    }
+                }
+            }, nodeId);
+            thread.start();
+            return new LogNetworkReader(nodeId, nodeId, in, status);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private LogSvcPropertiesLoader createPropertiesLoader(final File nodeDir, final int readAheadBatches) {
+        return new LogSvcPropertiesLoader() {
+            @Override
+            public List<String> getLogFilePaths() {
+                return Arrays.asList(nodeDir.getPath() + "/*.log");
+            }
+
+            @Override
+            public List<String> getExcludedLogFilePaths() {
+                return new ArrayList<>();
+            }
+
+            @Override
+            public int getReadAheadBatches() {
+                return readAheadBatches;
+            }
+        };
+    }
+}